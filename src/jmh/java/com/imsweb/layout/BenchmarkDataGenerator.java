@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.imsweb.layout.hl7.NaaccrHl7Layout;
+import com.imsweb.layout.naaccrxml.NaaccrXmlField;
+import com.imsweb.layout.naaccrxml.NaaccrXmlLayout;
+import com.imsweb.layout.record.RecordLayout;
+import com.imsweb.layout.record.RecordWriter;
+import com.imsweb.layout.record.csv.CommaSeparatedField;
+import com.imsweb.layout.record.csv.CommaSeparatedLayout;
+import com.imsweb.layout.record.fixed.FixedColumnsField;
+import com.imsweb.layout.record.fixed.FixedColumnsLayout;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+
+/**
+ * Generates synthetic data for the benchmarks.
+ * <br/><br/>
+ * The data is parameterized by a number of records and a fill ratio (the probability for a given field to have a value); the same seed always
+ * generates the same data, so the results of two runs can be compared.
+ */
+public final class BenchmarkDataGenerator {
+
+    // maximum length of the generated values, for the fields that don't define a length (or that allow unlimited text)
+    private static final int _MAX_VALUE_LENGTH = 50;
+
+    // maximum number of tumors for a generated patient
+    private static final int _MAX_NUM_TUMORS = 3;
+
+    private BenchmarkDataGenerator() {
+        // utility class
+    }
+
+    /**
+     * Returns the fields that receive a value when a record is created: fields defining subfields are replaced by their subfields.
+     * @param layout fixed-columns layout
+     * @return the fields to populate
+     */
+    public static List<FixedColumnsField> getLeafFields(FixedColumnsLayout layout) {
+        List<FixedColumnsField> result = new ArrayList<>();
+        for (FixedColumnsField field : layout.getAllFields()) {
+            if (field.getSubFields() != null && !field.getSubFields().isEmpty())
+                result.addAll(field.getSubFields());
+            else
+                result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * Creates random records for the provided fields.
+     * @param fields fields to populate
+     * @param numRecords number of records to create
+     * @param fillRatio probability for a given field to have a value (between 0 and 1)
+     * @param seed seed of the random generator
+     * @return the created records
+     */
+    public static List<Map<String, String>> createRecords(Collection<? extends Field> fields, int numRecords, double fillRatio, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, String>> records = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            Map<String, String> rec = new HashMap<>();
+            for (Field field : fields)
+                if (random.nextDouble() < fillRatio)
+                    rec.put(field.getName(), createValue(getLength(field), random));
+            records.add(rec);
+        }
+        return records;
+    }
+
+    /**
+     * Creates the data lines corresponding to the provided records.
+     * @param layout layout to use to create the lines
+     * @param records records
+     * @return the data lines
+     */
+    public static List<String> createLines(RecordLayout layout, List<Map<String, String>> records) throws IOException {
+        List<String> lines = new ArrayList<>(records.size());
+        for (Map<String, String> rec : records)
+            lines.add(layout.createLineFromRecord(rec, null));
+        return lines;
+    }
+
+    /**
+     * Writes the provided records to a temporary file that is deleted when the JVM exits.
+     * @param layout layout to use to write the records
+     * @param records records
+     * @return the created file
+     */
+    public static File writeRecords(RecordLayout layout, List<Map<String, String>> records) throws IOException {
+        File file = createTempFile(".txt");
+        try (RecordWriter writer = layout.openWriter(file, null)) {
+            writer.writeAll(records);
+        }
+        return file;
+    }
+
+    /**
+     * Creates a CSV layout containing the same fields (and NAACCR item numbers) as the provided fixed-columns layout.
+     * @param layout fixed-columns layout
+     * @return the CSV layout
+     */
+    public static CommaSeparatedLayout createCommaSeparatedLayout(FixedColumnsLayout layout) {
+        List<CommaSeparatedField> fields = new ArrayList<>();
+        for (FixedColumnsField fixedField : getLeafFields(layout)) {
+            CommaSeparatedField field = new CommaSeparatedField();
+            field.setName(fixedField.getName());
+            field.setNaaccrItemNum(fixedField.getNaaccrItemNum());
+            field.setLength(getLength(fixedField));
+            field.setIndex(fields.size() + 1);
+            fields.add(field);
+        }
+
+        CommaSeparatedLayout result = new CommaSeparatedLayout();
+        result.setLayoutId(layout.getLayoutId() + "-csv");
+        result.setLayoutName(layout.getLayoutName() + " (CSV)");
+        result.setLayoutNumberOfFields(fields.size());
+        result.setIgnoreFirstLine(false);
+        result.setFields(fields);
+        return result;
+    }
+
+    /**
+     * Creates random NAACCR HL7 messages; the fill ratio is the probability of each optional segment (and segment field) to be present.
+     * @param layout HL7 layout
+     * @param numMessages number of messages
+     * @param fillRatio fill ratio (between 0 and 1)
+     * @param seed seed of the random generator
+     * @return the content of the messages, one segment per line
+     */
+    public static String createHl7Messages(NaaccrHl7Layout layout, int numMessages, double fillRatio, long seed) {
+        Random random = new Random(seed);
+        String version = layout.getHl7Specifications();
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < numMessages; i++) {
+            buf.append("MSH|^~\\&||LAB SERVICES^").append(createValue(10, random)).append("^CLIA|||").append(createValue(12, random)).append("||ORU^R01^ORU_R01|")
+                    .append(createValue(16, random)).append("|P|").append(version).append("|||||||||VOL_V_").append(layout.getLayoutVersion().replace(".", ""))
+                    .append("_ORU_R01^NAACCR_CP^2.16.840.1.113883.9.8^ISO\n");
+            buf.append("PID|1||").append(createValue(9, random)).append("^^^^SS~").append(createValue(8, random)).append("^^^^MR||")
+                    .append(fill(random, fillRatio, 20)).append('^').append(fill(random, fillRatio, 15)).append("||").append(createValue(8, random)).append('|')
+                    .append(random.nextBoolean() ? 'F' : 'M').append("||2106-3^White^HL70005|").append(fill(random, fillRatio, 30)).append("^^")
+                    .append(fill(random, fillRatio, 15)).append("^NY^").append(fill(random, fillRatio, 5)).append("^^H|||||M\n");
+            if (random.nextDouble() < fillRatio)
+                buf.append("ORC|RE||||||||||||||||||||").append(fill(random, 1, 30)).append('|').append(fill(random, 1, 30)).append("^^Albany^NY^12208\n");
+            buf.append("OBR|1||").append(createValue(12, random)).append("|22049-1^Flow Cytometry Analysis^LN|||").append(createValue(12, random))
+                    .append("|||||||").append(createValue(12, random)).append("|^Bone marrow|^B.J.^Healing^^^^M.D.|").append(createValue(10, random)).append('\n');
+            int numObx = 1 + (int)(fillRatio * 10);
+            for (int j = 1; j <= numObx; j++)
+                buf.append("OBX|").append(j).append("|TX|22633-2^nature of specimen^LN||").append(fill(random, 1, 200)).append("|||N|||F|||")
+                        .append(createValue(12, random)).append('\n');
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Creates random NAACCR XML patients for the provided layout.
+     * @param layout NAACCR XML layout
+     * @param numPatients number of patients
+     * @param fillRatio probability for a given item to have a value (between 0 and 1)
+     * @param seed seed of the random generator
+     * @return the created patients
+     */
+    public static List<Patient> createPatients(NaaccrXmlLayout layout, int numPatients, double fillRatio, long seed) {
+        List<NaaccrXmlField> patientFields = new ArrayList<>();
+        List<NaaccrXmlField> tumorFields = new ArrayList<>();
+        for (NaaccrXmlField field : layout.getAllFields()) {
+            if ("Patient".equals(field.getParentXmlElement()))
+                patientFields.add(field);
+            else if ("Tumor".equals(field.getParentXmlElement()))
+                tumorFields.add(field);
+        }
+
+        Random random = new Random(seed);
+        List<Patient> patients = new ArrayList<>(numPatients);
+        for (int i = 0; i < numPatients; i++) {
+            Patient patient = new Patient();
+            for (NaaccrXmlField field : patientFields)
+                if (random.nextDouble() < fillRatio)
+                    patient.addItem(new Item(field.getNaaccrId(), createValue(field.isAllowUnlimitedText() ? null : field.getLength(), random)));
+            int numTumors = 1 + random.nextInt(_MAX_NUM_TUMORS);
+            for (int j = 0; j < numTumors; j++) {
+                Tumor tumor = new Tumor();
+                for (NaaccrXmlField field : tumorFields)
+                    if (random.nextDouble() < fillRatio)
+                        tumor.addItem(new Item(field.getNaaccrId(), createValue(field.isAllowUnlimitedText() ? null : field.getLength(), random)));
+                patient.addTumor(tumor);
+            }
+            patients.add(patient);
+        }
+        return patients;
+    }
+
+    /**
+     * Creates the root data to use to write the patients of the provided layout.
+     * @param layout NAACCR XML layout
+     * @return the root data
+     */
+    public static NaaccrData createNaaccrData(NaaccrXmlLayout layout) {
+        NaaccrData data = new NaaccrData();
+        data.setBaseDictionaryUri(NaaccrXmlDictionaryUtils.createUriFromVersion(layout.getNaaccrVersion(), true));
+        data.setRecordType(layout.getRecordType());
+        return data;
+    }
+
+    /**
+     * Writes the provided content to a temporary file that is deleted when the JVM exits.
+     * @param content content to write
+     * @param extension file extension
+     * @return the created file
+     */
+    public static File writeContent(String content, String extension) throws IOException {
+        File file = createTempFile(extension);
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    /**
+     * Creates an empty temporary file that is deleted when the JVM exits.
+     * @param extension file extension
+     * @return the created file
+     */
+    public static File createTempFile(String extension) throws IOException {
+        File file = File.createTempFile("layout-benchmark-", extension);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static Integer getLength(Field field) {
+        if (field instanceof FixedColumnsField fixedField)
+            return fixedField.getEnd() - fixedField.getStart() + 1;
+        return field.getLength();
+    }
+
+    private static String fill(Random random, double fillRatio, int maxLength) {
+        return random.nextDouble() < fillRatio ? createValue(maxLength, random) : "";
+    }
+
+    // digits and upper-case letters only, so the values never need to be quoted or escaped
+    private static String createValue(Integer length, Random random) {
+        int maxLength = length == null || length <= 0 ? _MAX_VALUE_LENGTH : length;
+        int valueLength = 1 + random.nextInt(maxLength);
+        char[] value = new char[valueLength];
+        for (int i = 0; i < valueLength; i++) {
+            int c = random.nextInt(36);
+            value[i] = (char)(c < 10 ? '0' + c : 'A' + c - 10);
+        }
+        return new String(value);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.hl7;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.imsweb.layout.BenchmarkDataGenerator;
+import com.imsweb.layout.LayoutFactory;
+import com.imsweb.layout.hl7.entity.Hl7Message;
+
+/**
+ * Benchmarks for reading and writing NAACCR HL7 data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NaaccrHl7LayoutBenchmark {
+
+    @Param({LayoutFactory.LAYOUT_ID_NAACCR_HL7_V4, LayoutFactory.LAYOUT_ID_NAACCR_HL7_V5})
+    public String layoutId;
+
+    @Param({"1000"})
+    public int numMessages;
+
+    @Param({"0.2", "1.0"})
+    public double fillRatio;
+
+    private NaaccrHl7Layout _layout;
+
+    private String[] _segments;
+
+    private List<Hl7Message> _messages;
+
+    private File _file;
+
+    @Setup
+    public void setup() throws IOException {
+        _layout = (NaaccrHl7Layout)LayoutFactory.getLayout(layoutId);
+        String content = BenchmarkDataGenerator.createHl7Messages(_layout, numMessages, fillRatio, 42L);
+        _segments = content.lines().filter(line -> !line.isEmpty()).toArray(String[]::new);
+        _file = BenchmarkDataGenerator.writeContent(content, ".txt");
+        _messages = _layout.readAllMessages(_file);
+    }
+
+    @Benchmark
+    public void segmentFromString(Blackhole blackhole) {
+        Hl7Message message = new Hl7Message();
+        for (String segment : _segments) {
+            // the segments are added to the message, start a new one for each MSH so the message doesn't grow too big
+            if (segment.startsWith("MSH"))
+                message = new Hl7Message();
+            blackhole.consume(Hl7Utils.segmentFromString(message, segment));
+        }
+    }
+
+    @Benchmark
+    public List<Hl7Message> readAllMessages() throws IOException {
+        return _layout.readAllMessages(_file);
+    }
+
+    @Benchmark
+    public void writeMessages(Blackhole blackhole) throws IOException {
+        StringWriter writer = new StringWriter();
+        for (Hl7Message message : _messages)
+            _layout.writeMessage(writer, message);
+        blackhole.consume(writer.getBuffer().length());
+    }
+}
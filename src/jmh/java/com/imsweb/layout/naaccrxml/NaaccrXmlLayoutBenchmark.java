@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.naaccrxml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.imsweb.layout.BenchmarkDataGenerator;
+import com.imsweb.layout.LayoutFactory;
+import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * Benchmarks for reading and writing NAACCR XML data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NaaccrXmlLayoutBenchmark {
+
+    @Param({LayoutFactory.LAYOUT_ID_NAACCR_XML_18_ABSTRACT, LayoutFactory.LAYOUT_ID_NAACCR_XML_18_INCIDENCE})
+    public String layoutId;
+
+    @Param({"1000"})
+    public int numPatients;
+
+    @Param({"0.2", "1.0"})
+    public double fillRatio;
+
+    private NaaccrXmlLayout _layout;
+
+    private NaaccrData _data;
+
+    private NaaccrOptions _options;
+
+    private List<Patient> _patients;
+
+    private File _file;
+
+    @Setup
+    public void setup() throws IOException {
+        _layout = (NaaccrXmlLayout)LayoutFactory.getLayout(layoutId);
+        _data = BenchmarkDataGenerator.createNaaccrData(_layout);
+        _options = new NaaccrOptions();
+        _patients = BenchmarkDataGenerator.createPatients(_layout, numPatients, fillRatio, 42L);
+        _file = BenchmarkDataGenerator.createTempFile(".xml");
+        _layout.writeAllPatients(_file, _patients, _data, _options);
+    }
+
+    @Benchmark
+    public List<Patient> readAllPatients() throws NaaccrIOException {
+        return _layout.readAllPatients(_file, StandardCharsets.UTF_8.name(), _options);
+    }
+
+    @Benchmark
+    public void writeAllPatients() throws NaaccrIOException {
+        _layout.writeAllPatients(OutputStream.nullOutputStream(), _patients, _data, _options);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.imsweb.layout.BenchmarkDataGenerator;
+import com.imsweb.layout.LayoutFactory;
+import com.imsweb.layout.record.fixed.FixedColumnsLayout;
+
+/**
+ * Benchmarks for reading and writing CSV data; the CSV layout contains the same fields as the NAACCR 18 abstract layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommaSeparatedLayoutBenchmark {
+
+    @Param({"1000"})
+    public int numRecords;
+
+    @Param({"0.2", "1.0"})
+    public double fillRatio;
+
+    private CommaSeparatedLayout _layout;
+
+    private List<Map<String, String>> _records;
+
+    private List<String> _lines;
+
+    private File _file;
+
+    @Setup
+    public void setup() throws IOException {
+        _layout = BenchmarkDataGenerator.createCommaSeparatedLayout((FixedColumnsLayout)LayoutFactory.getLayout(LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT));
+        _records = BenchmarkDataGenerator.createRecords(_layout.getAllFields(), numRecords, fillRatio, 42L);
+        _lines = BenchmarkDataGenerator.createLines(_layout, _records);
+        _file = BenchmarkDataGenerator.writeRecords(_layout, _records);
+    }
+
+    @Benchmark
+    public void parseLine(Blackhole blackhole) throws IOException {
+        for (String line : _lines)
+            blackhole.consume(_layout.parseLine(line, null));
+    }
+
+    @Benchmark
+    public void createRecordFromLine(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < _lines.size(); i++)
+            blackhole.consume(_layout.createRecordFromLine(_lines.get(i), i + 1, null));
+    }
+
+    @Benchmark
+    public void createLineFromRecord(Blackhole blackhole) throws IOException {
+        for (Map<String, String> rec : _records)
+            blackhole.consume(_layout.createLineFromRecord(rec, null));
+    }
+
+    @Benchmark
+    public List<Map<String, String>> readAllRecords() throws IOException {
+        return _layout.readAllRecords(_file);
+    }
+
+    @Benchmark
+    public void writeRecords() throws IOException {
+        _layout.writeRecords(OutputStream.nullOutputStream(), _records, null);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.imsweb.layout.BenchmarkDataGenerator;
+import com.imsweb.layout.LayoutFactory;
+import com.imsweb.layout.record.RecordLayoutOptions;
+
+/**
+ * Benchmarks for reading and writing NAACCR fixed-columns data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FixedColumnsLayoutBenchmark {
+
+    @Param({LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT, LayoutFactory.LAYOUT_ID_NAACCR_18_INCIDENCE})
+    public String layoutId;
+
+    @Param({"1000"})
+    public int numRecords;
+
+    @Param({"0.2", "1.0"})
+    public double fillRatio;
+
+    private FixedColumnsLayout _layout;
+
+    private List<Map<String, String>> _records;
+
+    private List<String> _lines;
+
+    private File _file;
+
+    private RecordLayoutOptions _projectionOptions;
+
+    @Setup
+    public void setup() throws IOException {
+        _layout = (FixedColumnsLayout)LayoutFactory.getLayout(layoutId);
+        _records = BenchmarkDataGenerator.createRecords(BenchmarkDataGenerator.getLeafFields(_layout), numRecords, fillRatio, 42L);
+        _lines = BenchmarkDataGenerator.createLines(_layout, _records);
+        _file = BenchmarkDataGenerator.writeRecords(_layout, _records);
+
+        // a typical projection: a few NAACCR items out of several hundreds
+        _projectionOptions = new RecordLayoutOptions();
+        _projectionOptions.setProjectedNaaccrItemNumbers(Arrays.asList(10, 20, 220, 240, 390, 400, 521, 522, 523, 1760));
+    }
+
+    @Benchmark
+    public void createRecordFromLine(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < _lines.size(); i++)
+            blackhole.consume(_layout.createRecordFromLine(_lines.get(i), i + 1, null));
+    }
+
+    @Benchmark
+    public void createRecordFromLineWithProjection(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < _lines.size(); i++)
+            blackhole.consume(_layout.createRecordFromLine(_lines.get(i), i + 1, _projectionOptions));
+    }
+
+    @Benchmark
+    public void createLineFromRecord(Blackhole blackhole) throws IOException {
+        for (Map<String, String> rec : _records)
+            blackhole.consume(_layout.createLineFromRecord(rec, null));
+    }
+
+    @Benchmark
+    public List<Map<String, String>> readAllRecords() throws IOException {
+        return _layout.readAllRecords(_file);
+    }
+
+    @Benchmark
+    public void writeRecords() throws IOException {
+        _layout.writeRecords(OutputStream.nullOutputStream(), _records, null);
+    }
+}
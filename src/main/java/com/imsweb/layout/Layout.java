@@ -128,4 +128,18 @@ public interface Layout {
      * @return a <code>FileInfo</code> object, maybe null
      */
     LayoutInfo buildFileInfo(File file, String zipEntryName, LayoutInfoDiscoveryOptions options);
+
+    /**
+     * Returns a file info object from the provided sample (the beginning of a data file), returns null if this layout cannot handle the data.
+     * <br/><br/>
+     * The factory uses this method during format discovery so the data file is read only once for all the layouts; by default, the file of the
+     * sample is read again using <b>buildFileInfo(File, String, LayoutInfoDiscoveryOptions)</b>. This method might be called concurrently
+     * for different layouts.
+     * @param sample beginning of the data file
+     * @param options discovery options
+     * @return a <code>FileInfo</code> object, maybe null
+     */
+    default LayoutInfo buildFileInfoFromSample(LayoutDiscoverySample sample, LayoutInfoDiscoveryOptions options) {
+        return buildFileInfo(sample.getFile(), sample.getZipEntryName(), options);
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The beginning of a data file, read (and decompressed) only once and shared by all the layouts trying to recognize the file during format discovery.
+ * <br/><br/>
+ * Only the first bytes of the file are available; layouts needing more data can check <b>isTruncated()</b> and fall back to reading the file itself.
+ * Values derived from the sample (first line, XML root attributes, etc...) can be computed once and shared between the layouts using
+ * <b>computeIfAbsent()</b>.
+ * <br/><br/>
+ * Instances of this class are thread-safe.
+ */
+public final class LayoutDiscoverySample {
+
+    // default number of bytes read from the beginning of the file
+    public static final int DEFAULT_SAMPLE_SIZE = 64 * 1024;
+
+    // the file
+    private final File _file;
+
+    // the zip entry (can be null)
+    private final String _zipEntryName;
+
+    // the first (decompressed) bytes of the file
+    private final byte[] _head;
+
+    // whether the file contains more bytes than the sample
+    private final boolean _truncated;
+
+    // values computed from the sample
+    private final Map<String, Optional<Object>> _computedValues = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param file the file
+     * @param zipEntryName the zip entry (can be null)
+     * @param head the first bytes of the file
+     * @param truncated whether the file contains more bytes than the sample
+     */
+    public LayoutDiscoverySample(File file, String zipEntryName, byte[] head, boolean truncated) {
+        _file = file;
+        _zipEntryName = zipEntryName;
+        _head = head;
+        _truncated = truncated;
+    }
+
+    /**
+     * Reads the sample from the provided file (using the default sample size).
+     * @param file file to read
+     * @param zipEntryName optional zip entry to use if the file is a zip file, not used if the file is not a zip file
+     * @return the sample, never null
+     * @throws IOException if the file can't be read
+     */
+    public static LayoutDiscoverySample read(File file, String zipEntryName) throws IOException {
+        return read(file, zipEntryName, DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * Reads the sample from the provided file.
+     * @param file file to read
+     * @param zipEntryName optional zip entry to use if the file is a zip file, not used if the file is not a zip file
+     * @param sampleSize maximum number of (decompressed) bytes to read
+     * @return the sample, never null
+     * @throws IOException if the file can't be read
+     */
+    public static LayoutDiscoverySample read(File file, String zipEntryName, int sampleSize) throws IOException {
+        try (InputStream is = LayoutUtils.createInputStream(file, zipEntryName)) {
+            byte[] head = is.readNBytes(sampleSize);
+            return new LayoutDiscoverySample(file, zipEntryName, head, head.length == sampleSize && is.read() != -1);
+        }
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public String getZipEntryName() {
+        return _zipEntryName;
+    }
+
+    /**
+     * Returns true if the file contains more data than the sample.
+     * @return true if the file contains more data than the sample
+     */
+    public boolean isTruncated() {
+        return _truncated;
+    }
+
+    /**
+     * Returns the size of the sample.
+     * @return size of the sample, in bytes
+     */
+    public int getSize() {
+        return _head.length;
+    }
+
+    /**
+     * Returns a new stream on the sample.
+     * @return an input stream, never null
+     */
+    public InputStream openStream() {
+        return new ByteArrayInputStream(_head);
+    }
+
+    /**
+     * Returns the first line of the sample, decoded with the provided encoding.
+     * <br/><br/>
+     * Returns null if the sample is empty, or if the first line is not entirely contained in the sample.
+     * @param encoding encoding to use
+     * @return the first line, maybe null
+     */
+    public String getFirstLine(Charset encoding) {
+        return computeIfAbsent("first-line-" + encoding.name(), sample -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(sample.openStream(), encoding))) {
+                String line = reader.readLine();
+                // if the line ends with the sample, it might be truncated
+                if (line == null || (sample.isTruncated() && reader.read() == -1))
+                    return null;
+                return line;
+            }
+            catch (IOException e) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns the value computed from this sample for the provided key; the value is computed only once (even if it's null).
+     * @param key key of the value, should be unique for a given computation
+     * @param function computation, called with this sample
+     * @return the computed value, maybe null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T computeIfAbsent(String key, Function<LayoutDiscoverySample, T> function) {
+        return (T)_computedValues.computeIfAbsent(key, k -> Optional.ofNullable(function.apply(this))).orElse(null);
+    }
+}
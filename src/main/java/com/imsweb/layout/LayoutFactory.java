@@ -1,16 +1,27 @@
 package com.imsweb.layout;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -253,6 +264,36 @@ public final class LayoutFactory {
     // registered layouts (internal and external)
     private static final Map<String, Layout> _LAYOUTS = new ConcurrentHashMap<>();
 
+    // internal layouts currently being loaded
+    private static final Map<String, CompletableFuture<Layout>> _LOADING_LAYOUTS = new ConcurrentHashMap<>();
+
+    // executor evaluating the internal layouts during the format discovery (a dedicated one so the discovery doesn't use the common fork-join pool)
+    private static final ExecutorService _DISCOVERY_EXECUTOR = createDiscoveryExecutor();
+
+    // maximum number of cached discovery results (0 means the cache is disabled, which is the default)
+    private static volatile int _DISCOVERY_CACHE_MAX_SIZE = 0;
+
+    // cached discovery results, in access order so the least recently used result is evicted first (access to this map needs to be synchronized)
+    private static final Map<DiscoveryCacheKey, List<LayoutInfo>> _DISCOVERY_CACHE = new LinkedHashMap<DiscoveryCacheKey, List<LayoutInfo>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Entry<DiscoveryCacheKey, List<LayoutInfo>> eldest) {
+            return size() > _DISCOVERY_CACHE_MAX_SIZE;
+        }
+    };
+
+    private static ExecutorService createDiscoveryExecutor() {
+        int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "layout-discovery-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the threads are not kept around when no discovery happens
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Helper method to load an internal layout. I am putting this method on the top so it's clear it has to be updated when adding support for new NAACCR versions.
      * <p/>
@@ -426,31 +467,71 @@ public final class LayoutFactory {
      * <li>using one of the <b>discoverFormat()</b> methods</li>
      * </ul>
      * This method will never throw an exception when using one of the layout IDs defined as constants in this class.
+     * <br/><br/>
+     * This method doesn't lock anything once the layout is loaded; internal layouts are loaded only once, the first time they are requested.
      * <p/>
      * @param layoutId requested layout ID, cannot be null
      * @param useDeprecatedFieldNames if set to true, the old layout names will be used, otherwise the new XML-aligned ones will be used (only applicable to internal NAACCR layouts).
      * @return requested layout, never null
      */
-    public static synchronized Layout getLayout(String layoutId, boolean useDeprecatedFieldNames) {
+    public static Layout getLayout(String layoutId, boolean useDeprecatedFieldNames) {
 
         // check if an alias ID was requested (used for backward compatibility)
         if (_INTERNAL_LAYOUT_ID_ALIASES.containsKey(layoutId))
             layoutId = _INTERNAL_LAYOUT_ID_ALIASES.get(layoutId);
 
         // if the layout is already registered, just return it
-        if (_LAYOUTS.containsKey(layoutId))
-            return _LAYOUTS.get(layoutId);
+        Layout layout = _LAYOUTS.get(layoutId);
+        if (layout != null)
+            return layout;
 
         // if no registered layout is found, let's check the internal ones
         if (_INTERNAL_LAYOUTS.containsKey(layoutId)) {
-            Layout layout = loadInternalLayout(layoutId, true, useDeprecatedFieldNames);
-            _LAYOUTS.put(layout.getLayoutId(), layout);
-            return layout;
+
+            // only one thread loads a given layout, the other ones requesting the same layout wait for it (different layouts are loaded in parallel)
+            CompletableFuture<Layout> future = new CompletableFuture<>();
+            CompletableFuture<Layout> loading = _LOADING_LAYOUTS.putIfAbsent(layoutId, future);
+            if (loading != null)
+                return waitFor(loading);
+
+            try {
+                // the layout might have been loaded by another thread since it was checked
+                layout = _LAYOUTS.get(layoutId);
+                if (layout == null) {
+                    layout = loadInternalLayout(layoutId, true, useDeprecatedFieldNames);
+                    Layout existingLayout = _LAYOUTS.putIfAbsent(layout.getLayoutId(), layout);
+                    if (existingLayout != null)
+                        layout = existingLayout;
+                }
+                future.complete(layout);
+                return layout;
+            }
+            catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            }
+            finally {
+                _LOADING_LAYOUTS.remove(layoutId, future);
+            }
         }
 
         throw new IllegalStateException("Unknown layout ID: " + layoutId);
     }
 
+    private static <T> T waitFor(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            // re-throw the original exception so the behavior is the same as if the task was executed by the current thread
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw e;
+        }
+    }
+
     /**
      * Registers the provided layout.
      * <br/><br/>
@@ -459,7 +540,7 @@ public final class LayoutFactory {
      * <p/>
      * @param layout layout to register, cannot be null
      */
-    public static synchronized void registerLayout(Layout layout) {
+    public static void registerLayout(Layout layout) {
 
         // make sure the layout is valid
         if (layout == null)
@@ -472,7 +553,12 @@ public final class LayoutFactory {
         else if (layout instanceof CommaSeparatedLayout)
             ((CommaSeparatedLayout)layout).verify();
 
-        _LAYOUTS.put(layout.getLayoutId(), layout);
+        // another thread might have registered a layout with the same ID while this one was verified
+        if (_LAYOUTS.putIfAbsent(layout.getLayoutId(), layout) != null)
+            throw new IllegalStateException("Layout ID must be unique: '" + layout.getLayoutId() + "' has already been registered");
+
+        // the new layout might recognize files that have already been discovered
+        clearDiscoveryCache();
     }
 
     /**
@@ -480,15 +566,17 @@ public final class LayoutFactory {
      * <p/>
      * @param layoutId layout ID to unregister
      */
-    public static synchronized void unregisterLayout(String layoutId) {
-        _LAYOUTS.remove(layoutId);
+    public static void unregisterLayout(String layoutId) {
+        if (_LAYOUTS.remove(layoutId) != null)
+            clearDiscoveryCache();
     }
 
     /**
      * Unregisters all the registered layouts.
      */
-    public static synchronized void unregisterAllLayouts() {
+    public static void unregisterAllLayouts() {
         _LAYOUTS.clear();
+        clearDiscoveryCache();
     }
 
     /**
@@ -497,7 +585,7 @@ public final class LayoutFactory {
      * @param layoutId requested layout ID
      * @return true if the layout ID has been registered, false otherwise
      */
-    public static synchronized boolean isLayoutRegister(String layoutId) {
+    public static boolean isLayoutRegister(String layoutId) {
         return _LAYOUTS.containsKey(layoutId);
     }
 
@@ -506,7 +594,7 @@ public final class LayoutFactory {
      * <p/>
      * @return the IDs of all the layouts currently registered
      */
-    public static synchronized Set<String> getRegisterLayouts() {
+    public static Set<String> getRegisterLayouts() {
         return Collections.unmodifiableSet(_LAYOUTS.keySet());
     }
 
@@ -593,7 +681,15 @@ public final class LayoutFactory {
      * Interal NAACCR layouts are tried from most recent version to oldest one.
      * <br/><br/>
      * Because of that particular order, the returned list of layout info will usually have the "best" layout as first element. If an application doesn't want to
-     * present all the possibilities to the user, then it can just use that first element and nothing else.
+     * present all the possibilities to the user, then it can just use that first element and nothing else (see the <b>stopAtFirstMatch</b> option).
+     * <br/><br/>
+     * The beginning of the file is read only once and shared by all the layouts. The registered external layouts are evaluated by the calling thread
+     * (they are not required to be thread-safe); the internal layouts are evaluated in parallel by a small dedicated pool of threads. The order of the
+     * returned list is not affected by the parallel evaluation.
+     * <br/><br/>
+     * If the discovery cache is enabled (see <b>enableDiscoveryCache()</b>), the result is cached using the path, size and last modified date of the file,
+     * the zip entry and the options; a cached result is returned as long as the file is not modified. The cache keeps its own copies of the layout info objects, so the
+     * returned ones can be modified by the caller (the NAACCR XML root data is shared between the copies though).
      * <p/>
      * @param file file to analyze
      * @param zipEntryName optional zip entry to use if the file is a zip file, not used if the file is not a zip file
@@ -601,39 +697,203 @@ public final class LayoutFactory {
      * @return the list of layout info representing the layouts that can handle this data file.
      */
     public static List<LayoutInfo> discoverFormat(File file, String zipEntryName, LayoutInfoDiscoveryOptions options) {
-        List<LayoutInfo> result = new ArrayList<>();
-
         if (options == null)
             options = new LayoutInfoDiscoveryOptions();
 
-        // try the registered external layout
+        if (_DISCOVERY_CACHE_MAX_SIZE <= 0)
+            return discoverFormatFromFile(file, zipEntryName, options);
+
+        DiscoveryCacheKey key = DiscoveryCacheKey.create(file, zipEntryName, options);
+        if (key == null)
+            return discoverFormatFromFile(file, zipEntryName, options);
+
+        List<LayoutInfo> cached;
+        synchronized (_DISCOVERY_CACHE) {
+            cached = _DISCOVERY_CACHE.get(key);
+        }
+        if (cached != null)
+            return copyLayoutInfos(cached);
+
+        List<LayoutInfo> result = discoverFormatFromFile(file, zipEntryName, options);
+
+        // don't cache the result if the file was modified while it was analyzed
+        if (key.equals(DiscoveryCacheKey.create(file, zipEntryName, options))) {
+            // the layout info objects are mutable, the cache keeps its own copies so the caller can modify the returned ones
+            List<LayoutInfo> copy = copyLayoutInfos(result);
+            synchronized (_DISCOVERY_CACHE) {
+                _DISCOVERY_CACHE.put(key, copy);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<LayoutInfo> copyLayoutInfos(List<LayoutInfo> infos) {
+        List<LayoutInfo> result = new ArrayList<>(infos.size());
+        for (LayoutInfo info : infos)
+            result.add(info.copy());
+        return result;
+    }
+
+    private static List<LayoutInfo> discoverFormatFromFile(File file, String zipEntryName, LayoutInfoDiscoveryOptions options) {
+
+        // the beginning of the file is read only once and shared by all the layouts
+        LayoutDiscoverySample sample;
+        try {
+            sample = LayoutDiscoverySample.read(file, zipEntryName);
+        }
+        catch (IOException e) {
+            return new ArrayList<>();
+        }
+
+        List<LayoutInfo> result = new ArrayList<>();
+
+        // try the registered external layout; those are not required to be thread-safe, so they are evaluated by the calling thread
         for (Entry<String, Layout> entry : new TreeMap<>(_LAYOUTS).entrySet()) {
             if (!_INTERNAL_LAYOUTS.containsKey(entry.getKey())) {
-                LayoutInfo info = entry.getValue().buildFileInfo(file, zipEntryName, options);
-                if (info != null)
+                LayoutInfo info = entry.getValue().buildFileInfoFromSample(sample, options);
+                if (info != null) {
                     result.add(info);
+                    if (options.isStopAtFirstMatch())
+                        return result;
+                }
             }
         }
 
+        List<Supplier<Layout>> candidates = new ArrayList<>();
+
         // try the registered internal layout
         for (String layoutId : _INTERNAL_LAYOUTS.keySet()) {
-            if (_LAYOUTS.containsKey(layoutId)) {
-                LayoutInfo info = _LAYOUTS.get(layoutId).buildFileInfo(file, zipEntryName, options);
-                if (info != null)
-                    result.add(info);
-            }
+            Layout layout = _LAYOUTS.get(layoutId);
+            if (layout != null)
+                candidates.add(() -> layout);
         }
 
-        // try the internal layout that have not been registered yet
-        for (String layoutId : _INTERNAL_LAYOUTS.keySet()) {
-            if (!_LAYOUTS.containsKey(layoutId) && !_INTERNAL_LAYOUT_ID_ALIASES.containsKey(layoutId)) {
-                Layout layout = loadInternalLayout(layoutId, false, false);
-                LayoutInfo info = layout.buildFileInfo(file, zipEntryName, options);
-                if (info != null)
+        // try the internal layout that have not been registered yet (they are loaded without their fields, only if they need to be tried)
+        for (String layoutId : _INTERNAL_LAYOUTS.keySet())
+            if (!_LAYOUTS.containsKey(layoutId) && !_INTERNAL_LAYOUT_ID_ALIASES.containsKey(layoutId))
+                candidates.add(() -> loadInternalLayout(layoutId, false, false));
+
+        // the internal layouts only evaluate the shared sample, they are evaluated in parallel but the results are returned in the order of the candidates
+        LayoutInfoDiscoveryOptions discoveryOptions = options;
+        List<CompletableFuture<LayoutInfo>> futures = new ArrayList<>(candidates.size());
+        for (Supplier<Layout> candidate : candidates)
+            futures.add(CompletableFuture.supplyAsync(() -> candidate.get().buildFileInfoFromSample(sample, discoveryOptions), _DISCOVERY_EXECUTOR));
+        try {
+            for (CompletableFuture<LayoutInfo> future : futures) {
+                LayoutInfo info = waitFor(future);
+                if (info != null) {
                     result.add(info);
+                    if (options.isStopAtFirstMatch())
+                        break;
+                }
             }
         }
+        finally {
+            // the candidates that haven't been evaluated yet are not needed anymore (this has no effect on the completed ones)
+            for (CompletableFuture<LayoutInfo> future : futures)
+                future.cancel(false);
+        }
 
         return result;
     }
+
+    /**
+     * Enables the discovery cache, using the provided maximum number of cached results; the least recently used results are evicted first.
+     * <br/><br/>
+     * The cache is disabled by default; it is useful when the same file is discovered several times (for example when it is previewed, then validated,
+     * then imported). Registering or unregistering a layout clears the cache.
+     * <p/>
+     * @param maxSize maximum number of cached results, a value of 0 (or lower) disables the cache
+     */
+    public static void enableDiscoveryCache(int maxSize) {
+        synchronized (_DISCOVERY_CACHE) {
+            _DISCOVERY_CACHE_MAX_SIZE = Math.max(maxSize, 0);
+            // the map only evicts entries when a new one is added
+            Iterator<DiscoveryCacheKey> iterator = _DISCOVERY_CACHE.keySet().iterator();
+            while (_DISCOVERY_CACHE.size() > _DISCOVERY_CACHE_MAX_SIZE && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Disables the discovery cache (and clears it).
+     */
+    public static void disableDiscoveryCache() {
+        enableDiscoveryCache(0);
+    }
+
+    /**
+     * Removes any cached discovery result for the provided file (for all the zip entries and options).
+     * <p/>
+     * @param file file to invalidate
+     */
+    public static void invalidateDiscoveryCache(File file) {
+        String path = file.getAbsolutePath();
+        synchronized (_DISCOVERY_CACHE) {
+            _DISCOVERY_CACHE.keySet().removeIf(key -> key._path.equals(path));
+        }
+    }
+
+    /**
+     * Removes all the cached discovery results.
+     */
+    public static void clearDiscoveryCache() {
+        synchronized (_DISCOVERY_CACHE) {
+            _DISCOVERY_CACHE.clear();
+        }
+    }
+
+    /**
+     * Identifies a discovery result: the file (path, size and last modified date), the zip entry and the discovery options.
+     */
+    private static final class DiscoveryCacheKey {
+
+        private final String _path;
+
+        private final long _size;
+
+        private final long _lastModified;
+
+        private final String _zipEntryName;
+
+        private final LayoutInfoDiscoveryOptions _options;
+
+        private DiscoveryCacheKey(String path, long size, long lastModified, String zipEntryName, LayoutInfoDiscoveryOptions options) {
+            _path = path;
+            _size = size;
+            _lastModified = lastModified;
+            _zipEntryName = zipEntryName;
+            _options = options;
+        }
+
+        /**
+         * Returns the key for the provided parameters, null if the file doesn't exist.
+         */
+        private static DiscoveryCacheKey create(File file, String zipEntryName, LayoutInfoDiscoveryOptions options) {
+            if (file == null || !file.isFile())
+                return null;
+
+            // the options are mutable, the key uses a copy of their current values
+            return new DiscoveryCacheKey(file.getAbsolutePath(), file.length(), file.lastModified(), zipEntryName, new LayoutInfoDiscoveryOptions(options));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            DiscoveryCacheKey key = (DiscoveryCacheKey)o;
+            return _size == key._size && _lastModified == key._lastModified && Objects.equals(_path, key._path) && Objects.equals(_zipEntryName, key._zipEntryName)
+                    && Objects.equals(_options, key._options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_path, _size, _lastModified, _zipEntryName, _options);
+        }
+    }
 }
@@ -3,6 +3,7 @@
  */
 package com.imsweb.layout;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -106,6 +107,22 @@ public class LayoutInfo {
         _errorMessage = errorMessage;
     }
 
+    /**
+     * Returns a copy of this layout info; the lists of dictionaries are copied, the NAACCR XML root data is shared.
+     */
+    LayoutInfo copy() {
+        LayoutInfo copy = new LayoutInfo();
+        copy._layoutId = _layoutId;
+        copy._layoutName = _layoutName;
+        copy._lineLength = _lineLength;
+        copy._numFields = _numFields;
+        copy._availableUserDictionaries = _availableUserDictionaries == null ? null : new ArrayList<>(_availableUserDictionaries);
+        copy._requestedUserDictionaries = _requestedUserDictionaries == null ? null : new ArrayList<>(_requestedUserDictionaries);
+        copy._rootNaaccrXmlData = _rootNaaccrXmlData;
+        copy._errorMessage = _errorMessage;
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -1,5 +1,7 @@
 package com.imsweb.layout;
 
+import java.util.Objects;
+
 public class LayoutInfoDiscoveryOptions {
 
     // applies to fixed-column only, if set to false, then the line length won't be used (defaults to true)
@@ -17,6 +19,9 @@ public class LayoutInfoDiscoveryOptions {
     // if true, a data file that doesn't properly use the XML namespaces won't be recognized as valid (defaults to true)
     private boolean _naaccrXmlUseStrictNamespaces;
 
+    // if true, only the first layout (in the discovery order) that can handle the file will be returned (defaults to false)
+    private boolean _stopAtFirstMatch;
+
     /**
      * Consturctor
      */
@@ -29,6 +34,20 @@ public class LayoutInfoDiscoveryOptions {
         _naaccrAllowBlankRecordType = true;
 
         _naaccrXmlUseStrictNamespaces = true;
+
+        _stopAtFirstMatch = false;
+    }
+
+    /**
+     * Copy constructor
+     */
+    LayoutInfoDiscoveryOptions(LayoutInfoDiscoveryOptions other) {
+        _fixedColumnAllowDiscoveryFromLineLength = other._fixedColumnAllowDiscoveryFromLineLength;
+        _commaSeparatedAllowDiscoveryFromNumFields = other._commaSeparatedAllowDiscoveryFromNumFields;
+        _naaccrAllowBlankVersion = other._naaccrAllowBlankVersion;
+        _naaccrAllowBlankRecordType = other._naaccrAllowBlankRecordType;
+        _naaccrXmlUseStrictNamespaces = other._naaccrXmlUseStrictNamespaces;
+        _stopAtFirstMatch = other._stopAtFirstMatch;
     }
 
     public boolean isFixedColumnAllowDiscoveryFromLineLength() {
@@ -70,4 +89,32 @@ public class LayoutInfoDiscoveryOptions {
     public void setNaaccrXmlUseStrictNamespaces(boolean naaccrXmlUseStrictNamespaces) {
         _naaccrXmlUseStrictNamespaces = naaccrXmlUseStrictNamespaces;
     }
+
+    public boolean isStopAtFirstMatch() {
+        return _stopAtFirstMatch;
+    }
+
+    public void setStopAtFirstMatch(boolean stopAtFirstMatch) {
+        _stopAtFirstMatch = stopAtFirstMatch;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        LayoutInfoDiscoveryOptions other = (LayoutInfoDiscoveryOptions)o;
+        return _fixedColumnAllowDiscoveryFromLineLength == other._fixedColumnAllowDiscoveryFromLineLength
+                && _commaSeparatedAllowDiscoveryFromNumFields == other._commaSeparatedAllowDiscoveryFromNumFields && _naaccrAllowBlankVersion == other._naaccrAllowBlankVersion
+                && _naaccrAllowBlankRecordType == other._naaccrAllowBlankRecordType && _naaccrXmlUseStrictNamespaces == other._naaccrXmlUseStrictNamespaces
+                && _stopAtFirstMatch == other._stopAtFirstMatch;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_fixedColumnAllowDiscoveryFromLineLength, _commaSeparatedAllowDiscoveryFromNumFields, _naaccrAllowBlankVersion, _naaccrAllowBlankRecordType,
+                _naaccrXmlUseStrictNamespaces, _stopAtFirstMatch);
+    }
 }
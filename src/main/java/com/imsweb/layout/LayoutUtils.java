@@ -3,6 +3,10 @@
  */
 package com.imsweb.layout;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,6 +21,7 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -50,6 +55,7 @@ import com.imsweb.layout.hl7.xml.Hl7LayoutXmlDto;
 import com.imsweb.layout.record.csv.CommaSeparatedLayout;
 import com.imsweb.layout.record.csv.xml.CommaSeparatedLayoutXmlDto;
 import com.imsweb.layout.record.fixed.FixedColumnsLayout;
+import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutFieldXmlDto;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutXmlDto;
 
 /**
@@ -66,6 +72,12 @@ public final class LayoutUtils {
     // the maximum compression ratio for a given ZIP entry
     private static final int _ZIP_THRESHOLD_RATIO = 10;
 
+    // header of the binary layout snapshots ("LAYS")
+    private static final int _SNAPSHOT_MAGIC_NUMBER = 0x4C415953;
+
+    // version of the binary layout snapshot format, needs to be incremented every time the format changes
+    private static final int _SNAPSHOT_FORMAT_VERSION = 1;
+
     /**
      * Private constructor, no instanciation!
      * <p/>
@@ -75,6 +87,23 @@ public final class LayoutUtils {
         // utility class
     }
 
+    /**
+     * Returns true if the provided method (which must be public) is overridden by the class of the object, or by any of its parent classes below the base class.
+     * @param obj object to check
+     * @param baseClass class defining the method
+     * @param methodName method name
+     * @param parameterTypes method parameter types
+     * @return true if the method is overridden
+     */
+    public static boolean isMethodOverridden(Object obj, Class<?> baseClass, String methodName, Class<?>... parameterTypes) {
+        try {
+            return obj.getClass().getMethod(methodName, parameterTypes).getDeclaringClass() != baseClass;
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Reads an unspecified layout from the provided stream, expects XML format.
      * Created on October 16, 2017 by schadega
@@ -162,6 +191,131 @@ public final class LayoutUtils {
         }
     }
 
+    /**
+     * Reads the layout from the provided stream, expects the binary snapshot format (see <b>writeFixedColumnsLayoutSnapshot()</b>).
+     * <p/>
+     * The provided stream will be closed when this method returns
+     * @param stream <code>InputStream</code> to the snapshot, cannot be null
+     * @return a <code>FixedColumnLayoutXmlDto</code>, never null
+     * @throws IOException if the layout can't be read from the input stream
+     */
+    public static FixedColumnLayoutXmlDto readFixedColumnsLayoutSnapshot(InputStream stream) throws IOException {
+        if (stream == null)
+            throw new IOException("Unable to read layout, target input stream is null");
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != _SNAPSHOT_MAGIC_NUMBER)
+                throw new IOException("Unable to read layout snapshot, invalid header");
+            int formatVersion = in.readInt();
+            if (formatVersion != _SNAPSHOT_FORMAT_VERSION)
+                throw new IOException("Unable to read layout snapshot, unsupported format version: " + formatVersion);
+
+            FixedColumnLayoutXmlDto layout = new FixedColumnLayoutXmlDto();
+            layout.setId(readSnapshotString(in));
+            layout.setName(readSnapshotString(in));
+            layout.setVersion(readSnapshotString(in));
+            layout.setDescription(readSnapshotString(in));
+            layout.setLength(readSnapshotInteger(in));
+            layout.setExtendLayout(readSnapshotString(in));
+            layout.setField(readSnapshotFields(in));
+            return layout;
+        }
+    }
+
+    /**
+     * Writes the layout to the provided output stream, using a compact binary format that can be read much faster than XML.
+     * <p/>
+     * This format is not meant to be edited or exchanged, it's only used to cache the internal layouts; it can change between two versions of the library.
+     * @param stream <code>OutputStream</code> to the snapshot, cannot be null
+     * @param layout the <code>FixedColumnLayoutXmlDto</code> to write, cannot be null
+     * @throws IOException if the layout can't be written to the output stream
+     */
+    public static void writeFixedColumnsLayoutSnapshot(OutputStream stream, FixedColumnLayoutXmlDto layout) throws IOException {
+        if (layout == null)
+            throw new IOException("Unable to write NULL layout");
+        if (stream == null)
+            throw new IOException("Unable to write layout for '" + layout.getId() + "', target output stream is null");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(_SNAPSHOT_MAGIC_NUMBER);
+            out.writeInt(_SNAPSHOT_FORMAT_VERSION);
+            writeSnapshotString(out, layout.getId());
+            writeSnapshotString(out, layout.getName());
+            writeSnapshotString(out, layout.getVersion());
+            writeSnapshotString(out, layout.getDescription());
+            writeSnapshotInteger(out, layout.getLength());
+            writeSnapshotString(out, layout.getExtendLayout());
+            writeSnapshotFields(out, layout.getField());
+        }
+    }
+
+    private static List<FixedColumnLayoutFieldXmlDto> readSnapshotFields(DataInputStream in) throws IOException {
+        int numFields = in.readInt();
+        if (numFields == -1)
+            return null;
+        List<FixedColumnLayoutFieldXmlDto> fields = new ArrayList<>(numFields);
+        for (int i = 0; i < numFields; i++) {
+            FixedColumnLayoutFieldXmlDto field = new FixedColumnLayoutFieldXmlDto();
+            field.setName(readSnapshotString(in));
+            field.setLongLabel(readSnapshotString(in));
+            field.setShortLabel(readSnapshotString(in));
+            field.setNaaccrItemNum(readSnapshotInteger(in));
+            field.setStart(readSnapshotInteger(in));
+            field.setEnd(readSnapshotInteger(in));
+            field.setAlign(readSnapshotString(in));
+            field.setPadChar(readSnapshotString(in));
+            field.setDefaultValue(readSnapshotString(in));
+            byte trim = in.readByte();
+            field.setTrim(trim == -1 ? null : Boolean.valueOf(trim == 1));
+            field.setSection(readSnapshotString(in));
+            field.setField(readSnapshotFields(in));
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private static void writeSnapshotFields(DataOutputStream out, List<FixedColumnLayoutFieldXmlDto> fields) throws IOException {
+        if (fields == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(fields.size());
+        for (FixedColumnLayoutFieldXmlDto field : fields) {
+            writeSnapshotString(out, field.getName());
+            writeSnapshotString(out, field.getLongLabel());
+            writeSnapshotString(out, field.getShortLabel());
+            writeSnapshotInteger(out, field.getNaaccrItemNum());
+            writeSnapshotInteger(out, field.getStart());
+            writeSnapshotInteger(out, field.getEnd());
+            writeSnapshotString(out, field.getAlign());
+            writeSnapshotString(out, field.getPadChar());
+            writeSnapshotString(out, field.getDefaultValue());
+            out.writeByte(field.getTrim() == null ? -1 : (Boolean.TRUE.equals(field.getTrim()) ? 1 : 0));
+            writeSnapshotString(out, field.getSection());
+            writeSnapshotFields(out, field.getField());
+        }
+    }
+
+    private static String readSnapshotString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeSnapshotString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static Integer readSnapshotInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeSnapshotInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeInt(value);
+    }
+
     /**
      * Creates and returns an XStream object to deal with XML for comma separated layouts.
      * @return created XStream instance
@@ -357,8 +511,23 @@ public final class LayoutUtils {
      * @return an <code>InputStream</code>, never null
      * @throws IOException if the input stream can't be created
      */
-    @SuppressWarnings("resource")
     public static InputStream createInputStream(File file, String zipEntryToUse) throws IOException {
+        return createInputStream(file, zipEntryToUse, 1);
+    }
+
+    /**
+     * Creates an <code>InputStream</code> for the provided file based on its extension, see {@link #createInputStream(File, String)}.
+     * <br/><br/>
+     * When more than one thread is requested, GZipped data is decompressed on other threads than the one reading the stream: the members of a file
+     * written by {@link #createOutputStream(File, int)} are decompressed in parallel, other GZipped data is decompressed by a single read-ahead thread.
+     * @param file <code>File</code>, cannot be null (an exception will be thrown if it does not exist)
+     * @param zipEntryToUse if the zip file contains more than one entry
+     * @param numThreads number of threads to use to decompress GZipped data (1 to decompress it on the reading thread)
+     * @return an <code>InputStream</code>, never null
+     * @throws IOException if the input stream can't be created
+     */
+    @SuppressWarnings("resource")
+    public static InputStream createInputStream(File file, String zipEntryToUse, int numThreads) throws IOException {
         if (file == null || !file.exists())
             throw new IOException("File does not exist.");
 
@@ -366,7 +535,7 @@ public final class LayoutUtils {
 
         InputStream is;
         if (name.endsWith(".gz") || name.endsWith(".gzip"))
-            is = new GZIPInputStream(Files.newInputStream(file.toPath()));
+            is = createGzipInputStream(Files.newInputStream(file.toPath()), numThreads);
         else if (name.endsWith(".zip")) {
             ZipFile zipFile = new ZipFile(file);
             Enumeration<? extends ZipEntry> entries = zipFile.entries();
@@ -392,7 +561,7 @@ public final class LayoutUtils {
 
             // zip file could contain another compressed file; we are only supporting gzip or uncompressed!
             if ((zipEntryToUse.endsWith(".gz") || zipEntryToUse.endsWith(".gzip")))
-                is = new GZIPInputStream(tmp);
+                is = createGzipInputStream(tmp, numThreads);
             else if (zipEntryToUse.endsWith(".zip"))
                 throw new IOException("Zip files inside zip files is not supported.");
             else
@@ -418,12 +587,32 @@ public final class LayoutUtils {
      * @throws IOException if the output stream can't be created
      */
     public static OutputStream createOutputStream(File file) throws IOException {
+        return createOutputStream(file, 1);
+    }
+
+    /**
+     * Creates an <code>OutputStream</code> for the provided file based on its extension, see {@link #createOutputStream(File)}.
+     * <br/><br/>
+     * When more than one thread is requested, GZipped data is split into blocks compressed in parallel, each block becoming its own GZip member; the
+     * result is a regular (multi-member) GZip file, and the size of each member is recorded in its header so the file can also be decompressed in
+     * parallel by {@link #createInputStream(File, String, int)}.
+     * @param file <code>File</code>, cannot be null (an exception will be thrown if it does not exist)
+     * @param numThreads number of threads to use to compress GZipped data (1 to compress it on the writing thread)
+     * @return an <code>OutputStream</code>, never null
+     * @throws IOException if the output stream can't be created
+     */
+    public static OutputStream createOutputStream(File file, int numThreads) throws IOException {
         OutputStream os;
 
         String name = file.getName().toLowerCase();
 
-        if (name.endsWith(".gz") || name.endsWith(".gzip"))
-            os = new GZIPOutputStream(Files.newOutputStream(file.toPath()));
+        if (name.endsWith(".gz") || name.endsWith(".gzip")) {
+            if (numThreads > 1)
+                os = new ParallelGzipOutputStream(Files.newOutputStream(file.toPath()), numThreads, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE,
+                        Deflater.DEFAULT_COMPRESSION);
+            else
+                os = new GZIPOutputStream(Files.newOutputStream(file.toPath()));
+        }
         else if (name.endsWith(".zip"))
             os = new ZipOutputStream(Files.newOutputStream(file.toPath()));
         else
@@ -432,6 +621,16 @@ public final class LayoutUtils {
         return os;
     }
 
+    private static InputStream createGzipInputStream(InputStream is, int numThreads) throws IOException {
+        try {
+            return numThreads > 1 ? new ParallelGzipInputStream(is, numThreads) : new GZIPInputStream(is);
+        }
+        catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
     /**
      * Format the passed number, added commas for the decimal parts.
      * <p/>
@@ -521,20 +720,23 @@ public final class LayoutUtils {
      * Created on Dec 3, 2008 by depryf
      * @param value value to pad
      * @param length length of the result
-     * @param with character to pad with
+     * @param with character to pad with (the value is returned as-is if null or empty)
      * @param leftPad if true value will be left padded, otherwise it will be right padded
      * @return padded value, maybe null
      */
     public static String pad(String value, int length, String with, boolean leftPad) {
-        if (value == null || value.length() >= length)
+        if (value == null || value.length() >= length || with == null || with.isEmpty())
             return value;
 
-        StringBuilder builder = new StringBuilder(value);
-        while (builder.length() < length)
-            if (leftPad)
-                builder.insert(0, with);
-            else
-                builder.append(with);
+        // the padding string is added as many times as needed to reach the requested length (it might go over if the padding string is more than one character)
+        int times = (length - value.length() + with.length() - 1) / with.length();
+        StringBuilder builder = new StringBuilder(value.length() + times * with.length());
+        if (!leftPad)
+            builder.append(value);
+        for (int i = 0; i < times; i++)
+            builder.append(with);
+        if (leftPad)
+            builder.append(value);
 
         return builder.toString();
     }
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static com.imsweb.layout.ParallelGzipOutputStream.HEADER_SIZE;
+import static com.imsweb.layout.ParallelGzipOutputStream.SUBFIELD_ID1;
+import static com.imsweb.layout.ParallelGzipOutputStream.SUBFIELD_ID2;
+import static com.imsweb.layout.ParallelGzipOutputStream.TRAILER_SIZE;
+
+/**
+ * Decompresses GZip data using other threads than the one reading the data.
+ * <br/><br/>
+ * If the data was written by ParallelGzipOutputStream, the size of each member is available in its header: the members are read one after the other
+ * and decompressed in parallel. Otherwise the data is decompressed by a single read-ahead thread, allowing the decompression to overlap with the
+ * processing of the data by the reading thread.
+ * <br/><br/>
+ * The number of members (or chunks) decompressed ahead of the reading thread is bounded, which bounds the memory used by the stream. Once the
+ * decompression failed, all the reads fail with the same exception. This class is not thread-safe.
+ */
+final class ParallelGzipInputStream extends InputStream {
+
+    // size of the chunks decompressed by the read-ahead thread
+    private static final int _READ_AHEAD_CHUNK_SIZE = 64 * 1024;
+
+    // maximum uncompressed size of a member decompressed in memory
+    private static final int _MAX_MEMBER_SIZE = 64 * 1024 * 1024;
+
+    // marker for the end of the data decompressed by the read-ahead thread
+    private static final byte[] _END = new byte[0];
+
+    // the compressed data
+    private final BufferedInputStream _in;
+
+    // the maximum number of members (or chunks) decompressed ahead
+    private final int _window;
+
+    // the threads decompressing the members (null if the data is decompressed by a read-ahead thread)
+    private final ForkJoinPool _pool;
+
+    // the members being decompressed, in order
+    private final Deque<Future<byte[]>> _pending = new ArrayDeque<>();
+
+    // whether all the members with a known size have been read from the compressed data
+    private boolean _membersDone;
+
+    // stream decompressing the data following the last member with a known size (null if there is no such data)
+    private InputStream _remaining;
+
+    // the read-ahead thread and the chunks it decompressed (null if the members are decompressed in parallel)
+    private final Thread _readAheadThread;
+    private final BlockingQueue<Object> _chunks;
+
+    // whether the read-ahead thread reported the end of the data (it doesn't report anything after that)
+    private boolean _readAheadDone;
+
+    // the current decompressed data, and the position of the next byte to return from it
+    private byte[] _current = _END;
+    private int _position;
+
+    // whether the stream has been closed
+    private volatile boolean _closed;
+
+    // the exception that ended the decompression, if any (reported by all the following reads)
+    private IOException _error;
+
+    // buffer used to read single bytes
+    private final byte[] _single = new byte[1];
+
+    /**
+     * Constructor.
+     * @param in the compressed data (closing this stream closes it)
+     * @param numThreads number of decompressing threads (only one is used if the size of the members isn't available)
+     */
+    ParallelGzipInputStream(InputStream in, int numThreads) throws IOException {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        _in = new BufferedInputStream(in, _READ_AHEAD_CHUNK_SIZE);
+        _window = numThreads * 2;
+
+        _in.mark(HEADER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        boolean sized = readFully(header) == HEADER_SIZE && getMemberSize(header) > 0;
+        _in.reset();
+
+        if (sized) {
+            _pool = new ForkJoinPool(numThreads);
+            _readAheadThread = null;
+            _chunks = null;
+        }
+        else {
+            _pool = null;
+            _chunks = new ArrayBlockingQueue<>(_window);
+            GZIPInputStream gzip = new GZIPInputStream(_in, _READ_AHEAD_CHUNK_SIZE);
+            _readAheadThread = new Thread(() -> readAhead(gzip), "gzip-read-ahead");
+            _readAheadThread.setDaemon(true);
+            _readAheadThread.start();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(_single, 0, 1) == -1 ? -1 : _single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (_closed)
+            throw new IOException("Stream has been closed");
+        if (_error != null)
+            throw new IOException(_error.getMessage(), _error);
+        if (len == 0)
+            return 0;
+
+        while (_position == _current.length) {
+            byte[] next;
+            try {
+                next = nextChunk();
+            }
+            catch (IOException | RuntimeException e) {
+                _error = e instanceof IOException ? (IOException)e : new IOException(e.getMessage(), e);
+                throw e;
+            }
+            if (next == null)
+                return _remaining == null ? -1 : _remaining.read(b, off, len);
+            _current = next;
+            _position = 0;
+        }
+
+        int n = Math.min(len, _current.length - _position);
+        System.arraycopy(_current, _position, b, off, n);
+        _position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+        _closed = true;
+        if (_pool != null)
+            _pool.shutdownNow();
+        if (_readAheadThread != null)
+            _readAheadThread.interrupt();
+        if (_remaining != null)
+            _remaining.close();
+        _in.close();
+    }
+
+    // returns the next decompressed data, null if all the members with a known size (or all the data) have been returned
+    private byte[] nextChunk() throws IOException {
+        if (_pool == null) {
+            if (_readAheadDone)
+                return null;
+            Object chunk = take();
+            if (chunk instanceof IOException)
+                throw new IOException(((IOException)chunk).getMessage(), (IOException)chunk);
+            if (chunk == _END) {
+                _readAheadDone = true;
+                return null;
+            }
+            return (byte[])chunk;
+        }
+
+        while (!_membersDone && _pending.size() < _window)
+            readMember();
+        return _pending.isEmpty() ? null : waitFor(_pending.removeFirst());
+    }
+
+    // reads the next member and submits it for decompression; the data following the last member with a known size is decompressed sequentially
+    private void readMember() throws IOException {
+        _in.mark(HEADER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int read = readFully(header);
+        int size = read == HEADER_SIZE ? getMemberSize(header) : -1;
+        if (size < 0) {
+            _membersDone = true;
+            _in.reset();
+            // like the standard GZip stream, anything that is not a member after the first one is ignored
+            if (read >= 2 && (header[0] & 0xFF) == 0x1f && (header[1] & 0xFF) == 0x8b)
+                _remaining = new GZIPInputStream(_in, _READ_AHEAD_CHUNK_SIZE);
+            return;
+        }
+
+        if (size > _MAX_MEMBER_SIZE)
+            throw new ZipException("Invalid GZip member size");
+        byte[] member = new byte[size];
+        System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+        int n = size - HEADER_SIZE;
+        while (n > 0) {
+            int count = _in.read(member, size - n, n);
+            if (count < 0)
+                throw new EOFException("Unexpected end of GZip data");
+            n -= count;
+        }
+        _pending.addLast(_pool.submit(() -> decompress(member)));
+    }
+
+    // returns the size of the member from its header, -1 if the header doesn't contain it
+    private static int getMemberSize(byte[] header) {
+        if ((header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || header[2] != 8 || header[3] != 4)
+            return -1;
+        if (readInt(header, 10, 2) != 8 || header[12] != SUBFIELD_ID1 || header[13] != SUBFIELD_ID2 || readInt(header, 14, 2) != 4)
+            return -1;
+        int size = readInt(header, 16, 4);
+        return size < HEADER_SIZE + TRAILER_SIZE ? -1 : size;
+    }
+
+    /**
+     * Decompresses the provided member.
+     * @param member complete GZip member, including the header and trailer
+     * @return the decompressed data
+     */
+    static byte[] decompress(byte[] member) throws IOException {
+        int trailer = member.length - TRAILER_SIZE;
+        int length = readInt(member, trailer + 4, 4);
+        if (length < 0 || length > _MAX_MEMBER_SIZE)
+            throw new ZipException("Invalid GZip member size");
+
+        byte[] result = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, HEADER_SIZE, trailer - HEADER_SIZE);
+            int n = 0;
+            while (n < length) {
+                int count = inflater.inflate(result, n, length - n);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    throw new ZipException("Corrupt GZip member");
+                n += count;
+            }
+            if (!inflater.finished() && inflater.inflate(new byte[1]) != 0)
+                throw new ZipException("Corrupt GZip member");
+        }
+        catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(result, 0, length);
+        if ((int)crc.getValue() != readInt(member, trailer, 4))
+            throw new ZipException("Corrupt GZip member (invalid CRC)");
+
+        return result;
+    }
+
+    // decompresses the data on the read-ahead thread
+    private void readAhead(GZIPInputStream gzip) {
+        try (InputStream is = gzip) {
+            while (!_closed) {
+                byte[] chunk = new byte[_READ_AHEAD_CHUNK_SIZE];
+                int n = 0;
+                while (n < chunk.length) {
+                    int count = is.read(chunk, n, chunk.length - n);
+                    if (count < 0)
+                        break;
+                    n += count;
+                }
+                if (n == 0)
+                    break;
+                if (!publish(n == chunk.length ? chunk : Arrays.copyOf(chunk, n)))
+                    return;
+            }
+            publish(_END);
+        }
+        catch (IOException | RuntimeException e) {
+            // the exception is the last item published, so the reading thread never waits for more data
+            if (!_closed)
+                publish(e instanceof IOException ? e : new IOException(e.getMessage(), e));
+        }
+    }
+
+    // hands the provided chunk (or exception) to the reading thread; returns false if the read-ahead thread has been interrupted
+    private boolean publish(Object chunk) {
+        try {
+            _chunks.put(chunk);
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Object take() throws IOException {
+        try {
+            return _chunks.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for data to be decompressed", e);
+        }
+    }
+
+    private static byte[] waitFor(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for data to be decompressed", e);
+        }
+        catch (ExecutionException e) {
+            // the pool wraps the exceptions thrown by the tasks
+            Throwable cause = e.getCause();
+            for (Throwable t = cause; t != null; t = t.getCause())
+                if (t instanceof IOException)
+                    throw new IOException(t.getMessage(), t);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private int readFully(byte[] buffer) throws IOException {
+        int n = 0;
+        while (n < buffer.length) {
+            int count = _in.read(buffer, n, buffer.length - n);
+            if (count < 0)
+                break;
+            n += count;
+        }
+        return n;
+    }
+
+    // reads the provided value in little-endian order
+    private static int readInt(byte[] buffer, int offset, int numBytes) {
+        int value = 0;
+        for (int i = 0; i < numBytes; i++)
+            value |= (buffer[offset + i] & 0xFF) << (8 * i);
+        return value;
+    }
+}
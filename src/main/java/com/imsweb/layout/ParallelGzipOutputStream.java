@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the data written to it into GZip format using several threads: the data is split into blocks, and each block is compressed (in parallel) into
+ * its own GZip member. The members are written in order, so the result is a regular (multi-member) GZip file that any GZip tool can decompress.
+ * <br/><br/>
+ * The header of each member contains an extra "LY" sub-field with the size of the compressed member, allowing a reader to find the members without
+ * decompressing them (see ParallelGzipInputStream). A member is only ended when its block is full or when the stream is closed: flushing the stream
+ * writes the members submitted so far, but the data of the current (partial) block stays buffered until then, so flushing often doesn't degrade the
+ * compression.
+ * <br/><br/>
+ * The number of blocks being compressed at the same time is bounded, which bounds the memory used by the stream. This class is not thread-safe.
+ */
+final class ParallelGzipOutputStream extends OutputStream {
+
+    // default size of the (uncompressed) blocks
+    static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    // identifiers of the extra sub-field containing the size of the member
+    static final int SUBFIELD_ID1 = 'L';
+    static final int SUBFIELD_ID2 = 'Y';
+
+    // size of the header of the members (fixed header, length of the extra field, and the extra sub-field with the member size)
+    static final int HEADER_SIZE = 10 + 2 + 8;
+
+    // size of the trailer of the members (CRC and uncompressed size)
+    static final int TRAILER_SIZE = 8;
+
+    // the compressed data
+    private final OutputStream _out;
+
+    // the threads compressing the blocks
+    private final ForkJoinPool _pool;
+
+    // the maximum number of blocks being compressed at the same time
+    private final int _window;
+
+    // the compression level
+    private final int _level;
+
+    // the blocks being compressed, in order
+    private final Deque<Future<byte[]>> _pending = new ArrayDeque<>();
+
+    // size of the blocks
+    private final int _blockSize;
+
+    // the current block, and the number of bytes in it
+    private byte[] _block;
+    private int _blockLength;
+
+    // whether at least one member has been written
+    private boolean _memberWritten;
+
+    // whether the stream has been closed
+    private boolean _closed;
+
+    // buffer used to write single bytes
+    private final byte[] _single = new byte[1];
+
+    /**
+     * Constructor.
+     * @param out the stream to write the compressed data to (closing this stream closes it)
+     * @param numThreads number of compressing threads
+     * @param blockSize size of the (uncompressed) blocks
+     * @param level compression level (see Deflater)
+     */
+    ParallelGzipOutputStream(OutputStream out, int numThreads, int blockSize, int level) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        _out = out;
+        _pool = new ForkJoinPool(numThreads);
+        _window = numThreads * 2;
+        _blockSize = blockSize;
+        _level = level;
+        _block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        _single[0] = (byte)b;
+        write(_single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (_closed)
+            throw new IOException("Stream has been closed");
+
+        while (len > 0) {
+            int n = Math.min(len, _blockSize - _blockLength);
+            System.arraycopy(b, off, _block, _blockLength, n);
+            _blockLength += n;
+            off += n;
+            len -= n;
+            if (_blockLength == _blockSize)
+                submitBlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (_closed)
+            throw new IOException("Stream has been closed");
+
+        // the current block is not ended (it would create a member for every flush)
+        while (!_pending.isEmpty())
+            writeMember(_pending.removeFirst());
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+
+        try {
+            submitBlock();
+            while (!_pending.isEmpty())
+                writeMember(_pending.removeFirst());
+
+            // an empty GZip file still needs one (empty) member
+            if (!_memberWritten)
+                writeMember(_pool.submit(() -> compress(new byte[0], 0, _level)));
+        }
+        finally {
+            _closed = true;
+            _pool.shutdownNow();
+            _out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (_blockLength == 0)
+            return;
+
+        byte[] block = _block;
+        int length = _blockLength;
+        _pending.addLast(_pool.submit(() -> compress(block, length, _level)));
+        _block = new byte[_blockSize];
+        _blockLength = 0;
+
+        while (_pending.size() > _window)
+            writeMember(_pending.removeFirst());
+    }
+
+    private void writeMember(Future<byte[]> future) throws IOException {
+        byte[] member;
+        try {
+            member = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a block to be compressed", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException(cause);
+        }
+        _out.write(member);
+        _memberWritten = true;
+    }
+
+    /**
+     * Compresses the provided data into a complete GZip member.
+     * @param data data to compress
+     * @param length number of bytes to compress
+     * @param level compression level
+     * @return the member
+     */
+    static byte[] compress(byte[] data, int length, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            // the deflated data is rarely bigger than the input; the buffer grows if it is
+            byte[] member = new byte[HEADER_SIZE + length + (length >>> 6) + 64 + TRAILER_SIZE];
+            int pos = HEADER_SIZE;
+            while (!deflater.finished()) {
+                if (pos == member.length - TRAILER_SIZE)
+                    member = Arrays.copyOf(member, member.length * 2);
+                pos += deflater.deflate(member, pos, member.length - TRAILER_SIZE - pos);
+            }
+            int size = pos + TRAILER_SIZE;
+
+            // header: magic number, compression method, flags (FEXTRA), modification time, extra flags, OS (unknown)
+            member[0] = (byte)0x1f;
+            member[1] = (byte)0x8b;
+            member[2] = 8;
+            member[3] = 4;
+            member[9] = (byte)0xff;
+            // extra field: its length, then the sub-field with the size of the member
+            writeInt(member, 10, 8, 2);
+            member[12] = SUBFIELD_ID1;
+            member[13] = SUBFIELD_ID2;
+            writeInt(member, 14, 4, 2);
+            writeInt(member, 16, size, 4);
+
+            // trailer: CRC and uncompressed size
+            writeInt(member, pos, (int)crc.getValue(), 4);
+            writeInt(member, pos + 4, length, 4);
+
+            return size == member.length ? member : Arrays.copyOf(member, size);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    // writes the provided value in little-endian order
+    private static void writeInt(byte[] buffer, int offset, int value, int numBytes) {
+        for (int i = 0; i < numBytes; i++)
+            buffer[offset + i] = (byte)(value >>> (8 * i));
+    }
+}
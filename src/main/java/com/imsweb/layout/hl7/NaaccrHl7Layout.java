@@ -22,6 +22,7 @@ import java.util.Map;
 
 import com.imsweb.layout.Field;
 import com.imsweb.layout.Layout;
+import com.imsweb.layout.LayoutDiscoverySample;
 import com.imsweb.layout.LayoutFactory;
 import com.imsweb.layout.LayoutInfo;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
@@ -259,35 +260,73 @@ public class NaaccrHl7Layout implements Layout {
 
     @Override
     public LayoutInfo buildFileInfo(File file, String zipEntryName, LayoutInfoDiscoveryOptions options) {
-        LayoutInfo result = null;
-
         try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(LayoutUtils.createInputStream(file, zipEntryName), StandardCharsets.UTF_8))) {
-            String line = reader.readLine();
-            while (line != null && reader.getLineNumber() < 25) {
-                if (line.startsWith("MSH")) {
-                    Hl7Segment segment = Hl7Utils.segmentFromString(new Hl7Message(), line);
-
-                    String hl7Version = segment.getField(12).getComponent(1).getValue();
-                    if (_hl7Specifications.equals(hl7Version)) {
-                        String expectedProfileIdentifier = "VOL_V_" + _layoutVersion.replace(".", "") + "_ORU_R01";
-                        String profileIdentifier = segment.getField(21).getComponent(1).getValue();
-                        if (expectedProfileIdentifier.equals(profileIdentifier)) {
-                            result = new LayoutInfo();
-                            result.setLayoutId(getLayoutId());
-                            result.setLayoutName(getLayoutName());
-                        }
-                    }
-                    break;
-                }
-                else if (line.startsWith("PID"))
-                    break;
-                line = reader.readLine();
-            }
+            return buildFileInfo(findHeaderSegment(reader, false));
         }
         catch (IOException e) {
-            // ignored, result will be null
+            return null;
         }
+    }
+
+    @Override
+    public LayoutInfo buildFileInfoFromSample(LayoutDiscoverySample sample, LayoutInfoDiscoveryOptions options) {
+        // a layout reading the file itself needs to keep doing so
+        if (LayoutUtils.isMethodOverridden(this, NaaccrHl7Layout.class, "buildFileInfo", File.class, String.class, LayoutInfoDiscoveryOptions.class))
+            return buildFileInfo(sample.getFile(), sample.getZipEntryName(), options);
+
+        // the header segment is the same for all the HL7 layouts, it is only looked up once
+        String header = sample.computeIfAbsent("naaccr-hl7-header-segment", s -> {
+            try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(s.openStream(), StandardCharsets.UTF_8))) {
+                return findHeaderSegment(reader, s.isTruncated());
+            }
+            catch (IOException e) {
+                return null;
+            }
+        });
+        if (header == null) // the header segment might be after the end of the sample
+            return sample.isTruncated() ? buildFileInfo(sample.getFile(), sample.getZipEntryName(), options) : null;
+
+        return buildFileInfo(header);
+    }
+
+    /**
+     * Returns the MSH segment found at the beginning of the provided reader, an empty string if there is no such segment, or null if the reader
+     * ended before it could be determined (only when the data is truncated).
+     */
+    private static String findHeaderSegment(LineNumberReader reader, boolean truncated) throws IOException {
+        String line = reader.readLine();
+        while (line != null && reader.getLineNumber() < 25) {
+            String next = reader.readLine();
+            // the last line of truncated data might be incomplete
+            if (next == null && truncated)
+                return null;
+            if (line.startsWith("MSH"))
+                return line;
+            if (line.startsWith("PID"))
+                return "";
+            line = next;
+        }
+        return "";
+    }
+
+    private LayoutInfo buildFileInfo(String header) {
+        if (!header.startsWith("MSH"))
+            return null;
+
+        Hl7Segment segment = Hl7Utils.segmentFromString(new Hl7Message(), header);
+
+        String hl7Version = segment.getField(12).getComponent(1).getValue();
+        if (!_hl7Specifications.equals(hl7Version))
+            return null;
+
+        String expectedProfileIdentifier = "VOL_V_" + _layoutVersion.replace(".", "") + "_ORU_R01";
+        String profileIdentifier = segment.getField(21).getComponent(1).getValue();
+        if (!expectedProfileIdentifier.equals(profileIdentifier))
+            return null;
 
+        LayoutInfo result = new LayoutInfo();
+        result.setLayoutId(getLayoutId());
+        result.setLayoutName(getLayoutName());
         return result;
     }
 
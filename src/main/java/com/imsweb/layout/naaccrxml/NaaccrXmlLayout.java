@@ -33,6 +33,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import com.imsweb.layout.Layout;
+import com.imsweb.layout.LayoutDiscoverySample;
 import com.imsweb.layout.LayoutInfo;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
 import com.imsweb.layout.LayoutUtils;
@@ -172,6 +173,10 @@ public class NaaccrXmlLayout implements Layout {
     // fields cache for quick access by NAACCR number
     private final Map<Integer, NaaccrXmlField> _fieldsCachedByNaaccrNumber = new HashMap<>();
 
+    // short labels and sections of the items, shared by all the layouts (lazily loaded, see getItemsShortLabels() and getItemsSections())
+    private static Map<String, String> _ITEMS_SHORT_LABELS;
+    private static Map<String, String> _ITEMS_SECTIONS;
+
     /**
      * Default constructor.
      */
@@ -207,20 +212,8 @@ public class NaaccrXmlLayout implements Layout {
         // only load dictionaries/fields if specified, otherwise avoid expensive operations
         if (loadFields) {
 
-            Map<String, String> shortLabels = new HashMap<>();
-            Map<String, String> sections = new HashMap<>();
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(Thread.currentThread().getContextClassLoader().getResourceAsStream("layout/fixed/naaccr/items-extra-info.csv"), UTF_8))) {
-                in.lines().forEach(line -> {
-                    String[] parts = StringUtils.split(line, ',');
-                    if (parts.length == 3) {
-                        shortLabels.put(parts[0], parts[1]);
-                        sections.put(parts[0], parts[2]);
-                    }
-                });
-            }
-            catch (IOException e) {
-                throw new IllegalStateException(e);
-            }
+            Map<String, String> shortLabels = getItemsShortLabels();
+            Map<String, String> sections = getItemsSections();
 
             // get all item definitions, create fields and add to layout's field list based on record type
             for (NaaccrDictionaryItem item : NaaccrXmlDictionaryUtils.mergeDictionaries(_baseDictionary, _userDictionaries.toArray(new NaaccrDictionary[0])).getItems()) {
@@ -339,6 +332,39 @@ public class NaaccrXmlLayout implements Layout {
         }
     }
 
+    private static synchronized void loadItemsExtraInfo() {
+        if (_ITEMS_SHORT_LABELS != null)
+            return;
+
+        Map<String, String> shortLabels = new HashMap<>();
+        Map<String, String> sections = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(Thread.currentThread().getContextClassLoader().getResourceAsStream("layout/fixed/naaccr/items-extra-info.csv"), UTF_8))) {
+            in.lines().forEach(line -> {
+                String[] parts = StringUtils.split(line, ',');
+                if (parts.length == 3) {
+                    shortLabels.put(parts[0], parts[1]);
+                    sections.put(parts[0], parts[2]);
+                }
+            });
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        _ITEMS_SECTIONS = Collections.unmodifiableMap(sections);
+        _ITEMS_SHORT_LABELS = Collections.unmodifiableMap(shortLabels);
+    }
+
+    private static synchronized Map<String, String> getItemsShortLabels() {
+        loadItemsExtraInfo();
+        return _ITEMS_SHORT_LABELS;
+    }
+
+    private static synchronized Map<String, String> getItemsSections() {
+        loadItemsExtraInfo();
+        return _ITEMS_SECTIONS;
+    }
+
     @Override
     public String getLayoutId() {
         return _layoutId;
@@ -663,6 +689,57 @@ public class NaaccrXmlLayout implements Layout {
             return null;
         }
 
+        LayoutInfo info = createFileInfo(attr);
+        if (info == null)
+            return null;
+
+        // at this point we know that this layout can be used to read the data file; let's try to get the root data and if anything goes wrong,
+        // let's return the info object, without the root data and with the error
+        try (InputStreamReader is = new InputStreamReader(LayoutUtils.createInputStream(file, zipEntryName), UTF_8)) {
+            readRootData(info, is, options);
+        }
+        catch (IOException e) {
+            info.setErrorMessage(e.getMessage());
+        }
+
+        return info;
+    }
+
+    @Override
+    public LayoutInfo buildFileInfoFromSample(LayoutDiscoverySample sample, LayoutInfoDiscoveryOptions options) {
+        // a layout reading the file itself needs to keep doing so
+        if (LayoutUtils.isMethodOverridden(this, NaaccrXmlLayout.class, "buildFileInfo", File.class, String.class, LayoutInfoDiscoveryOptions.class))
+            return buildFileInfo(sample.getFile(), sample.getZipEntryName(), options);
+
+        // the root attributes are the same for all the NAACCR XML layouts, they are only read once
+        Map<String, String> attr = sample.computeIfAbsent("naaccr-xml-root-attributes", s -> {
+            try (InputStreamReader is = new InputStreamReader(s.openStream(), UTF_8)) {
+                return NaaccrXmlUtils.getAttributesFromXmlReader(is);
+            }
+            catch (IOException e) {
+                return null;
+            }
+        });
+        if (attr == null) // the root element might be too long for the sample
+            return sample.isTruncated() ? buildFileInfo(sample.getFile(), sample.getZipEntryName(), options) : null;
+
+        LayoutInfo info = createFileInfo(attr);
+        if (info == null)
+            return null;
+
+        try (InputStreamReader is = new InputStreamReader(sample.openStream(), UTF_8)) {
+            readRootData(info, is, options);
+        }
+        catch (IOException e) {
+            if (sample.isTruncated())
+                return buildFileInfo(sample.getFile(), sample.getZipEntryName(), options);
+            info.setErrorMessage(e.getMessage());
+        }
+
+        return info;
+    }
+
+    private LayoutInfo createFileInfo(Map<String, String> attr) {
         String recordType = attr.get(NAACCR_XML_ROOT_ATT_REC_TYPE);
         if (recordType == null || recordType.isEmpty() || !_recordType.equals(recordType))
             return null;
@@ -676,19 +753,15 @@ public class NaaccrXmlLayout implements Layout {
         info.setLayoutName(_layoutName);
         info.setAvailableUserDictionaries(_userDictionaries == null ? Collections.emptyList() : _userDictionaries.stream().map(NaaccrDictionary::getDictionaryUri).collect(Collectors.toList()));
         info.setRequestedUserDictionaries(attr.get(NAACCR_XML_ROOT_ATT_USER_DICT) == null ? Collections.emptyList() : Arrays.asList(StringUtils.split(attr.get(NAACCR_XML_ROOT_ATT_USER_DICT), " ")));
+        return info;
+    }
 
-        // at this point we know that this layout can be used to read the data file; let's try to get the root data and if anything goes wrong,
-        // let's return the info object, without the root data and with the error
+    private void readRootData(LayoutInfo info, Reader reader, LayoutInfoDiscoveryOptions options) throws IOException {
         NaaccrOptions opts = NaaccrOptions.getDefault();
         opts.setUseStrictNamespaces(options == null || options.isNaaccrXmlUseStrictNamespaces());
         opts.setIgnoreExtensions(true);
-        try (InputStreamReader is = new InputStreamReader(LayoutUtils.createInputStream(file, zipEntryName), UTF_8); PatientXmlReader reader = new PatientXmlReader(is, opts, _userDictionaries)) {
-            info.setRootNaaccrXmlData(reader.getRootData());
-        }
-        catch (IOException e) {
-            info.setErrorMessage(e.getMessage());
+        try (PatientXmlReader xmlReader = new PatientXmlReader(reader, opts, _userDictionaries)) {
+            info.setRootNaaccrXmlData(xmlReader.getRootData());
         }
-
-        return info;
     }
 }
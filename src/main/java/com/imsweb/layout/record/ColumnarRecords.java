@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A columnar, in-memory representation of many records sharing the same fields; it uses a fraction of the memory used by a list of maps.
+ * <br/><br/>
+ * Each field is stored as a column; a column doesn't use any memory until it contains a non-null value, and its values are dictionary-encoded (each distinct
+ * value is stored once, and each record only stores a 16-bit code) until the column contains more than 4096 distinct values, in which case the values are
+ * stored directly (a large dictionary would use more memory than it saves). Values for fields that are not part of the columns are ignored when records are added.
+ * <br/><br/>
+ * Instances are typically created using the <b>readColumnarRecords()</b> methods of the record layouts; existing code working with maps can use
+ * <b>getRecord()</b> and <b>asRecords()</b>, which return read-only views on the data (no record is copied).
+ * <br/><br/>
+ * This class is not thread-safe; once it has been filled, it can be read concurrently.
+ */
+public final class ColumnarRecords {
+
+    // initial number of records the columns can contain
+    private static final int _INITIAL_CAPACITY = 1024;
+
+    // maximum number of distinct values for a dictionary-encoded column (code 0 represents a null value)
+    private static final int _MAX_DICTIONARY_SIZE = 4096;
+
+    // the field names, in the order of the columns
+    private final List<String> _fieldNames;
+
+    // the column index of each field name
+    private final Map<String, Integer> _indexes;
+
+    // the columns
+    private final Column[] _columns;
+
+    // the number of records
+    private int _size;
+
+    // the number of records the columns can contain without being resized
+    private int _capacity;
+
+    /**
+     * Constructor.
+     * @param fieldNames the field names (one column will be created for each name), cannot be null
+     */
+    public ColumnarRecords(List<String> fieldNames) {
+        _fieldNames = Collections.unmodifiableList(new ArrayList<>(fieldNames));
+        _indexes = new HashMap<>();
+        _columns = new Column[_fieldNames.size()];
+        for (int i = 0; i < _columns.length; i++) {
+            if (_indexes.put(_fieldNames.get(i), i) != null)
+                throw new IllegalStateException("Duplicate field name: " + _fieldNames.get(i));
+            _columns[i] = new Column();
+        }
+        _capacity = _INITIAL_CAPACITY;
+    }
+
+    /**
+     * Returns the field names, in the order of the columns.
+     * @return the field names, never null
+     */
+    public List<String> getFieldNames() {
+        return _fieldNames;
+    }
+
+    /**
+     * Returns the index of the column corresponding to the requested field.
+     * @param fieldName field name
+     * @return the column index, -1 if the field is not part of the columns
+     */
+    public int getFieldIndex(String fieldName) {
+        Integer idx = _indexes.get(fieldName);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * Returns the number of records.
+     * @return the number of records
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Adds the provided record; the values of the fields that are not part of the columns are ignored.
+     * @param rec record to add, cannot be null
+     */
+    public void add(Map<String, String> rec) {
+        if (_size == _capacity) {
+            _capacity = _capacity + Math.max(_capacity >> 1, 16);
+            for (Column column : _columns)
+                column.ensureCapacity(_capacity);
+        }
+
+        for (int i = 0; i < _columns.length; i++) {
+            String value = rec.get(_fieldNames.get(i));
+            if (value != null)
+                _columns[i].set(_size, value, _capacity);
+        }
+        _size++;
+    }
+
+    /**
+     * Returns the value of the requested field for the requested record.
+     * @param row record index (0-based)
+     * @param column column index (0-based)
+     * @return the value, maybe null
+     */
+    public String getValue(int row, int column) {
+        if (row < 0 || row >= _size)
+            throw new IndexOutOfBoundsException("Invalid record index: " + row);
+        return _columns[column].get(row);
+    }
+
+    /**
+     * Returns the value of the requested field for the requested record.
+     * @param row record index (0-based)
+     * @param fieldName field name
+     * @return the value, null if the record doesn't have a value for that field or if the field is not part of the columns
+     */
+    public String getValue(int row, String fieldName) {
+        int column = getFieldIndex(fieldName);
+        if (column == -1) {
+            if (row < 0 || row >= _size)
+                throw new IndexOutOfBoundsException("Invalid record index: " + row);
+            return null;
+        }
+        return getValue(row, column);
+    }
+
+    /**
+     * Returns the number of distinct (non-null) values of the requested column if the column is dictionary-encoded.
+     * @param column column index (0-based)
+     * @return the number of distinct values, -1 if the column is not dictionary-encoded anymore
+     */
+    public int getDistinctValueCount(int column) {
+        Column col = _columns[column];
+        return col._values != null ? -1 : col._dictionary.size();
+    }
+
+    /**
+     * Returns a read-only view of the requested record.
+     * @param row record index (0-based)
+     * @return the record, never null
+     */
+    public Map<String, String> getRecord(int row) {
+        if (row < 0 || row >= _size)
+            throw new IndexOutOfBoundsException("Invalid record index: " + row);
+        return new RecordView(row);
+    }
+
+    /**
+     * Returns a read-only view of the records, as a list of maps.
+     * @return the records, never null
+     */
+    public List<Map<String, String>> asRecords() {
+        return new AbstractList<Map<String, String>>() {
+            @Override
+            public Map<String, String> get(int index) {
+                return getRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * Releases the unused memory allocated for future records, and the lookup tables used to encode new values (they are re-created if more records
+     * are added).
+     */
+    public void trimToSize() {
+        _capacity = Math.max(_size, 1);
+        for (Column column : _columns)
+            column.trim(_capacity);
+    }
+
+    /**
+     * A column; the arrays are only allocated once the column contains a value.
+     */
+    private static final class Column {
+
+        // the distinct values (only used while the column is dictionary-encoded)
+        private List<String> _dictionary = new ArrayList<>();
+
+        // the code of each distinct value (only used while values are added to a dictionary-encoded column, created lazily)
+        private Map<String, Character> _codes;
+
+        // the code of the value of each record, 0 for null (only used while the column is dictionary-encoded)
+        private char[] _encodedValues;
+
+        // the value of each record (only used once the column is not dictionary-encoded anymore)
+        private String[] _values;
+
+        private String get(int row) {
+            if (_values != null)
+                return _values[row];
+            if (_encodedValues == null || _encodedValues[row] == 0)
+                return null;
+            return _dictionary.get(_encodedValues[row] - 1);
+        }
+
+        private void set(int row, String value, int capacity) {
+            if (_values == null) {
+                if (_codes == null) {
+                    _codes = new HashMap<>();
+                    for (int i = 0; i < _dictionary.size(); i++)
+                        _codes.put(_dictionary.get(i), (char)(i + 1));
+                }
+                Character code = _codes.get(value);
+                if (code == null && _dictionary.size() < _MAX_DICTIONARY_SIZE) {
+                    _dictionary.add(value);
+                    code = (char)_dictionary.size();
+                    _codes.put(value, code);
+                }
+                if (code != null) {
+                    if (_encodedValues == null)
+                        _encodedValues = new char[capacity];
+                    _encodedValues[row] = code;
+                    return;
+                }
+                decode(capacity);
+            }
+            _values[row] = value;
+        }
+
+        // switches from the dictionary encoding to plain values
+        private void decode(int capacity) {
+            _values = new String[capacity];
+            for (int i = 0; i < _encodedValues.length; i++)
+                if (_encodedValues[i] != 0)
+                    _values[i] = _dictionary.get(_encodedValues[i] - 1);
+            _encodedValues = null;
+            _dictionary = null;
+            _codes = null;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (_encodedValues != null && _encodedValues.length < capacity)
+                _encodedValues = Arrays.copyOf(_encodedValues, capacity);
+            if (_values != null && _values.length < capacity)
+                _values = Arrays.copyOf(_values, capacity);
+        }
+
+        private void trim(int capacity) {
+            if (_encodedValues != null)
+                _encodedValues = Arrays.copyOf(_encodedValues, capacity);
+            if (_values != null)
+                _values = Arrays.copyOf(_values, capacity);
+            if (_dictionary != null)
+                ((ArrayList<String>)_dictionary).trimToSize();
+            _codes = null;
+        }
+    }
+
+    /**
+     * A read-only view of a record; only the fields having a value are part of the map.
+     */
+    private final class RecordView extends AbstractMap<String, String> {
+
+        private final int _row;
+
+        private RecordView(int row) {
+            _row = row;
+        }
+
+        @Override
+        public String get(Object key) {
+            Integer idx = _indexes.get(key);
+            return idx == null ? null : _columns[idx].get(_row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+
+                        // index of the next column having a value
+                        private int _next = findNext(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return _next < _columns.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (_next >= _columns.length)
+                                throw new NoSuchElementException();
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(_fieldNames.get(_next), _columns[_next].get(_row));
+                            _next = findNext(_next + 1);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int count = 0;
+                    for (Column column : _columns)
+                        if (column.get(_row) != null)
+                            count++;
+                    return count;
+                }
+            };
+        }
+
+        private int findNext(int from) {
+            int idx = from;
+            while (idx < _columns.length && _columns[idx].get(_row) == null)
+                idx++;
+            return idx;
+        }
+    }
+}
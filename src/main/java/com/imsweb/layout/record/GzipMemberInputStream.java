@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses GZip data made of one or several members (concatenated GZip streams) while keeping track of the member being read: its offset in the
+ * compressed data, and the number of decompressed bytes read from it so far.
+ * <br/><br/>
+ * A member can be decompressed independently of the previous ones, so the beginning of a member is a position from which the data can be read again
+ * without decompressing what precedes it.
+ * <br/><br/>
+ * The CRC and size of each member are checked against its trailer, like the standard GZip stream does.
+ */
+final class GzipMemberInputStream extends InputStream {
+
+    // GZip magic number (first two bytes of a member)
+    private static final int _GZIP_MAGIC = 0x8b1f;
+
+    // GZip header flags
+    private static final int _FHCRC = 2;
+    private static final int _FEXTRA = 4;
+    private static final int _FNAME = 8;
+    private static final int _FCOMMENT = 16;
+
+    // the compressed data
+    private final InputStream _in;
+
+    // buffer containing the compressed data
+    private final byte[] _buffer = new byte[64 * 1024];
+
+    // position of the first byte of the buffer in the compressed data
+    private long _bufferStart;
+
+    // number of bytes available in the buffer, and position of the next byte to read
+    private int _bufferLength;
+    private int _bufferPosition;
+
+    // the inflater (re-used for every member)
+    private final Inflater _inflater = new Inflater(true);
+
+    // offset of the current member in the compressed data
+    private long _memberOffset;
+
+    // number of decompressed bytes read from the current member
+    private long _positionInMember;
+
+    // CRC of the decompressed bytes read from the current member
+    private final CRC32 _crc = new CRC32();
+
+    // whether the end of the data has been reached
+    private boolean _eof;
+
+    // buffer used to read single bytes
+    private final byte[] _single = new byte[1];
+
+    /**
+     * Constructor.
+     * @param in the compressed data, positioned at the beginning of a member
+     */
+    GzipMemberInputStream(InputStream in) throws IOException {
+        _in = in;
+        if (!startMember())
+            throw new EOFException("Empty GZip data");
+    }
+
+    /**
+     * Returns the offset of the current member in the compressed data.
+     */
+    long getMemberOffset() {
+        return _memberOffset;
+    }
+
+    /**
+     * Returns the number of decompressed bytes read from the current member.
+     */
+    long getPositionInMember() {
+        return _positionInMember;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(_single, 0, 1) == -1 ? -1 : _single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        while (!_eof) {
+            if (_inflater.finished()) {
+                // the rest of the buffer belongs to the trailer (CRC and size) and to the next member
+                _bufferPosition = _bufferLength - _inflater.getRemaining();
+                if (readUnsignedInt() != _crc.getValue() || readUnsignedInt() != (_positionInMember & 0xFFFFFFFFL))
+                    throw new ZipException("Corrupt GZip trailer");
+                if (!startMember())
+                    _eof = true;
+                continue;
+            }
+
+            if (_inflater.needsInput()) {
+                if (!fill())
+                    throw new EOFException("Unexpected end of GZip data");
+                _inflater.setInput(_buffer, _bufferPosition, _bufferLength - _bufferPosition);
+                _bufferPosition = _bufferLength;
+            }
+
+            try {
+                int n = _inflater.inflate(b, off, len);
+                if (n > 0) {
+                    _crc.update(b, off, n);
+                    _positionInMember += n;
+                    return n;
+                }
+                if (_inflater.needsDictionary())
+                    throw new ZipException("Unsupported GZip data (preset dictionary)");
+            }
+            catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _inflater.end();
+        _in.close();
+    }
+
+    // reads the header of the next member; returns false if there are no more members
+    private boolean startMember() throws IOException {
+        if (_bufferPosition == _bufferLength && !fill())
+            return false;
+
+        _memberOffset = _bufferStart + _bufferPosition;
+        _positionInMember = 0;
+        _crc.reset();
+
+        // like the standard GZip stream, anything that is not a member after the first one is ignored
+        if (readUnsignedShort() != _GZIP_MAGIC) {
+            if (_memberOffset == 0)
+                throw new ZipException("Not in GZip format");
+            return false;
+        }
+        if (readUnsignedByte() != 8)
+            throw new ZipException("Unsupported compression method");
+        int flags = readUnsignedByte();
+        skipBytes(6);
+        if ((flags & _FEXTRA) != 0)
+            skipBytes(readUnsignedShort());
+        if ((flags & _FNAME) != 0)
+            while (readUnsignedByte() != 0)
+                ; // skip the name
+        if ((flags & _FCOMMENT) != 0)
+            while (readUnsignedByte() != 0)
+                ; // skip the comment
+        if ((flags & _FHCRC) != 0)
+            skipBytes(2);
+
+        _inflater.reset();
+        if (_bufferPosition < _bufferLength) {
+            _inflater.setInput(_buffer, _bufferPosition, _bufferLength - _bufferPosition);
+            _bufferPosition = _bufferLength;
+        }
+
+        return true;
+    }
+
+    // fills the buffer if it's been entirely consumed; returns false if there is no more data
+    private boolean fill() throws IOException {
+        if (_bufferPosition < _bufferLength)
+            return true;
+        _bufferStart += _bufferLength;
+        _bufferPosition = 0;
+        _bufferLength = Math.max(_in.read(_buffer), 0);
+        return _bufferLength > 0;
+    }
+
+    private int readUnsignedByte() throws IOException {
+        if (!fill())
+            throw new EOFException("Unexpected end of GZip data");
+        return _buffer[_bufferPosition++] & 0xFF;
+    }
+
+    private int readUnsignedShort() throws IOException {
+        return readUnsignedByte() | (readUnsignedByte() << 8);
+    }
+
+    private long readUnsignedInt() throws IOException {
+        return readUnsignedShort() | ((long)readUnsignedShort() << 16);
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++)
+            readUnsignedByte();
+    }
+}
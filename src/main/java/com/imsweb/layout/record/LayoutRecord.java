@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A record whose values are stored in an array with one slot per field of its layout; this is the record created by the fixed-columns and CSV layouts.
+ * <br/><br/>
+ * The keys of the record are resolved to their slot using a lookup table shared by all the records of the layout (see <b>Schema</b>), so the records don't
+ * allocate any entry: a record uses a fraction of the memory of a hash map with the same values, and <b>get()</b> is a table lookup followed by an array
+ * load. The layouts fill the slots directly, without looking up the keys. The fixed-columns records read with a projection only have slots for the projected
+ * fields (the CSV layouts create hash maps for such records).
+ * <br/><br/>
+ * The record is a regular mutable map: keys that are not fields of the layout can be added (they are stored in a separate hash map), and null values are
+ * supported. Like a hash map, the iteration order is not specified, and this class is not thread-safe.
+ */
+public final class LayoutRecord extends AbstractMap<String, String> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // marker for the fields explicitly mapped to a null value (a distinct instance that is never returned)
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String _NULL = new String("");
+
+    // the keys of the record
+    private transient Schema _schema;
+
+    // the values of the fields (null if a field has no value)
+    private transient String[] _values;
+
+    // number of fields having a value
+    private transient int _count;
+
+    // the values of the keys that are not fields of the layout (null if there are none)
+    private transient Map<String, String> _others;
+
+    /**
+     * Constructor.
+     * @param schema the fields of the record, cannot be null
+     */
+    public LayoutRecord(Schema schema) {
+        _schema = schema;
+        _values = new String[schema._names.length];
+    }
+
+    /**
+     * Returns the fields of this record.
+     * @return the schema of this record
+     */
+    public Schema getSchema() {
+        return _schema;
+    }
+
+    /**
+     * Returns the value of the field at the provided index of the schema.
+     * @param index field index
+     * @return the value, maybe null
+     */
+    public String getValue(int index) {
+        String value = _values[index];
+        return value == _NULL ? null : value;
+    }
+
+    /**
+     * Sets the value of the field at the provided index of the schema; this is the fast path used by the layouts to fill the record.
+     * @param index field index
+     * @param value the value, maybe null
+     */
+    public void setValue(int index, String value) {
+        if (_values[index] == null)
+            _count++;
+        _values[index] = value == null ? _NULL : value;
+    }
+
+    @Override
+    public int size() {
+        return _count + (_others == null ? 0 : _others.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = _schema.indexOf(key);
+        if (index >= 0) {
+            String value = _values[index];
+            return value == _NULL ? null : value;
+        }
+        return _others == null ? null : _others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = _schema.indexOf(key);
+        if (index >= 0)
+            return _values[index] != null;
+        return _others != null && _others.containsKey(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int index = _schema.indexOf(key);
+        if (index >= 0) {
+            String previous = _values[index];
+            if (previous == null)
+                _count++;
+            _values[index] = value == null ? _NULL : value;
+            return previous == _NULL ? null : previous;
+        }
+        if (_others == null)
+            _others = new HashMap<>();
+        return _others.put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        int index = _schema.indexOf(key);
+        if (index >= 0) {
+            String previous = _values[index];
+            if (previous == null)
+                return null;
+            _values[index] = null;
+            _count--;
+            return previous == _NULL ? null : previous;
+        }
+        return _others == null ? null : _others.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(_values, null);
+        _count = 0;
+        _others = null;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        String[] names = _schema._names;
+        for (int i = 0; i < _values.length; i++) {
+            String value = _values[i];
+            if (value != null)
+                action.accept(names[i], value == _NULL ? null : value);
+        }
+        if (_others != null)
+            _others.forEach(action);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public int size() {
+                return LayoutRecord.this.size();
+            }
+
+            @Override
+            public void clear() {
+                LayoutRecord.this.clear();
+            }
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, String>> {
+
+        // index of the next field having a value, and of the field returned last (-1 if none)
+        private int _next;
+        private int _last = -1;
+
+        // the iterator of the other keys (null until the fields have all been returned)
+        private Iterator<Entry<String, String>> _othersIterator;
+
+        // whether the entry returned last is one of the other keys
+        private boolean _lastFromOthers;
+
+        private EntryIterator() {
+            _next = advance(0);
+        }
+
+        private int advance(int index) {
+            while (index < _values.length && _values[index] == null)
+                index++;
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_next < _values.length)
+                return true;
+            if (_othersIterator == null && _others != null)
+                _othersIterator = _others.entrySet().iterator();
+            return _othersIterator != null && _othersIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            if (_next < _values.length) {
+                _last = _next;
+                _lastFromOthers = false;
+                _next = advance(_next + 1);
+                return new FieldEntry(_last);
+            }
+            _last = -1;
+            _lastFromOthers = true;
+            return _othersIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (_lastFromOthers)
+                _othersIterator.remove();
+            else if (_last >= 0 && _values[_last] != null) {
+                _values[_last] = null;
+                _count--;
+            }
+            else
+                throw new IllegalStateException();
+        }
+    }
+
+    private final class FieldEntry implements Entry<String, String> {
+
+        private final int _index;
+
+        private FieldEntry(int index) {
+            _index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return _schema._names[_index];
+        }
+
+        @Override
+        public String getValue() {
+            return LayoutRecord.this.getValue(_index);
+        }
+
+        @Override
+        public String setValue(String value) {
+            return put(getKey(), value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+            Entry<?, ?> e = (Entry<?, ?>)o;
+            return getKey().equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            String value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    // the records are serialized as their schema followed by their entries
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(_schema);
+        out.writeInt(size());
+        for (Entry<String, String> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _schema = (Schema)in.readObject();
+        _values = new String[_schema._names.length];
+        int size = in.readInt();
+        for (int i = 0; i < size; i++)
+            put((String)in.readObject(), (String)in.readObject());
+    }
+
+    /**
+     * The fields of the records of a layout, each identified by its index; a schema is created once per layout and shared by all its records.
+     * <br/><br/>
+     * The names are resolved to their index using an open-addressing table at most half full; since the names are usually the same string instances
+     * as the keys used to access the records, most lookups compare the keys by identity.
+     */
+    public static final class Schema implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        // the field names, by index (a null name is a slot that is never used)
+        private final String[] _names;
+
+        // the lookup table: the names, and their index
+        private final String[] _table;
+        private final int[] _indexes;
+
+        /**
+         * Constructor.
+         * @param names the field names; a null name reserves an unused index, a duplicate name is only resolved to its first index
+         */
+        public Schema(List<String> names) {
+            _names = names.toArray(new String[0]);
+
+            int capacity = Integer.highestOneBit(Math.max(_names.length, 1) * 2 - 1) << 1;
+            _table = new String[capacity];
+            _indexes = new int[capacity];
+            for (int i = 0; i < _names.length; i++) {
+                String name = _names[i];
+                if (name == null)
+                    continue;
+                int slot = spread(name.hashCode()) & (capacity - 1);
+                while (_table[slot] != null && !_table[slot].equals(name))
+                    slot = (slot + 1) & (capacity - 1);
+                if (_table[slot] == null) {
+                    _table[slot] = name;
+                    _indexes[slot] = i;
+                }
+                else
+                    _names[i] = null;
+            }
+        }
+
+        /**
+         * Returns the number of fields (including the unused indexes).
+         * @return the number of fields
+         */
+        public int size() {
+            return _names.length;
+        }
+
+        /**
+         * Returns the name of the field at the provided index.
+         * @param index field index
+         * @return the field name, null if the index is unused
+         */
+        public String getName(int index) {
+            return _names[index];
+        }
+
+        /**
+         * Returns the index of the provided field, -1 if it's not a field of this schema.
+         * @param name field name
+         * @return the field index, -1 if the field is unknown
+         */
+        public int indexOf(Object name) {
+            if (!(name instanceof String))
+                return -1;
+            int mask = _table.length - 1;
+            for (int slot = spread(name.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+                String candidate = _table[slot];
+                if (candidate == null)
+                    return -1;
+                if (candidate == name || candidate.equals(name))
+                    return _indexes[slot];
+            }
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Record reader overlapping the reading of the data with the creation of the records.
+ * <br/><br/>
+ * A dedicated I/O thread reads (and decompresses) the data, decodes it and splits it into batches of lines; the batches are parsed into records by a pool of
+ * parser threads, and handed back to the reading thread in their original order. If the layout can create its records from the bytes of the lines (like
+ * the fixed-columns layouts, for single-byte line separators), the I/O thread splits blocks of bytes into lines without decoding them. If the lines of the layout can't be parsed independently (like
+ * CSV data that can contain quoted line separators), the I/O thread reads the records with the regular reader of the layout and only the consumption of
+ * the records overlaps with the reading.
+ * <br/><br/>
+ * The number of batches being read or parsed ahead of the reading thread is bounded, which bounds the memory used by the reader. The lines can't be read
+ * directly from this reader (only the records); skipping lines skips records.
+ * <br/><br/>
+ * Like with the regular reader, a line that can't be parsed is reported (as an exception) at its position, and the following records can still be read;
+ * a failure to read the data is reported by all the following reads.
+ */
+final class PipelinedRecordReader extends RecordReader {
+
+    // number of lines in a batch
+    static final int BATCH_SIZE = 1024;
+
+    // size of the blocks of data read by the I/O thread when the records are created from the bytes of the lines
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    // marker for the end of the data
+    private static final Batch _END = new Batch(Collections.emptyList(), new int[0], null);
+
+    // the data
+    private final InputStream _inputStream;
+
+    // the parser threads (null if the lines can't be parsed independently)
+    private final ForkJoinPool _pool;
+
+    // the I/O thread
+    private final Thread _ioThread;
+
+    // the size of the blocks of data read by the I/O thread (when the records are created from the bytes of the lines)
+    private final int _blockSize;
+
+    // the batches read by the I/O thread, in order
+    private final BlockingQueue<Future<Batch>> _batches;
+
+    // the current batch, and the index of the next record to return from it
+    private Batch _current = _END;
+    private int _index;
+
+    // the line number of the last returned record
+    private int _lineNumber;
+
+    // whether the end of the data has been reached
+    private boolean _done;
+
+    // the exception that ended the reading of the data, if any (reported by all the following reads)
+    private IOException _error;
+
+    // whether the reader has been closed
+    private volatile boolean _closed;
+
+    /**
+     * Constructor.
+     * @param layout the layout to use to create the records
+     * @param inputStream the data (the reader closes it)
+     * @param options options to use (null means default option values will be used)
+     * @param numParsers number of parser threads
+     * @param skipFirstLine whether the first line of the data needs to be ignored
+     */
+    PipelinedRecordReader(RecordLayout layout, InputStream inputStream, RecordLayoutOptions options, int numParsers, boolean skipFirstLine) {
+        this(layout, inputStream, options, numParsers, skipFirstLine, BLOCK_SIZE);
+    }
+
+    // package-private so the tests can use a smaller block size
+    PipelinedRecordReader(RecordLayout layout, InputStream inputStream, RecordLayoutOptions options, int numParsers, boolean skipFirstLine, int blockSize) {
+        super(layout, options);
+        if (numParsers < 1)
+            throw new IllegalArgumentException("Number of parsers must be at least 1");
+        _inputStream = inputStream;
+        _blockSize = blockSize;
+        _batches = new ArrayBlockingQueue<>(numParsers * 2);
+        _pool = layout.hasIndependentLines(options) ? new ForkJoinPool(numParsers) : null;
+        boolean fromBytes = _pool != null && layout.canCreateRecordsFromBytes(options);
+        _ioThread = new Thread(() -> {
+            if (fromBytes)
+                readByteLines(skipFirstLine);
+            else if (_pool != null)
+                readLines(skipFirstLine);
+            else
+                readRecords(skipFirstLine);
+        }, "record-reader-io");
+        _ioThread.setDaemon(true);
+        _ioThread.start();
+    }
+
+    /**
+     * Skips the requested number of records (the lines are read and parsed on other threads, so skipping a line means skipping its record).
+     * @param numLines number of lines to skip
+     */
+    @Override
+    public void skipLines(int numLines) throws IOException {
+        for (int i = 0; i < numLines; i++)
+            if (readRecord() == null)
+                break;
+    }
+
+    @Override
+    protected Map<String, String> fetchNextRecord() throws IOException {
+        if (_closed)
+            throw new IOException("Reader has been closed");
+
+        while (_index == _current._records.size()) {
+            if (_error != null)
+                throw new IOException(_error.getMessage(), _error);
+            if (_done)
+                return null;
+            _current = waitFor(take());
+            _index = 0;
+            if (_current == _END)
+                _done = true;
+            else if (_current._error != null)
+                _error = _current._error;
+        }
+
+        int index = _index++;
+        _lineNumber = _current._lineNumbers[index];
+        if (_current._failures != null && _current._failures[index] != null)
+            throw new IOException(_current._failures[index].getMessage(), _current._failures[index]);
+        return _current._records.get(index);
+    }
+
+    @Override
+    public int getLineNumber() {
+        return _lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+        _closed = true;
+        _ioThread.interrupt();
+        if (_pool != null)
+            _pool.shutdownNow();
+        _inputStream.close();
+    }
+
+    // reads the lines on the I/O thread, and submits them to the parser threads
+    private void readLines(boolean skipFirstLine) {
+        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(_inputStream, _layout.getEncoding(_options)), 64 * 1024)) {
+            if (skipFirstLine)
+                reader.readLine();
+            while (!_closed) {
+                String[] lines = new String[BATCH_SIZE];
+                int firstLineNumber = reader.getLineNumber() + 1;
+                int count = 0;
+                String line;
+                while (count < BATCH_SIZE && (line = reader.readLine()) != null)
+                    lines[count++] = line;
+                if (count > 0) {
+                    int numLines = count;
+                    if (!publish(_pool.submit(() -> parse(lines, numLines, firstLineNumber))))
+                        return;
+                }
+                if (count < BATCH_SIZE)
+                    break;
+            }
+            publish(CompletableFuture.completedFuture(_END));
+        }
+        catch (IOException | RuntimeException e) {
+            // the error is the last batch published, so the reading thread never waits for more batches
+            if (!_closed)
+                publish(CompletableFuture.completedFuture(new Batch(e)));
+        }
+    }
+
+    // creates the records of the provided lines on a parser thread; a line that can't be parsed doesn't prevent the following ones from being parsed
+    private Batch parse(String[] lines, int count, int firstLineNumber) {
+        List<Map<String, String>> records = new ArrayList<>(count);
+        int[] lineNumbers = new int[count];
+        IOException[] failures = null;
+        for (int i = 0; i < count; i++) {
+            lineNumbers[i] = firstLineNumber + i;
+            try {
+                records.add(_layout.createRecordFromLine(lines[i], lineNumbers[i], _options));
+            }
+            catch (IOException e) {
+                if (failures == null)
+                    failures = new IOException[count];
+                failures[i] = e;
+                records.add(null);
+            }
+        }
+        return new Batch(records, lineNumbers, failures);
+    }
+
+    // reads blocks of complete lines on the I/O thread, and submits them to the parser threads (the lines are never decoded as a whole)
+    private void readByteLines(boolean skipFirstLine) {
+        try (InputStream is = _inputStream) {
+            byte[] block = new byte[_blockSize];
+            int limit = 0;
+            int lineNumber = 0;
+            boolean skipLine = skipFirstLine;
+            boolean skipLineFeed = false;
+            boolean eof = false;
+            while (!_closed && !eof) {
+                // fill the block (it starts with the incomplete line of the previous block, if any)
+                while (limit < block.length) {
+                    int read = is.read(block, limit, block.length - limit);
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    limit += read;
+                }
+
+                // split the block into lines; like a LineNumberReader, '\n', '\r' and '\r\n' are recognized as line separators
+                int[] offsets = new int[256];
+                int[] lengths = new int[256];
+                int count = 0;
+                int firstLineNumber = lineNumber + 1;
+                int start = skipLineFeed && limit > 0 && block[0] == '\n' ? 1 : 0;
+                skipLineFeed = false;
+                for (int i = start; i <= limit; i++) {
+                    if (i == limit) {
+                        // last line, not followed by a line separator
+                        if (!eof || start == limit)
+                            break;
+                    }
+                    else if (block[i] != '\n' && block[i] != '\r')
+                        continue;
+                    lineNumber++;
+                    if (skipLine) {
+                        skipLine = false;
+                        firstLineNumber++;
+                    }
+                    else {
+                        if (count == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, count * 2);
+                            lengths = Arrays.copyOf(lengths, count * 2);
+                        }
+                        offsets[count] = start;
+                        lengths[count] = i - start;
+                        count++;
+                    }
+                    if (i < limit && block[i] == '\r') {
+                        if (i + 1 < limit) {
+                            if (block[i + 1] == '\n')
+                                i++;
+                        }
+                        else
+                            skipLineFeed = true;
+                    }
+                    start = i + 1;
+                }
+
+                if (count > 0) {
+                    byte[] data = block;
+                    int[] lineOffsets = offsets;
+                    int[] lineLengths = lengths;
+                    int numLines = count;
+                    int number = firstLineNumber;
+                    if (!publish(_pool.submit(() -> parse(data, lineOffsets, lineLengths, numLines, number))))
+                        return;
+                }
+
+                // the incomplete line is moved to the next block (which is bigger if the line doesn't fit in a block)
+                if (eof)
+                    break;
+                int remaining = limit - start;
+                block = Arrays.copyOfRange(block, start, start + Math.max(_blockSize, remaining * 2));
+                limit = remaining;
+            }
+            publish(CompletableFuture.completedFuture(_END));
+        }
+        catch (IOException | RuntimeException e) {
+            // the error is the last batch published, so the reading thread never waits for more batches
+            if (!_closed)
+                publish(CompletableFuture.completedFuture(new Batch(e)));
+        }
+    }
+
+    // creates the records of the provided lines (given as bytes) on a parser thread; a line that can't be parsed doesn't prevent the following ones from
+    // being parsed
+    private Batch parse(byte[] block, int[] offsets, int[] lengths, int count, int firstLineNumber) {
+        List<Map<String, String>> records = new ArrayList<>(count);
+        int[] lineNumbers = new int[count];
+        IOException[] failures = null;
+        for (int i = 0; i < count; i++) {
+            lineNumbers[i] = firstLineNumber + i;
+            try {
+                records.add(_layout.createRecordFromBytes(block, offsets[i], lengths[i], lineNumbers[i], _options));
+            }
+            catch (IOException e) {
+                if (failures == null)
+                    failures = new IOException[count];
+                failures[i] = e;
+                records.add(null);
+            }
+        }
+        return new Batch(records, lineNumbers, failures);
+    }
+
+    // reads the records on the I/O thread using the regular reader of the layout
+    private void readRecords(boolean skipFirstLine) {
+        try (RecordReader reader = _layout.createRecordReader(_inputStream, _options)) {
+            if (skipFirstLine)
+                reader.skipLines(1);
+            int lastFailedLineNumber = -1;
+            boolean eof = false;
+            while (!_closed && !eof) {
+                List<Map<String, String>> records = new ArrayList<>(BATCH_SIZE);
+                int[] lineNumbers = new int[BATCH_SIZE];
+                IOException[] failures = null;
+                while (records.size() < BATCH_SIZE) {
+                    Map<String, String> rec;
+                    try {
+                        rec = reader.readRecord();
+                    }
+                    catch (IOException e) {
+                        // a reader failing again without moving to another line can't go any further
+                        if (reader.getLineNumber() == lastFailedLineNumber)
+                            throw e;
+                        lastFailedLineNumber = reader.getLineNumber();
+                        if (failures == null)
+                            failures = new IOException[BATCH_SIZE];
+                        failures[records.size()] = e;
+                        rec = null;
+                    }
+                    if (rec == null && (failures == null || failures[records.size()] == null)) {
+                        eof = true;
+                        break;
+                    }
+                    lineNumbers[records.size()] = reader.getLineNumber();
+                    records.add(rec);
+                }
+                if (!records.isEmpty() && !publish(CompletableFuture.completedFuture(new Batch(records, lineNumbers, failures))))
+                    return;
+            }
+            publish(CompletableFuture.completedFuture(_END));
+        }
+        catch (IOException | RuntimeException e) {
+            // the error is the last batch published, so the reading thread never waits for more batches
+            if (!_closed)
+                publish(CompletableFuture.completedFuture(new Batch(e)));
+        }
+    }
+
+    // hands the provided batch to the reading thread; returns false if the I/O thread has been interrupted
+    private boolean publish(Future<Batch> batch) {
+        try {
+            _batches.put(batch);
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Future<Batch> take() throws IOException {
+        try {
+            return _batches.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for records to be read", e);
+        }
+    }
+
+    private static Batch waitFor(Future<Batch> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for records to be read", e);
+        }
+        catch (ExecutionException e) {
+            // the pool wraps the exceptions thrown by the tasks
+            Throwable cause = e.getCause();
+            for (Throwable t = cause; t != null; t = t.getCause())
+                if (t instanceof IOException)
+                    throw new IOException(t.getMessage(), t);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static final class Batch {
+
+        // the records (null for the lines that couldn't be parsed)
+        private final List<Map<String, String>> _records;
+
+        // the line number of each record
+        private final int[] _lineNumbers;
+
+        // the failure of each line that couldn't be parsed (null if all the lines were parsed)
+        private final IOException[] _failures;
+
+        // the exception that ended the reading of the data (only for the last batch)
+        private final IOException _error;
+
+        private Batch(List<Map<String, String>> records, int[] lineNumbers, IOException[] failures) {
+            _records = records;
+            _lineNumbers = lineNumbers;
+            _failures = failures;
+            _error = null;
+        }
+
+        private Batch(Exception error) {
+            _records = Collections.emptyList();
+            _lineNumbers = new int[0];
+            _failures = null;
+            _error = error instanceof IOException ? (IOException)error : new IOException(error.getMessage(), error);
+        }
+    }
+}
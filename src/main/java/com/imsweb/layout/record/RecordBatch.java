@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A batch of records filled by the <b>readBatch()</b> methods of the record layouts, designed to be re-used from one batch to the next.
+ * <br/><br/>
+ * The records of a batch are containers that are cleared and filled again when the batch is re-used, so reading data one batch at a time allocates (almost)
+ * no record once the containers have been created; the containers are layout records for the layouts creating them, and hash maps pre-sized for the
+ * number of fields of the layout otherwise. The records of a batch are only valid until the batch is filled again: a record that needs to be kept must be
+ * copied.
+ * <br/><br/>
+ * This class is not thread-safe.
+ */
+public final class RecordBatch implements Iterable<Map<String, String>> {
+
+    // the containers (the first ones contain the records of the batch, the others are kept for the next batches)
+    private final List<Map<String, String>> _containers = new ArrayList<>();
+
+    // the line number of each record
+    private int[] _lineNumbers = new int[16];
+
+    // the number of records in the batch
+    private int _size;
+
+    // the initial capacity of the containers
+    private final int _containerCapacity;
+
+    // the keys of the containers, if they are layout records (null otherwise)
+    private final LayoutRecord.Schema _schema;
+
+    /**
+     * Constructor.
+     * @param expectedFields expected number of values in a record (used to size the containers)
+     */
+    public RecordBatch(int expectedFields) {
+        _containerCapacity = (int)(Math.max(expectedFields, 1) / 0.75f) + 1;
+        _schema = null;
+    }
+
+    /**
+     * Constructor for a batch whose containers are layout records.
+     * @param schema the keys of the records, cannot be null
+     */
+    public RecordBatch(LayoutRecord.Schema schema) {
+        _containerCapacity = 0;
+        _schema = schema;
+    }
+
+    /**
+     * Returns the number of records in the batch.
+     * @return number of records
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns true if the batch doesn't contain any record.
+     * @return true if the batch is empty
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Returns the requested record; the returned container is re-used when the batch is filled again.
+     * @param index record index
+     * @return the record
+     */
+    public Map<String, String> get(int index) {
+        if (index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + _size);
+        return _containers.get(index);
+    }
+
+    /**
+     * Returns the line number of the requested record.
+     * @param index record index
+     * @return the line number of the record
+     */
+    public int getLineNumber(int index) {
+        if (index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + _size);
+        return _lineNumbers[index];
+    }
+
+    /**
+     * Removes all the records from the batch; the containers are kept to be re-used.
+     */
+    public void clear() {
+        _size = 0;
+    }
+
+    @Override
+    public Iterator<Map<String, String>> iterator() {
+        return new Iterator<Map<String, String>>() {
+
+            private int _index;
+
+            @Override
+            public boolean hasNext() {
+                return _index < _size;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (_index >= _size)
+                    throw new NoSuchElementException();
+                return _containers.get(_index++);
+            }
+        };
+    }
+
+    /**
+     * Returns the container to use for the next record (it is added to the batch by <b>commit()</b>).
+     */
+    Map<String, String> nextContainer() {
+        if (_size == _containers.size())
+            _containers.add(_schema == null ? new HashMap<>(_containerCapacity) : new LayoutRecord(_schema));
+        return _containers.get(_size);
+    }
+
+    /**
+     * Adds the container returned by <b>nextContainer()</b> to the batch.
+     */
+    void commit(int lineNumber) {
+        if (_size == _lineNumbers.length)
+            _lineNumbers = Arrays.copyOf(_lineNumbers, _size * 2);
+        _lineNumbers[_size++] = lineNumber;
+    }
+}
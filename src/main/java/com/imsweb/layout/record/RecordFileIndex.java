@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import com.imsweb.layout.record.csv.CommaSeparatedLayout;
+
+/**
+ * An index of the records of a data file, allowing to read any record (or range of records) without reading the file from its beginning.
+ * <br/><br/>
+ * The index contains the position of every N-th record (a checkpoint); reading a record requires positioning the file at the closest checkpoint and
+ * skipping the few records that follow it. Depending on the file, the index is:
+ * <ul>
+ * <li>implicit for uncompressed files in which all the lines have the same length (the position of a record is computed, nothing is stored)</li>
+ * <li>a table of offsets for the other uncompressed files</li>
+ * <li>a table of (member, offset in member) pairs for GZip files; a GZip member can be decompressed independently of the previous ones, so the
+ * data written as many small members can be read from any checkpoint, while a single-member file still needs to be decompressed from its beginning
+ * (but the lines before the checkpoint are skipped without being parsed)</li>
+ * </ul>
+ * The records of CSV layouts can contain line separators inside quoted values; the index is based on the records, not on the lines. The first line of a
+ * CSV layout that ignores it is not part of the records.
+ * <br/><br/>
+ * Zip files and encodings that are not ASCII-compatible (like UTF-16) are not supported.
+ * <br/><br/>
+ * Indexes can be saved and loaded (see <b>RecordLayout.openRecordIndex()</b>, which keeps the index next to the data file); a loaded index is only used
+ * if the size and the last modified date of the data file didn't change. Instances of this class are immutable and thread-safe.
+ */
+public final class RecordFileIndex {
+
+    // default number of records between two checkpoints
+    public static final int DEFAULT_INTERVAL = 64;
+
+    // identifier and version of the saved indexes
+    private static final int _MAGIC = 0x4C494458;
+    private static final int _VERSION = 1;
+
+    // the layout
+    private final RecordLayout _layout;
+
+    // the data file
+    private final File _file;
+
+    // the options used to read the records (can be null)
+    private final RecordLayoutOptions _options;
+
+    // size and last modified date of the data file when the index was built
+    private final long _fileLength;
+    private final long _fileLastModified;
+
+    // whether the data file is a GZip file
+    private final boolean _compressed;
+
+    // number of records
+    private final long _numRecords;
+
+    // number of records between two checkpoints
+    private final int _interval;
+
+    // length of every record (including the line separator) if the index is implicit, 0 otherwise
+    private final long _recordLength;
+
+    // offset of the first record (only used if the index is implicit)
+    private final long _firstOffset;
+
+    // offset of each checkpoint record (offset of the GZip member containing it for compressed files)
+    private final long[] _positions;
+
+    // offset of each checkpoint record in its GZip member (null for uncompressed files)
+    private final long[] _positionsInMember;
+
+    private RecordFileIndex(RecordLayout layout, File file, RecordLayoutOptions options, long fileLength, long fileLastModified, boolean compressed,
+            long numRecords, int interval, long recordLength, long firstOffset, long[] positions, long[] positionsInMember) {
+        _layout = layout;
+        _file = file;
+        _options = options;
+        _fileLength = fileLength;
+        _fileLastModified = fileLastModified;
+        _compressed = compressed;
+        _numRecords = numRecords;
+        _interval = interval;
+        _recordLength = recordLength;
+        _firstOffset = firstOffset;
+        _positions = positions;
+        _positionsInMember = positionsInMember;
+    }
+
+    /**
+     * Builds the index of the provided data file by reading it once.
+     * @param layout the layout of the data, cannot be null
+     * @param file the data file, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @param interval number of records between two checkpoints (1 means the position of every record is stored)
+     * @return the index, never null
+     */
+    public static RecordFileIndex build(RecordLayout layout, File file, RecordLayoutOptions options, int interval) throws IOException {
+        if (interval < 1)
+            throw new IllegalStateException("Interval must be at least 1");
+        checkSupported(layout, file, options);
+
+        long fileLength = file.length();
+        long fileLastModified = file.lastModified();
+        boolean compressed = isCompressed(file);
+        boolean csv = layout instanceof CommaSeparatedLayout;
+        boolean skipFirstRecord = csv && ((CommaSeparatedLayout)layout).ignoreFirstLine();
+        char separator = csv ? ((CommaSeparatedLayout)layout).getSeparator() : 0;
+
+        long[] positions = new long[16];
+        long[] positionsInMember = compressed ? new long[16] : null;
+        int numCheckpoints = 0;
+
+        long numRecords = 0;
+        long firstOffset = -1;
+        long previousStart = -1;
+        long recordLength = -1;
+        boolean uniformLength = !compressed;
+
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            InputStream data = compressed ? new GzipMemberInputStream(is) : is;
+
+            byte[] buffer = new byte[64 * 1024];
+            long offset = 0;
+            boolean atRecordStart = true;
+            boolean atFieldStart = true;
+            boolean inQuotes = false;
+            boolean afterClosingQuote = false;
+            boolean skipLineFeed = false;
+            boolean skippingFirstRecord = skipFirstRecord;
+
+            int n;
+            while ((n = data.read(buffer)) != -1) {
+                long chunkMemberOffset = compressed ? ((GzipMemberInputStream)data).getMemberOffset() : 0;
+                long chunkPositionInMember = compressed ? ((GzipMemberInputStream)data).getPositionInMember() - n : 0;
+
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+
+                    // a line feed following a carriage return is part of the same line separator
+                    if (skipLineFeed) {
+                        skipLineFeed = false;
+                        if (b == '\n')
+                            continue;
+                    }
+
+                    if (atRecordStart) {
+                        atRecordStart = false;
+                        if (!skippingFirstRecord) {
+                            long start = offset + i;
+                            if (firstOffset == -1)
+                                firstOffset = start;
+                            if (uniformLength && previousStart != -1) {
+                                if (recordLength == -1)
+                                    recordLength = start - previousStart;
+                                else if (recordLength != start - previousStart)
+                                    uniformLength = false;
+                            }
+                            previousStart = start;
+
+                            if (numRecords % interval == 0) {
+                                if (numCheckpoints == positions.length) {
+                                    positions = Arrays.copyOf(positions, numCheckpoints * 2);
+                                    if (compressed)
+                                        positionsInMember = Arrays.copyOf(positionsInMember, numCheckpoints * 2);
+                                }
+                                positions[numCheckpoints] = compressed ? chunkMemberOffset : start;
+                                if (compressed)
+                                    positionsInMember[numCheckpoints] = chunkPositionInMember + i;
+                                numCheckpoints++;
+                            }
+                            numRecords++;
+                        }
+                    }
+
+                    // like the CSV parser, a quote only starts a quoted value at the beginning of a value, and two quotes inside a quoted value are an
+                    // escaped quote (the second one re-opens the value right after it was closed)
+                    if (inQuotes) {
+                        if (b == '"') {
+                            inQuotes = false;
+                            afterClosingQuote = true;
+                        }
+                    }
+                    else if (b == '"' && csv && (atFieldStart || afterClosingQuote)) {
+                        inQuotes = true;
+                        atFieldStart = false;
+                        afterClosingQuote = false;
+                    }
+                    else if (b == '\n' || b == '\r') {
+                        atRecordStart = true;
+                        skipLineFeed = b == '\r';
+                        skippingFirstRecord = false;
+                        atFieldStart = true;
+                        afterClosingQuote = false;
+                    }
+                    else {
+                        atFieldStart = b == separator;
+                        afterClosingQuote = false;
+                    }
+                }
+                offset += n;
+            }
+        }
+
+        // an index is implicit only if all the records (except maybe the last one, which doesn't need a line separator) have the same length
+        if (uniformLength && recordLength > 0)
+            return new RecordFileIndex(layout, file, options, fileLength, fileLastModified, false, numRecords, interval, recordLength, firstOffset, null, null);
+
+        return new RecordFileIndex(layout, file, options, fileLength, fileLastModified, compressed, numRecords, interval, 0, 0,
+                Arrays.copyOf(positions, numCheckpoints), compressed ? Arrays.copyOf(positionsInMember, numCheckpoints) : null);
+    }
+
+    /**
+     * Loads a saved index; returns null if the index doesn't correspond to the current version of the data file (meaning it needs to be built again).
+     * @param layout the layout of the data, cannot be null
+     * @param file the data file, cannot be null
+     * @param indexFile the saved index, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return the index, null if the data file changed since the index was built
+     */
+    public static RecordFileIndex load(RecordLayout layout, File file, File indexFile, RecordLayoutOptions options) throws IOException {
+        checkSupported(layout, file, options);
+
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (is.readInt() != _MAGIC)
+                throw new IOException("Invalid record index: " + indexFile.getPath());
+            if (is.readInt() != _VERSION)
+                return null;
+
+            long fileLength = is.readLong();
+            long fileLastModified = is.readLong();
+            if (fileLength != file.length() || fileLastModified != file.lastModified())
+                return null;
+
+            boolean compressed = is.readBoolean();
+            long numRecords = is.readLong();
+            int interval = is.readInt();
+            long recordLength = is.readLong();
+            long firstOffset = is.readLong();
+            long[] positions = null;
+            long[] positionsInMember = null;
+            if (recordLength == 0) {
+                positions = new long[is.readInt()];
+                for (int i = 0; i < positions.length; i++)
+                    positions[i] = is.readLong();
+                if (compressed) {
+                    positionsInMember = new long[positions.length];
+                    for (int i = 0; i < positionsInMember.length; i++)
+                        positionsInMember[i] = is.readLong();
+                }
+            }
+
+            return new RecordFileIndex(layout, file, options, fileLength, fileLastModified, compressed, numRecords, interval, recordLength, firstOffset, positions,
+                    positionsInMember);
+        }
+    }
+
+    /**
+     * Saves this index to the provided file.
+     * @param indexFile the file to write the index to, cannot be null
+     */
+    public void save(File indexFile) throws IOException {
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile.toPath())))) {
+            os.writeInt(_MAGIC);
+            os.writeInt(_VERSION);
+            os.writeLong(_fileLength);
+            os.writeLong(_fileLastModified);
+            os.writeBoolean(_compressed);
+            os.writeLong(_numRecords);
+            os.writeInt(_interval);
+            os.writeLong(_recordLength);
+            os.writeLong(_firstOffset);
+            if (_recordLength == 0) {
+                os.writeInt(_positions.length);
+                for (long position : _positions)
+                    os.writeLong(position);
+                if (_compressed)
+                    for (long position : _positionsInMember)
+                        os.writeLong(position);
+            }
+        }
+    }
+
+    /**
+     * Returns the file used to save the index of the provided data file (a file next to the data file, with an additional '.idx' extension).
+     * @param file the data file
+     * @return the index file
+     */
+    public static File getIndexFile(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Returns the number of records in the data file.
+     * @return the number of records
+     */
+    public long size() {
+        return _numRecords;
+    }
+
+    /**
+     * Returns true if the position of the records is computed from their (common) length.
+     * @return true if the index is implicit
+     */
+    public boolean isImplicit() {
+        return _recordLength > 0;
+    }
+
+    /**
+     * Returns true if the data file is a GZip file.
+     * @return true if the data file is compressed
+     */
+    public boolean isCompressed() {
+        return _compressed;
+    }
+
+    /**
+     * Returns true if the data file still corresponds to this index (meaning its size and last modified date didn't change).
+     * @return true if the index is up to date
+     */
+    public boolean isUpToDate() {
+        return _file.length() == _fileLength && _file.lastModified() == _fileLastModified;
+    }
+
+    /**
+     * Returns the requested record.
+     * @param index the (0-based) index of the record
+     * @return the record, never null
+     */
+    public Map<String, String> readRecord(long index) throws IOException {
+        List<Map<String, String>> records = readRecords(index, 1);
+        if (records.isEmpty())
+            throw new IOException("Unable to read record " + index + "; the data file might have changed since the index was built");
+        return records.get(0);
+    }
+
+    /**
+     * Returns the requested range of records.
+     * @param from the (0-based) index of the first record
+     * @param count the maximum number of records to return
+     * @return the records (fewer than requested if the end of the file is reached)
+     */
+    public List<Map<String, String>> readRecords(long from, int count) throws IOException {
+        List<Map<String, String>> result = new ArrayList<>();
+        try (RecordReader reader = openReader(from)) {
+            Map<String, String> rec;
+            while (result.size() < count && (rec = reader.readRecord()) != null)
+                result.add(rec);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a reader positioned on the requested record; the caller is responsible for closing the reader.
+     * <br/><br/>
+     * The line numbers reported by the reader (and in its exceptions) are relative to the checkpoint the reader started from.
+     * @param from the (0-based) index of the first record to read
+     * @return a record reader
+     */
+    public RecordReader openReader(long from) throws IOException {
+        if (from < 0 || from > _numRecords)
+            throw new IndexOutOfBoundsException("Invalid record index: " + from);
+
+        int checkpoint = (int)Math.min(from / _interval, _positions == null ? 0 : Math.max(_positions.length - 1, 0));
+
+        long position;
+        long numToSkip;
+        if (isImplicit()) {
+            position = _firstOffset + from * _recordLength;
+            numToSkip = 0;
+        }
+        else if (_positions.length == 0) {
+            position = _fileLength;
+            numToSkip = 0;
+        }
+        else {
+            position = _positions[checkpoint];
+            numToSkip = from - (long)checkpoint * _interval;
+        }
+
+        FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(position);
+            InputStream is = Channels.newInputStream(channel);
+            if (_compressed && position < _fileLength) {
+                is = new GZIPInputStream(is, 64 * 1024);
+                is.skipNBytes(_positionsInMember[checkpoint]);
+            }
+
+            RecordReader reader = _layout.openReader(is, _options);
+            while (numToSkip > 0) {
+                int n = (int)Math.min(numToSkip, Integer.MAX_VALUE);
+                reader.skipLines(n);
+                numToSkip -= n;
+            }
+            return reader;
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean isCompressed(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".gzip");
+    }
+
+    private static void checkSupported(RecordLayout layout, File file, RecordLayoutOptions options) throws IOException {
+        if (!file.exists())
+            throw new IOException("File does not exist.");
+        if (file.getName().toLowerCase().endsWith(".zip"))
+            throw new IOException("Record indexes are not supported for zip files");
+        Charset charset = layout.getEncoding(options);
+        if (!StandardCharsets.UTF_8.equals(charset) && !StandardCharsets.ISO_8859_1.equals(charset) && !StandardCharsets.US_ASCII.equals(charset))
+            throw new IOException("Record indexes are not supported for encoding " + charset.name());
+    }
+}
@@ -3,7 +3,6 @@
  */
 package com.imsweb.layout.record;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -13,14 +12,18 @@ import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
+import com.imsweb.layout.Field;
 import com.imsweb.layout.Layout;
+import com.imsweb.layout.LayoutDiscoverySample;
 import com.imsweb.layout.LayoutFactory;
 import com.imsweb.layout.LayoutInfo;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
@@ -36,6 +39,12 @@ import com.imsweb.layout.record.csv.CommaSeparatedLayout;
 @SuppressWarnings("unused")
 public abstract class RecordLayout implements Layout {
 
+    // size of the buffer used to write several records to a stream
+    private static final int _MULTIPLE_RECORDS_BUFFER_SIZE = 64 * 1024;
+
+    // maximum number of blocks waiting to be written by the write-behind thread of the pipelined writers
+    private static final int _WRITE_BEHIND_BLOCKS = 4;
+
     // layout ID
     protected String _layoutId;
 
@@ -124,6 +133,10 @@ public abstract class RecordLayout implements Layout {
         return options == null || options.trimValues();
     }
 
+    protected boolean internValues(RecordLayoutOptions options) {
+        return options != null && options.internValues();
+    }
+
     protected boolean enforceStrictFormat(RecordLayoutOptions options) {
         return options != null && options.enforceStrictFormat();
     }
@@ -144,6 +157,10 @@ public abstract class RecordLayout implements Layout {
         return options == null ? StandardCharsets.UTF_8 : options.getEncoding();
     }
 
+    protected int getCompressionThreads(RecordLayoutOptions options) {
+        return options == null ? 1 : options.getCompressionThreads();
+    }
+
     /**
      * Writes the record to the output stream, followed be a line separator. Does not close or open output stream.
      * <p/>
@@ -164,8 +181,9 @@ public abstract class RecordLayout implements Layout {
      * @param options options to use (null means default option values will be used)
      */
     public void writeRecord(OutputStream outputStream, Map<String, String> rec, RecordLayoutOptions options) throws IOException {
-        outputStream.write(createLineFromRecord(rec, options).getBytes(getEncoding(options)));
-        outputStream.write(getLineSeparator(options).getBytes(getEncoding(options)));
+        Charset charset = getEncoding(options);
+        outputStream.write(createLineFromRecord(rec, options).getBytes(charset));
+        outputStream.write(getLineSeparator(options).getBytes(charset));
     }
 
     /**
@@ -188,9 +206,8 @@ public abstract class RecordLayout implements Layout {
      * @param options options to use (null means default option values will be used)
      */
     public void writeRecords(OutputStream outputStream, List<Map<String, String>> records, RecordLayoutOptions options) throws IOException {
-        for (Map<String, String> rec : records) {
-            outputStream.write(createLineFromRecord(rec, options).getBytes(getEncoding(options)));
-            outputStream.write(getLineSeparator(options).getBytes(getEncoding(options)));
+        try (RecordWriter writer = new RecordWriter(this, outputStream, options, false, _MULTIPLE_RECORDS_BUFFER_SIZE)) {
+            writer.writeAll(records);
         }
     }
 
@@ -291,14 +308,45 @@ public abstract class RecordLayout implements Layout {
      * @param options options to use (null means default option values will be used)
      */
     public void writeRecords(File file, List<Map<String, String>> records, RecordLayoutOptions options) throws IOException {
-        try (BufferedOutputStream out = new BufferedOutputStream(LayoutUtils.createOutputStream(file))) {
-            for (Map<String, String> rec : records) {
-                out.write(createLineFromRecord(rec, options).getBytes(getEncoding(options)));
-                out.write(getLineSeparator(options).getBytes(getEncoding(options)));
-            }
+        try (RecordWriter writer = openWriter(file, options)) {
+            writer.writeAll(records);
         }
     }
 
+    /**
+     * Returns a writer converting the records into data lines and writing them to the provided file (which will be compressed if its name ends with
+     * '.gz' or '.gzip'); the caller is responsible for closing the writer.
+     * @param file File to write to
+     * @param options options to use (null means default option values will be used)
+     * @return a record writer
+     */
+    public RecordWriter openWriter(File file, RecordLayoutOptions options) throws IOException {
+        return new RecordWriter(this, file, options);
+    }
+
+    /**
+     * Returns a writer converting the records into data lines and writing them to the provided file (which will be compressed if its name ends with
+     * '.gz' or '.gzip') on a dedicated write-behind thread: the encoded lines are handed over in large blocks, and the writing (and compression) of a block
+     * overlaps with the encoding of the next ones. The caller is responsible for closing the writer.
+     * @param file File to write to
+     * @param options options to use (null means default option values will be used)
+     * @return a record writer
+     */
+    public RecordWriter openPipelinedWriter(File file, RecordLayoutOptions options) throws IOException {
+        OutputStream os = new WriteBehindOutputStream(LayoutUtils.createOutputStream(file, getCompressionThreads(options)), _WRITE_BEHIND_BLOCKS);
+        return new RecordWriter(this, os, options);
+    }
+
+    /**
+     * Returns a writer converting the records into data lines and writing them to the provided stream. Closing the returned writer closes the provided stream.
+     * @param outputStream OutputStream to write to
+     * @param options options to use (null means default option values will be used)
+     * @return a record writer
+     */
+    public RecordWriter openWriter(OutputStream outputStream, RecordLayoutOptions options) {
+        return new RecordWriter(this, outputStream, options);
+    }
+
     /**
      * Returns a record that is created from the String returned when readLine() is called on the LineReader passed in.
      * <p/>
@@ -334,14 +382,7 @@ public abstract class RecordLayout implements Layout {
      * @return A list of the records created from the data in the InputStream
      */
     public List<Map<String, String>> readAllRecords(InputStream inputStream, RecordLayoutOptions options) throws IOException {
-        List<Map<String, String>> result = new ArrayList<>();
-
-        LineNumberReader r = new LineNumberReader(new InputStreamReader(inputStream, getEncoding(options)));
-        String line;
-        while ((line = r.readLine()) != null)
-            result.add(createRecordFromLine(line, r.getLineNumber(), options));
-
-        return result;
+        return readAllRecords(openReader(inputStream, options));
     }
 
     /**
@@ -364,14 +405,7 @@ public abstract class RecordLayout implements Layout {
      * @return A list of the records created from the data read from the Reader
      */
     public List<Map<String, String>> readAllRecords(Reader reader, RecordLayoutOptions options) throws IOException {
-        List<Map<String, String>> result = new ArrayList<>();
-
-        LineNumberReader r = new LineNumberReader(reader);
-        String line;
-        while ((line = r.readLine()) != null)
-            result.add(createRecordFromLine(line, r.getLineNumber(), options));
-
-        return result;
+        return readAllRecords(openReader(reader, options));
     }
 
     /**
@@ -406,22 +440,299 @@ public abstract class RecordLayout implements Layout {
      * @param options options to use (null means default option values will be used)
      * @return A list of the records created from the data in the File
      */
-    @SuppressWarnings("java:S2677") // not using the result of readline; we just want to ignore the header line for CSV file...
     public List<Map<String, String>> readAllRecords(File file, String zipEntry, RecordLayoutOptions options) throws IOException {
+        try (RecordReader reader = openReader(file, zipEntry, options)) {
+            return readAllRecords(reader);
+        }
+    }
+
+    /**
+     * Returns an empty columnar representation containing a column for each field of this layout (or for each projected field if the options define a
+     * projection).
+     * @param options options to use (null means default option values will be used)
+     * @return an empty columnar representation
+     */
+    public ColumnarRecords createColumnarRecords(RecordLayoutOptions options) {
+        List<String> fieldNames = new ArrayList<>();
+        for (Field field : getAllFields())
+            if (options == null || options.isFieldProjected(field.getName(), field.getNaaccrItemNum()))
+                fieldNames.add(field.getName());
+        return new ColumnarRecords(fieldNames);
+    }
+
+    /**
+     * Returns the records created from the data in the input stream passed in, using a columnar representation.
+     * @param inputStream Stream to the data
+     * @param options options to use (null means default option values will be used)
+     * @return the records, in a columnar representation
+     */
+    public ColumnarRecords readColumnarRecords(InputStream inputStream, RecordLayoutOptions options) throws IOException {
+        return readColumnarRecords(openReader(inputStream, options), options);
+    }
+
+    /**
+     * Returns the records created from the data in the file passed in, using a columnar representation.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param options options to use (null means default option values will be used)
+     * @return the records, in a columnar representation
+     */
+    public ColumnarRecords readColumnarRecords(File file, String zipEntry, RecordLayoutOptions options) throws IOException {
+        try (RecordReader reader = openReader(file, zipEntry, options)) {
+            return readColumnarRecords(reader, options);
+        }
+    }
+
+    private ColumnarRecords readColumnarRecords(RecordReader reader, RecordLayoutOptions options) throws IOException {
+        ColumnarRecords result = createColumnarRecords(options);
+
+        Map<String, String> rec;
+        while ((rec = reader.readRecord()) != null)
+            result.add(rec);
+        result.trimToSize();
+
+        return result;
+    }
+
+    /**
+     * Writes the provided columnar records to the file passed in (which will be compressed if its name ends with '.gz' or '.gzip').
+     * @param file File to write to
+     * @param records Records to be written to the File
+     * @param options options to use (null means default option values will be used)
+     */
+    public void writeColumnarRecords(File file, ColumnarRecords records, RecordLayoutOptions options) throws IOException {
+        try (RecordWriter writer = openWriter(file, options)) {
+            writer.writeAll(records.asRecords());
+        }
+    }
+
+    private List<Map<String, String>> readAllRecords(RecordReader reader) throws IOException {
         List<Map<String, String>> result = new ArrayList<>();
 
-        try (LineNumberReader r = new LineNumberReader(new InputStreamReader(LayoutUtils.createInputStream(file, zipEntry), getEncoding(options)))) {
+        Map<String, String> rec;
+        while ((rec = reader.readRecord()) != null)
+            result.add(rec);
+
+        return result;
+    }
+
+    /**
+     * Creates the record reader used by all the reading methods of this layout; sub-classes can override this method to provide their own reader.
+     * @param reader the reader to read the data from
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    protected RecordReader createRecordReader(Reader reader, RecordLayoutOptions options) throws IOException {
+        return new RecordReader(this, reader, options);
+    }
+
+    /**
+     * Creates the record reader used by the reading methods of this layout that work on bytes (files and input streams). By default, the bytes are decoded
+     * using the layout encoding and the reader created by <b>createRecordReader(Reader, RecordLayoutOptions)</b> is returned; sub-classes can override
+     * this method to work directly on the bytes.
+     * @param inputStream the stream to read the data from
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    protected RecordReader createRecordReader(InputStream inputStream, RecordLayoutOptions options) throws IOException {
+        return createRecordReader(new InputStreamReader(inputStream, getEncoding(options)), options);
+    }
+
+    /**
+     * Returns a reader returning the records one at a time from the data given from the reader passed in. Closing the returned reader closes the provided one.
+     * @param reader Reader containing the data
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    public RecordReader openReader(Reader reader, RecordLayoutOptions options) throws IOException {
+        return createRecordReader(reader, options);
+    }
+
+    /**
+     * Returns a reader returning the records one at a time from the data in the input stream passed in. Closing the returned reader closes the provided stream.
+     * @param inputStream Stream to the data
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    public RecordReader openReader(InputStream inputStream, RecordLayoutOptions options) throws IOException {
+        return createRecordReader(inputStream, options);
+    }
+
+    /**
+     * Returns a reader returning the records one at a time from the data in the file passed in. The caller is responsible for closing the reader.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    public RecordReader openReader(File file, String zipEntry, RecordLayoutOptions options) throws IOException {
+        InputStream is = LayoutUtils.createInputStream(file, zipEntry, getCompressionThreads(options));
+        try {
+            RecordReader reader = openReader(is, options);
 
             // some CSV layout need to ignore the first line (see issue #2)
             if (this instanceof CommaSeparatedLayout && ((CommaSeparatedLayout)this).ignoreFirstLine())
-                r.readLine();
+                reader.skipLines(1);
 
-            String line;
-            while ((line = r.readLine()) != null)
-                result.add(createRecordFromLine(line, r.getLineNumber(), options));
+            return reader;
+        }
+        catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
         }
+    }
 
-        return result;
+    /**
+     * Returns a reader returning the records one at a time from the data in the file passed in, reading the data on a dedicated I/O thread and creating
+     * the records on a pool of parser threads; the records are returned in their original order. The caller is responsible for closing the reader.
+     * <p/>
+     * The I/O thread reads, decompresses and decodes the data, and splits it into batches of lines that are parsed by the parser threads; if the lines of
+     * this layout can't be parsed independently (see <b>hasIndependentLines()</b>), the I/O thread also creates the records. The number of batches read
+     * ahead is bounded.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param options options to use (null means default option values will be used)
+     * @param numParsers number of parser threads
+     * @return a record reader
+     */
+    public RecordReader openPipelinedReader(File file, String zipEntry, RecordLayoutOptions options, int numParsers) throws IOException {
+        InputStream is = LayoutUtils.createInputStream(file, zipEntry, getCompressionThreads(options));
+        try {
+            // some CSV layout need to ignore the first line (see issue #2)
+            boolean skipFirstLine = this instanceof CommaSeparatedLayout && ((CommaSeparatedLayout)this).ignoreFirstLine();
+            return new PipelinedRecordReader(this, is, options, numParsers, skipFirstLine);
+        }
+        catch (RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next records from the provided reader into a batch of re-usable records; calling this method repeatedly with the same batch processes data
+     * of any size without allocating new records (the containers of the batch are cleared and filled again).
+     * <p/>
+     * The records of the returned batch are only valid until the batch is filled again; a record that needs to be kept must be copied.
+     * @param reader the reader to read the records from (created by one of the <b>openReader()</b> methods)
+     * @param maxRecords maximum number of records to read
+     * @param reuse the batch to fill, null to create a new one
+     * @return the filled batch (the provided one, if any), empty if there are no more records
+     */
+    public RecordBatch readBatch(RecordReader reader, int maxRecords, RecordBatch reuse) throws IOException {
+        RecordBatch batch = reuse;
+        if (batch == null) {
+            LayoutRecord.Schema schema = getRecordSchema(reader._options);
+            batch = schema == null ? new RecordBatch(getAllFields().size()) : new RecordBatch(schema);
+        }
+        batch.clear();
+        while (batch.size() < maxRecords) {
+            if (!reader.readRecord(batch.nextContainer()))
+                break;
+            batch.commit(reader.getLineNumber());
+        }
+        return batch;
+    }
+
+    /**
+     * Returns true if every line of the data is a record that can be created independently of the other lines using <b>createRecordFromLine()</b>;
+     * the pipelined readers parse such lines on several threads.
+     * @param options options to use (null means default option values will be used)
+     * @return true if the lines can be parsed independently
+     */
+    protected boolean hasIndependentLines(RecordLayoutOptions options) {
+        return true;
+    }
+
+    /**
+     * Returns true if the data can be split into lines directly on its bytes, and the records created from the bytes of the lines using
+     * <b>createRecordFromBytes()</b>; the pipelined readers then never decode the lines as a whole.
+     * @param options options to use (null means default option values will be used)
+     * @return true if the records can be created from the bytes of the lines
+     */
+    protected boolean canCreateRecordsFromBytes(RecordLayoutOptions options) {
+        return false;
+    }
+
+    /**
+     * Converts the given data line, provided as bytes (not including the line separator), into a map representing a record. By default, the line is
+     * decoded using the layout encoding and <b>createRecordFromLine()</b> is called; sub-classes can override this method to work directly on the bytes.
+     * @param bytes the bytes containing the data line
+     * @param offset offset of the data line
+     * @param length length of the data line
+     * @param lineNumber line number (use null if no line number available)
+     * @param options the options to use to create the line (pass null to use all default options)
+     * @return a map representing a record
+     */
+    protected Map<String, String> createRecordFromBytes(byte[] bytes, int offset, int length, Integer lineNumber, RecordLayoutOptions options) throws IOException {
+        return createRecordFromLine(new String(bytes, offset, length, getEncoding(options)), lineNumber, options);
+    }
+
+    /**
+     * Returns the keys of the records created by this layout with the provided options, if they are created as <b>LayoutRecord</b> instances; the batches
+     * created by <b>readBatch()</b> use it to create their containers.
+     * @param options options to use (null means default option values will be used)
+     * @return the schema of the records, null if the records are not <b>LayoutRecord</b> instances
+     */
+    protected LayoutRecord.Schema getRecordSchema(RecordLayoutOptions options) {
+        return null;
+    }
+
+    /**
+     * Returns a stream of the records created from the data in the file passed in; the records are read lazily, allowing to process files of any size.
+     * <p/>
+     * The returned stream must be closed (typically in a try-with-resources statement); any IO exception happening while reading the data is
+     * wrapped into an unchecked IO exception.
+     * @param file File containing data
+     * @return a stream of records
+     */
+    public Stream<Map<String, String>> streamRecords(File file) throws IOException {
+        return streamRecords(file, null, null);
+    }
+
+    /**
+     * Returns a stream of the records created from the data in the file passed in; the records are read lazily, allowing to process files of any size.
+     * <p/>
+     * The returned stream must be closed (typically in a try-with-resources statement); any IO exception happening while reading the data is
+     * wrapped into an unchecked IO exception.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param options options to use (null means default option values will be used)
+     * @return a stream of records
+     */
+    public Stream<Map<String, String>> streamRecords(File file, String zipEntry, RecordLayoutOptions options) throws IOException {
+        return openReader(file, zipEntry, options).stream();
+    }
+
+    /**
+     * Builds an index of the records of the provided file, allowing to read any record without reading the file from its beginning.
+     * @param file File containing data (can be a GZip file, but not a zip file)
+     * @param options options to use (null means default option values will be used)
+     * @return the index, never null
+     * @see RecordFileIndex
+     */
+    public RecordFileIndex buildRecordIndex(File file, RecordLayoutOptions options) throws IOException {
+        return RecordFileIndex.build(this, file, options, RecordFileIndex.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Returns the index of the records of the provided file; the index is saved next to the data file (see <b>RecordFileIndex.getIndexFile()</b>) so it
+     * only needs to be built again if the data file changes.
+     * @param file File containing data (can be a GZip file, but not a zip file)
+     * @param options options to use (null means default option values will be used)
+     * @return the index, never null
+     * @see RecordFileIndex
+     */
+    public RecordFileIndex openRecordIndex(File file, RecordLayoutOptions options) throws IOException {
+        File indexFile = RecordFileIndex.getIndexFile(file);
+        if (indexFile.exists()) {
+            RecordFileIndex index = RecordFileIndex.load(this, file, indexFile, options);
+            if (index != null)
+                return index;
+        }
+
+        RecordFileIndex index = buildRecordIndex(file, options);
+        index.save(indexFile);
+        return index;
     }
 
     /**
@@ -458,6 +769,20 @@ public abstract class RecordLayout implements Layout {
      */
     public abstract String createLineFromRecord(Map<String, String> rec, RecordLayoutOptions options) throws IOException;
 
+    /**
+     * Converts the provided record into a data line; used by the record writers.
+     * <p/>
+     * This default implementation ignores the provided buffer and wraps the result of <b>createLineFromRecord()</b>; layouts can override it to write the
+     * line into the provided buffer (if it's big enough) instead of creating a new string for each record.
+     * @param rec record to convert
+     * @param options the options to use to create the line (pass null to use all default options)
+     * @param reuse the buffer returned by the previous call (null for the first call)
+     * @return a buffer containing the data line, ready to be read
+     */
+    protected CharBuffer createLineFromRecord(Map<String, String> rec, RecordLayoutOptions options, CharBuffer reuse) throws IOException {
+        return CharBuffer.wrap(createLineFromRecord(rec, options));
+    }
+
     /**
      * Returns a layout info object if this instance of a layout can handle the provided data line, returns null otherwise.
      * @param firstRecord first record data line
@@ -478,4 +803,16 @@ public abstract class RecordLayout implements Layout {
             return null;
         }
     }
+
+    @Override
+    public LayoutInfo buildFileInfoFromSample(LayoutDiscoverySample sample, LayoutInfoDiscoveryOptions options) {
+        // a layout reading the file itself needs to keep doing so
+        if (LayoutUtils.isMethodOverridden(this, RecordLayout.class, "buildFileInfo", File.class, String.class, LayoutInfoDiscoveryOptions.class))
+            return buildFileInfo(sample.getFile(), sample.getZipEntryName(), options);
+
+        String firstLine = sample.getFirstLine(getEncoding(null));
+        if (firstLine == null) // the first line might be too long for the sample
+            return sample.isTruncated() ? buildFileInfo(sample.getFile(), sample.getZipEntryName(), options) : null;
+        return buildFileInfo(firstLine, options);
+    }
 }
@@ -5,6 +5,10 @@ package com.imsweb.layout.record;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 public class RecordLayoutOptions {
 
@@ -45,6 +49,17 @@ public class RecordLayoutOptions {
     // when writing flat records, how to deal with a value too long (defaults to throwing an exception)
     protected String _valueTooLongHandling;
 
+    // when reading records, the names of the only fields to read; all the fields are read if no projection is set (defaults to null)
+    protected Set<String> _projectedFields;
+
+    // when reading records, the NAACCR item numbers of the only fields to read; all the fields are read if no projection is set (defaults to null)
+    protected Set<Integer> _projectedNaaccrItemNumbers;
+
+    // when reading records, do we need to share the strings of the values repeated in many records (defaults to false)
+    protected boolean _internValues;
+
+    // when reading and writing GZipped files, the number of threads to use to decompress and compress the data (defaults to 1)
+    protected int _compressionThreads;
 
     /**
      * Default Constructor.
@@ -59,6 +74,7 @@ public class RecordLayoutOptions {
         _quoteAllValues = false;
         _allowCharactersAfterLastQuote = false;
         _valueTooLongHandling = VAL_TOO_LONG_EXCEPTION;
+        _compressionThreads = 1;
     }
 
     public boolean trimValues() {
@@ -134,4 +150,81 @@ public class RecordLayoutOptions {
     public void setValueTooLongHandling(String valueTooLongHandling) {
         _valueTooLongHandling = valueTooLongHandling;
     }
+
+    public boolean internValues() {
+        return _internValues;
+    }
+
+    /**
+     * Sets whether the records should share the strings of the values that are repeated in many records (like codes with a small domain); this reduces
+     * the memory used by the records that are kept in memory. Fields with too many distinct values are detected while reading, and their values are not
+     * shared.
+     * @param internValues whether the values should be shared
+     */
+    public void setInternValues(boolean internValues) {
+        _internValues = internValues;
+    }
+
+    public int getCompressionThreads() {
+        return _compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to decompress and compress the GZipped files read and written with these options; with more than one thread,
+     * the files are written as a sequence of GZip members compressed in parallel (still readable by any GZip tool), such files are decompressed in
+     * parallel, and other GZipped files are decompressed by a read-ahead thread.
+     * @param compressionThreads number of threads, must be at least 1
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 1)
+            throw new IllegalStateException("Invalid number of compression threads: " + compressionThreads);
+        _compressionThreads = compressionThreads;
+    }
+
+    public Set<String> getProjectedFields() {
+        return _projectedFields;
+    }
+
+    /**
+     * Sets the names of the fields to read; when a projection is set, only the projected fields are extracted from the data (this can be combined with
+     * the projected NAACCR item numbers). A projected sub-field is read even if its parent field is not projected.
+     * @param projectedFields names of the fields to read, null to remove the projection on the names
+     */
+    public void setProjectedFields(Collection<String> projectedFields) {
+        _projectedFields = projectedFields == null ? null : Collections.unmodifiableSet(new HashSet<>(projectedFields));
+    }
+
+    public Set<Integer> getProjectedNaaccrItemNumbers() {
+        return _projectedNaaccrItemNumbers;
+    }
+
+    /**
+     * Sets the NAACCR item numbers of the fields to read; when a projection is set, only the projected fields are extracted from the data (this can be
+     * combined with the projected field names).
+     * @param projectedNaaccrItemNumbers NAACCR item numbers of the fields to read, null to remove the projection on the NAACCR item numbers
+     */
+    public void setProjectedNaaccrItemNumbers(Collection<Integer> projectedNaaccrItemNumbers) {
+        _projectedNaaccrItemNumbers = projectedNaaccrItemNumbers == null ? null : Collections.unmodifiableSet(new HashSet<>(projectedNaaccrItemNumbers));
+    }
+
+    /**
+     * Returns true if a projection is set (meaning not all the fields are read).
+     * @return true if a projection is set
+     */
+    public boolean hasProjection() {
+        return _projectedFields != null || _projectedNaaccrItemNumbers != null;
+    }
+
+    /**
+     * Returns true if the provided field needs to be read (always true if no projection is set).
+     * @param name field name
+     * @param naaccrItemNumber field NAACCR item number, can be null
+     * @return true if the field needs to be read
+     */
+    public boolean isFieldProjected(String name, Integer naaccrItemNumber) {
+        if (!hasProjection())
+            return true;
+        return (_projectedFields != null && _projectedFields.contains(name)) || (naaccrItemNumber != null && _projectedNaaccrItemNumbers != null
+                && _projectedNaaccrItemNumbers.contains(naaccrItemNumber));
+    }
 }
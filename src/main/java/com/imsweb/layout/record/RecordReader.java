@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A reader returning the records of a record layout one at a time, allowing to process data of any size in constant memory.
+ * <br/><br/>
+ * Instances are created using the <b>openReader()</b> methods of the layouts; they can be used either through the <b>readRecord()</b> method,
+ * as an iterator or as a stream of records. The iterator and stream methods wrap any IO exception into an unchecked one.
+ * <br/><br/>
+ * This class is not thread-safe; closing the reader closes the underlying reader.
+ */
+public class RecordReader implements Iterator<Map<String, String>>, Closeable {
+
+    // the layout used to create the records
+    protected RecordLayout _layout;
+
+    // the options to use (can be null)
+    protected RecordLayoutOptions _options;
+
+    // the underlying reader
+    protected LineNumberReader _reader;
+
+    // next record (returned by the iterator)
+    private Map<String, String> _next;
+
+    // whether the next record has been fetched already
+    private boolean _nextFetched;
+
+    /**
+     * Constructor.
+     * @param layout the layout to use to create the records, cannot be null
+     * @param reader the reader to read the data from, cannot be null
+     * @param options options to use (null means default option values will be used)
+     */
+    public RecordReader(RecordLayout layout, Reader reader, RecordLayoutOptions options) {
+        _layout = layout;
+        _options = options;
+        _reader = reader instanceof LineNumberReader ? (LineNumberReader)reader : new LineNumberReader(reader);
+    }
+
+    /**
+     * Constructor for sub-classes that don't read their data from a character reader; such sub-classes must override the <b>fetchNextRecord()</b>,
+     * <b>getLineNumber()</b> and <b>close()</b> methods, and either <b>readLine()</b> or <b>skipLines()</b>.
+     * @param layout the layout to use to create the records, cannot be null
+     * @param options options to use (null means default option values will be used)
+     */
+    protected RecordReader(RecordLayout layout, RecordLayoutOptions options) {
+        _layout = layout;
+        _options = options;
+    }
+
+    /**
+     * Skips the requested number of lines (for example, a header line).
+     * @param numLines number of lines to skip
+     */
+    public void skipLines(int numLines) throws IOException {
+        for (int i = 0; i < numLines; i++)
+            if (readLine() == null)
+                break;
+    }
+
+    /**
+     * Reads the next line from the underlying reader.
+     * @return the next line, null if there are no more lines
+     */
+    protected String readLine() throws IOException {
+        return _reader.readLine();
+    }
+
+    /**
+     * Returns the current line number (the number of lines read so far from the underlying reader).
+     * @return the current line number
+     */
+    public int getLineNumber() {
+        return _reader.getLineNumber();
+    }
+
+    /**
+     * Returns the next record, null if there are no more records.
+     * @return the next record, maybe null
+     */
+    public Map<String, String> readRecord() throws IOException {
+        if (_nextFetched) {
+            _nextFetched = false;
+            Map<String, String> result = _next;
+            _next = null;
+            return result;
+        }
+        return fetchNextRecord();
+    }
+
+    /**
+     * Reads the next record into the provided container, which is cleared first; this allows re-using the same container for many records.
+     * @param target the container to fill, cannot be null
+     * @return true if a record was read, false if there are no more records
+     */
+    public boolean readRecord(Map<String, String> target) throws IOException {
+        target.clear();
+        if (_nextFetched) {
+            _nextFetched = false;
+            Map<String, String> result = _next;
+            _next = null;
+            if (result == null)
+                return false;
+            target.putAll(result);
+            return true;
+        }
+        return fetchNextRecord(target);
+    }
+
+    /**
+     * Reads the next record from the underlying reader into the provided (empty) container; by default the record is created by <b>fetchNextRecord()</b>
+     * and copied into the container, sub-classes can override this method to fill the container directly.
+     * @param target the container to fill
+     * @return true if a record was read, false if there are no more records
+     */
+    protected boolean fetchNextRecord(Map<String, String> target) throws IOException {
+        Map<String, String> rec = fetchNextRecord();
+        if (rec == null)
+            return false;
+        target.putAll(rec);
+        return true;
+    }
+
+    /**
+     * Reads the next record from the underlying reader; sub-classes can override this method to change the way the records are read.
+     * @return the next record, null if there are no more records
+     */
+    protected Map<String, String> fetchNextRecord() throws IOException {
+        String line = readLine();
+        if (line == null)
+            return null;
+        return _layout.createRecordFromLine(line, getLineNumber(), _options);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!_nextFetched) {
+            try {
+                _next = fetchNextRecord();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            _nextFetched = true;
+        }
+        return _next != null;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        _nextFetched = false;
+        Map<String, String> result = _next;
+        _next = null;
+        return result;
+    }
+
+    /**
+     * Returns a sequential stream of the remaining records; closing the stream closes this reader.
+     * @return a stream of records
+     */
+    public Stream<Map<String, String>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(() -> {
+            try {
+                close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.close();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded, per-field tables of values allowing the records to share the strings of the values appearing many times in the data (typically codes with a
+ * small domain like sex, behavior or grade); used by the layouts when the "intern values" option is set.
+ * <br/><br/>
+ * Each field has its own table, allocated when the first value is interned. A field whose table fills up is considered to have too many distinct values:
+ * its table is released and fresh strings are returned for it from then on. Long values are never interned.
+ * <br/><br/>
+ * Instances of this class are thread-safe without locking: concurrent updates may occasionally create two equal strings, which doesn't affect the
+ * returned values.
+ */
+public final class RecordValueInterner {
+
+    // number of slots of a table
+    private static final int _TABLE_SIZE = 1024;
+
+    // maximum number of distinct values for a field (the tables are never more than half full)
+    private static final int _MAX_DISTINCT_VALUES = _TABLE_SIZE / 2;
+
+    // maximum length of the interned values
+    private static final int _MAX_VALUE_LENGTH = 32;
+
+    // table used for the fields with too many distinct values
+    private static final String[] _DISABLED = new String[0];
+
+    // the table of each field (null until a value is interned, _DISABLED once the field has too many distinct values)
+    private final String[][] _tables;
+
+    // the number of distinct values in each table
+    private final int[] _counts;
+
+    /**
+     * Constructor.
+     * @param numFields number of fields (the fields are identified by their index)
+     */
+    public RecordValueInterner(int numFields) {
+        _tables = new String[numFields][];
+        _counts = new int[numFields];
+    }
+
+    /**
+     * Returns the shared string for the provided value.
+     * @param field field index
+     * @param value value, cannot be null
+     * @return a string equal to the provided value (the provided value itself if it's not shared)
+     */
+    public String intern(int field, String value) {
+        String[] table = getTable(field, value.length());
+        if (table == null)
+            return value;
+
+        int hash = hash(value, 0, value.length());
+        for (int i = 0, slot = hash & (_TABLE_SIZE - 1); i < _TABLE_SIZE; i++, slot = (slot + 1) & (_TABLE_SIZE - 1)) {
+            String candidate = table[slot];
+            if (candidate == null)
+                return add(field, table, slot, value);
+            if (candidate.hashCode() == value.hashCode() && candidate.equals(value))
+                return candidate;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the shared string for the provided range of characters.
+     * @param field field index
+     * @param data characters containing the value
+     * @param start start of the value (inclusive)
+     * @param end end of the value (exclusive)
+     * @return the value, never null
+     */
+    public String intern(int field, CharSequence data, int start, int end) {
+        String[] table = getTable(field, end - start);
+        if (table == null)
+            return data.subSequence(start, end).toString();
+
+        for (int i = 0, slot = hash(data, start, end) & (_TABLE_SIZE - 1); i < _TABLE_SIZE; i++, slot = (slot + 1) & (_TABLE_SIZE - 1)) {
+            String candidate = table[slot];
+            if (candidate == null)
+                return add(field, table, slot, data.subSequence(start, end).toString());
+            if (matches(candidate, data, start, end))
+                return candidate;
+        }
+        return data.subSequence(start, end).toString();
+    }
+
+    /**
+     * Returns the shared string for the provided range of single-byte (ISO-8859-1) characters.
+     * @param field field index
+     * @param bytes bytes containing the value
+     * @param start start of the value (inclusive)
+     * @param end end of the value (exclusive)
+     * @return the value, never null
+     */
+    public String intern(int field, byte[] bytes, int start, int end) {
+        String[] table = getTable(field, end - start);
+        if (table == null)
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + (bytes[i] & 0xFF);
+
+        for (int i = 0, slot = spread(hash) & (_TABLE_SIZE - 1); i < _TABLE_SIZE; i++, slot = (slot + 1) & (_TABLE_SIZE - 1)) {
+            String candidate = table[slot];
+            if (candidate == null)
+                return add(field, table, slot, new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+            if (candidate.length() == end - start) {
+                int j = 0;
+                while (j < end - start && candidate.charAt(j) == (bytes[start + j] & 0xFF))
+                    j++;
+                if (j == end - start)
+                    return candidate;
+            }
+        }
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns true if the values of the requested field are still interned (meaning the field doesn't have too many distinct values).
+     * @param field field index
+     * @return true if the values of the field are interned
+     */
+    public boolean isInterning(int field) {
+        return _tables[field] != _DISABLED;
+    }
+
+    // returns the table to use for the requested field, null if the value shouldn't be interned
+    private String[] getTable(int field, int length) {
+        if (length > _MAX_VALUE_LENGTH)
+            return null;
+        String[] table = _tables[field];
+        if (table == null) {
+            table = new String[_TABLE_SIZE];
+            _tables[field] = table;
+        }
+        return table == _DISABLED ? null : table;
+    }
+
+    private String add(int field, String[] table, int slot, String value) {
+        table[slot] = value;
+        if (++_counts[field] >= _MAX_DISTINCT_VALUES)
+            _tables[field] = _DISABLED;
+        return value;
+    }
+
+    // same hash as String.hashCode(), so the hash of a string can be computed from any representation
+    private static int hash(CharSequence data, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + data.charAt(i);
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String candidate, CharSequence data, int start, int end) {
+        if (candidate.length() != end - start)
+            return false;
+        for (int i = 0; i < end - start; i++)
+            if (candidate.charAt(i) != data.charAt(start + i))
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import com.imsweb.layout.LayoutUtils;
+
+/**
+ * A writer converting records into data lines (each followed by the line separator) and writing them to a file or a stream, allowing to write data of any
+ * size without building the full list of records first.
+ * <br/><br/>
+ * Instances are created using the <b>openWriter()</b> methods of the layouts; the options (encoding, line separator, etc...) are resolved once when the
+ * writer is created. The lines are encoded into a re-usable buffer that is only written when it's full (or when the writer is flushed or closed).
+ * <br/><br/>
+ * This class is not thread-safe; closing the writer closes the underlying file or stream.
+ */
+public class RecordWriter implements Closeable, Flushable {
+
+    // default size of the buffer
+    private static final int _DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    // the layout used to create the lines
+    protected RecordLayout _layout;
+
+    // the options to use (can be null)
+    protected RecordLayoutOptions _options;
+
+    // the underlying stream (null if the data is written to a file channel)
+    private final OutputStream _outputStream;
+
+    // the underlying file channel (null if the data is written to a stream)
+    private final FileChannel _channel;
+
+    // whether the underlying stream needs to be closed when the writer is closed
+    private final boolean _closeUnderlying;
+
+    // the encoder
+    private final CharsetEncoder _encoder;
+
+    // the line separator
+    private final CharBuffer _lineSeparator;
+
+    // the buffer containing the encoded lines
+    private final ByteBuffer _buffer;
+
+    // buffer re-used for the lines (if supported by the layout)
+    private CharBuffer _line;
+
+    // number of records written so far
+    private long _numRecords;
+
+    // number of bytes written so far
+    private long _numBytes;
+
+    // whether the writer has been closed
+    private boolean _closed;
+
+    /**
+     * Constructor; the data is written to the provided file (which can be compressed, based on its extension).
+     * @param layout the layout to use to create the lines, cannot be null
+     * @param file the file to write to, cannot be null
+     * @param options options to use (null means default option values will be used)
+     */
+    public RecordWriter(RecordLayout layout, File file, RecordLayoutOptions options) throws IOException {
+        _layout = layout;
+        _options = options;
+        // the encoder is created first, so nothing needs to be closed if the encoding is invalid
+        _encoder = createEncoder(layout, options);
+        _lineSeparator = CharBuffer.wrap(layout.getLineSeparator(options));
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".gz") || name.endsWith(".gzip") || name.endsWith(".zip")) {
+            _outputStream = LayoutUtils.createOutputStream(file, layout.getCompressionThreads(options));
+            _channel = null;
+        }
+        else {
+            _outputStream = null;
+            _channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        _closeUnderlying = true;
+        _buffer = ByteBuffer.allocate(_DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor; the data is written to the provided stream.
+     * @param layout the layout to use to create the lines, cannot be null
+     * @param outputStream the stream to write to, cannot be null
+     * @param options options to use (null means default option values will be used)
+     */
+    public RecordWriter(RecordLayout layout, OutputStream outputStream, RecordLayoutOptions options) {
+        this(layout, outputStream, options, true, _DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor used by the layouts to write to a stream they don't own.
+     * @param layout the layout to use to create the lines, cannot be null
+     * @param outputStream the stream to write to, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @param closeUnderlying whether the stream should be closed when this writer is closed
+     * @param bufferSize size of the buffer
+     */
+    RecordWriter(RecordLayout layout, OutputStream outputStream, RecordLayoutOptions options, boolean closeUnderlying, int bufferSize) {
+        _layout = layout;
+        _options = options;
+        _outputStream = outputStream;
+        _channel = null;
+        _closeUnderlying = closeUnderlying;
+        _encoder = createEncoder(layout, options);
+        _lineSeparator = CharBuffer.wrap(layout.getLineSeparator(options));
+        _buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    private static CharsetEncoder createEncoder(RecordLayout layout, RecordLayoutOptions options) {
+        // same behavior as String.getBytes(), invalid characters are replaced
+        return layout.getEncoding(options).newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Writes the provided record, followed by the line separator.
+     * @param rec record to write
+     */
+    public void write(Map<String, String> rec) throws IOException {
+        if (_closed)
+            throw new IOException("Writer has been closed");
+
+        _line = _layout.createLineFromRecord(rec, _options, _line);
+        encode(_line);
+        encode(_lineSeparator.rewind());
+        _numRecords++;
+    }
+
+    /**
+     * Writes the provided records, each followed by the line separator.
+     * @param records records to write
+     */
+    public void writeAll(Iterable<Map<String, String>> records) throws IOException {
+        for (Map<String, String> rec : records)
+            write(rec);
+    }
+
+    /**
+     * Returns the number of records written so far.
+     * @return number of records
+     */
+    public long getNumRecords() {
+        return _numRecords;
+    }
+
+    /**
+     * Returns the number of bytes written so far (including the bytes that haven't been flushed yet); if the data is compressed, this is the number of
+     * bytes before the compression.
+     * @return number of bytes
+     */
+    public long getNumBytes() {
+        return _numBytes + _buffer.position();
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        while (true) {
+            CoderResult result = _encoder.encode(chars, _buffer, false);
+            if (result.isOverflow())
+                drain();
+            else if (result.isUnderflow())
+                break;
+            else
+                throw new CharacterCodingException();
+        }
+    }
+
+    // writes the content of the buffer to the underlying stream or channel
+    private void drain() throws IOException {
+        _buffer.flip();
+        _numBytes += _buffer.remaining();
+        if (_channel != null) {
+            while (_buffer.hasRemaining())
+                _channel.write(_buffer);
+        }
+        else
+            _outputStream.write(_buffer.array(), _buffer.arrayOffset(), _buffer.limit());
+        _buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (_closed)
+            return;
+        drain();
+        if (_outputStream != null)
+            _outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+        _closed = true;
+
+        try {
+            // some encoders need to write a few more bytes once all the data has been encoded
+            CharBuffer empty = CharBuffer.allocate(0);
+            while (_encoder.encode(empty, _buffer, true).isOverflow())
+                drain();
+            while (_encoder.flush(_buffer).isOverflow())
+                drain();
+            drain();
+        }
+        finally {
+            if (_closeUnderlying) {
+                if (_channel != null)
+                    _channel.close();
+                else
+                    _outputStream.close();
+            }
+        }
+    }
+}
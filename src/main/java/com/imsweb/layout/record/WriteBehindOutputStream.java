@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Output stream handing the data written to it to a dedicated write-behind thread, which writes it (and compresses it, if the underlying stream is
+ * compressed) while the writing thread keeps producing data.
+ * <br/><br/>
+ * Each write is copied into its own block, so this stream is meant to receive large writes (like the encoded buffers of a record writer). The number of
+ * blocks waiting to be written is bounded. Flushing the stream waits for all the blocks to be written; an exception happening on the write-behind thread
+ * (checked or not) is reported by the next call to this stream, and by all the following ones. This class is not thread-safe.
+ */
+final class WriteBehindOutputStream extends OutputStream {
+
+    // the underlying stream
+    private final OutputStream _out;
+
+    // the blocks to write, and the flush requests
+    private final BlockingQueue<Object> _queue;
+
+    // the write-behind thread
+    private final Thread _thread;
+
+    // the exception that happened on the write-behind thread, if any
+    private volatile IOException _error;
+
+    // whether the stream has been closed
+    private boolean _closed;
+
+    /**
+     * Constructor.
+     * @param out the underlying stream (closing this stream closes it)
+     * @param maxBlocks maximum number of blocks waiting to be written
+     */
+    WriteBehindOutputStream(OutputStream out, int maxBlocks) {
+        _out = out;
+        _queue = new ArrayBlockingQueue<>(maxBlocks);
+        _thread = new Thread(this::writeBlocks, "record-writer-io");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkState();
+        if (len > 0)
+            put(Arrays.copyOfRange(b, off, off + len));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkState();
+        waitForBlocks();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+
+        try {
+            if (_error == null)
+                waitForBlocks();
+        }
+        finally {
+            _closed = true;
+            _thread.interrupt();
+            _out.close();
+        }
+        if (_error != null)
+            throw new IOException(_error.getMessage(), _error);
+    }
+
+    // waits for all the blocks to be written and the underlying stream to be flushed
+    private void waitForBlocks() throws IOException {
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        put(flushed);
+        try {
+            flushed.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the data to be written", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // writes the blocks on the write-behind thread
+    @SuppressWarnings("unchecked")
+    private void writeBlocks() {
+        try {
+            while (true) {
+                Object item = _queue.take();
+                if (item instanceof byte[]) {
+                    // once an exception happened, the remaining blocks are ignored
+                    if (_error == null)
+                        writeBlock((byte[])item);
+                }
+                else {
+                    // once an exception happened, the flush requests fail (the thread keeps running so the writing thread never blocks)
+                    if (_error == null)
+                        flushBlocks();
+                    if (_error == null)
+                        ((CompletableFuture<Void>)item).complete(null);
+                    else
+                        ((CompletableFuture<Void>)item).completeExceptionally(_error);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBlock(byte[] block) {
+        try {
+            _out.write(block);
+        }
+        catch (IOException | RuntimeException e) {
+            setError(e);
+        }
+    }
+
+    private void flushBlocks() {
+        try {
+            _out.flush();
+        }
+        catch (IOException | RuntimeException e) {
+            setError(e);
+        }
+    }
+
+    private void setError(Exception e) {
+        _error = e instanceof IOException ? (IOException)e : new IOException(e.getMessage(), e);
+    }
+
+    private void put(Object item) throws IOException {
+        try {
+            _queue.put(item);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the data to be written", e);
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (_closed)
+            throw new IOException("Stream has been closed");
+        if (_error != null)
+            throw new IOException(_error.getMessage(), _error);
+    }
+}
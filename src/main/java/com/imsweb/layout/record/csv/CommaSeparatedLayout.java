@@ -6,6 +6,7 @@ package com.imsweb.layout.record.csv;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.net.URL;
 import java.nio.file.Files;
 import java.util.ArrayList;
@@ -28,8 +29,12 @@ import com.imsweb.layout.LayoutFactory;
 import com.imsweb.layout.LayoutInfo;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
 import com.imsweb.layout.LayoutUtils;
+import com.imsweb.layout.record.LayoutRecord;
 import com.imsweb.layout.record.RecordLayout;
 import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
+import com.imsweb.layout.record.RecordValueInterner;
+import com.imsweb.layout.record.csv.CommaSeparatedRecordHandler.ParsedRecord;
 import com.imsweb.layout.record.csv.xml.CommaSeparatedLayoutFieldXmlDto;
 import com.imsweb.layout.record.csv.xml.CommaSeparatedLayoutXmlDto;
 
@@ -71,6 +76,16 @@ public class CommaSeparatedLayout extends RecordLayout {
      */
     protected Map<Integer, CommaSeparatedField> _cachedByNaaccrItemNumber = new HashMap<>();
 
+    /**
+     * The shared values of the fields, by (0-based) index (used when the values are interned; created lazily and reset when the fields change)
+     */
+    private volatile RecordValueInterner _interner;
+
+    /**
+     * The keys of the records, by (0-based) index (created lazily and reset when the fields change)
+     */
+    private volatile LayoutRecord.Schema _schema;
+
     /**
      * Default constructor.
      */
@@ -194,6 +209,9 @@ public class CommaSeparatedLayout extends RecordLayout {
     }
 
     private void addField(CommaSeparatedField field) {
+        // the interned values are indexed by field index
+        _interner = null;
+        _schema = null;
         // update collection of fields
         _fields.add(field);
         // update name cache
@@ -331,8 +349,6 @@ public class CommaSeparatedLayout extends RecordLayout {
 
     @Override
     public Map<String, String> createRecordFromLine(String line, Integer lineNumber, RecordLayoutOptions options) throws IOException {
-        Map<String, String> result = new HashMap<>();
-
         Integer lineNumberSafe = lineNumber == null ? Integer.valueOf(1) : lineNumber;
 
         // handle special case
@@ -340,36 +356,188 @@ public class CommaSeparatedLayout extends RecordLayout {
             if (enforceStrictFormat(options))
                 throw new IOException("line " + lineNumberSafe + ": got en empty line");
             else
-                return result;
+                return createRecord(options);
+        }
+
+        // parse the line (only once, even if the format needs to be enforced)
+        List<String> values;
+        try {
+            values = parseLine(line, options);
+        }
+        catch (IOException e) {
+            if (enforceStrictFormat(options))
+                throw new IOException("line " + lineNumberSafe + ": " + e.getMessage());
+            throw e;
+        }
+        if (enforceStrictFormat(options) && values.size() != _numFields)
+            throw new IOException("line " + lineNumberSafe + ": wrong number of fields, expected " + _numFields + " but got " + values.size());
+
+        return createRecordFromValues(values, options);
+    }
+
+    /**
+     * Returns whether characters are allowed after the closing quote of a value; they are never allowed when the strict format is enforced
+     * (the strict format has always been validated using the default options).
+     * @param options the options to use (can be null)
+     * @return whether characters are allowed after the closing quote of a value
+     */
+    boolean allowCharactersAfterLastQuote(RecordLayoutOptions options) {
+        return options != null && options.allowCharactersAfterLastQuote() && !options.enforceStrictFormat();
+    }
+
+    /**
+     * Returns whether the value at each (0-based) index is needed to create the records (the values after the last index are not needed).
+     * @param options the options to use (can be null)
+     * @return whether each value is needed
+     */
+    boolean[] getNeededValues(RecordLayoutOptions options) {
+        boolean[] needed = new boolean[_fields.stream().mapToInt(CommaSeparatedField::getIndex).max().orElse(0)];
+        for (CommaSeparatedField field : _fields)
+            if (options == null || options.isFieldProjected(field.getName(), field.getNaaccrItemNum()))
+                needed[field.getIndex() - 1] = true;
+        return needed;
+    }
+
+    /**
+     * Converts the given parsed record into a map of values; used by the reader parsing the entire data at once.
+     * @param parsedRecord parsed record
+     * @param lineNumber line number of the record
+     * @param options the options to use (can be null)
+     * @return a map representing a record
+     */
+    Map<String, String> createRecordFromParsedRecord(ParsedRecord parsedRecord, int lineNumber, RecordLayoutOptions options) throws IOException {
+        Map<String, String> result = createRecord(options);
+        fillRecordFromParsedRecord(parsedRecord, lineNumber, options, result);
+        return result;
+    }
+
+    /**
+     * Same as <b>createRecordFromParsedRecord()</b>, but the values are put into the provided (empty) container.
+     */
+    void fillRecordFromParsedRecord(ParsedRecord parsedRecord, int lineNumber, RecordLayoutOptions options, Map<String, String> result) throws IOException {
+        // an empty line doesn't contain any value
+        if (parsedRecord._fieldCount == 0) {
+            if (enforceStrictFormat(options))
+                throw new IOException("line " + lineNumber + ": got en empty line");
+            else
+                return;
         }
 
-        // if we need to enforce the format, validate the line
-        if (enforceStrictFormat(options)) {
-            String validationMsg = validateLine(line, lineNumberSafe);
-            if (validationMsg != null)
-                throw new IOException(validationMsg);
+        if (enforceStrictFormat(options) && parsedRecord._fieldCount != _numFields)
+            throw new IOException("line " + lineNumber + ": wrong number of fields, expected " + _numFields + " but got " + parsedRecord._fieldCount);
+
+        boolean trimValues = trimValues(options);
+        RecordValueInterner interner = internValues(options) ? getInterner() : null;
+        LayoutRecord rec = asLayoutRecord(result);
+        for (CommaSeparatedField field : _fields) {
+            int index = field.getIndex() - 1;
+
+            if (index >= parsedRecord._fieldCount)
+                break;
+
+            // the values that are not needed (not projected) are not available
+            String value = parsedRecord._values[index];
+            if (value == null)
+                continue;
+
+            if (trimValues && Boolean.TRUE.equals(field.getTrim()))
+                value = value.trim();
+
+            if (!value.isEmpty())
+                put(rec, result, field, index, interner == null ? value : interner.intern(index, value));
         }
+    }
 
-        // parse the line
-        List<String> values = parseLine(line, options);
+    private Map<String, String> createRecordFromValues(List<String> values, RecordLayoutOptions options) {
+        Map<String, String> result = createRecord(options);
+        LayoutRecord rec = asLayoutRecord(result);
+
+        boolean trimValues = trimValues(options);
+        boolean projection = options != null && options.hasProjection();
+        RecordValueInterner interner = internValues(options) ? getInterner() : null;
         for (CommaSeparatedField field : _fields) {
             int index = field.getIndex() - 1;
 
             if (index >= values.size())
                 break;
 
+            if (projection && !options.isFieldProjected(field.getName(), field.getNaaccrItemNum()))
+                continue;
+
             String value = values.get(index);
-            String trimmedValue = value.trim();
-            if (trimValues(options) && Boolean.TRUE.equals(field.getTrim()))
-                value = trimmedValue;
+            if (trimValues && Boolean.TRUE.equals(field.getTrim()))
+                value = value.trim();
 
             if (!value.isEmpty())
-                result.put(field.getName(), value);
+                put(rec, result, field, index, interner == null ? value : interner.intern(index, value));
         }
 
         return result;
     }
 
+    // returns the provided record if its values can be set by index, null otherwise
+    private LayoutRecord asLayoutRecord(Map<String, String> result) {
+        return result instanceof LayoutRecord && ((LayoutRecord)result).getSchema() == getSchema() ? (LayoutRecord)result : null;
+    }
+
+    private static void put(LayoutRecord rec, Map<String, String> result, CommaSeparatedField field, int index, String value) {
+        // the schema doesn't contain the fields sharing their index or their name with a previous field, those are added by name
+        if (rec != null && field.getName() != null && rec.getSchema().getName(index) == field.getName())
+            rec.setValue(index, value);
+        else
+            result.put(field.getName(), value);
+    }
+
+    // creates an empty record; the records of a projection are hash maps (a layout record would have slots for all the fields)
+    private Map<String, String> createRecord(RecordLayoutOptions options) {
+        LayoutRecord.Schema schema = getRecordSchema(options);
+        return schema == null ? new HashMap<>() : new LayoutRecord(schema);
+    }
+
+    @Override
+    protected LayoutRecord.Schema getRecordSchema(RecordLayoutOptions options) {
+        return options != null && options.hasProjection() ? null : getSchema();
+    }
+
+    private LayoutRecord.Schema getSchema() {
+        LayoutRecord.Schema schema = _schema;
+        if (schema == null) {
+            List<String> names = new ArrayList<>(Collections.nCopies(_fields.stream().mapToInt(CommaSeparatedField::getIndex).max().orElse(0), null));
+            for (CommaSeparatedField field : _fields)
+                if (names.get(field.getIndex() - 1) == null)
+                    names.set(field.getIndex() - 1, field.getName());
+            schema = new LayoutRecord.Schema(names);
+            _schema = schema;
+        }
+        return schema;
+    }
+
+    private RecordValueInterner getInterner() {
+        RecordValueInterner interner = _interner;
+        if (interner == null) {
+            interner = new RecordValueInterner(_fields.stream().mapToInt(CommaSeparatedField::getIndex).max().orElse(0));
+            _interner = interner;
+        }
+        return interner;
+    }
+
+    /**
+     * The returned reader parses the entire data at once (instead of parsing the lines one by one), allowing quoted values to contain line separators;
+     * the line-based reader is used if <b>createRecordFromLine()</b> is overridden.
+     */
+    @Override
+    protected RecordReader createRecordReader(Reader reader, RecordLayoutOptions options) throws IOException {
+        if (LayoutUtils.isMethodOverridden(this, CommaSeparatedLayout.class, "createRecordFromLine", String.class, Integer.class, RecordLayoutOptions.class))
+            return super.createRecordReader(reader, options);
+        return new CommaSeparatedRecordReader(this, reader, options);
+    }
+
+    @Override
+    protected boolean hasIndependentLines(RecordLayoutOptions options) {
+        // the data is read with a single CSV parser (quoted values can contain line separators), unless the lines are parsed by a sub-class
+        return LayoutUtils.isMethodOverridden(this, CommaSeparatedLayout.class, "createRecordFromLine", String.class, Integer.class, RecordLayoutOptions.class);
+    }
+
     @Override
     public LayoutInfo buildFileInfo(String firstRecord, LayoutInfoDiscoveryOptions options) {
         LayoutInfo result = null;
@@ -395,7 +563,7 @@ public class CommaSeparatedLayout extends RecordLayout {
     protected List<String> parseLine(String line, RecordLayoutOptions options) throws IOException {
         try (CsvReader<CsvRecord> reader = CsvReader.builder()
                 .fieldSeparator(_separator)
-                .allowExtraCharsAfterClosingQuote(options != null && options.allowCharactersAfterLastQuote())
+                .allowExtraCharsAfterClosingQuote(allowCharactersAfterLastQuote(options))
                 .ofCsvRecord(line)) {
             return reader.stream().flatMap(l -> l.getFields().stream()).collect(Collectors.toList());
         }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.csv;
+
+import de.siegmar.fastcsv.reader.AbstractBaseCsvCallbackHandler;
+import de.siegmar.fastcsv.reader.RecordType;
+
+/**
+ * CSV callback handler creating a string only for the values that are needed by the layout (the values of the fields, or of the projected fields);
+ * the other values are parsed but never copied.
+ */
+final class CommaSeparatedRecordHandler extends AbstractBaseCsvCallbackHandler<CommaSeparatedRecordHandler.ParsedRecord> {
+
+    // whether the value at each (0-based) index is needed
+    private final boolean[] _needed;
+
+    // the values of the current record
+    private String[] _values;
+
+    /**
+     * Constructor.
+     * @param needed whether the value at each (0-based) index is needed; the values after the last index are ignored
+     */
+    CommaSeparatedRecordHandler(boolean[] needed) {
+        _needed = needed;
+    }
+
+    @Override
+    protected void handleBegin(long startingLineNumber) {
+        _values = new String[_needed.length];
+    }
+
+    @Override
+    protected void handleField(int fieldIdx, char[] buf, int offset, int len, boolean quoted) {
+        if (fieldIdx < _needed.length && _needed[fieldIdx])
+            _values[fieldIdx] = new String(buf, offset, len);
+    }
+
+    @Override
+    protected ParsedRecord buildRecord() {
+        // an empty line doesn't contain any field
+        return new ParsedRecord(_values, getRecordType() == RecordType.EMPTY ? 0 : getFieldCount(), getStartingLineNumber());
+    }
+
+    /**
+     * A parsed record; only the needed values are available.
+     */
+    static final class ParsedRecord {
+
+        // the needed values (null for the values that are not needed or not available)
+        final String[] _values;
+
+        // the number of values in the record
+        final int _fieldCount;
+
+        // the line the record starts on
+        final long _lineNumber;
+
+        ParsedRecord(String[] values, int fieldCount, long lineNumber) {
+            _values = values;
+            _fieldCount = fieldCount;
+            _lineNumber = lineNumber;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.csv;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+import de.siegmar.fastcsv.reader.CloseableIterator;
+import de.siegmar.fastcsv.reader.CsvReader;
+
+import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
+import com.imsweb.layout.record.csv.CommaSeparatedRecordHandler.ParsedRecord;
+
+/**
+ * Record reader for CSV layouts using a single CSV parser for the entire data; unlike the line-based reader, it supports quoted values
+ * containing line separators (as written by the layout, following RFC 4180).
+ * <br/><br/>
+ * Only the values used by the layout (or by the projection of the options) are created, the other ones are parsed but ignored.
+ * <br/><br/>
+ * The line number of a record is the line on which it starts; skipping lines skips records (a quoted value can span several lines).
+ * <br/><br/>
+ * A quoted value that is never closed is reported as an error (instead of silently consuming the rest of the data).
+ */
+final class CommaSeparatedRecordReader extends RecordReader {
+
+    // the layout
+    private final CommaSeparatedLayout _csvLayout;
+
+    // the underlying reader
+    private final QuoteTrackingReader _dataReader;
+
+    // the CSV parser
+    private final CsvReader<ParsedRecord> _csvReader;
+
+    // the parsed records
+    private final CloseableIterator<ParsedRecord> _records;
+
+    // line number of the last returned record
+    private int _lineNumber;
+
+    /**
+     * Constructor.
+     * @param layout the layout to use to create the records
+     * @param reader the reader to read the data from
+     * @param options options to use (null means default option values will be used)
+     */
+    CommaSeparatedRecordReader(CommaSeparatedLayout layout, Reader reader, RecordLayoutOptions options) {
+        super(layout, options);
+        _csvLayout = layout;
+        _dataReader = new QuoteTrackingReader(reader, layout.getSeparator());
+        _csvReader = CsvReader.builder()
+                .fieldSeparator(layout.getSeparator())
+                .allowExtraCharsAfterClosingQuote(layout.allowCharactersAfterLastQuote(options))
+                .skipEmptyLines(false)
+                .allowMissingFields(true)
+                .allowExtraFields(true)
+                .build(new CommaSeparatedRecordHandler(layout.getNeededValues(options)), _dataReader);
+        _records = _csvReader.iterator();
+    }
+
+    @Override
+    public void skipLines(int numLines) throws IOException {
+        for (int i = 0; i < numLines; i++)
+            if (nextParsedRecord() == null)
+                break;
+    }
+
+    @Override
+    protected Map<String, String> fetchNextRecord() throws IOException {
+        ParsedRecord parsedRecord = nextParsedRecord();
+        if (parsedRecord == null)
+            return null;
+        return _csvLayout.createRecordFromParsedRecord(parsedRecord, _lineNumber, _options);
+    }
+
+    @Override
+    protected boolean fetchNextRecord(Map<String, String> target) throws IOException {
+        ParsedRecord parsedRecord = nextParsedRecord();
+        if (parsedRecord == null)
+            return false;
+        _csvLayout.fillRecordFromParsedRecord(parsedRecord, _lineNumber, _options, target);
+        return true;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return _lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            _csvReader.close();
+        }
+        finally {
+            _dataReader.close();
+        }
+    }
+
+    private ParsedRecord nextParsedRecord() throws IOException {
+        try {
+            if (!_records.hasNext())
+                return null;
+            ParsedRecord parsedRecord = _records.next();
+            _lineNumber = (int)parsedRecord._lineNumber;
+
+            // an opening quote that is never closed makes the parser consume the rest of the data as the last value
+            if (_dataReader._state == QuoteTrackingReader._STATE_QUOTED && _dataReader._eof && !_records.hasNext())
+                throw new IOException("line " + _lineNumber + ": quoted value is never closed");
+
+            return parsedRecord;
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        catch (RuntimeException e) {
+            throw new IOException("line " + (_lineNumber + 1) + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reader keeping track of whether the data read so far ends inside a quoted value; a quote only opens a quoted value at the beginning of a value,
+     * and two quotes inside a quoted value are an escaped quote.
+     */
+    private static final class QuoteTrackingReader extends FilterReader {
+
+        // the parsing states
+        private static final int _STATE_START_OF_VALUE = 0;
+        private static final int _STATE_UNQUOTED = 1;
+        private static final int _STATE_QUOTED = 2;
+        private static final int _STATE_QUOTE_IN_QUOTED = 3;
+
+        // the separator
+        private final char _separator;
+
+        // the current state
+        private int _state;
+
+        // whether the end of the data has been reached
+        private boolean _eof;
+
+        QuoteTrackingReader(Reader reader, char separator) {
+            super(reader);
+            _separator = separator;
+            _state = _STATE_START_OF_VALUE;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c == -1)
+                _eof = true;
+            else
+                track((char)c);
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = super.read(cbuf, off, len);
+            if (n == -1)
+                _eof = true;
+            for (int i = 0; i < n; i++)
+                track(cbuf[off + i]);
+            return n;
+        }
+
+        private void track(char c) {
+            boolean endOfValue = c == _separator || c == '\n' || c == '\r';
+            switch (_state) {
+                case _STATE_QUOTED:
+                    if (c == '"')
+                        _state = _STATE_QUOTE_IN_QUOTED;
+                    break;
+                case _STATE_QUOTE_IN_QUOTED:
+                    _state = c == '"' ? _STATE_QUOTED : endOfValue ? _STATE_START_OF_VALUE : _STATE_UNQUOTED;
+                    break;
+                case _STATE_START_OF_VALUE:
+                    if (c == '"')
+                        _state = _STATE_QUOTED;
+                    else if (!endOfValue)
+                        _state = _STATE_UNQUOTED;
+                    break;
+                default:
+                    if (endOfValue)
+                        _state = _STATE_START_OF_VALUE;
+                    break;
+            }
+        }
+    }
+}
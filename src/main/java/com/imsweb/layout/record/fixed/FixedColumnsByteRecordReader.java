@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
+import com.imsweb.layout.record.fixed.FixedColumnsFilter.CompiledFilter;
+
+/**
+ * Record reader for fixed-columns layouts working directly on the bytes of the data; the lines are never decoded as a whole, only the extracted values are.
+ * <br/><br/>
+ * This reader can only be used with encodings for which a line separator is always encoded as the corresponding single byte (like ISO-8859-1,
+ * US-ASCII or UTF-8). Like a <b>LineNumberReader</b>, it recognizes '\n', '\r' and '\r\n' as line separators.
+ */
+final class FixedColumnsByteRecordReader extends RecordReader {
+
+    // size of the read buffer
+    private static final int _BUFFER_SIZE = 64 * 1024;
+
+    // the layout
+    private final FixedColumnsLayout _fixedLayout;
+
+    // the underlying stream
+    private final InputStream _inputStream;
+
+    // the encoding of the data
+    private final Charset _charset;
+
+    // the read buffer
+    private final byte[] _buffer = new byte[_BUFFER_SIZE];
+
+    // current position in the read buffer
+    private int _position;
+
+    // number of valid bytes in the read buffer
+    private int _limit;
+
+    // buffer used for the lines spanning several reads
+    private byte[] _lineBuffer = new byte[1024];
+
+    // bytes of the current line (either the read buffer or the line buffer)
+    private byte[] _lineBytes;
+
+    // offset of the current line
+    private int _lineOffset;
+
+    // length of the current line
+    private int _lineLength;
+
+    // current line number
+    private int _lineNumber;
+
+    // whether the previous line ended with a '\r' (in which case a following '\n' needs to be ignored)
+    private boolean _skipLineFeed;
+
+    // the filter the lines need to pass to be returned as records (can be null)
+    private final CompiledFilter _filter;
+
+    /**
+     * Constructor.
+     * @param layout the layout to use to create the records
+     * @param inputStream the stream to read the data from
+     * @param charset the encoding of the data
+     * @param options options to use (null means default option values will be used)
+     */
+    FixedColumnsByteRecordReader(FixedColumnsLayout layout, InputStream inputStream, Charset charset, RecordLayoutOptions options) {
+        this(layout, inputStream, charset, options, null);
+    }
+
+    /**
+     * Constructor.
+     * @param layout the layout to use to create the records
+     * @param inputStream the stream to read the data from
+     * @param charset the encoding of the data
+     * @param options options to use (null means default option values will be used)
+     * @param filter the filter the lines need to pass to be returned as records (null to return all the records)
+     */
+    FixedColumnsByteRecordReader(FixedColumnsLayout layout, InputStream inputStream, Charset charset, RecordLayoutOptions options, CompiledFilter filter) {
+        super(layout, options);
+        _fixedLayout = layout;
+        _inputStream = inputStream;
+        _charset = charset;
+        _filter = filter;
+    }
+
+    @Override
+    protected String readLine() throws IOException {
+        if (!readLineBytes())
+            return null;
+        return new String(_lineBytes, _lineOffset, _lineLength, _charset);
+    }
+
+    @Override
+    protected Map<String, String> fetchNextRecord() throws IOException {
+        if (!nextAcceptedLine())
+            return null;
+        return _fixedLayout.createRecordFromBytes(_lineBytes, _lineOffset, _lineLength, _lineNumber, _options);
+    }
+
+    @Override
+    protected boolean fetchNextRecord(Map<String, String> target) throws IOException {
+        if (!nextAcceptedLine())
+            return false;
+        _fixedLayout.fillRecordFromBytes(_lineBytes, _lineOffset, _lineLength, _lineNumber, _options, target);
+        return true;
+    }
+
+    // reads the next line accepted by the filter; returns false if there are no more lines
+    private boolean nextAcceptedLine() throws IOException {
+        do {
+            if (!readLineBytes())
+                return false;
+        }
+        while (_filter != null && !_filter.matches(_lineBytes, _lineOffset, _lineLength, _charset));
+        return true;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return _lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _inputStream.close();
+    }
+
+    private boolean readLineBytes() throws IOException {
+        boolean lineStarted = false;
+        int copied = 0;
+        while (true) {
+            if (_position >= _limit && !fill())
+                break;
+
+            if (_skipLineFeed) {
+                _skipLineFeed = false;
+                if (_buffer[_position] == '\n') {
+                    _position++;
+                    continue;
+                }
+            }
+
+            lineStarted = true;
+            int start = _position;
+            while (_position < _limit && _buffer[_position] != '\n' && _buffer[_position] != '\r')
+                _position++;
+
+            if (_position < _limit) {
+                _skipLineFeed = _buffer[_position] == '\r';
+                if (copied == 0) {
+                    // most common case, the line is entirely in the read buffer; no need to copy it
+                    _lineBytes = _buffer;
+                    _lineOffset = start;
+                    _lineLength = _position - start;
+                }
+                else {
+                    copied = append(copied, start, _position - start);
+                    setLineFromLineBuffer(copied);
+                }
+                _position++;
+                _lineNumber++;
+                return true;
+            }
+
+            copied = append(copied, start, _position - start);
+        }
+
+        if (!lineStarted)
+            return false;
+
+        // last line, not followed by a line separator
+        setLineFromLineBuffer(copied);
+        _lineNumber++;
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        int read = _inputStream.read(_buffer, 0, _buffer.length);
+        _position = 0;
+        _limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private int append(int copied, int start, int length) {
+        if (copied + length > _lineBuffer.length) {
+            byte[] tmp = new byte[Math.max(copied + length, _lineBuffer.length * 2)];
+            System.arraycopy(_lineBuffer, 0, tmp, 0, copied);
+            _lineBuffer = tmp;
+        }
+        System.arraycopy(_buffer, start, _lineBuffer, copied, length);
+        return copied + length;
+    }
+
+    private void setLineFromLineBuffer(int length) {
+        _lineBytes = _lineBuffer;
+        _lineOffset = 0;
+        _lineLength = length;
+    }
+}
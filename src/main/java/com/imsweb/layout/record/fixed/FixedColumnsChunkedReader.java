@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits an uncompressed fixed-columns data file into line-aligned chunks and processes those chunks in parallel.
+ * <br/><br/>
+ * Since all the lines of a fixed-columns file are supposed to have the same length, the chunk boundaries are computed using the line length;
+ * each boundary is then adjusted to the next line separator so the chunks are always line-aligned, even if some lines don't have the expected length.
+ * <br/><br/>
+ * Each chunk is memory-mapped separately (files bigger than 2GB are supported) and processed on a fork-join pool; the results are always handed
+ * back on the calling thread, either in file order or in completion order. The number of chunks being processed (or waiting to be handed back)
+ * at any given time is bounded.
+ */
+final class FixedColumnsChunkedReader {
+
+    // target size of a chunk, in bytes
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // size of the buffer used when scanning for line separators
+    private static final int _SCAN_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * A line-aligned section of the file.
+     */
+    static final class Chunk {
+
+        // chunk index (0-based, in file order)
+        private final int _index;
+
+        // start offset (inclusive)
+        private final long _start;
+
+        // end offset (exclusive)
+        private final long _end;
+
+        Chunk(int index, long start, long end) {
+            _index = index;
+            _start = start;
+            _end = end;
+        }
+
+        int getIndex() {
+            return _index;
+        }
+
+        long getStart() {
+            return _start;
+        }
+
+        long getEnd() {
+            return _end;
+        }
+    }
+
+    /**
+     * Processes a single chunk; called on one of the worker threads.
+     */
+    @FunctionalInterface
+    interface ChunkProcessor<T> {
+
+        T process(Chunk chunk, ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * Receives the result of a processed chunk; always called on the thread that started the processing.
+     */
+    @FunctionalInterface
+    interface ChunkHandler<T> {
+
+        void handle(Chunk chunk, T result) throws IOException;
+    }
+
+    /**
+     * Processes a single line of a chunk.
+     */
+    @FunctionalInterface
+    interface LineProcessor {
+
+        /**
+         * Processes the line.
+         * @param bytes the bytes of the line (only valid during the call)
+         * @param length length of the line, not including the line separator
+         * @param lineNumber line number within the chunk (1-based)
+         * @param lineStart offset of the line within the chunk
+         * @return true if the processing should continue with the next line, false to stop
+         */
+        boolean process(byte[] bytes, int length, int lineNumber, int lineStart);
+    }
+
+    private FixedColumnsChunkedReader() {
+        // utility class
+    }
+
+    /**
+     * Returns the length of the line separator used in the file (1 for '\n', 2 for '\r\n'), based on the first line separator found.
+     * @param channel file channel
+     * @return the line separator length, 1 if the file doesn't contain any line separator
+     */
+    static int detectLineSeparatorLength(FileChannel channel) throws IOException {
+        long newLine = findNextNewLine(channel, 0);
+        if (newLine <= 0)
+            return 1;
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, newLine - 1);
+        return buffer.get(0) == '\r' ? 2 : 1;
+    }
+
+    /**
+     * Splits the file into line-aligned chunks.
+     * @param channel file channel
+     * @param lineLength expected length of the lines (in bytes, not including the line separator)
+     * @param chunkSize target size of a chunk (in bytes)
+     * @return the chunks, in file order
+     */
+    static List<Chunk> split(FileChannel channel, int lineLength, int chunkSize) throws IOException {
+        long size = channel.size();
+        int recordLength = lineLength + detectLineSeparatorLength(channel);
+        long linesPerChunk = Math.max(1, chunkSize / recordLength);
+
+        List<Chunk> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + linesPerChunk * recordLength;
+            if (end >= size)
+                end = size;
+            else if (!isLineStart(channel, end)) {
+                long newLine = findNextNewLine(channel, end);
+                end = newLine == -1 ? size : newLine + 1;
+            }
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("Unable to split file, found a line bigger than " + Integer.MAX_VALUE + " bytes");
+            chunks.add(new Chunk(chunks.size(), start, end));
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    private static boolean isLineStart(FileChannel channel, long pos) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, pos - 1);
+        return buffer.get(0) == '\n';
+    }
+
+    private static long findNextNewLine(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(_SCAN_BUFFER_SIZE);
+        long pos = from;
+        int read;
+        while ((read = channel.read(buffer, pos)) > 0) {
+            for (int i = 0; i < read; i++)
+                if (buffer.get(i) == '\n')
+                    return pos + i;
+            pos += read;
+            buffer.clear();
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of lines starting before the requested offset (which is assumed to be the start of a line).
+     * @param channel file channel
+     * @param end end offset (exclusive)
+     * @return the number of lines
+     */
+    static long countLines(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(_SCAN_BUFFER_SIZE);
+        long count = 0;
+        long pos = 0;
+        while (pos < end) {
+            buffer.clear();
+            buffer.limit((int)Math.min(_SCAN_BUFFER_SIZE, end - pos));
+            int read = channel.read(buffer, pos);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++)
+                if (buffer.get(i) == '\n')
+                    count++;
+            pos += read;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a failure reporting the real line number of a line that failed to be processed by a worker (the workers only know the line number within
+     * their chunk); the line isn't processed again, the original failure becomes the cause of the returned one.
+     * @param failure the failure reported by the worker, using the line number within the chunk
+     * @param lineNumberInChunk the line number within the chunk
+     * @param lineNumber the real line number
+     * @return the failure to report
+     */
+    static IOException withLineNumber(IOException failure, int lineNumberInChunk, long lineNumber) {
+        String msg = failure.getMessage() == null ? "" : failure.getMessage();
+        String chunkPrefix = "line " + lineNumberInChunk + ": ";
+        if (msg.startsWith(chunkPrefix))
+            msg = msg.substring(chunkPrefix.length());
+        return new IOException("line " + lineNumber + ": " + msg, failure);
+    }
+
+    /**
+     * Calls the processor for each line of the provided chunk; the lines are expected to be separated by '\n' or '\r\n'.
+     * @param buffer the content of the chunk
+     * @param expectedLineLength expected length of the lines (used to size the line buffer)
+     * @param processor line processor
+     */
+    static void forEachLine(ByteBuffer buffer, int expectedLineLength, LineProcessor processor) {
+        byte[] bytes = new byte[expectedLineLength];
+        int limit = buffer.limit();
+        int lineStart = 0;
+        int lineNumber = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+            int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r')
+                lineEnd--;
+
+            int length = lineEnd - lineStart;
+            if (bytes.length < length)
+                bytes = new byte[length];
+            buffer.get(lineStart, bytes, 0, length);
+            if (!processor.process(bytes, length, ++lineNumber, lineStart))
+                return;
+
+            lineStart = nextLineStart;
+        }
+    }
+
+    /**
+     * Processes the provided chunks in parallel.
+     * @param channel file channel
+     * @param chunks chunks to process
+     * @param numThreads number of worker threads
+     * @param ordered if true, the results are handed back in file order, otherwise they are handed back as soon as they are available
+     * @param processor chunk processor (called on the worker threads)
+     * @param handler result handler (called on the current thread)
+     */
+    static <T> void process(FileChannel channel, List<Chunk> chunks, int numThreads, boolean ordered, ChunkProcessor<T> processor, ChunkHandler<T> handler)
+            throws IOException {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+
+        // number of chunks allowed to be in-flight, this is what bounds the memory
+        int window = numThreads * 2;
+
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            if (ordered) {
+                Deque<Future<T>> pending = new ArrayDeque<>();
+                int next = 0;
+                for (Chunk chunk : chunks) {
+                    if (pending.size() >= window)
+                        handler.handle(chunks.get(next++), waitFor(pending.removeFirst()));
+                    pending.addLast(pool.submit(() -> processor.process(chunk, map(channel, chunk))));
+                }
+                while (!pending.isEmpty())
+                    handler.handle(chunks.get(next++), waitFor(pending.removeFirst()));
+            }
+            else {
+                CompletionService<ChunkResult<T>> service = new ExecutorCompletionService<>(pool);
+                int inFlight = 0;
+                for (Chunk chunk : chunks) {
+                    if (inFlight >= window) {
+                        ChunkResult<T> result = waitFor(take(service));
+                        handler.handle(result._chunk, result._result);
+                        inFlight--;
+                    }
+                    service.submit(() -> new ChunkResult<>(chunk, processor.process(chunk, map(channel, chunk))));
+                    inFlight++;
+                }
+                while (inFlight > 0) {
+                    ChunkResult<T> result = waitFor(take(service));
+                    handler.handle(result._chunk, result._result);
+                    inFlight--;
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, Chunk chunk) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, chunk.getStart(), chunk.getEnd() - chunk.getStart());
+    }
+
+    private static <T> Future<T> take(CompletionService<T> service) throws IOException {
+        try {
+            return service.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a chunk to be processed", e);
+        }
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a chunk to be processed", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static final class ChunkResult<T> {
+
+        private final Chunk _chunk;
+
+        private final T _result;
+
+        private ChunkResult(Chunk chunk, T result) {
+            _chunk = chunk;
+            _result = result;
+        }
+    }
+}
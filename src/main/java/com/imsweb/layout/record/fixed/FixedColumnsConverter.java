@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.imsweb.layout.Field.FieldAlignment;
+import com.imsweb.layout.LayoutUtils;
+import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.fixed.FixedColumnsChunkedReader.Chunk;
+
+/**
+ * Converts data lines from one fixed-columns layout to another one (for example from NAACCR 16 to NAACCR 18) without creating any intermediate record.
+ * <br/><br/>
+ * A conversion plan is computed once when the converter is created: each field written by the target layout is matched to a field of the source layout,
+ * by name or by NAACCR item number. The values are then copied directly from the columns of the source line to the columns of the target line.
+ * <br/><br/>
+ * The result is the same as reading the line with the source layout and writing the resulting record with the target layout, except that the fields are also
+ * matched by NAACCR item number (which handles fields that have been renamed between the two layouts) and that overridden <b>createRecordFromLine()</b> methods
+ * of the source layout are not used (the values are extracted using the field definitions).
+ * <br/><br/>
+ * Instances of this class are thread-safe.
+ */
+public final class FixedColumnsConverter {
+
+    // the source layout
+    private final FixedColumnsLayout _source;
+
+    // the target layout
+    private final FixedColumnsLayout _target;
+
+    // the options
+    private final RecordLayoutOptions _options;
+
+    // resolved options
+    private final boolean _trimValues;
+    private final boolean _enforceStrictFormat;
+    private final boolean _applyPadding;
+    private final boolean _applyAlignment;
+    private final Charset _sourceEncoding;
+    private final Charset _targetEncoding;
+    private final String _lineSeparator;
+
+    // extraction plan of the source layout
+    private final FixedColumnsExtractionPlan _sourcePlan;
+
+    // line length of the target layout
+    private final int _targetLineLength;
+
+    // target fields to write (parallel arrays)
+    private final FixedColumnsField[] _targetFields;
+    private final FixedColumnsField[] _targetParentFields;
+    private final int[] _sourceIndexes;
+    private final boolean[] _directCopy;
+
+    /**
+     * Constructor.
+     * @param source the source layout, cannot be null
+     * @param target the target layout, cannot be null
+     */
+    public FixedColumnsConverter(FixedColumnsLayout source, FixedColumnsLayout target) {
+        this(source, target, null);
+    }
+
+    /**
+     * Constructor.
+     * @param source the source layout, cannot be null
+     * @param target the target layout, cannot be null
+     * @param options the options to use to read the source lines and create the target lines (null means default option values will be used)
+     */
+    public FixedColumnsConverter(FixedColumnsLayout source, FixedColumnsLayout target, RecordLayoutOptions options) {
+        if (source == null || target == null)
+            throw new IllegalArgumentException("Source and target layouts are required");
+
+        _source = source;
+        _target = target;
+        _options = options;
+        _trimValues = options == null || options.trimValues();
+        _enforceStrictFormat = options != null && options.enforceStrictFormat();
+        _applyPadding = options == null || options.applyPadding();
+        _applyAlignment = options == null || options.applyAlignment();
+        _sourceEncoding = source.resolveEncoding(options);
+        _targetEncoding = target.resolveEncoding(options);
+        _lineSeparator = target.resolveLineSeparator(options);
+
+        _sourcePlan = source.getExtractionPlan();
+        _targetLineLength = target.getLayoutLineLength();
+
+        // same logic as the target layout uses to create a line: fields defining subfields are written using their subfields
+        List<FixedColumnsField> fields = new ArrayList<>();
+        List<FixedColumnsField> parents = new ArrayList<>();
+        for (FixedColumnsField field : target.getAllFields()) {
+            if (field.getSubFields() != null && !field.getSubFields().isEmpty()) {
+                for (FixedColumnsField child : field.getSubFields()) {
+                    if (child.getEnd() <= field.getEnd()) {
+                        fields.add(child);
+                        parents.add(field);
+                    }
+                }
+            }
+            else if (field.getEnd() <= _targetLineLength) {
+                fields.add(field);
+                parents.add(field);
+            }
+        }
+
+        int size = fields.size();
+        _targetFields = fields.toArray(new FixedColumnsField[size]);
+        _targetParentFields = parents.toArray(new FixedColumnsField[size]);
+        _sourceIndexes = new int[size];
+        _directCopy = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            FixedColumnsField field = _targetFields[i];
+            _sourceIndexes[i] = findSourceIndex(field);
+            // values that need to be cleaned or padded with more than one character can't be written directly
+            String padChar = field.getPadChar() == null ? " " : field.getPadChar();
+            _directCopy[i] = padChar.length() == 1 && !target.isValueCleaned(field);
+        }
+    }
+
+    private int findSourceIndex(FixedColumnsField targetField) {
+        int idx = _sourcePlan.getIndex(targetField.getName());
+        if (idx == -1 && targetField.getNaaccrItemNum() != null) {
+            FixedColumnsField sourceField = _source.getFieldByNaaccrItemNumber(targetField.getNaaccrItemNum());
+            if (sourceField != null)
+                idx = _sourcePlan.getIndex(sourceField.getName());
+        }
+        return idx;
+    }
+
+    public FixedColumnsLayout getSource() {
+        return _source;
+    }
+
+    public FixedColumnsLayout getTarget() {
+        return _target;
+    }
+
+    /**
+     * Converts the provided source line into a target line.
+     * @param line the source line
+     * @param lineNumber line number (use null if no line number available)
+     * @return the target line
+     */
+    public String convertLine(String line, Integer lineNumber) throws IOException {
+        char[] buffer = new char[_targetLineLength];
+        convertLine(line, lineNumber, buffer);
+        return new String(buffer);
+    }
+
+    /**
+     * Converts the provided source line and writes the result into the provided buffer, which must be at least as big as the target line length; only the
+     * first characters (up to the target line length) are written.
+     * @param line the source line
+     * @param lineNumber line number (use null if no line number available)
+     * @param buffer the buffer to write the target line into
+     */
+    public void convertLine(String line, Integer lineNumber, char[] buffer) throws IOException {
+        Integer lineNumberSafe = lineNumber == null ? Integer.valueOf(1) : lineNumber;
+
+        if (line == null)
+            line = "";
+
+        if (_enforceStrictFormat) {
+            if (line.isEmpty())
+                throw new IOException("line " + lineNumberSafe + ": got en empty line");
+            String validationMsg = _source.validateLine(line, lineNumberSafe);
+            if (validationMsg != null)
+                throw new IOException(validationMsg);
+        }
+
+        if (buffer.length < _targetLineLength)
+            throw new IllegalArgumentException("Buffer is too small, it needs to contain at least " + _targetLineLength + " characters");
+        Arrays.fill(buffer, 0, _targetLineLength, ' ');
+
+        try {
+            for (int i = 0; i < _targetFields.length; i++) {
+                FixedColumnsField field = _targetFields[i];
+                long range = _sourceIndexes[i] == -1 ? -1 : _sourcePlan.resolveRange(line, _sourceIndexes[i], _trimValues);
+
+                // missing values are handled by the layout (default value)
+                if (range == -1) {
+                    _target.writeValue(buffer, null, field, _targetParentFields[i], _options, _applyPadding, _applyAlignment);
+                    continue;
+                }
+
+                int valueStart = FixedColumnsExtractionPlan.getRangeStart(range);
+                int valueLength = FixedColumnsExtractionPlan.getRangeEnd(range) - valueStart;
+                int start = field.getStart() - 1;
+                int length = field.getEnd() - start;
+
+                // values that are too long, or that can't be written directly, are also handled by the layout
+                if (valueLength > length || !_directCopy[i]) {
+                    _target.writeValue(buffer, line.substring(valueStart, valueStart + valueLength), field, _targetParentFields[i], _options, _applyPadding,
+                            _applyAlignment);
+                    continue;
+                }
+
+                boolean rightAlign = _applyAlignment && field.getAlign() == FieldAlignment.RIGHT;
+                int paddingLength = length - valueLength;
+                line.getChars(valueStart, valueStart + valueLength, buffer, rightAlign ? start + paddingLength : start);
+                char padChar = _applyPadding && field.getPadChar() != null ? field.getPadChar().charAt(0) : ' ';
+                if (padChar != ' ' && paddingLength > 0) {
+                    int paddingStart = rightAlign ? start : start + valueLength;
+                    Arrays.fill(buffer, paddingStart, paddingStart + paddingLength, padChar);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new IOException("line " + lineNumberSafe + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts the source file into the target file, using as many threads as there are available processors.
+     * @param sourceFile the source file (can be compressed)
+     * @param targetFile the target file (will be compressed if its name ends with '.gz' or '.gzip')
+     * @return the number of converted lines
+     */
+    public long convert(File sourceFile, File targetFile) throws IOException {
+        return convert(sourceFile, targetFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Converts the source file into the target file; the lines of the target file are always in the same order as in the source file.
+     * <p/>
+     * Uncompressed source files are split into chunks that are converted in parallel; compressed source files are converted sequentially.
+     * @param sourceFile the source file (can be compressed)
+     * @param targetFile the target file (will be compressed if its name ends with '.gz' or '.gzip')
+     * @param numThreads number of threads to use
+     * @return the number of converted lines
+     */
+    public long convert(File sourceFile, File targetFile, int numThreads) throws IOException {
+        return convert(sourceFile, targetFile, numThreads, FixedColumnsChunkedReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    // package-private so the tests can use a smaller chunk size
+    long convert(File sourceFile, File targetFile, int numThreads, int chunkSize) throws IOException {
+        if (sourceFile == null || !sourceFile.exists())
+            throw new IOException("File does not exist.");
+
+        String name = sourceFile.getName().toLowerCase();
+        boolean compressed = name.endsWith(".gz") || name.endsWith(".gzip") || name.endsWith(".zip");
+        if (numThreads <= 1 || compressed || !FixedColumnsLayout.isByteSplittable(_sourceEncoding))
+            return convertSequentially(sourceFile, targetFile);
+
+        long[] count = new long[1];
+        try (FileChannel channel = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+             OutputStream os = new BufferedOutputStream(LayoutUtils.createOutputStream(targetFile))) {
+            List<Chunk> chunks = FixedColumnsChunkedReader.split(channel, _source.getLayoutLineLength(), chunkSize);
+            FixedColumnsChunkedReader.process(channel, chunks, numThreads, true, (chunk, buffer) -> convertChunk(buffer), (chunk, result) -> {
+                os.write(result._data, 0, result._length);
+                count[0] += result._numLines;
+                if (result._failure != null) {
+                    long lineNumber = FixedColumnsChunkedReader.countLines(channel, chunk.getStart()) + result._failedLineNumber;
+                    throw FixedColumnsChunkedReader.withLineNumber(result._failure, result._failedLineNumber, lineNumber);
+                }
+            });
+        }
+
+        return count[0];
+    }
+
+    private long convertSequentially(File sourceFile, File targetFile) throws IOException {
+        long count = 0;
+
+        char[] buffer = createLineBuffer();
+        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(LayoutUtils.createInputStream(sourceFile), _sourceEncoding));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(LayoutUtils.createOutputStream(targetFile), _targetEncoding))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                convertLine(line, reader.getLineNumber(), buffer);
+                writer.write(buffer);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private ConvertedChunk convertChunk(ByteBuffer buffer) {
+        ConvertedChunk result = new ConvertedChunk(buffer.limit() + buffer.limit() / 8);
+
+        char[] target = createLineBuffer();
+        FixedColumnsChunkedReader.forEachLine(buffer, _source.getLayoutLineLength(), (bytes, length, lineNumber, lineStart) -> {
+            String line = new String(bytes, 0, length, _sourceEncoding);
+            try {
+                convertLine(line, lineNumber, target);
+            }
+            catch (IOException e) {
+                result._failedLineNumber = lineNumber;
+                result._failure = e;
+                return false;
+            }
+            result.append(target, _targetEncoding);
+            return true;
+        });
+
+        return result;
+    }
+
+    // returns a buffer big enough to contain a target line, with the line separator already written at the end of it
+    private char[] createLineBuffer() {
+        char[] buffer = new char[_targetLineLength + _lineSeparator.length()];
+        _lineSeparator.getChars(0, _lineSeparator.length(), buffer, _targetLineLength);
+        return buffer;
+    }
+
+    // the result of converting a chunk of data
+    private static final class ConvertedChunk {
+
+        // the converted (encoded) lines
+        private byte[] _data;
+
+        // number of valid bytes in the data
+        private int _length;
+
+        // number of converted lines
+        private int _numLines;
+
+        // line number (within the chunk) of the line that failed to be converted
+        private int _failedLineNumber;
+
+        // the failure (if any)
+        private IOException _failure;
+
+        private ConvertedChunk(int initialSize) {
+            _data = new byte[initialSize];
+        }
+
+        private void append(char[] line, Charset encoding) {
+            ensureCapacity(line.length);
+
+            // single-byte characters can be copied directly
+            int max = StandardCharsets.ISO_8859_1.equals(encoding) ? 0xFF : 0x7F;
+            int i = 0;
+            while (i < line.length && line[i] <= max) {
+                _data[_length + i] = (byte)line[i];
+                i++;
+            }
+            if (i == line.length)
+                _length += line.length;
+            else {
+                byte[] bytes = new String(line).getBytes(encoding);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, _data, _length, bytes.length);
+                _length += bytes.length;
+            }
+            _numLines++;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (_length + extra > _data.length)
+                _data = Arrays.copyOf(_data, Math.max(_length + extra, _data.length * 2));
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.imsweb.layout.record.LayoutRecord;
+import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordValueInterner;
+
+/**
+ * Immutable, pre-compiled version of the fields of a fixed-columns layout, used to extract the values from a data line.
+ * <br/><br/>
+ * The parent fields and their children are flattened into parallel arrays (in start column order, each parent immediately followed by its children);
+ * all the decisions that only depend on the field definitions (like the trimming rules) are made once when the plan is created instead of for every line.
+ * <br/><br/>
+ * A projected plan (see <b>project()</b>) shares the arrays of its base plan but only extracts the projected entries; the parents of projected children
+ * are still checked (a child value is only available if its parent value is) but their values are not extracted.
+ */
+final class FixedColumnsExtractionPlan {
+
+    // number of entries (parent fields plus children fields)
+    private final int _size;
+
+    // field names (interned)
+    private final String[] _names;
+
+    // start offsets (0-based, inclusive)
+    private final int[] _starts;
+
+    // end offsets (0-based, exclusive)
+    private final int[] _ends;
+
+    // number of children for each entry (always 0 for children entries)
+    private final int[] _numChildren;
+
+    // index of the parent entry, -1 for parent fields
+    private final int[] _parents;
+
+    // whether a blank value should be trimmed (and therefore ignored) when trimming is requested
+    private final boolean[] _trimBlank;
+
+    // whether a non-blank value should be trimmed when trimming is requested
+    private final boolean[] _trimNonBlank;
+
+    // NAACCR item numbers (can contain nulls)
+    private final Integer[] _naaccrItemNums;
+
+    // entry indexes by field name
+    private final Map<String, Integer> _indexByName;
+
+    // whether the value of each entry needs to be extracted
+    private final boolean[] _extracted;
+
+    // the parent entries to visit (the ones having at least one extracted entry in their group), in start column order
+    private final int[] _groups;
+
+    // the projection this plan was created for (null for a plan that is not projected)
+    private final Set<String> _projectedFields;
+    private final Set<Integer> _projectedNaaccrItemNumbers;
+
+    // the shared values of the entries (used when the values are interned; shared with the projected plans)
+    private final RecordValueInterner _interner;
+
+    // the keys of the records created with this plan (a projected plan only has the projected fields, so its records only have slots for those)
+    private final LayoutRecord.Schema _schema;
+
+    // the slot of each entry in the records of the schema (-1 for the entries that are not in the schema, those are added by name)
+    private final int[] _slots;
+
+    // the last projection created from this plan (the same options are usually used for all the lines)
+    private volatile FixedColumnsExtractionPlan _lastProjection;
+
+    /**
+     * Constructor.
+     * @param fields the parent fields of the layout, sorted by start column
+     */
+    FixedColumnsExtractionPlan(List<FixedColumnsField> fields) {
+        int size = 0;
+        for (FixedColumnsField field : fields)
+            size += 1 + (field.getSubFields() == null ? 0 : field.getSubFields().size());
+
+        _size = size;
+        _names = new String[size];
+        _starts = new int[size];
+        _ends = new int[size];
+        _numChildren = new int[size];
+        _parents = new int[size];
+        _trimBlank = new boolean[size];
+        _trimNonBlank = new boolean[size];
+        _naaccrItemNums = new Integer[size];
+        _indexByName = new HashMap<>((int)(size / 0.75f) + 1);
+        _extracted = new boolean[size];
+        _groups = new int[fields.size()];
+        _projectedFields = null;
+        _projectedNaaccrItemNumbers = null;
+        _interner = new RecordValueInterner(size);
+
+        int idx = 0;
+        int group = 0;
+        for (FixedColumnsField field : fields) {
+            int parentIdx = idx;
+            _groups[group++] = parentIdx;
+            List<FixedColumnsField> children = field.getSubFields();
+            boolean trim = Boolean.TRUE.equals(field.getTrim());
+            boolean childPreventsTrimming = children != null && children.stream().anyMatch(child -> !Boolean.TRUE.equals(child.getTrim()));
+
+            add(idx, field, -1);
+            _numChildren[idx] = children == null ? 0 : children.size();
+            // a blank value is ignored unless the field is not trimmed and one of its children isn't either
+            _trimBlank[idx] = trim || !childPreventsTrimming;
+            // never trim a group field unless it's completely empty (or we would lose the info of which child value is which)
+            _trimNonBlank[idx] = trim && children == null;
+            idx++;
+
+            if (children != null) {
+                for (FixedColumnsField child : children) {
+                    boolean childTrim = Boolean.TRUE.equals(child.getTrim());
+                    add(idx, child, parentIdx);
+                    _trimBlank[idx] = childTrim;
+                    _trimNonBlank[idx] = childTrim;
+                    idx++;
+                }
+            }
+        }
+
+        // a duplicate name is only resolved to its first entry by the schema, the other entries are added by name
+        _schema = new LayoutRecord.Schema(Arrays.asList(_names));
+        _slots = new int[size];
+        for (int i = 0; i < size; i++)
+            _slots[i] = _schema.getName(i) != null ? i : -1;
+    }
+
+    /**
+     * Constructor for a projected plan.
+     * @param plan base plan
+     * @param projectedFields projected field names (can be null)
+     * @param projectedNaaccrItemNumbers projected NAACCR item numbers (can be null)
+     * @param options options containing the projection
+     */
+    private FixedColumnsExtractionPlan(FixedColumnsExtractionPlan plan, Set<String> projectedFields, Set<Integer> projectedNaaccrItemNumbers,
+            RecordLayoutOptions options) {
+        _size = plan._size;
+        _names = plan._names;
+        _starts = plan._starts;
+        _ends = plan._ends;
+        _numChildren = plan._numChildren;
+        _parents = plan._parents;
+        _trimBlank = plan._trimBlank;
+        _trimNonBlank = plan._trimNonBlank;
+        _naaccrItemNums = plan._naaccrItemNums;
+        _indexByName = plan._indexByName;
+        _projectedFields = projectedFields;
+        _projectedNaaccrItemNumbers = projectedNaaccrItemNumbers;
+        _interner = plan._interner;
+
+        _extracted = new boolean[_size];
+        for (int idx = 0; idx < _size; idx++)
+            _extracted[idx] = _names[idx] != null && options.isFieldProjected(_names[idx], _naaccrItemNums[idx]);
+
+        List<String> names = new ArrayList<>();
+        _slots = new int[_size];
+        for (int idx = 0; idx < _size; idx++) {
+            if (_extracted[idx] && plan._slots[idx] >= 0) {
+                _slots[idx] = names.size();
+                names.add(_names[idx]);
+            }
+            else
+                _slots[idx] = -1;
+        }
+        _schema = new LayoutRecord.Schema(names);
+
+        int numGroups = 0;
+        int[] groups = new int[plan._groups.length];
+        for (int parentIdx : plan._groups) {
+            boolean extracted = false;
+            for (int idx = parentIdx; idx <= parentIdx + _numChildren[parentIdx] && !extracted; idx++)
+                extracted = _extracted[idx];
+            if (extracted)
+                groups[numGroups++] = parentIdx;
+        }
+        _groups = Arrays.copyOf(groups, numGroups);
+    }
+
+    private void add(int idx, FixedColumnsField field, int parentIdx) {
+        _names[idx] = field.getName() == null ? null : field.getName().intern();
+        _starts[idx] = field.getStart() - 1;
+        _ends[idx] = field.getEnd();
+        _parents[idx] = parentIdx;
+        _naaccrItemNums[idx] = field.getNaaccrItemNum();
+        _extracted[idx] = true;
+        if (field.getName() != null)
+            _indexByName.put(_names[idx], idx);
+    }
+
+    /**
+     * Returns the plan to use for the projection of the provided options (this plan if the options don't define any projection).
+     * <br/><br/>
+     * The last projected plan is cached, so calling this method for every line with the same options is cheap.
+     * @param options options (can be null)
+     * @return the plan to use, never null
+     */
+    FixedColumnsExtractionPlan project(RecordLayoutOptions options) {
+        if (options == null || !options.hasProjection())
+            return this;
+
+        Set<String> projectedFields = options.getProjectedFields();
+        Set<Integer> projectedNaaccrItemNumbers = options.getProjectedNaaccrItemNumbers();
+
+        // the options keep immutable copies of the projection, so the identity is enough to recognize the same projection
+        FixedColumnsExtractionPlan projection = _lastProjection;
+        if (projection == null || projection._projectedFields != projectedFields || projection._projectedNaaccrItemNumbers != projectedNaaccrItemNumbers) {
+            projection = new FixedColumnsExtractionPlan(this, projectedFields, projectedNaaccrItemNumbers, options);
+            _lastProjection = projection;
+        }
+
+        return projection;
+    }
+
+    /**
+     * Extracts the values from the provided line and adds them to the provided record; blank values (once trimmed) are not added.
+     * @param line data line, cannot be null
+     * @param trimValues whether the values should be trimmed
+     * @param internValues whether the values should be interned
+     * @param result the record to add the values to
+     */
+    void extract(String line, boolean trimValues, boolean internValues, Map<String, String> result) {
+        int length = line.length();
+        LayoutRecord rec = asLayoutRecord(result);
+
+        for (int idx : _groups) {
+
+            // fields are sorted by start column, so if this one doesn't fit, the following ones won't either
+            if (_ends[idx] > length)
+                break;
+
+            // children values are only available if the parent value is (even if the parent value is not extracted)
+            if (_extracted[idx]) {
+                String value = extractValue(line, idx, trimValues, internValues);
+                if (value == null)
+                    continue;
+                put(rec, result, idx, value);
+            }
+            else if (isEmpty(line, idx, trimValues))
+                continue;
+
+            // handle children fields if any
+            int next = idx + 1 + _numChildren[idx];
+            for (int childIdx = idx + 1; childIdx < next && _ends[childIdx] <= length; childIdx++) {
+                if (_extracted[childIdx]) {
+                    String childValue = extractValue(line, childIdx, trimValues, internValues);
+                    if (childValue != null)
+                        put(rec, result, childIdx, childValue);
+                }
+            }
+        }
+    }
+
+    // returns the provided record if its values can be set by index, null otherwise
+    private LayoutRecord asLayoutRecord(Map<String, String> result) {
+        return result instanceof LayoutRecord && ((LayoutRecord)result).getSchema() == _schema ? (LayoutRecord)result : null;
+    }
+
+    private void put(LayoutRecord rec, Map<String, String> result, int idx, String value) {
+        if (rec != null && _slots[idx] >= 0)
+            rec.setValue(_slots[idx], value);
+        else
+            result.put(_names[idx], value);
+    }
+
+    /**
+     * Extracts the value of the requested entry from the given line. The caller is responsible for making sure the line is long enough.
+     * @param line data line
+     * @param idx entry index
+     * @param trimValues whether the value should be trimmed
+     * @param internValues whether the value should be interned
+     * @return the value, null if it's empty
+     */
+    String extractValue(String line, int idx, boolean trimValues, boolean internValues) {
+        long range = extractRange(line, idx, trimValues);
+        if (range == -1)
+            return null;
+
+        // substring always copies the characters, the value doesn't keep a reference on the (potentially very long) line
+        if (internValues)
+            return _interner.intern(idx, line, getRangeStart(range), getRangeEnd(range));
+        return line.substring(getRangeStart(range), getRangeEnd(range));
+    }
+
+    /**
+     * Returns the range of the value of the requested entry in the given line, as a single long (use <b>getRangeStart()</b> and <b>getRangeEnd()</b> to
+     * get the offsets). The caller is responsible for making sure the line is long enough.
+     * @param line data line
+     * @param idx entry index
+     * @param trimValues whether the value should be trimmed
+     * @return the range of the value, -1 if the value is empty
+     */
+    long extractRange(CharSequence line, int idx, boolean trimValues) {
+        int start = _starts[idx];
+        int end = _ends[idx];
+
+        if (trimValues) {
+            int trimmedStart = start;
+            int trimmedEnd = end;
+            while (trimmedStart < trimmedEnd && line.charAt(trimmedStart) <= ' ')
+                trimmedStart++;
+            while (trimmedEnd > trimmedStart && line.charAt(trimmedEnd - 1) <= ' ')
+                trimmedEnd--;
+            if (trimmedStart == trimmedEnd) {
+                if (_trimBlank[idx])
+                    return -1;
+            }
+            else if (_trimNonBlank[idx]) {
+                start = trimmedStart;
+                end = trimmedEnd;
+            }
+        }
+
+        return start == end ? -1 : ((long)start << 32) | end;
+    }
+
+    /**
+     * Returns the range of the value of the requested entry in the given line, taking into account the length of the line and, for children entries,
+     * the value of their parent (a child value is only available if the value of its parent is).
+     * @param line data line
+     * @param idx entry index
+     * @param trimValues whether the value should be trimmed
+     * @return the range of the value, -1 if the value is not available
+     */
+    long resolveRange(CharSequence line, int idx, boolean trimValues) {
+        int length = line.length();
+
+        int parentIdx = _parents[idx];
+        if (parentIdx != -1 && (_ends[parentIdx] > length || isEmpty(line, parentIdx, trimValues)))
+            return -1;
+
+        return _ends[idx] > length ? -1 : extractRange(line, idx, trimValues);
+    }
+
+    static int getRangeStart(long range) {
+        return (int)(range >>> 32);
+    }
+
+    static int getRangeEnd(long range) {
+        return (int)range;
+    }
+
+    /**
+     * Extracts the values from the provided single-byte line and adds them to the provided record; blank values (once trimmed) are not added.
+     * <br/><br/>
+     * Each byte is considered as a single ISO-8859-1 character; the caller is responsible for making sure that's the case for the data line.
+     * @param bytes the bytes containing the data line, cannot be null
+     * @param offset offset of the data line
+     * @param length length of the data line (not including the line separator)
+     * @param trimValues whether the values should be trimmed
+     * @param internValues whether the values should be interned
+     * @param result the record to add the values to
+     */
+    void extract(byte[] bytes, int offset, int length, boolean trimValues, boolean internValues, Map<String, String> result) {
+        LayoutRecord rec = asLayoutRecord(result);
+        for (int idx : _groups) {
+
+            // fields are sorted by start column, so if this one doesn't fit, the following ones won't either
+            if (_ends[idx] > length)
+                break;
+
+            // children values are only available if the parent value is (even if the parent value is not extracted)
+            if (_extracted[idx]) {
+                String value = extractValue(bytes, offset, idx, trimValues, internValues);
+                if (value == null)
+                    continue;
+                put(rec, result, idx, value);
+            }
+            else if (isEmpty(bytes, offset, idx, trimValues))
+                continue;
+
+            // handle children fields if any
+            int next = idx + 1 + _numChildren[idx];
+            for (int childIdx = idx + 1; childIdx < next && _ends[childIdx] <= length; childIdx++) {
+                if (_extracted[childIdx]) {
+                    String childValue = extractValue(bytes, offset, childIdx, trimValues, internValues);
+                    if (childValue != null)
+                        put(rec, result, childIdx, childValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the value of the requested entry from the given single-byte line. The caller is responsible for making sure the line is long enough.
+     * @param bytes the bytes containing the data line
+     * @param offset offset of the data line
+     * @param idx entry index
+     * @param trimValues whether the value should be trimmed
+     * @param internValues whether the value should be interned
+     * @return the value, null if it's empty
+     */
+    String extractValue(byte[] bytes, int offset, int idx, boolean trimValues, boolean internValues) {
+        int start = offset + _starts[idx];
+        int end = offset + _ends[idx];
+
+        if (trimValues) {
+            int trimmedStart = start;
+            int trimmedEnd = end;
+            while (trimmedStart < trimmedEnd && (bytes[trimmedStart] & 0xFF) <= ' ')
+                trimmedStart++;
+            while (trimmedEnd > trimmedStart && (bytes[trimmedEnd - 1] & 0xFF) <= ' ')
+                trimmedEnd--;
+            if (trimmedStart == trimmedEnd) {
+                if (_trimBlank[idx])
+                    return null;
+            }
+            else if (_trimNonBlank[idx]) {
+                start = trimmedStart;
+                end = trimmedEnd;
+            }
+        }
+
+        if (start == end)
+            return null;
+        if (internValues)
+            return _interner.intern(idx, bytes, start, end);
+
+        // ISO-8859-1 is the fastest decoding (it's a straight copy of the bytes)
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns true if the value of the requested entry would be empty (meaning it wouldn't be extracted); doesn't create any string.
+     * The caller is responsible for making sure the line is long enough.
+     * @param line data line
+     * @param idx entry index
+     * @param trimValues whether the value should be trimmed
+     * @return true if the value is empty
+     */
+    boolean isEmpty(CharSequence line, int idx, boolean trimValues) {
+        int start = _starts[idx];
+        int end = _ends[idx];
+
+        if (start == end)
+            return true;
+        if (!trimValues || !_trimBlank[idx])
+            return false;
+        for (int i = start; i < end; i++)
+            if (line.charAt(i) > ' ')
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns true if the value of the requested entry would be empty in the given single-byte line; doesn't create any string.
+     * The caller is responsible for making sure the line is long enough.
+     * @param bytes the bytes containing the data line
+     * @param offset offset of the data line
+     * @param idx entry index
+     * @param trimValues whether the value should be trimmed
+     * @return true if the value is empty
+     */
+    boolean isEmpty(byte[] bytes, int offset, int idx, boolean trimValues) {
+        int start = offset + _starts[idx];
+        int end = offset + _ends[idx];
+
+        if (start == end)
+            return true;
+        if (!trimValues || !_trimBlank[idx])
+            return false;
+        for (int i = start; i < end; i++)
+            if ((bytes[i] & 0xFF) > ' ')
+                return false;
+        return true;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    String getName(int idx) {
+        return _names[idx];
+    }
+
+    int getStart(int idx) {
+        return _starts[idx];
+    }
+
+    int getEnd(int idx) {
+        return _ends[idx];
+    }
+
+    int getNumChildren(int idx) {
+        return _numChildren[idx];
+    }
+
+    int getParent(int idx) {
+        return _parents[idx];
+    }
+
+    LayoutRecord.Schema getSchema() {
+        return _schema;
+    }
+
+    /**
+     * Returns the entry index of the requested field, -1 if the field doesn't exist.
+     */
+    int getIndex(String name) {
+        Integer idx = _indexByName.get(name);
+        return idx == null ? -1 : idx;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A filter on the values of a fixed-columns record, evaluated directly on the data lines (before any record is created).
+ * <br/><br/>
+ * A filter is a conjunction of simple conditions on field values (equal to, in a set of values, starts with, between two values); the value used for a
+ * condition is the one that would be extracted for the record (so it depends on the trimming rules), and an empty value never satisfies any condition.
+ * Values are compared character by character (so a range on a date field formatted as YYYYMMDD behaves as expected).
+ * <br/><br/>
+ * Example: <code>FixedColumnsFilter.equalTo("primarySite", "C500").and(FixedColumnsFilter.between("dateOfDiagnosisYear", "2015", "2019"))</code>
+ * <br/><br/>
+ * Instances of this class are immutable.
+ */
+public final class FixedColumnsFilter {
+
+    // the different types of conditions
+    private enum ConditionType {
+        IN, PREFIX, RANGE
+    }
+
+    // the conditions
+    private final List<Condition> _conditions;
+
+    private FixedColumnsFilter(List<Condition> conditions) {
+        _conditions = conditions;
+    }
+
+    /**
+     * Returns a filter accepting the records for which the requested field has the provided value.
+     * @param fieldName field name, cannot be null
+     * @param value value, cannot be null
+     * @return a new filter
+     */
+    public static FixedColumnsFilter equalTo(String fieldName, String value) {
+        if (value == null)
+            throw new IllegalStateException("Value is required");
+        return in(fieldName, Collections.singletonList(value));
+    }
+
+    /**
+     * Returns a filter accepting the records for which the requested field has one of the provided values.
+     * @param fieldName field name, cannot be null
+     * @param values values, cannot be null
+     * @return a new filter
+     */
+    public static FixedColumnsFilter in(String fieldName, Collection<String> values) {
+        if (values == null || values.contains(null))
+            throw new IllegalStateException("Values are required");
+        return create(new Condition(fieldName, ConditionType.IN, values.toArray(new String[0]), null, null));
+    }
+
+    /**
+     * Returns a filter accepting the records for which the value of the requested field starts with the provided prefix.
+     * @param fieldName field name, cannot be null
+     * @param prefix prefix, cannot be null
+     * @return a new filter
+     */
+    public static FixedColumnsFilter startsWith(String fieldName, String prefix) {
+        if (prefix == null)
+            throw new IllegalStateException("Prefix is required");
+        return create(new Condition(fieldName, ConditionType.PREFIX, new String[] {prefix}, null, null));
+    }
+
+    /**
+     * Returns a filter accepting the records for which the value of the requested field is between the two provided values (inclusive).
+     * @param fieldName field name, cannot be null
+     * @param min minimum value, null means no minimum
+     * @param max maximum value, null means no maximum
+     * @return a new filter
+     */
+    public static FixedColumnsFilter between(String fieldName, String min, String max) {
+        return create(new Condition(fieldName, ConditionType.RANGE, null, min, max));
+    }
+
+    private static FixedColumnsFilter create(Condition condition) {
+        if (condition._fieldName == null)
+            throw new IllegalStateException("Field name is required");
+        return new FixedColumnsFilter(Collections.singletonList(condition));
+    }
+
+    /**
+     * Returns a new filter accepting the records accepted by both this filter and the provided one.
+     * @param other other filter, cannot be null
+     * @return a new filter
+     */
+    public FixedColumnsFilter and(FixedColumnsFilter other) {
+        List<Condition> conditions = new ArrayList<>(_conditions);
+        conditions.addAll(other._conditions);
+        return new FixedColumnsFilter(Collections.unmodifiableList(conditions));
+    }
+
+    /**
+     * Resolves the fields of the conditions against the provided extraction plan.
+     * @param plan extraction plan
+     * @param trimValues whether the values are trimmed
+     * @return the compiled filter
+     */
+    CompiledFilter compile(FixedColumnsExtractionPlan plan, boolean trimValues) {
+        int[] indexes = new int[_conditions.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = plan.getIndex(_conditions.get(i)._fieldName);
+            if (indexes[i] == -1)
+                throw new IllegalStateException("Unknown field: " + _conditions.get(i)._fieldName);
+        }
+        return new CompiledFilter(plan, _conditions.toArray(new Condition[0]), indexes, trimValues);
+    }
+
+    /**
+     * A single condition.
+     */
+    private static final class Condition {
+
+        private final String _fieldName;
+
+        private final ConditionType _type;
+
+        // the values (for the IN and PREFIX conditions)
+        private final String[] _values;
+
+        // the bounds (for the RANGE condition)
+        private final String _min;
+        private final String _max;
+
+        private Condition(String fieldName, ConditionType type, String[] values, String min, String max) {
+            _fieldName = fieldName;
+            _type = type;
+            _values = values;
+            _min = min;
+            _max = max;
+        }
+
+        private boolean matches(CharSequence data, int start, int end) {
+            switch (_type) {
+                case IN:
+                    for (String value : _values)
+                        if (value.length() == end - start && compare(data, start, end, value) == 0)
+                            return true;
+                    return false;
+                case PREFIX:
+                    String prefix = _values[0];
+                    return prefix.length() <= end - start && compare(data, start, start + prefix.length(), prefix) == 0;
+                case RANGE:
+                    return (_min == null || compare(data, start, end, _min) >= 0) && (_max == null || compare(data, start, end, _max) <= 0);
+                default:
+                    throw new IllegalStateException("Unsupported condition: " + _type);
+            }
+        }
+
+        private static int compare(CharSequence data, int start, int end, String value) {
+            int length = Math.min(end - start, value.length());
+            for (int i = 0; i < length; i++) {
+                int diff = data.charAt(start + i) - value.charAt(i);
+                if (diff != 0)
+                    return diff;
+            }
+            return (end - start) - value.length();
+        }
+    }
+
+    /**
+     * A filter resolved against an extraction plan; created once per read.
+     */
+    static final class CompiledFilter {
+
+        private final FixedColumnsExtractionPlan _plan;
+
+        private final Condition[] _conditions;
+
+        private final int[] _indexes;
+
+        private final boolean _trimValues;
+
+        // view of single-byte data as characters (not thread-safe, like the readers using this class)
+        private final ByteCharSequence _bytesView = new ByteCharSequence();
+
+        private CompiledFilter(FixedColumnsExtractionPlan plan, Condition[] conditions, int[] indexes, boolean trimValues) {
+            _plan = plan;
+            _conditions = conditions;
+            _indexes = indexes;
+            _trimValues = trimValues;
+        }
+
+        /**
+         * Returns true if the provided data line is accepted by the filter.
+         * @param line data line
+         * @return true if the line is accepted
+         */
+        boolean matches(String line) {
+            for (int i = 0; i < _conditions.length; i++) {
+                long range = _plan.resolveRange(line, _indexes[i], _trimValues);
+                if (range == -1 || !_conditions[i].matches(line, FixedColumnsExtractionPlan.getRangeStart(range), FixedColumnsExtractionPlan.getRangeEnd(range)))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns true if the provided data line (provided as bytes, not including the line separator) is accepted by the filter.
+         * @param bytes the bytes containing the data line
+         * @param offset offset of the data line
+         * @param length length of the data line
+         * @param charset encoding of the data
+         * @return true if the line is accepted
+         */
+        boolean matches(byte[] bytes, int offset, int length, Charset charset) {
+            // the columns can only be used on the bytes if each character is a single byte
+            if (!FixedColumnsLayout.isSingleByteData(bytes, offset, length, charset))
+                return matches(new String(bytes, offset, length, charset));
+
+            _bytesView.set(bytes, offset, length);
+            for (int i = 0; i < _conditions.length; i++) {
+                long range = _plan.resolveRange(_bytesView, _indexes[i], _trimValues);
+                if (range == -1 || !_conditions[i].matches(_bytesView, FixedColumnsExtractionPlan.getRangeStart(range), FixedColumnsExtractionPlan.getRangeEnd(range)))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A view of single-byte data (ISO-8859-1) as a sequence of characters, without decoding it; a sub-sequence is a view of the same bytes.
+     */
+    private static final class ByteCharSequence implements CharSequence {
+
+        private byte[] _bytes;
+
+        private int _offset;
+
+        private int _length;
+
+        private void set(byte[] bytes, int offset, int length) {
+            _bytes = bytes;
+            _offset = offset;
+            _length = length;
+        }
+
+        @Override
+        public int length() {
+            return _length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char)(_bytes[_offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, _length);
+            ByteCharSequence result = new ByteCharSequence();
+            result.set(_bytes, _offset + start, end - start);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return new String(_bytes, _offset, _length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.imsweb.layout.record.LayoutRecord;
+import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.fixed.FixedColumnsChunkedReader.Chunk;
+
+/**
+ * An index from the values of one or several key fields (like the patient ID number, or the patient ID number and the tumor record number) to the
+ * records of a fixed-columns data file, allowing to find the records having a given key without reading the file.
+ * <br/><br/>
+ * The index is built by reading the file once, in parallel; it is kept off-heap, sorted by key (the keys are the values of the key fields, extracted
+ * the same way the records are). While the index is built, the keys are gathered off-heap too, only a few primitive values per record are kept on the
+ * heap. It can be saved to a file and memory-mapped later, so the same index can be used by many runs as long as the data file
+ * doesn't change. Only uncompressed files are supported (the records are accessed by offset).
+ * <br/><br/>
+ * The index keeps the data file open to read the records; it needs to be closed. Lookups are thread-safe.
+ */
+public final class FixedColumnsKeyIndex implements Closeable {
+
+    // identifier and version of the saved indexes
+    private static final int _MAGIC = 0x4B494458;
+    private static final int _VERSION = 1;
+
+    // separator between the values of the key fields
+    private static final char _KEY_SEPARATOR = '\u0000';
+
+    // size of the fixed part of the header
+    private static final int _HEADER_SIZE = 36;
+
+    // the layout
+    private final FixedColumnsLayout _layout;
+
+    // the data file
+    private final File _file;
+
+    // the options used to read the records (can be null)
+    private final RecordLayoutOptions _options;
+
+    // the key fields
+    private final List<String> _keyFields;
+
+    // the number of entries (records)
+    private final int _size;
+
+    // the index data: the record offsets (sorted by key), the key positions, and the keys (as UTF-8 bytes)
+    private final ByteBuffer _data;
+
+    // position in the data of the record offsets, of the key positions and of the keys
+    private final int _offsetsStart;
+    private final int _keyPositionsStart;
+    private final int _keysStart;
+
+    // size and last modified date of the data file when the index was built
+    private final long _fileLength;
+    private final long _fileLastModified;
+
+    // the data file channel
+    private final FileChannel _channel;
+
+    private FixedColumnsKeyIndex(FixedColumnsLayout layout, File file, RecordLayoutOptions options, ByteBuffer data) throws IOException {
+        _layout = layout;
+        _file = file;
+        _options = options;
+        _data = data.order(ByteOrder.BIG_ENDIAN);
+
+        if (_data.getInt(0) != _MAGIC || _data.getInt(4) != _VERSION)
+            throw new IOException("Invalid key index");
+        _fileLength = _data.getLong(8);
+        _fileLastModified = _data.getLong(16);
+        _size = _data.getInt(24);
+        int numKeyFields = _data.getInt(28);
+        int keyFieldsLength = _data.getInt(32);
+
+        byte[] keyFields = new byte[keyFieldsLength];
+        _data.get(_HEADER_SIZE, keyFields);
+        _keyFields = Collections.unmodifiableList(Arrays.asList(new String(keyFields, StandardCharsets.UTF_8).split(String.valueOf(_KEY_SEPARATOR), -1)));
+        if (_keyFields.size() != numKeyFields)
+            throw new IOException("Invalid key index");
+
+        _offsetsStart = _HEADER_SIZE + keyFieldsLength;
+        _keyPositionsStart = _offsetsStart + _size * Long.BYTES;
+        _keysStart = _keyPositionsStart + (_size + 1) * Integer.BYTES;
+
+        _channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Builds the index by reading the provided file in parallel (using as many threads as there are available processors).
+     * @param layout the layout of the data, cannot be null
+     * @param file the data file (must be uncompressed), cannot be null
+     * @param keyFields the names of the key fields, cannot be null or empty
+     * @param options options to use (null means default option values will be used)
+     * @return the index, never null
+     */
+    public static FixedColumnsKeyIndex build(FixedColumnsLayout layout, File file, List<String> keyFields, RecordLayoutOptions options) throws IOException {
+        return build(layout, file, keyFields, options, Runtime.getRuntime().availableProcessors(), FixedColumnsChunkedReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    // package-private so the tests can use a smaller chunk size
+    static FixedColumnsKeyIndex build(FixedColumnsLayout layout, File file, List<String> keyFields, RecordLayoutOptions options, int numThreads, int chunkSize)
+            throws IOException {
+        checkSupported(file);
+        if (keyFields == null || keyFields.isEmpty())
+            throw new IllegalStateException("At least one key field is required");
+        for (String keyField : keyFields)
+            if (layout.getFieldByName(keyField) == null)
+                throw new IllegalStateException("Unknown field: " + keyField);
+
+        // the keys are extracted using a projection on the key fields, into a single record re-used for all the lines of a chunk
+        RecordLayoutOptions keyOptions = new RecordLayoutOptions();
+        keyOptions.setEncoding(layout.resolveEncoding(options));
+        keyOptions.setTrimValues(options == null || options.trimValues());
+        keyOptions.setProjectedFields(keyFields);
+        LayoutRecord.Schema keySchema = layout.getRecordSchema(keyOptions);
+
+        long fileLength = file.length();
+        long fileLastModified = file.lastModified();
+
+        // the keys of all the records are gathered in a single off-heap block, the offsets and key ends in primitive arrays
+        KeyBlock keys = new KeyBlock();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int lineLength = layout.getLayoutLineLength() == null ? 0 : layout.getLayoutLineLength();
+            List<Chunk> chunks = FixedColumnsChunkedReader.split(channel, lineLength, chunkSize);
+            FixedColumnsChunkedReader.process(channel, chunks, Math.max(numThreads, 1), true, (chunk, buffer) -> {
+                ChunkKeys result = new ChunkKeys(keyFields);
+                Map<String, String> rec = new LayoutRecord(keySchema);
+                FixedColumnsChunkedReader.forEachLine(buffer, lineLength, (bytes, length, lineNumber, lineStart) -> {
+                    try {
+                        rec.clear();
+                        layout.fillRecordFromBytes(bytes, 0, length, null, keyOptions, rec);
+                        result.add(rec, chunk.getStart() + lineStart);
+                        return true;
+                    }
+                    catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                return result;
+            }, (chunk, result) -> keys.append(result));
+        }
+
+        int size = keys._size;
+        int[] order = keys.sort();
+
+        byte[] keyFieldsBytes = String.join(String.valueOf(_KEY_SEPARATOR), keyFields).getBytes(StandardCharsets.UTF_8);
+        long totalLength = _HEADER_SIZE + keyFieldsBytes.length + (long)size * Long.BYTES + (size + 1L) * Integer.BYTES + keys._keys.position();
+        if (totalLength > Integer.MAX_VALUE)
+            throw new IOException("The key index would be too large, use fewer or shorter key fields");
+
+        ByteBuffer data = ByteBuffer.allocateDirect((int)totalLength);
+        data.putInt(_MAGIC).putInt(_VERSION).putLong(fileLength).putLong(fileLastModified).putInt(size).putInt(keyFields.size()).putInt(
+                keyFieldsBytes.length).put(keyFieldsBytes);
+        for (int i : order)
+            data.putLong(keys._offsets[i]);
+        int keyPosition = 0;
+        for (int i : order) {
+            data.putInt(keyPosition);
+            keyPosition += keys.getEnd(i) - keys.getStart(i);
+        }
+        data.putInt(keyPosition);
+        for (int i : order) {
+            int start = keys.getStart(i);
+            int length = keys.getEnd(i) - start;
+            data.put(data.position(), keys._keys, start, length).position(data.position() + length);
+        }
+
+        return new FixedColumnsKeyIndex(layout, file, options, data.clear());
+    }
+
+    /**
+     * Loads (memory-maps) a saved index; returns null if the index doesn't correspond to the current version of the data file or to the requested key
+     * fields (meaning it needs to be built again).
+     * @param layout the layout of the data, cannot be null
+     * @param file the data file, cannot be null
+     * @param keyFields the names of the key fields, cannot be null
+     * @param indexFile the saved index, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return the index, null if the index needs to be built again
+     */
+    public static FixedColumnsKeyIndex load(FixedColumnsLayout layout, File file, List<String> keyFields, File indexFile, RecordLayoutOptions options)
+            throws IOException {
+        checkSupported(file);
+
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < _HEADER_SIZE || data.getInt(4) != _VERSION || data.getLong(8) != file.length() || data.getLong(16) != file.lastModified())
+            return null;
+
+        FixedColumnsKeyIndex index = new FixedColumnsKeyIndex(layout, file, options, data);
+        if (!index._keyFields.equals(keyFields)) {
+            index.close();
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Saves this index to the provided file.
+     * @param indexFile the file to write the index to, cannot be null
+     */
+    public void save(File indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = _data.duplicate().clear();
+            while (data.hasRemaining())
+                channel.write(data);
+        }
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public List<String> getKeyFields() {
+        return _keyFields;
+    }
+
+    /**
+     * Returns the number of indexed records.
+     * @return the number of records
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns true if the data file still corresponds to this index (meaning its size and last modified date didn't change).
+     * @return true if the index is up to date
+     */
+    public boolean isUpToDate() {
+        return _file.length() == _fileLength && _file.lastModified() == _fileLastModified;
+    }
+
+    /**
+     * Returns the offsets (in the data file) of the records having the provided key, in file order.
+     * @param keyValues the values of the key fields, in the order of the key fields (null or empty for a missing value)
+     * @return the offsets, empty if no record has that key
+     */
+    public long[] getOffsets(String... keyValues) {
+        if (keyValues.length != _keyFields.size())
+            throw new IllegalStateException("Expected " + _keyFields.size() + " key values but got " + keyValues.length);
+
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < keyValues.length; i++) {
+            if (i > 0)
+                buf.append(_KEY_SEPARATOR);
+            if (keyValues[i] != null)
+                buf.append(keyValues[i]);
+        }
+        byte[] key = buf.toString().getBytes(StandardCharsets.UTF_8);
+
+        // find the first entry having that key
+        int low = 0;
+        int high = _size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        int end = low;
+        while (end < _size && compare(end, key) == 0)
+            end++;
+
+        long[] result = new long[end - low];
+        for (int i = low; i < end; i++)
+            result[i - low] = _data.getLong(_offsetsStart + i * Long.BYTES);
+        return result;
+    }
+
+    /**
+     * Returns the records having the provided key, in file order.
+     * @param keyValues the values of the key fields, in the order of the key fields (null or empty for a missing value)
+     * @return the records, empty if no record has that key
+     */
+    public List<Map<String, String>> lookup(String... keyValues) throws IOException {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (long offset : getOffsets(keyValues))
+            result.add(readRecord(offset));
+        return result;
+    }
+
+    /**
+     * Returns the record starting at the provided offset of the data file.
+     * @param offset offset of the record
+     * @return the record, never null
+     */
+    public Map<String, String> readRecord(long offset) throws IOException {
+        int lineLength = _layout.getLayoutLineLength() == null ? 0 : _layout.getLayoutLineLength();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(lineLength + 2, 256));
+        int length = -1;
+        while (length == -1) {
+            int read = _channel.read(buffer, offset + buffer.position());
+            for (int i = 0; i < buffer.position(); i++) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    length = i;
+                    break;
+                }
+            }
+            if (length == -1) {
+                if (read == -1)
+                    length = buffer.position();
+                else if (!buffer.hasRemaining())
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+        }
+
+        return _layout.createRecordFromBytes(buffer.array(), 0, length, null, _options);
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    // compares the key of the requested entry with the provided key
+    private int compare(int entry, byte[] key) {
+        int start = _keysStart + _data.getInt(_keyPositionsStart + entry * Integer.BYTES);
+        int end = _keysStart + _data.getInt(_keyPositionsStart + (entry + 1) * Integer.BYTES);
+        int length = Math.min(end - start, key.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (_data.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0)
+                return diff;
+        }
+        return (end - start) - key.length;
+    }
+
+    private static void checkSupported(File file) throws IOException {
+        if (file == null || !file.exists())
+            throw new IOException("File does not exist.");
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".gz") || name.endsWith(".gzip") || name.endsWith(".zip"))
+            throw new IOException("Key indexes are not supported for compressed files");
+    }
+
+    // the keys of the records of a chunk
+    private static final class ChunkKeys {
+
+        // the key fields
+        private final List<String> _keyFields;
+
+        // the keys (as UTF-8 bytes), one after the other
+        private byte[] _keys = new byte[16 * 1024];
+        private int _keysLength;
+
+        // the end of each key, and the offset of each record
+        private int[] _ends = new int[1024];
+        private long[] _offsets = new long[1024];
+
+        // the number of records
+        private int _size;
+
+        // buffer used to create the keys
+        private final StringBuilder _buf = new StringBuilder();
+
+        private ChunkKeys(List<String> keyFields) {
+            _keyFields = keyFields;
+        }
+
+        private void add(Map<String, String> rec, long offset) {
+            _buf.setLength(0);
+            for (int i = 0; i < _keyFields.size(); i++) {
+                if (i > 0)
+                    _buf.append(_KEY_SEPARATOR);
+                String value = rec.get(_keyFields.get(i));
+                if (value != null)
+                    _buf.append(value);
+            }
+            byte[] key = _buf.toString().getBytes(StandardCharsets.UTF_8);
+
+            if (_keysLength + key.length > _keys.length)
+                _keys = Arrays.copyOf(_keys, Math.max(_keysLength + key.length, _keys.length * 2));
+            System.arraycopy(key, 0, _keys, _keysLength, key.length);
+            _keysLength += key.length;
+
+            if (_size == _ends.length) {
+                _ends = Arrays.copyOf(_ends, _size * 2);
+                _offsets = Arrays.copyOf(_offsets, _size * 2);
+            }
+            _ends[_size] = _keysLength;
+            _offsets[_size] = offset;
+            _size++;
+        }
+    }
+
+    // the keys of all the records, in file order; the keys are kept off-heap
+    private static final class KeyBlock {
+
+        // the keys (as UTF-8 bytes), one after the other (the position is the length of the keys)
+        private ByteBuffer _keys = ByteBuffer.allocateDirect(1024 * 1024);
+
+        // the end of each key, and the offset of each record
+        private int[] _ends = new int[1024];
+        private long[] _offsets = new long[1024];
+
+        // the number of records
+        private int _size;
+
+        private void append(ChunkKeys chunk) throws IOException {
+            if ((long)_keys.position() + chunk._keysLength > Integer.MAX_VALUE)
+                throw new IOException("The key index would be too large, use fewer or shorter key fields");
+            if (_keys.remaining() < chunk._keysLength) {
+                ByteBuffer keys = ByteBuffer.allocateDirect((int)Math.min(Math.max((long)_keys.capacity() * 2, (long)_keys.position() + chunk._keysLength),
+                        Integer.MAX_VALUE));
+                _keys = keys.put(_keys.flip());
+            }
+            int base = _keys.position();
+            _keys.put(chunk._keys, 0, chunk._keysLength);
+
+            if (_size + chunk._size > _ends.length) {
+                int capacity = Math.max(_size + chunk._size, _ends.length * 2);
+                _ends = Arrays.copyOf(_ends, capacity);
+                _offsets = Arrays.copyOf(_offsets, capacity);
+            }
+            for (int i = 0; i < chunk._size; i++)
+                _ends[_size + i] = base + chunk._ends[i];
+            System.arraycopy(chunk._offsets, 0, _offsets, _size, chunk._size);
+            _size += chunk._size;
+        }
+
+        private int getStart(int entry) {
+            return entry == 0 ? 0 : _ends[entry - 1];
+        }
+
+        private int getEnd(int entry) {
+            return _ends[entry];
+        }
+
+        /**
+         * Returns the entries sorted by key (unsigned byte order); the sort is stable, so the records having the same key stay in file order.
+         */
+        private int[] sort() {
+            int[] order = new int[_size];
+            for (int i = 0; i < _size; i++)
+                order[i] = i;
+
+            // bottom-up merge sort on the entry indexes
+            int[] tmp = new int[_size];
+            for (int width = 1; width < _size; width *= 2) {
+                for (int low = 0; low < _size; low += 2 * width) {
+                    int mid = Math.min(low + width, _size);
+                    int high = Math.min(low + 2 * width, _size);
+                    int i = low;
+                    int j = mid;
+                    int k = low;
+                    while (i < mid && j < high)
+                        tmp[k++] = compare(order[j], order[i]) < 0 ? order[j++] : order[i++];
+                    while (i < mid)
+                        tmp[k++] = order[i++];
+                    while (j < high)
+                        tmp[k++] = order[j++];
+                }
+                int[] swap = order;
+                order = tmp;
+                tmp = swap;
+            }
+            return order;
+        }
+
+        private int compare(int entry1, int entry2) {
+            int start1 = getStart(entry1);
+            int start2 = getStart(entry2);
+            int length1 = _ends[entry1] - start1;
+            int length2 = _ends[entry2] - start2;
+            int length = Math.min(length1, length2);
+            for (int i = 0; i < length; i++) {
+                int diff = (_keys.get(start1 + i) & 0xFF) - (_keys.get(start2 + i) & 0xFF);
+                if (diff != 0)
+                    return diff;
+            }
+            return length1 - length2;
+        }
+    }
+}
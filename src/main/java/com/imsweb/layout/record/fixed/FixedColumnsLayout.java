@@ -6,9 +6,19 @@ package com.imsweb.layout.record.fixed;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -17,6 +27,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.imsweb.layout.Field;
 import com.imsweb.layout.Field.FieldAlignment;
@@ -24,8 +36,12 @@ import com.imsweb.layout.LayoutFactory;
 import com.imsweb.layout.LayoutInfo;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
 import com.imsweb.layout.LayoutUtils;
+import com.imsweb.layout.record.LayoutRecord;
 import com.imsweb.layout.record.RecordLayout;
 import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
+import com.imsweb.layout.record.fixed.FixedColumnsChunkedReader.Chunk;
+import com.imsweb.layout.record.fixed.FixedColumnsFilter.CompiledFilter;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutFieldXmlDto;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutXmlDto;
 
@@ -57,6 +73,22 @@ public class FixedColumnsLayout extends RecordLayout {
      */
     protected Map<Integer, FixedColumnsField> _cachedByNaaccrItemNumber = new HashMap<>();
 
+    /**
+     * Pre-compiled extraction plan (re-created every time the fields are set)
+     */
+    private volatile FixedColumnsExtractionPlan _extractionPlan;
+
+    /**
+     * Whether the logic of creating a record from a line has been overridden (in which case the values can't be extracted from the bytes)
+     */
+    private final boolean _createRecordFromLineOverridden = getDeclaringClass("createRecordFromLine", String.class, Integer.class, RecordLayoutOptions.class)
+            != FixedColumnsLayout.class;
+
+    /**
+     * Whether the logic of cleaning values has been overridden (without overriding the method indicating which values need to be cleaned)
+     */
+    private final boolean _cleanValueOverridden = isCleanValueOverridden();
+
     /**
      * Default constructor.
      */
@@ -153,6 +185,8 @@ public class FixedColumnsLayout extends RecordLayout {
         catch (Exception e) {
             throw new IOException(e.getMessage());
         }
+
+        _extractionPlan = new FixedColumnsExtractionPlan(_fields);
     }
 
     protected String getDeprecatedFieldName(String name) {
@@ -233,6 +267,32 @@ public class FixedColumnsLayout extends RecordLayout {
 
         // verify they make sense
         verify();
+
+        _extractionPlan = new FixedColumnsExtractionPlan(_fields);
+    }
+
+    /**
+     * Returns the pre-compiled extraction plan for the current fields, creating it if needed.
+     * @return the extraction plan, never null
+     */
+    FixedColumnsExtractionPlan getExtractionPlan() {
+        FixedColumnsExtractionPlan plan = _extractionPlan;
+        if (plan == null) {
+            plan = new FixedColumnsExtractionPlan(_fields);
+            _extractionPlan = plan;
+        }
+        return plan;
+    }
+
+    @Override
+    protected boolean canCreateRecordsFromBytes(RecordLayoutOptions options) {
+        return isByteSplittable(getEncoding(options));
+    }
+
+    @Override
+    protected LayoutRecord.Schema getRecordSchema(RecordLayoutOptions options) {
+        // the records of a projection only have slots for the projected fields
+        return getExtractionPlan().project(options).getSchema();
     }
 
     /**
@@ -288,98 +348,136 @@ public class FixedColumnsLayout extends RecordLayout {
     }
 
     @Override
-    @SuppressWarnings("java:S3776") // logic too complicated
     public String createLineFromRecord(Map<String, String> rec, RecordLayoutOptions options) throws IOException {
-        StringBuilder result = new StringBuilder();
+        char[] line = new char[_layoutLineLength];
+        fillLineFromRecord(rec, options, line);
+        return new String(line);
+    }
+
+    /**
+     * Writes the data line corresponding to the provided record into the provided buffer; this allows to re-use the same buffer for many records.
+     * <p/>
+     * The buffer must be at least as big as the layout line length; only the first characters (up to the line length) are written, the other ones are left
+     * untouched (they can be used to hold the line separator for example).
+     * @param rec record to convert
+     * @param options the options to use to create the line (pass null to use all default options)
+     * @param line the buffer to write the line into
+     */
+    public void fillLineFromRecord(Map<String, String> rec, RecordLayoutOptions options, char[] line) throws IOException {
+        int lineLength = _layoutLineLength;
+        if (line.length < lineLength)
+            throw new IllegalArgumentException("Buffer is too small, it needs to contain at least " + lineLength + " characters");
+
+        Arrays.fill(line, 0, lineLength, ' ');
 
         if (rec == null)
-            rec = new HashMap<>();
+            rec = Collections.emptyMap();
 
-        int currentIndex = 1;
+        boolean applyPadding = applyPadding(options);
+        boolean applyAlignment = applyAlignment(options);
         for (FixedColumnsField field : _fields) {
-            int start = field.getStart();
-            int end = field.getEnd();
+            // if the field defines subfields, always use the subfields (#162)
+            if (field.getSubFields() != null && !field.getSubFields().isEmpty()) {
+                for (FixedColumnsField child : field.getSubFields())
+                    if (child.getEnd() <= field.getEnd()) // do not write the current subfield out if it can potentially go out of the field
+                        writeValue(line, rec.get(child.getName()), child, field, options, applyPadding, applyAlignment);
+            }
+            else if (field.getEnd() <= lineLength) // do not write the current field out if it can potentially go out of the line
+                writeValue(line, rec.get(field.getName()), field, field, options, applyPadding, applyAlignment);
+        }
+    }
 
-            // adjust for the "leading" gap
-            if (start > currentIndex)
-                for (int i = 0; i < start - currentIndex; i++)
-                    result.append(' ');
-            currentIndex = start;
+    // writes the value of the provided field in the line (package-private so the converter can use it)
+    void writeValue(char[] line, String value, FixedColumnsField field, FixedColumnsField parentField, RecordLayoutOptions options, boolean applyPadding,
+            boolean applyAlignment) throws IOException {
+        if (value == null)
+            value = field.getDefaultValue() != null ? field.getDefaultValue() : "";
+
+        int start = field.getStart() - 1;
+        int length = field.getEnd() - field.getStart() + 1;
+        if (value.length() > length) {
+            if (options != null && RecordLayoutOptions.VAL_TOO_LONG_NULLIFY.equals(options.getValueTooLongHandling()))
+                value = "";
+            else if (options != null && RecordLayoutOptions.VAL_TOO_LONG_CUTOFF.equals(options.getValueTooLongHandling()))
+                value = value.substring(0, length);
+            else
+                throw new IOException("value too long for field '" + parentField.getName() + "'");
+        }
 
-            // get value; if the field defines subfields, always use the subfields (#162)
-            if (field.getSubFields() != null && !field.getSubFields().isEmpty()) {
-                for (FixedColumnsField child : field.getSubFields()) {
-                    int subStart = child.getStart();
-                    int subEnd = child.getEnd();
-
-                    // adjust for the "leading" gap within the subfields
-                    if (subStart > currentIndex)
-                        for (int i = 0; i < subStart - currentIndex; i++)
-                            result.append(' ');
-                    currentIndex = subStart;
-
-                    if (subEnd <= end) { // do not write the current subfield out if it can potentially go out of the field
-                        String value = rec.get(child.getName());
-                        if (value == null)
-                            value = child.getDefaultValue() != null ? child.getDefaultValue() : "";
-                        int length = subEnd - subStart + 1;
-                        if (value.length() > length) {
-                            if (options != null && RecordLayoutOptions.VAL_TOO_LONG_NULLIFY.equals(options.getValueTooLongHandling()))
-                                value = "";
-                            else if (options != null && RecordLayoutOptions.VAL_TOO_LONG_CUTOFF.equals(options.getValueTooLongHandling()))
-                                value = value.substring(0, length);
-                            else
-                                throw new IOException("value too long for field '" + field.getName() + "'");
-                        }
-                        String paddingChar = !value.isEmpty() && applyPadding(options) ? child.getPadChar() : " ";
-                        if (applyAlignment(options) && child.getAlign() == FieldAlignment.RIGHT)
-                            value = LayoutUtils.pad(value, length, paddingChar, true);
-                        else
-                            value = LayoutUtils.pad(value, length, paddingChar, false);
-                        result.append(cleanValue(value, child));
-                        currentIndex = subEnd + 1;
-                    }
-                }
+        String paddingChar = !value.isEmpty() && applyPadding && field.getPadChar() != null ? field.getPadChar() : " ";
+        boolean rightAlign = applyAlignment && field.getAlign() == FieldAlignment.RIGHT;
 
-                // adjust for the "trailing" gap within the subfields
-                if (currentIndex <= end)
-                    for (int i = 0; i < end - currentIndex + 1; i++)
-                        result.append(' ');
-                currentIndex = end + 1;
-            }
-            else if (end <= _layoutLineLength) { // do not write the current field out if it can potentially go out of the line
-                String value = rec.get(field.getName());
-                if (value == null)
-                    value = field.getDefaultValue() != null ? field.getDefaultValue() : "";
-                int length = end - start + 1;
-                if (value.length() > length) {
-                    if (options != null && RecordLayoutOptions.VAL_TOO_LONG_NULLIFY.equals(options.getValueTooLongHandling()))
-                        value = "";
-                    else if (options != null && RecordLayoutOptions.VAL_TOO_LONG_CUTOFF.equals(options.getValueTooLongHandling()))
-                        value = value.substring(0, length);
-                    else
-                        throw new IOException("value too long for field '" + field.getName() + "'");
-                }
-                String paddingChar = !value.isEmpty() && applyPadding(options) ? field.getPadChar() : " ";
-                if (applyAlignment(options) && field.getAlign() == FieldAlignment.RIGHT)
-                    value = LayoutUtils.pad(value, length, paddingChar, true);
-                else
-                    value = LayoutUtils.pad(value, length, paddingChar, false);
-                result.append(cleanValue(value, field));
-                currentIndex = end + 1;
-            }
+        // the value needs to go through a padded string if it needs to be cleaned (or if the padding is not a single character)
+        if (paddingChar.length() != 1 || isValueCleaned(field)) {
+            String cleanedValue = cleanValue(LayoutUtils.pad(value, length, paddingChar, rightAlign), field);
+            if (cleanedValue != null)
+                cleanedValue.getChars(0, Math.min(cleanedValue.length(), length), line, start);
+            return;
+        }
+
+        int paddingLength = length - value.length();
+        int paddingStart = rightAlign ? start : start + value.length();
+        value.getChars(0, value.length(), line, rightAlign ? start + paddingLength : start);
+        if (paddingChar.charAt(0) != ' ')
+            Arrays.fill(line, paddingStart, paddingStart + paddingLength, paddingChar.charAt(0));
+    }
+
+    @Override
+    protected CharBuffer createLineFromRecord(Map<String, String> rec, RecordLayoutOptions options, CharBuffer reuse) throws IOException {
+        CharBuffer line = reuse != null && reuse.hasArray() && reuse.capacity() >= _layoutLineLength ? reuse : CharBuffer.allocate(_layoutLineLength);
+        fillLineFromRecord(rec, options, line.array());
+        line.clear();
+        line.limit(_layoutLineLength);
+        return line;
+    }
+
+    @Override
+    public void writeRecord(Writer writer, Map<String, String> rec, RecordLayoutOptions options) throws IOException {
+        writeRecords(writer, Collections.singletonList(rec), options);
+    }
+
+    @Override
+    public void writeRecords(Writer writer, List<Map<String, String>> records, RecordLayoutOptions options) throws IOException {
+        char[] line = createLineBuffer(options);
+        for (Map<String, String> rec : records) {
+            fillLineFromRecord(rec, options, line);
+            writer.write(line);
         }
+    }
 
-        // adjust for the "leading" gap
-        if (currentIndex <= _layoutLineLength)
-            for (int i = 0; i < _layoutLineLength - currentIndex + 1; i++)
-                result.append(' ');
+    // returns a buffer big enough to contain a line, with the line separator already written at the end of it
+    private char[] createLineBuffer(RecordLayoutOptions options) {
+        String separator = getLineSeparator(options);
+        char[] line = new char[_layoutLineLength + separator.length()];
+        separator.getChars(0, separator.length(), line, _layoutLineLength);
+        return line;
+    }
 
-        return result.toString();
+    /**
+     * Returns true if the values of the provided field need to go through <b>cleanValue()</b> when creating a data line.
+     * <p/>
+     * Layouts overriding <b>cleanValue()</b> for a few fields only should also override this method so the values of the other fields can be written
+     * without creating intermediate strings; by default, all the values are cleaned if <b>cleanValue()</b> is overridden, otherwise the values are cleaned
+     * only if this layout extends another one that cleans them.
+     * @param field field
+     * @return true if the values of the field needs to be cleaned
+     */
+    protected boolean isValueCleaned(Field field) {
+        if (_cleanValueOverridden)
+            return true;
+
+        // if this layout extends another one, delegate to the other one...
+        if (_parentLayoutId != null)
+            return ((FixedColumnsLayout)LayoutFactory.getLayout(_parentLayoutId)).isValueCleaned(field);
+
+        return false;
     }
 
     /**
      * Clean the value for the given field; this default implementation does nothing but it delegates to the parent if this is an extending layout.
+     * <p/>
+     * When creating a data line, the provided value is already padded to the length of the field; if the returned value is longer it is cut off, if it is
+     * shorter (or null) the rest of the field is left blank.
      */
     protected String cleanValue(String value, Field field) {
 
@@ -391,9 +489,9 @@ public class FixedColumnsLayout extends RecordLayout {
     }
 
     @Override
-    @SuppressWarnings({"StringOperationCanBeSimplified", "java:S2129"}) // creating new String instances
     public Map<String, String> createRecordFromLine(String line, Integer lineNumber, RecordLayoutOptions options) throws IOException {
-        Map<String, String> result = new HashMap<>();
+        FixedColumnsExtractionPlan plan = getExtractionPlan().project(options);
+        Map<String, String> result = new LayoutRecord(plan.getSchema());
 
         Integer lineNumberSafe = lineNumber == null ? Integer.valueOf(1) : lineNumber;
 
@@ -412,51 +510,424 @@ public class FixedColumnsLayout extends RecordLayout {
                 throw new IOException(validationMsg);
         }
 
-        for (FixedColumnsField field : _fields) {
-            int start = field.getStart();
-            int end = field.getEnd();
-
-            if (end > line.length())
-                break;
-
-            // http://blog.mikemccandless.com/2010/06/beware-stringsubstrings-memory-usage.html
-            String value = new String(line.substring(start - 1, end));
-
-            // can we trim the value?
-            boolean childPreventsTrimming = false;
-            if (field.getSubFields() != null)
-                childPreventsTrimming = field.getSubFields().stream().anyMatch(subField -> !subField.getTrim());
-            String trimmedValue = value.trim();
-            if (trimValues(options) && (field.getTrim() || (trimmedValue.isEmpty() && !childPreventsTrimming))) {
-                // never trim a group field unless it's completely empty (or we would lose the info of which child value is which)
-                if (field.getSubFields() == null || trimmedValue.isEmpty())
-                    value = trimmedValue;
+        plan.extract(line, trimValues(options), internValues(options), result);
+
+        return result;
+    }
+
+    /**
+     * Converts the given data line, provided as bytes (not including the line separator), into a map representing a record.
+     * <p/>
+     * If the data only contains single-byte characters (ISO-8859-1 encoding, or US-ASCII/UTF-8 data that doesn't contain any non-ASCII character),
+     * the values are extracted from the bytes and only the extracted values are decoded. Otherwise (or if the strict format needs to be enforced),
+     * the full line is decoded and <b>createRecordFromLine()</b> is called.
+     * @param bytes the bytes containing the data line
+     * @param offset offset of the data line
+     * @param length length of the data line
+     * @param lineNumber line number (use null if no line number available)
+     * @param options the options to use to create the line (pass null to use all default options)
+     * @return a map representing a record
+     */
+    @Override
+    public Map<String, String> createRecordFromBytes(byte[] bytes, int offset, int length, Integer lineNumber, RecordLayoutOptions options) throws IOException {
+        Charset charset = getEncoding(options);
+
+        if (length == 0 || _createRecordFromLineOverridden || enforceStrictFormat(options) || !isSingleByteData(bytes, offset, length, charset))
+            return createRecordFromLine(new String(bytes, offset, length, charset), lineNumber, options);
+
+        FixedColumnsExtractionPlan plan = getExtractionPlan().project(options);
+        Map<String, String> result = new LayoutRecord(plan.getSchema());
+        plan.extract(bytes, offset, length, trimValues(options), internValues(options), result);
+        return result;
+    }
+
+    /**
+     * Same as <b>createRecordFromBytes()</b>, but the values are put into the provided (empty) container.
+     */
+    void fillRecordFromBytes(byte[] bytes, int offset, int length, Integer lineNumber, RecordLayoutOptions options, Map<String, String> target)
+            throws IOException {
+        Charset charset = getEncoding(options);
+
+        if (length == 0 || _createRecordFromLineOverridden || enforceStrictFormat(options) || !isSingleByteData(bytes, offset, length, charset))
+            target.putAll(createRecordFromLine(new String(bytes, offset, length, charset), lineNumber, options));
+        else
+            getExtractionPlan().project(options).extract(bytes, offset, length, trimValues(options), internValues(options), target);
+    }
+
+    static boolean isSingleByteData(byte[] bytes, int offset, int length, Charset charset) {
+        if (StandardCharsets.ISO_8859_1.equals(charset))
+            return true;
+        if (!StandardCharsets.US_ASCII.equals(charset) && !StandardCharsets.UTF_8.equals(charset))
+            return false;
+        for (int i = offset, end = offset + length; i < end; i++)
+            if (bytes[i] < 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the encoding of the data for the provided options (this gives the other classes of the package access to the layout encoding).
+     */
+    Charset resolveEncoding(RecordLayoutOptions options) {
+        return getEncoding(options);
+    }
+
+    /**
+     * Returns the line separator to use when creating lines of data for the provided options (this gives the other classes of the package access to the layout line separator).
+     */
+    String resolveLineSeparator(RecordLayoutOptions options) {
+        return getLineSeparator(options);
+    }
+
+    /**
+     * Returns true if the lines of data encoded with the provided encoding can be split on the line separator bytes.
+     */
+    static boolean isByteSplittable(Charset charset) {
+        return StandardCharsets.ISO_8859_1.equals(charset) || StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.UTF_8.equals(charset);
+    }
+
+    private boolean isCleanValueOverridden() {
+        Class<?> cleanValueClass = getDeclaringClass("cleanValue", String.class, Field.class);
+        return cleanValueClass != FixedColumnsLayout.class && !cleanValueClass.isAssignableFrom(getDeclaringClass("isValueCleaned", Field.class));
+    }
+
+    // returns the most specific class declaring the requested method
+    private Class<?> getDeclaringClass(String methodName, Class<?>... parameterTypes) {
+        for (Class<?> clazz = getClass(); clazz != FixedColumnsLayout.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(methodName, parameterTypes);
+                return clazz;
+            }
+            catch (NoSuchMethodException e) {
+                // keep looking in the parent class
             }
+        }
+        return FixedColumnsLayout.class;
+    }
 
-            if (!value.isEmpty()) {
-                result.put(field.getName(), value);
+    @Override
+    protected RecordReader createRecordReader(InputStream inputStream, RecordLayoutOptions options) throws IOException {
+        Charset charset = getEncoding(options);
+        if (isByteSplittable(charset))
+            return new FixedColumnsByteRecordReader(this, inputStream, charset, options);
+        return super.createRecordReader(inputStream, options);
+    }
 
-                // handle children fields if any
-                if (field.getSubFields() != null) {
-                    for (FixedColumnsField child : field.getSubFields()) {
-                        start = child.getStart();
-                        end = child.getEnd();
+    /**
+     * Returns a reader returning the records one at a time from the data in the file passed in. The caller is responsible for closing the reader.
+     * <br/><br/>
+     * Uncompressed files using an encoding in which the line separators are single bytes (ISO-8859-1, US-ASCII or UTF-8) are read through memory-mapped
+     * segments of the file instead of a stream, which avoids copying the data into intermediate buffers.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    @Override
+    public RecordReader openReader(File file, String zipEntry, RecordLayoutOptions options) throws IOException {
+        if (canMapFile(file, options))
+            return openMappedReader(file, null, options, FixedColumnsMappedRecordReader.DEFAULT_SEGMENT_SIZE);
+        return super.openReader(file, zipEntry, options);
+    }
 
-                        value = new String(line.substring(start - 1, end));
-                        if (trimValues(options) && Boolean.TRUE.equals(child.getTrim()))
-                            value = value.trim();
+    // package-private so the tests can use a smaller segment size
+    RecordReader openMappedReader(File file, CompiledFilter filter, RecordLayoutOptions options, int segmentSize) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new FixedColumnsMappedRecordReader(this, channel, getEncoding(options), options, filter, segmentSize);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
 
-                        if (!value.isEmpty()) {
-                            result.put(child.getName(), value);
-                        }
-                    }
-                }
+    /**
+     * Returns true if the provided file can be read through memory-mapped segments (it can't if a sub-class changes how the readers are created).
+     */
+    private boolean canMapFile(File file, RecordLayoutOptions options) {
+        if (file == null || !file.isFile() || !isByteSplittable(getEncoding(options)))
+            return false;
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".gz") || name.endsWith(".gzip") || name.endsWith(".zip"))
+            return false;
+        return getDeclaringClass("createRecordReader", InputStream.class, RecordLayoutOptions.class) == FixedColumnsLayout.class
+                && getDeclaringClass("openReader", InputStream.class, RecordLayoutOptions.class) == FixedColumnsLayout.class;
+    }
+
+    /**
+     * Returns a reader returning only the records accepted by the provided filter; the filter is evaluated directly on the data lines, and a record is
+     * created only for the lines it accepts.
+     * <br/><br/>
+     * The lines rejected by the filter are skipped without being validated (so the strict-format option doesn't apply to them).
+     * @param inputStream the stream to read the data from
+     * @param filter filter to apply, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     */
+    public RecordReader openReader(InputStream inputStream, FixedColumnsFilter filter, RecordLayoutOptions options) throws IOException {
+        CompiledFilter compiledFilter = filter.compile(getExtractionPlan(), trimValues(options));
+
+        Charset charset = getEncoding(options);
+        if (isByteSplittable(charset))
+            return new FixedColumnsByteRecordReader(this, inputStream, charset, options, compiledFilter);
+
+        return new RecordReader(this, new InputStreamReader(inputStream, charset), options) {
+            @Override
+            protected Map<String, String> fetchNextRecord() throws IOException {
+                String line;
+                while ((line = readLine()) != null)
+                    if (compiledFilter.matches(line))
+                        return createRecordFromLine(line, getLineNumber(), _options);
+                return null;
             }
+        };
+    }
+
+    /**
+     * Returns a reader returning only the records from the provided file that are accepted by the filter.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param filter filter to apply, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return a record reader
+     * @see #openReader(InputStream, FixedColumnsFilter, RecordLayoutOptions)
+     */
+    public RecordReader openReader(File file, String zipEntry, FixedColumnsFilter filter, RecordLayoutOptions options) throws IOException {
+        if (canMapFile(file, options))
+            return openMappedReader(file, filter.compile(getExtractionPlan(), trimValues(options)), options, FixedColumnsMappedRecordReader.DEFAULT_SEGMENT_SIZE);
+
+        InputStream is = LayoutUtils.createInputStream(file, zipEntry, getCompressionThreads(options));
+        try {
+            return openReader(is, filter, options);
+        }
+        catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
         }
+    }
 
+    /**
+     * Returns the records from the provided file that are accepted by the filter.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param filter filter to apply, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return the accepted records
+     * @see #openReader(InputStream, FixedColumnsFilter, RecordLayoutOptions)
+     */
+    public List<Map<String, String>> readAllRecords(File file, String zipEntry, FixedColumnsFilter filter, RecordLayoutOptions options) throws IOException {
+        List<Map<String, String>> result = new ArrayList<>();
+        try (RecordReader reader = openReader(file, zipEntry, filter, options)) {
+            Map<String, String> rec;
+            while ((rec = reader.readRecord()) != null)
+                result.add(rec);
+        }
         return result;
     }
 
+    /**
+     * Returns a stream of the records from the provided file that are accepted by the filter; the returned stream must be closed.
+     * @param file File containing data
+     * @param zipEntry the zip entry to use in the file if it's a zip file (if none are provided and the file contains several entries, an exception will be thrown)
+     * @param filter filter to apply, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return a stream of records
+     * @see #openReader(InputStream, FixedColumnsFilter, RecordLayoutOptions)
+     */
+    public Stream<Map<String, String>> streamRecords(File file, String zipEntry, FixedColumnsFilter filter, RecordLayoutOptions options) throws IOException {
+        return openReader(file, zipEntry, filter, options).stream();
+    }
+
+    /**
+     * Returns true if the provided data line is accepted by the filter.
+     * <br/><br/>
+     * The filter is resolved against the layout for each call; use one of the reading methods taking a filter to process many lines.
+     * @param line data line
+     * @param filter filter to apply, cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return true if the line is accepted
+     */
+    public boolean matches(String line, FixedColumnsFilter filter, RecordLayoutOptions options) {
+        return filter.compile(getExtractionPlan(), trimValues(options)).matches(line);
+    }
+
+    /**
+     * Converts the given data line into a lazy record; the values are only extracted from the line when they are requested.
+     * <br/><br/>
+     * This is useful when only a few values are needed from each record; the returned map contains the same values as the one returned by
+     * <b>createRecordFromLine()</b>, but accessing all (or most) of the values will be slower than using that method.
+     * @param line data line
+     * @param lineNumber line number (use null if no line number available)
+     * @param options the options to use to create the line (pass null to use all default options)
+     * @return a map representing a record
+     */
+    public Map<String, String> createLazyRecordFromLine(String line, Integer lineNumber, RecordLayoutOptions options) throws IOException {
+        Integer lineNumberSafe = lineNumber == null ? Integer.valueOf(1) : lineNumber;
+
+        // handle special case
+        if (line == null || line.isEmpty()) {
+            if (enforceStrictFormat(options))
+                throw new IOException("line " + lineNumberSafe + ": got en empty line");
+            else
+                return new FixedColumnsLazyRecord(getExtractionPlan(), "", trimValues(options));
+        }
+
+        // if we need to enforce the format, validate the line right away
+        if (enforceStrictFormat(options)) {
+            String validationMsg = validateLine(line, lineNumberSafe);
+            if (validationMsg != null)
+                throw new IOException(validationMsg);
+        }
+
+        return new FixedColumnsLazyRecord(getExtractionPlan(), line, trimValues(options));
+    }
+
+    /**
+     * Returns a lazy record that is created from the String returned when readLine() is called on the LineReader passed in.
+     * @param lineReader Used to get the next line from a file; Cannot be null
+     * @param options options to use (null means default option values will be used)
+     * @return A lazy map of the data from the line read by the LineNumberReader, null if there are no more lines
+     */
+    public Map<String, String> readNextLazyRecord(LineNumberReader lineReader, RecordLayoutOptions options) throws IOException {
+        String line = lineReader.readLine();
+        if (line == null)
+            return null;
+        return createLazyRecordFromLine(line, lineReader.getLineNumber(), options);
+    }
+
+    /**
+     * Reads all the records of the provided file in parallel, using as many threads as there are available processors, and hands them to the
+     * consumer in file order.
+     * @param file File containing data
+     * @param options options to use (null means default option values will be used)
+     * @param consumer the consumer receiving the records (always called on the current thread)
+     */
+    public void readAllRecordsInParallel(File file, RecordLayoutOptions options, Consumer<Map<String, String>> consumer) throws IOException {
+        readAllRecordsInParallel(file, options, Runtime.getRuntime().availableProcessors(), true, consumer);
+    }
+
+    /**
+     * Reads all the records of the provided file in parallel and hands them to the consumer.
+     * <p/>
+     * The file is memory-mapped and split into line-aligned chunks (the boundaries are computed using the layout line length), each chunk is then
+     * parsed on a separate thread; the consumer is always called on the current thread. Lines are expected to be separated by '\n' or '\r\n'.
+     * <p/>
+     * Compressed files (gzip or zip) can't be split, they are read sequentially. If an exception happens while parsing a line (for example when
+     * enforcing the strict format), the records preceding that line in the same chunk are handed to the consumer and the exception is re-thrown
+     * with the proper line number.
+     * @param file File containing data
+     * @param options options to use (null means default option values will be used)
+     * @param numThreads number of threads to use to parse the data
+     * @param ordered if true, the records are handed to the consumer in file order; otherwise the order is not guaranteed (which might be faster)
+     * @param consumer the consumer receiving the records (always called on the current thread)
+     */
+    public void readAllRecordsInParallel(File file, RecordLayoutOptions options, int numThreads, boolean ordered, Consumer<Map<String, String>> consumer) throws IOException {
+        readAllRecordsInParallel(file, options, numThreads, ordered, consumer, FixedColumnsChunkedReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    // package-private so the tests can use a smaller chunk size
+    void readAllRecordsInParallel(File file, RecordLayoutOptions options, int numThreads, boolean ordered, Consumer<Map<String, String>> consumer, int chunkSize)
+            throws IOException {
+        if (file == null || !file.exists())
+            throw new IOException("File does not exist.");
+
+        Charset charset = getEncoding(options);
+
+        String name = file.getName().toLowerCase();
+        if (numThreads <= 1 || name.endsWith(".gz") || name.endsWith(".gzip") || name.endsWith(".zip") || !isByteSplittable(charset)) {
+            try (RecordReader reader = openReader(file, null, options)) {
+                Map<String, String> rec;
+                while ((rec = reader.readRecord()) != null)
+                    consumer.accept(rec);
+            }
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int lineLength = _layoutLineLength == null ? 0 : _layoutLineLength;
+            List<Chunk> chunks = FixedColumnsChunkedReader.split(channel, lineLength, chunkSize);
+            FixedColumnsChunkedReader.process(channel, chunks, numThreads, ordered, (chunk, buffer) -> parseChunk(buffer, options), (chunk, result) -> {
+                result._records.forEach(consumer);
+                if (result._failure != null) {
+                    long lineNumber = FixedColumnsChunkedReader.countLines(channel, chunk.getStart()) + result._failedLineNumber;
+                    throw FixedColumnsChunkedReader.withLineNumber(result._failure, result._failedLineNumber, lineNumber);
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds an index from the values of the provided key fields to the records of the provided file, by reading the file in parallel; the caller is
+     * responsible for closing the returned index.
+     * @param file File containing data (must be uncompressed)
+     * @param keyFields the names of the key fields
+     * @param options options to use (null means default option values will be used)
+     * @return the index, never null
+     * @see FixedColumnsKeyIndex
+     */
+    public FixedColumnsKeyIndex buildKeyIndex(File file, List<String> keyFields, RecordLayoutOptions options) throws IOException {
+        return FixedColumnsKeyIndex.build(this, file, keyFields, options);
+    }
+
+    /**
+     * Returns an index from the values of the provided key fields to the records of the provided file; the index is loaded from the index file if it
+     * corresponds to the data file and to the key fields, otherwise it's built and saved to the index file. The caller is responsible for closing the
+     * returned index.
+     * @param file File containing data (must be uncompressed)
+     * @param keyFields the names of the key fields
+     * @param indexFile the file containing the saved index
+     * @param options options to use (null means default option values will be used)
+     * @return the index, never null
+     * @see FixedColumnsKeyIndex
+     */
+    public FixedColumnsKeyIndex openKeyIndex(File file, List<String> keyFields, File indexFile, RecordLayoutOptions options) throws IOException {
+        if (indexFile.exists()) {
+            FixedColumnsKeyIndex index = FixedColumnsKeyIndex.load(this, file, keyFields, indexFile, options);
+            if (index != null)
+                return index;
+        }
+
+        FixedColumnsKeyIndex index = buildKeyIndex(file, keyFields, options);
+        try {
+            index.save(indexFile);
+        }
+        catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    private ParsedChunk parseChunk(ByteBuffer buffer, RecordLayoutOptions options) {
+        ParsedChunk result = new ParsedChunk();
+        FixedColumnsChunkedReader.forEachLine(buffer, _layoutLineLength == null ? 0 : _layoutLineLength, (bytes, length, lineNumber, lineStart) -> {
+            try {
+                result._records.add(createRecordFromBytes(bytes, 0, length, lineNumber, options));
+                return true;
+            }
+            catch (IOException e) {
+                result._failedLineNumber = lineNumber;
+                result._failure = e;
+                return false;
+            }
+        });
+        return result;
+    }
+
+    // the result of parsing a chunk of data
+    private static final class ParsedChunk {
+
+        // records successfully parsed
+        private final List<Map<String, String>> _records = new ArrayList<>();
+
+        // line number (within the chunk) of the line that failed to be parsed
+        private int _failedLineNumber;
+
+        // the failure (if any)
+        private IOException _failure;
+    }
+
     @Override
     public LayoutInfo buildFileInfo(String firstRecord, LayoutInfoDiscoveryOptions options) {
         LayoutInfo result = null;
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A record backed by the original data line of a fixed-columns layout; the values are only extracted (and then cached) when they are requested.
+ * <br/><br/>
+ * Reading a value with <b>get()</b> or <b>containsKey()</b> only extracts that value; any operation that needs the full content of the record
+ * (iterating over it, requesting its size, modifying it, etc...) extracts all the values once and from then on, the record behaves like a regular map.
+ * <br/><br/>
+ * The values are the same as the ones returned by <b>createRecordFromLine()</b>; this class is not thread-safe.
+ */
+public final class FixedColumnsLazyRecord extends AbstractMap<String, String> {
+
+    // the plan used to extract the values
+    private final FixedColumnsExtractionPlan _plan;
+
+    // the data line
+    private final String _line;
+
+    // whether the values need to be trimmed
+    private final boolean _trimValues;
+
+    // the values that have been requested so far (a null value means the field is not part of the record)
+    private Map<String, String> _resolved;
+
+    // all the values, only created if the full content of the record is needed
+    private Map<String, String> _materialized;
+
+    /**
+     * Constructor.
+     * @param plan extraction plan
+     * @param line data line, cannot be null
+     * @param trimValues whether the values need to be trimmed
+     */
+    FixedColumnsLazyRecord(FixedColumnsExtractionPlan plan, String line, boolean trimValues) {
+        _plan = plan;
+        _line = line;
+        _trimValues = trimValues;
+    }
+
+    /**
+     * Returns the data line backing this record.
+     * @return the data line, never null
+     */
+    public String getLine() {
+        return _line;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (_materialized != null)
+            return _materialized.get(key);
+        if (!(key instanceof String))
+            return null;
+
+        if (_resolved == null)
+            _resolved = new HashMap<>();
+        else if (_resolved.containsKey(key))
+            return _resolved.get(key);
+
+        String value = resolve((String)key);
+        _resolved.put((String)key, value);
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    private String resolve(String name) {
+        int idx = _plan.getIndex(name);
+        if (idx == -1)
+            return null;
+
+        long range = _plan.resolveRange(_line, idx, _trimValues);
+        return range == -1 ? null : _line.substring(FixedColumnsExtractionPlan.getRangeStart(range), FixedColumnsExtractionPlan.getRangeEnd(range));
+    }
+
+    private Map<String, String> materialize() {
+        if (_materialized == null) {
+            Map<String, String> values = new HashMap<>();
+            // a lazy record is a short-lived view on its line, its values are not interned
+            _plan.extract(_line, _trimValues, false, values);
+            _materialized = values;
+            _resolved = null;
+        }
+        return _materialized;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> m) {
+        materialize().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+}
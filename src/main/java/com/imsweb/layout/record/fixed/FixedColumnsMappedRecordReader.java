@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
+import com.imsweb.layout.record.fixed.FixedColumnsFilter.CompiledFilter;
+
+/**
+ * Record reader for fixed-columns layouts reading an uncompressed file through memory-mapped segments; the data is never copied into a read buffer,
+ * each line is copied once from the mapped memory into a re-usable line buffer from which the values are extracted (no string is created for the lines).
+ * <br/><br/>
+ * Files larger than a segment are mapped one segment at a time, each segment starting at the beginning of a line. The line separators are found eight
+ * bytes at a time.
+ * <br/><br/>
+ * Like the byte-based reader, this reader can only be used with encodings for which a line separator is always encoded as the corresponding single byte
+ * (like ISO-8859-1, US-ASCII or UTF-8); it recognizes '\n', '\r' and '\r\n' as line separators.
+ */
+final class FixedColumnsMappedRecordReader extends RecordReader {
+
+    // default maximum size of a mapped segment
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    // masks used to find the line separators eight bytes at a time
+    private static final long _ONES = 0x0101010101010101L;
+    private static final long _HIGHS = 0x8080808080808080L;
+    private static final long _LINE_FEEDS = _ONES * '\n';
+    private static final long _CARRIAGE_RETURNS = _ONES * '\r';
+
+    // the layout
+    private final FixedColumnsLayout _fixedLayout;
+
+    // the file channel
+    private final FileChannel _channel;
+
+    // the encoding of the data
+    private final Charset _charset;
+
+    // the filter the lines need to pass to be returned as records (can be null)
+    private final CompiledFilter _filter;
+
+    // maximum size of a mapped segment
+    private final int _segmentSize;
+
+    // size of the file
+    private final long _fileSize;
+
+    // the current segment, and its position in the file
+    private MappedByteBuffer _segment;
+    private long _segmentStart;
+
+    // position of the next line in the current segment
+    private int _position;
+
+    // buffer containing the current line
+    private byte[] _lineBytes = new byte[1024];
+
+    // length of the current line
+    private int _lineLength;
+
+    // current line number
+    private int _lineNumber;
+
+    // whether the previous line ended with a '\r' (in which case a following '\n' needs to be ignored)
+    private boolean _skipLineFeed;
+
+    /**
+     * Constructor.
+     * @param layout the layout to use to create the records
+     * @param channel the channel of the file to read (the reader closes it)
+     * @param charset the encoding of the data
+     * @param options options to use (null means default option values will be used)
+     * @param filter the filter the lines need to pass to be returned as records (null to return all the records)
+     * @param segmentSize maximum size of a mapped segment (a line can't be longer than a segment)
+     */
+    FixedColumnsMappedRecordReader(FixedColumnsLayout layout, FileChannel channel, Charset charset, RecordLayoutOptions options, CompiledFilter filter,
+            int segmentSize) throws IOException {
+        super(layout, options);
+        _fixedLayout = layout;
+        _channel = channel;
+        _charset = charset;
+        _filter = filter;
+        _segmentSize = segmentSize;
+        _fileSize = channel.size();
+        map(0);
+    }
+
+    @Override
+    protected String readLine() throws IOException {
+        if (!readLineBytes())
+            return null;
+        return new String(_lineBytes, 0, _lineLength, _charset);
+    }
+
+    @Override
+    protected Map<String, String> fetchNextRecord() throws IOException {
+        if (!nextAcceptedLine())
+            return null;
+        return _fixedLayout.createRecordFromBytes(_lineBytes, 0, _lineLength, _lineNumber, _options);
+    }
+
+    @Override
+    protected boolean fetchNextRecord(Map<String, String> target) throws IOException {
+        if (!nextAcceptedLine())
+            return false;
+        _fixedLayout.fillRecordFromBytes(_lineBytes, 0, _lineLength, _lineNumber, _options, target);
+        return true;
+    }
+
+    // reads the next line accepted by the filter; returns false if there are no more lines
+    private boolean nextAcceptedLine() throws IOException {
+        do {
+            if (!readLineBytes())
+                return false;
+        }
+        while (_filter != null && !_filter.matches(_lineBytes, 0, _lineLength, _charset));
+        return true;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return _lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _segment = null;
+        _channel.close();
+    }
+
+    private boolean readLineBytes() throws IOException {
+        while (true) {
+            int limit = _segment.limit();
+
+            if (_skipLineFeed && _position < limit) {
+                _skipLineFeed = false;
+                if (_segment.get(_position) == '\n')
+                    _position++;
+            }
+
+            if (_position >= limit) {
+                if (_segmentStart + limit >= _fileSize)
+                    return false;
+                map(_segmentStart + _position);
+                continue;
+            }
+
+            int end = findLineSeparator(_segment, _position, limit);
+            boolean lastSegment = _segmentStart + limit >= _fileSize;
+            if (end == -1 && !lastSegment) {
+                // the line continues in the next segment; map the file again starting at the beginning of the line
+                if (_position == 0)
+                    throw new IOException("line " + (_lineNumber + 1) + ": line is longer than the maximum segment size (" + _segmentSize + " bytes)");
+                map(_segmentStart + _position);
+                continue;
+            }
+
+            // the last line doesn't need to be followed by a line separator
+            int lineEnd = end == -1 ? limit : end;
+            _lineLength = lineEnd - _position;
+            if (_lineBytes.length < _lineLength)
+                _lineBytes = new byte[Math.max(_lineLength, _lineBytes.length * 2)];
+            _segment.get(_position, _lineBytes, 0, _lineLength);
+            _skipLineFeed = end != -1 && _segment.get(end) == '\r';
+            _position = end == -1 ? limit : end + 1;
+            _lineNumber++;
+            return true;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        _segmentStart = start;
+        _segment = _channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(_segmentSize, _fileSize - start));
+        _segment.order(ByteOrder.LITTLE_ENDIAN);
+        _position = 0;
+    }
+
+    /**
+     * Returns the position of the first line separator ('\n' or '\r') in the provided range of the buffer, -1 if there is none.
+     * <br/><br/>
+     * The bytes are tested eight at a time: a byte of <code>x ^ separator</code> is zero only if the corresponding byte of <code>x</code> is the
+     * separator, and <code>(v - 0x01..01) & ~v & 0x80..80</code> sets the high bit of the first zero byte of <code>v</code> (the following bits can be
+     * wrong, which doesn't matter since only the first one is used). The buffer must use the little-endian byte order.
+     * @param buffer buffer
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the position of the first line separator, -1 if there is none
+     */
+    static int findLineSeparator(ByteBuffer buffer, int from, int to) {
+        int pos = from;
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            long word = buffer.getLong(pos);
+            long lineFeeds = word ^ _LINE_FEEDS;
+            long carriageReturns = word ^ _CARRIAGE_RETURNS;
+            long found = ((lineFeeds - _ONES) & ~lineFeeds | (carriageReturns - _ONES) & ~carriageReturns) & _HIGHS;
+            if (found != 0)
+                return pos + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        for (; pos < to; pos++) {
+            byte b = buffer.get(pos);
+            if (b == '\n' || b == '\r')
+                return pos;
+        }
+        return -1;
+    }
+}
@@ -5,6 +5,7 @@ package com.imsweb.layout.record.fixed.naaccr;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -417,8 +418,7 @@ public class NaaccrLayout extends FixedColumnsLayout {
 
             // I needed this optimization because NAACCR layouts have tons of fields, and we can't afford loading them each time we need to identify a file...
             if (loadFields) {
-                String xmlFilename = "naaccr-" + getMajorNaaccrVersion() + "-layout.xml";
-                FixedColumnLayoutXmlDto tmpXmlLayout = LayoutUtils.readFixedColumnsLayout(Thread.currentThread().getContextClassLoader().getResourceAsStream("layout/fixed/naaccr/" + xmlFilename));
+                FixedColumnLayoutXmlDto tmpXmlLayout = readInternalLayout(getMajorNaaccrVersion());
 
                 // do not add the fields pass the required line length
                 List<FixedColumnLayoutFieldXmlDto> fields = new ArrayList<>();
@@ -441,6 +441,20 @@ public class NaaccrLayout extends FixedColumnsLayout {
         }
     }
 
+    /**
+     * Reads the definition of the internal NAACCR layout for the requested version; the binary snapshot is used if it's available (it's created when the
+     * library is built, see <b>NaaccrLayoutSnapshots</b>), otherwise the XML definition is used.
+     * @param majorVersion major NAACCR version
+     * @return the layout definition
+     */
+    private static FixedColumnLayoutXmlDto readInternalLayout(String majorVersion) throws IOException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        InputStream snapshot = classLoader.getResourceAsStream(NaaccrLayoutSnapshots.getSnapshotResourceName(majorVersion));
+        if (snapshot != null)
+            return LayoutUtils.readFixedColumnsLayoutSnapshot(snapshot);
+        return LayoutUtils.readFixedColumnsLayout(classLoader.getResourceAsStream("layout/fixed/naaccr/naaccr-" + majorVersion + "-layout.xml"));
+    }
+
     @Override
     protected String getDeprecatedFieldName(String name) {
         return _XML_TO_LAYOUT_MAPPING.getOrDefault(name, name);
@@ -578,6 +592,11 @@ public class NaaccrLayout extends FixedColumnsLayout {
         return value;
     }
 
+    @Override
+    protected boolean isValueCleaned(Field field) {
+        return super.isValueCleaned(field) || "naaccrRecordVersion".equals(field.getName()) || "recordType".equals(field.getName());
+    }
+
     protected String extractNaaccrVersion(String line) {
         return line.length() <= 19 ? "" : line.substring(16, 19).trim();
     }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 Information Management Services, Inc.
+ */
+package com.imsweb.layout.record.fixed.naaccr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.imsweb.layout.LayoutUtils;
+
+/**
+ * Creates the binary snapshots of the internal NAACCR fixed-columns layouts.
+ * <br/><br/>
+ * This class is used by the build (see the 'generateLayoutSnapshots' Gradle task); the snapshots are added to the library so the internal NAACCR layouts
+ * don't need to be parsed from XML every time they are loaded. If a snapshot is not available, the layout is loaded from its XML definition.
+ */
+public final class NaaccrLayoutSnapshots {
+
+    // the XML definitions of the internal NAACCR layouts
+    private static final Pattern _XML_DEFINITION_PATTERN = Pattern.compile("naaccr-(\\d\\d)-layout\\.xml");
+
+    private NaaccrLayoutSnapshots() {
+        // utility class
+    }
+
+    /**
+     * Returns the name of the resource containing the snapshot for the requested NAACCR version.
+     * @param majorVersion major NAACCR version
+     * @return the resource name
+     */
+    public static String getSnapshotResourceName(String majorVersion) {
+        return "layout/fixed/naaccr/naaccr-" + majorVersion + "-layout.bin";
+    }
+
+    /**
+     * Creates the snapshots for all the XML definitions found in the provided directory.
+     * @param xmlDirectory directory containing the XML definitions
+     * @param outputDirectory root directory of the snapshots (they are created under the same path as the resources)
+     * @return the number of created snapshots
+     */
+    public static int createSnapshots(File xmlDirectory, File outputDirectory) throws IOException {
+        File[] files = xmlDirectory.listFiles();
+        if (files == null)
+            throw new IOException("Unable to list files from " + xmlDirectory.getPath());
+
+        int count = 0;
+        for (File file : files) {
+            Matcher matcher = _XML_DEFINITION_PATTERN.matcher(file.getName());
+            if (!matcher.matches())
+                continue;
+
+            File snapshot = new File(outputDirectory, getSnapshotResourceName(matcher.group(1)));
+            if (!snapshot.getParentFile().exists() && !snapshot.getParentFile().mkdirs())
+                throw new IOException("Unable to create " + snapshot.getParentFile().getPath());
+
+            try (FileInputStream is = new FileInputStream(file); FileOutputStream os = new FileOutputStream(snapshot)) {
+                LayoutUtils.writeFixedColumnsLayoutSnapshot(os, LayoutUtils.readFixedColumnsLayout(is));
+            }
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Entry point used by the build.
+     * @param args the directory containing the XML definitions, and the output directory
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException("Expected two arguments: the directory containing the XML definitions and the output directory");
+
+        int count = createSnapshots(new File(args[0]), new File(args[1]));
+        if (count == 0)
+            throw new IllegalStateException("Unable to find any NAACCR layout definition in " + args[0]);
+    }
+}
@@ -8,11 +8,19 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -171,6 +179,47 @@ public class LayoutFactoryTest {
         Assert.assertNotNull(getLayout("test-csv"));
     }
 
+    @Test
+    public void testConcurrentGetLayout() throws Exception {
+        LayoutFactory.unregisterAllLayouts();
+
+        // all the threads should get the same instance of a given layout
+        List<String> layoutIds = Arrays.asList(LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT, LayoutFactory.LAYOUT_ID_NAACCR_18, LayoutFactory.LAYOUT_ID_NAACCR_16_INCIDENCE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Layout>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String layoutId = layoutIds.get(i % layoutIds.size());
+                futures.add(executor.submit(() -> LayoutFactory.getLayout(layoutId)));
+            }
+            for (int i = 0; i < futures.size(); i++)
+                Assert.assertSame(LayoutFactory.getLayout(layoutIds.get(i % layoutIds.size())), futures.get(i).get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assert.assertSame(LayoutFactory.getLayout(LayoutFactory.LAYOUT_ID_NAACCR_18), LayoutFactory.getLayout(LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT));
+        Assert.assertEquals(2, LayoutFactory.getRegisterLayouts().size());
+
+        // failures should still be reported
+        try {
+            LayoutFactory.getLayout("unknown-layout");
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            LayoutFactory.registerLayout(LayoutFactory.getLayout(LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        LayoutFactory.unregisterAllLayouts();
+    }
+
     @Test(expected = IOException.class)
     public void testRegisterLayoutBadFixedFromXml() throws IOException {
         LayoutFactory.registerLayout(new FixedColumnsLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-fixed-columns-bad.xml")));
@@ -325,6 +374,141 @@ public class LayoutFactoryTest {
         Assert.assertTrue(LayoutFactory.getRegisterLayouts().isEmpty());
     }
 
+    @Test
+    public void testDiscoverFormatFromSample() throws IOException {
+        LayoutFactory.unregisterAllLayouts();
+
+        File file = createFileFromTestingResource("fake-naaccr-1000-recs.txt.gz");
+        List<LayoutInfo> all = LayoutFactory.discoverFormat(file);
+        Assert.assertFalse(all.isEmpty());
+
+        // the parallel evaluation shouldn't change the order of the results
+        Assert.assertEquals(all.stream().map(LayoutInfo::getLayoutId).collect(Collectors.toList()),
+                LayoutFactory.discoverFormat(file).stream().map(LayoutInfo::getLayoutId).collect(Collectors.toList()));
+
+        // stopping at the first match should return the first element of the full list
+        LayoutInfoDiscoveryOptions options = new LayoutInfoDiscoveryOptions();
+        options.setStopAtFirstMatch(true);
+        List<LayoutInfo> first = LayoutFactory.discoverFormat(file, options);
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(all.get(0).getLayoutId(), first.get(0).getLayoutId());
+
+        // a sample too small to contain the first line should fall back to the file
+        LayoutDiscoverySample sample = LayoutDiscoverySample.read(file, null, 100);
+        Assert.assertTrue(sample.isTruncated());
+        Assert.assertNull(sample.getFirstLine(StandardCharsets.US_ASCII));
+        Layout layout = LayoutFactory.getLayout(all.get(0).getLayoutId());
+        Assert.assertEquals(all.get(0).getLayoutId(), layout.buildFileInfoFromSample(sample, new LayoutInfoDiscoveryOptions()).getLayoutId());
+
+        // an empty file can't be handled by any layout
+        Assert.assertTrue(LayoutFactory.discoverFormat(createFileFromTestingResource("empty-file.data"), options).isEmpty());
+
+        // the registered external layouts are not required to be thread-safe, they are evaluated by the calling thread, before the internal ones
+        List<Thread> threads = new ArrayList<>();
+        FixedColumnsLayout external = new FixedColumnsLayout() {
+            @Override
+            public LayoutInfo buildFileInfoFromSample(LayoutDiscoverySample sample, LayoutInfoDiscoveryOptions options) {
+                threads.add(Thread.currentThread());
+                return super.buildFileInfoFromSample(sample, options);
+            }
+        };
+        external.setLayoutId("test");
+        external.setLayoutName("Test");
+        external.setLayoutLineLength(all.get(0).getLineLength());
+        FixedColumnsField field = new FixedColumnsField();
+        field.setName("f1");
+        field.setStart(1);
+        field.setEnd(10);
+        external.setFields(Collections.singleton(field));
+        LayoutFactory.registerLayout(external);
+        LayoutInfoDiscoveryOptions lengthOptions = new LayoutInfoDiscoveryOptions();
+        lengthOptions.setFixedColumnAllowDiscoveryFromLineLength(true);
+        List<LayoutInfo> withExternal = LayoutFactory.discoverFormat(file, lengthOptions);
+        Assert.assertEquals("test", withExternal.get(0).getLayoutId());
+        Assert.assertEquals(all.get(0).getLayoutId(), withExternal.get(1).getLayoutId());
+        Assert.assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+
+        LayoutFactory.unregisterAllLayouts();
+    }
+
+    @Test
+    public void testDiscoveryCache() throws IOException {
+        LayoutFactory.unregisterAllLayouts();
+        LayoutFactory.enableDiscoveryCache(2);
+        try {
+            // the evaluations of this layout tell whether a result comes from the cache
+            AtomicInteger evaluations = new AtomicInteger();
+            FixedColumnsLayout counting = new FixedColumnsLayout() {
+                @Override
+                public LayoutInfo buildFileInfoFromSample(LayoutDiscoverySample sample, LayoutInfoDiscoveryOptions options) {
+                    evaluations.incrementAndGet();
+                    return null;
+                }
+            };
+            counting.setLayoutId("test-counting");
+            counting.setLayoutName("Test Counting");
+            counting.setLayoutLineLength(10);
+            FixedColumnsField field = new FixedColumnsField();
+            field.setName("f1");
+            field.setStart(1);
+            field.setEnd(10);
+            counting.setFields(Collections.singleton(field));
+            LayoutFactory.registerLayout(counting);
+
+            File file = createNaaccrLine(24194, "A", "180");
+            List<LayoutInfo> result = LayoutFactory.discoverFormat(file);
+            Assert.assertEquals(LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT, result.get(0).getLayoutId());
+            Assert.assertEquals(1, evaluations.get());
+
+            // the cached result is returned as long as the file is not modified
+            Assert.assertEquals(result, LayoutFactory.discoverFormat(file));
+            Assert.assertEquals(1, evaluations.get());
+
+            // the returned layout info objects can be modified without affecting the cached ones
+            result.get(0).setLayoutName("Modified");
+            result.get(0).setErrorMessage("Modified");
+            List<LayoutInfo> cached = LayoutFactory.discoverFormat(file);
+            Assert.assertEquals(1, evaluations.get());
+            Assert.assertNotSame(result.get(0), cached.get(0));
+            Assert.assertNotEquals("Modified", cached.get(0).getLayoutName());
+            Assert.assertNull(cached.get(0).getErrorMessage());
+
+            // the options are part of the key, using their values at the time of the call
+            LayoutInfoDiscoveryOptions options = new LayoutInfoDiscoveryOptions();
+            options.setStopAtFirstMatch(true);
+            Assert.assertEquals(1, LayoutFactory.discoverFormat(file, options).size());
+            Assert.assertEquals(2, evaluations.get());
+            Assert.assertEquals(1, LayoutFactory.discoverFormat(file, options).size());
+            Assert.assertEquals(2, evaluations.get());
+            options.setStopAtFirstMatch(false);
+            Assert.assertEquals(result.size(), LayoutFactory.discoverFormat(file, options).size());
+            Assert.assertEquals(2, evaluations.get());
+            Assert.assertEquals(new LayoutInfoDiscoveryOptions(), options);
+            Assert.assertEquals(new LayoutInfoDiscoveryOptions().hashCode(), options.hashCode());
+
+            // modifying the file invalidates the result (the size changes)
+            file = createNaaccrLine(22824, "A", "160");
+            Assert.assertEquals(LayoutFactory.LAYOUT_ID_NAACCR_16_ABSTRACT, LayoutFactory.discoverFormat(file).get(0).getLayoutId());
+            Assert.assertEquals(3, evaluations.get());
+
+            // explicit invalidation
+            LayoutFactory.discoverFormat(file);
+            Assert.assertEquals(3, evaluations.get());
+            LayoutFactory.invalidateDiscoveryCache(file);
+            LayoutFactory.discoverFormat(file);
+            Assert.assertEquals(4, evaluations.get());
+
+            // registering a layout clears the cache
+            LayoutFactory.registerLayout(createFixedColumnTestingLayout());
+            LayoutFactory.discoverFormat(file);
+            Assert.assertEquals(5, evaluations.get());
+        }
+        finally {
+            LayoutFactory.disableDiscoveryCache();
+            LayoutFactory.unregisterAllLayouts();
+        }
+    }
+
     private File createNaaccrLine(int length, String recType, String naaccrVersion) throws IOException {
         StringBuilder line = new StringBuilder(getTestingString(length));
 
@@ -7,18 +7,25 @@ import com.imsweb.layout.hl7.xml.Hl7SegmentXmlDto;
 import com.imsweb.layout.hl7.xml.Hl7SubComponentXmlDto;
 import com.imsweb.layout.record.csv.xml.CommaSeparatedLayoutFieldXmlDto;
 import com.imsweb.layout.record.csv.xml.CommaSeparatedLayoutXmlDto;
+import com.imsweb.layout.record.fixed.naaccr.NaaccrLayoutSnapshots;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutFieldXmlDto;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutXmlDto;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -46,6 +53,14 @@ public class LayoutUtilsTest {
         Assert.assertEquals("01", LayoutUtils.pad("1", 2, "0", true));
         Assert.assertEquals("10", LayoutUtils.pad("1", 2, "0", false));
         Assert.assertEquals("123", LayoutUtils.pad("123", 2, "0", false));
+        Assert.assertEquals("00000123", LayoutUtils.pad("123", 8, "0", true));
+        Assert.assertEquals("abab1", LayoutUtils.pad("1", 4, "ab", true));
+        Assert.assertEquals("1abab", LayoutUtils.pad("1", 4, "ab", false));
+        Assert.assertEquals("", LayoutUtils.pad("", 0, " ", true));
+        Assert.assertNull(LayoutUtils.pad(null, 2, " ", true));
+        Assert.assertEquals(24000, LayoutUtils.pad("1", 24000, " ", true).length());
+        Assert.assertEquals("1", LayoutUtils.pad("1", 4, null, true));
+        Assert.assertEquals("1", LayoutUtils.pad("1", 4, "", false));
     }
 
     @Test
@@ -95,6 +110,111 @@ public class LayoutUtilsTest {
         }
     }
 
+    @Test
+    public void testParallelGzip() throws IOException {
+        byte[] data = new byte[1_000_000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte)(i % 80 == 79 ? '\n' : 'A' + (i * 31 % 7919) % 26);
+
+        // the data is written as several members, still readable by the standard GZip stream
+        File file = new File(TestingUtils.getBuildDirectory(), "parallel-gzip-test.txt.gz");
+        try (OutputStream os = LayoutUtils.createOutputStream(file, 4)) {
+            os.write(data, 0, 1000);
+            os.flush();
+            for (int i = 1000; i < data.length; i++)
+                os.write(data[i]);
+        }
+        Assert.assertArrayEquals(data, readAll(new GZIPInputStream(new FileInputStream(file))));
+        Assert.assertArrayEquals(data, readAll(LayoutUtils.createInputStream(file, null, 4)));
+        Assert.assertArrayEquals(data, readAll(LayoutUtils.createInputStream(file, null, 1)));
+
+        // a regular GZip file is decompressed by a read-ahead thread
+        File regularFile = new File(TestingUtils.getBuildDirectory(), "parallel-gzip-test-regular.txt.gz");
+        try (OutputStream os = LayoutUtils.createOutputStream(regularFile)) {
+            os.write(data);
+        }
+        Assert.assertArrayEquals(data, readAll(LayoutUtils.createInputStream(regularFile, null, 4)));
+
+        // reading again after the end of the data keeps returning -1
+        for (File f : Arrays.asList(file, regularFile)) {
+            try (InputStream is = LayoutUtils.createInputStream(f, null, 2)) {
+                byte[] buffer = new byte[4096];
+                while (is.read(buffer) != -1)
+                    ; // read all the data
+                Assert.assertEquals(-1, is.read(buffer));
+                Assert.assertEquals(-1, is.read());
+            }
+        }
+
+        // members with a known size followed by a regular member
+        byte[] parallel = Files.readAllBytes(file.toPath());
+        byte[] regular = Files.readAllBytes(regularFile.toPath());
+        byte[] concatenated = Arrays.copyOf(parallel, parallel.length + regular.length);
+        System.arraycopy(regular, 0, concatenated, parallel.length, regular.length);
+        byte[] expected = Arrays.copyOf(data, data.length * 2);
+        System.arraycopy(data, 0, expected, data.length, data.length);
+        Assert.assertArrayEquals(expected, readAll(new ParallelGzipInputStream(new ByteArrayInputStream(concatenated), 3)));
+
+        // empty data
+        File emptyFile = new File(TestingUtils.getBuildDirectory(), "parallel-gzip-test-empty.txt.gz");
+        LayoutUtils.createOutputStream(emptyFile, 4).close();
+        Assert.assertEquals(0, readAll(new GZIPInputStream(new FileInputStream(emptyFile))).length);
+        Assert.assertEquals(0, readAll(LayoutUtils.createInputStream(emptyFile, null, 4)).length);
+
+        // flushing the stream doesn't end the current member
+        ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+        try (OutputStream os = new ParallelGzipOutputStream(flushed, 2, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, 6)) {
+            for (int i = 0; i < 100; i++) {
+                os.write(data, i * 10, 10);
+                os.flush();
+            }
+        }
+        Assert.assertArrayEquals(ParallelGzipOutputStream.compress(data, 1000, 6), flushed.toByteArray());
+
+        // an unchecked exception happening on the read-ahead thread is reported by all the following reads
+        InputStream failing = new ByteArrayInputStream(regular) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos > 100)
+                    throw new IllegalStateException("Broken stream");
+                return super.read(b, off, Math.min(len, 50));
+            }
+        };
+        try (InputStream is = new ParallelGzipInputStream(failing, 2)) {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    byte[] buffer = new byte[4096];
+                    while (is.read(buffer) != -1)
+                        ; // read all the data
+                    Assert.fail("Was expecting an exception");
+                }
+                catch (IOException e) {
+                    Assert.assertEquals("Broken stream", e.getMessage());
+                }
+            }
+        }
+
+        // corrupted data
+        parallel[parallel.length - 5] ^= 1;
+        try {
+            readAll(new ParallelGzipInputStream(new ByteArrayInputStream(parallel), 2));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        try (InputStream in = is; ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        }
+    }
+
     @Test
     public void testReadWriteFixedColumnsLayout() throws IOException {
 
@@ -144,6 +264,34 @@ public class LayoutUtilsTest {
         }
     }
 
+    @Test
+    public void testReadWriteFixedColumnsLayoutSnapshot() throws IOException {
+        File xmlDir = new File(TestingUtils.getWorkingDirectory(), "src/main/resources/layout/fixed/naaccr");
+        File snapshotDir = new File(TestingUtils.getBuildDirectory(), "layout-snapshots");
+        Assert.assertEquals(6, NaaccrLayoutSnapshots.createSnapshots(xmlDir, snapshotDir));
+
+        // the snapshot should contain exactly the same information as the XML definition
+        for (String version : Arrays.asList("12", "13", "14", "15", "16", "18")) {
+            FixedColumnLayoutXmlDto xmlLayout = LayoutUtils.readFixedColumnsLayout(new FileInputStream(new File(xmlDir, "naaccr-" + version + "-layout.xml")));
+            File snapshot = new File(snapshotDir, NaaccrLayoutSnapshots.getSnapshotResourceName(version));
+            FixedColumnLayoutXmlDto snapshotLayout = LayoutUtils.readFixedColumnsLayoutSnapshot(new FileInputStream(snapshot));
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            LayoutUtils.writeFixedColumnsLayout(expected, xmlLayout);
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            LayoutUtils.writeFixedColumnsLayout(actual, snapshotLayout);
+            Assert.assertEquals(version, expected.toString(StandardCharsets.UTF_8), actual.toString(StandardCharsets.UTF_8));
+        }
+
+        try {
+            LayoutUtils.readFixedColumnsLayoutSnapshot(new ByteArrayInputStream("<fixed-column-layout/>".getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testReadWriteColumnsSeparatedLayout() throws IOException {
 
@@ -3,27 +3,46 @@
  */
 package com.imsweb.layout.record;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.LineNumberReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.imsweb.layout.LayoutFactory;
+import com.imsweb.layout.LayoutUtils;
 import com.imsweb.layout.TestingUtils;
 import com.imsweb.layout.record.csv.CommaSeparatedField;
 import com.imsweb.layout.record.csv.CommaSeparatedLayout;
@@ -139,6 +158,812 @@ public class RecordLayoutTest {
         Assert.assertEquals("B", recs.get(1).get("field1"));
     }
 
+    @Test
+    public void testStreamMethods() throws IOException {
+        RecordLayout layout = (RecordLayout)LayoutFactory.getLayout(_TEST_LAYOUT_ID);
+
+        File file = new File(TestingUtils.getBuildDirectory(), "rec-layout-stream-test.txt.gz");
+        try (OutputStream os = LayoutUtils.createOutputStream(file)) {
+            os.write("A\nB\nC\n".getBytes());
+        }
+
+        // stream from file
+        try (Stream<Map<String, String>> stream = layout.streamRecords(file)) {
+            Assert.assertEquals(Arrays.asList("A", "B", "C"), stream.map(r -> r.get("field1")).collect(Collectors.toList()));
+        }
+        try (Stream<Map<String, String>> stream = layout.streamRecords(file, null, null)) {
+            Assert.assertEquals(1, stream.filter(r -> "B".equals(r.get("field1"))).count());
+        }
+
+        // record reader
+        try (RecordReader reader = layout.openReader(file, null, null)) {
+            Assert.assertEquals(0, reader.getLineNumber());
+            Assert.assertTrue(reader.hasNext());
+            Assert.assertTrue(reader.hasNext());
+            Assert.assertEquals("A", reader.next().get("field1"));
+            Assert.assertEquals(1, reader.getLineNumber());
+            Assert.assertEquals("B", reader.readRecord().get("field1"));
+            Assert.assertEquals("C", reader.next().get("field1"));
+            Assert.assertFalse(reader.hasNext());
+            Assert.assertNull(reader.readRecord());
+            try {
+                reader.next();
+                Assert.fail("Was expecting an exception");
+            }
+            catch (NoSuchElementException e) {
+                // expected
+            }
+        }
+
+        // line numbers are reported in the exceptions
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setEnforceStrictFormat(true);
+        try (RecordReader reader = layout.openReader(new StringReader("A\nBB\n"), options)) {
+            Assert.assertEquals("A", reader.readRecord().get("field1"));
+            reader.readRecord();
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("line 2"));
+        }
+        try (Stream<Map<String, String>> stream = layout.openReader(new StringReader("A\nBB\n"), options).stream()) {
+            stream.forEach(r -> Assert.assertNotNull(r.get("field1")));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (UncheckedIOException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("line 2"));
+        }
+
+        // CSV layout ignoring the first line
+        file = new File(TestingUtils.getBuildDirectory(), "rec-layout-stream-test.csv");
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write("HEADER\nA\nB\n".getBytes());
+        }
+        CommaSeparatedLayout csvLayout = new CommaSeparatedLayout();
+        csvLayout.setLayoutId("test-layout-csv-stream");
+        csvLayout.setLayoutName("Test Layout CSV Stream");
+        csvLayout.setLayoutNumberOfFields(1);
+        CommaSeparatedField field = new CommaSeparatedField();
+        field.setName("field1");
+        field.setIndex(1);
+        csvLayout.setFields(Collections.singletonList(field));
+        try (Stream<Map<String, String>> stream = csvLayout.streamRecords(file)) {
+            Assert.assertEquals(Arrays.asList("A", "B"), stream.map(r -> r.get("field1")).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testRecordWriter() throws IOException {
+        RecordLayout layout = (RecordLayout)LayoutFactory.getLayout(_TEST_LAYOUT_ID);
+
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setLineSeparator(RecordLayoutOptions.NEW_LINE_CRLF);
+
+        List<Map<String, String>> list = new ArrayList<>();
+        for (String value : Arrays.asList("A", "B", "C")) {
+            Map<String, String> rec = new HashMap<>();
+            rec.put("field1", value);
+            list.add(rec);
+        }
+
+        for (String filename : Arrays.asList("rec-layout-writer-test.txt", "rec-layout-writer-test.txt.gz")) {
+            File file = new File(TestingUtils.getBuildDirectory(), filename);
+            try (RecordWriter writer = layout.openWriter(file, options)) {
+                writer.write(list.get(0));
+                writer.writeAll(list.subList(1, 3));
+                Assert.assertEquals(3, writer.getNumRecords());
+                Assert.assertEquals(9, writer.getNumBytes());
+            }
+            Assert.assertEquals(list, layout.readAllRecords(file));
+            try (InputStream is = LayoutUtils.createInputStream(file)) {
+                Assert.assertEquals("A\r\nB\r\nC\r\n", new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8));
+            }
+        }
+
+        // writing to a stream (closing the writer closes the stream)
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordWriter writer = layout.openWriter(out, null);
+        writer.writeAll(list);
+        writer.flush();
+        Assert.assertEquals(3 * (1 + System.lineSeparator().length()), out.size());
+        writer.close();
+        writer.close();
+        try {
+            writer.write(list.get(0));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            // expected
+        }
+
+        // the default implementation (not re-using any buffer) should work too
+        CommaSeparatedLayout csvLayout = new CommaSeparatedLayout();
+        csvLayout.setLayoutId("test-layout-csv-writer");
+        csvLayout.setLayoutName("Test Layout CSV Writer");
+        csvLayout.setLayoutNumberOfFields(2);
+        CommaSeparatedField field1 = new CommaSeparatedField();
+        field1.setName("field1");
+        field1.setIndex(1);
+        CommaSeparatedField field2 = new CommaSeparatedField();
+        field2.setName("field2");
+        field2.setIndex(2);
+        csvLayout.setFields(Arrays.asList(field1, field2));
+        out = new ByteArrayOutputStream();
+        try (RecordWriter csvWriter = csvLayout.openWriter(out, options)) {
+            csvWriter.writeAll(list);
+        }
+        Assert.assertEquals("A,\r\nB,\r\nC,\r\n", out.toString(StandardCharsets.UTF_8.name()));
+
+        // writing a single record doesn't flush the stream
+        int[] flushes = new int[1];
+        out = new ByteArrayOutputStream();
+        OutputStream counting = new FilterOutputStream(out) {
+            @Override
+            public void flush() throws IOException {
+                flushes[0]++;
+                super.flush();
+            }
+        };
+        for (Map<String, String> rec : list)
+            csvLayout.writeRecord(counting, rec, options);
+        Assert.assertEquals(0, flushes[0]);
+        Assert.assertEquals("A,\r\nB,\r\nC,\r\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void testColumnarRecords() throws IOException {
+        ColumnarRecords records = new ColumnarRecords(Arrays.asList("id", "type", "empty"));
+        List<Map<String, String>> list = new ArrayList<>();
+        for (int i = 0; i < 70000; i++) {
+            Map<String, String> rec = new HashMap<>();
+            rec.put("id", String.valueOf(i));
+            if (i % 3 != 0)
+                rec.put("type", "T" + (i % 3));
+            rec.put("unknown", "?");
+            records.add(rec);
+            rec.remove("unknown");
+            list.add(rec);
+        }
+        Assert.assertEquals(70000, records.size());
+        Assert.assertEquals(Arrays.asList("id", "type", "empty"), records.getFieldNames());
+        Assert.assertEquals(1, records.getFieldIndex("type"));
+        Assert.assertEquals(-1, records.getFieldIndex("unknown"));
+
+        // the first column has too many distinct values to be dictionary-encoded
+        Assert.assertEquals(-1, records.getDistinctValueCount(0));
+        Assert.assertEquals(2, records.getDistinctValueCount(1));
+        Assert.assertEquals(0, records.getDistinctValueCount(2));
+
+        Assert.assertEquals("12345", records.getValue(12345, 0));
+        Assert.assertEquals("T1", records.getValue(4, "type"));
+        Assert.assertNull(records.getValue(3, "type"));
+        Assert.assertNull(records.getValue(3, "unknown"));
+        Assert.assertEquals(list.get(3), records.getRecord(3));
+        Assert.assertEquals(list.get(69999), records.getRecord(69999));
+        Assert.assertFalse(records.getRecord(3).containsKey("type"));
+        records.trimToSize();
+        Assert.assertEquals(list, records.asRecords());
+        try {
+            records.getValue(70000, 0);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        // records can still be added once the records have been trimmed, and a column with too many distinct values is not dictionary-encoded anymore
+        records = new ColumnarRecords(Arrays.asList("id", "type"));
+        for (int i = 0; i < 4096; i++)
+            records.add(Map.of("id", String.valueOf(i), "type", "T" + (i % 3)));
+        records.trimToSize();
+        Assert.assertEquals(4096, records.getDistinctValueCount(0));
+        records.add(Map.of("id", "1", "type", "T2"));
+        Assert.assertEquals(4096, records.getDistinctValueCount(0));
+        Assert.assertEquals(3, records.getDistinctValueCount(1));
+        records.add(Map.of("id", "4096", "type", "T3"));
+        Assert.assertEquals(-1, records.getDistinctValueCount(0));
+        Assert.assertEquals(4, records.getDistinctValueCount(1));
+        Assert.assertEquals("1", records.getValue(4096, "id"));
+        Assert.assertEquals("T2", records.getValue(4096, "type"));
+        Assert.assertEquals("4095", records.getValue(4095, "id"));
+        Assert.assertEquals("4096", records.getValue(4097, "id"));
+        Assert.assertEquals("T3", records.getValue(4097, "type"));
+
+        // reading and writing with a layout
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId("test-columnar");
+        layout.setLayoutName("Test Columnar");
+        layout.setLayoutLineLength(6);
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(3);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(4);
+        field2.setEnd(6);
+        layout.setFields(Arrays.asList(field1, field2));
+
+        File file = new File(TestingUtils.getBuildDirectory(), "rec-layout-columnar-test.txt");
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write("AAA001\nBBB   \nAAA003\n".getBytes());
+        }
+        records = layout.readColumnarRecords(file, null, null);
+        Assert.assertEquals(layout.readAllRecords(file), records.asRecords());
+        Assert.assertEquals(2, records.getDistinctValueCount(records.getFieldIndex("field1")));
+
+        File copy = new File(TestingUtils.getBuildDirectory(), "rec-layout-columnar-test-copy.txt");
+        layout.writeColumnarRecords(copy, records, null);
+        Assert.assertEquals(layout.readAllRecords(file), layout.readAllRecords(copy));
+
+        // projection
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setProjectedFields(Collections.singletonList("field2"));
+        try (FileInputStream fis = new FileInputStream(file)) {
+            records = layout.readColumnarRecords(fis, options);
+        }
+        Assert.assertEquals(Collections.singletonList("field2"), records.getFieldNames());
+        Assert.assertEquals("003", records.getValue(2, "field2"));
+        Assert.assertNull(records.getValue(2, "field1"));
+    }
+
+    @Test
+    public void testRecordIndex() throws IOException {
+        FixedColumnsLayout layout = createTestLayout("test-index");
+
+        for (String separator : Arrays.asList("\n", "\r\n")) {
+            StringBuilder uniform = new StringBuilder();
+            StringBuilder variable = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                uniform.append(String.format("%06d ABC", i)).append(separator);
+                variable.append(i % 7 == 0 ? String.format("%06d", i) : String.format("%06d ABC", i)).append(separator);
+            }
+
+            // uncompressed file with lines of the same length
+            File file = new File(TestingUtils.getBuildDirectory(), "rec-layout-index-test.txt");
+            try (OutputStream os = new FileOutputStream(file)) {
+                os.write(uniform.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            RecordFileIndex index = layout.buildRecordIndex(file, null);
+            Assert.assertTrue(index.isImplicit());
+            assertIndex(layout, file, index);
+
+            // uncompressed file with lines of different lengths
+            try (OutputStream os = new FileOutputStream(file)) {
+                os.write(variable.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            index = layout.buildRecordIndex(file, null);
+            Assert.assertFalse(index.isImplicit());
+            assertIndex(layout, file, index);
+
+            // single-member GZip file
+            File gzFile = new File(TestingUtils.getBuildDirectory(), "rec-layout-index-test.txt.gz");
+            try (OutputStream os = LayoutUtils.createOutputStream(gzFile)) {
+                os.write(variable.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            index = layout.buildRecordIndex(gzFile, null);
+            Assert.assertTrue(index.isCompressed());
+            assertIndex(layout, gzFile, index);
+
+            // multi-member GZip file (the members don't end on line boundaries)
+            byte[] data = variable.toString().getBytes(StandardCharsets.UTF_8);
+            try (OutputStream os = new FileOutputStream(gzFile)) {
+                for (int offset = 0; offset < data.length; offset += 1000) {
+                    try (OutputStream member = new GZIPOutputStream(new NonClosingOutputStream(os))) {
+                        member.write(data, offset, Math.min(1000, data.length - offset));
+                    }
+                }
+            }
+            index = RecordFileIndex.build(layout, gzFile, null, 10);
+            assertIndex(layout, gzFile, index);
+
+            // the CRC of the members is checked
+            byte[] compressed = Files.readAllBytes(gzFile.toPath());
+            compressed[compressed.length - 8]++;
+            Files.write(gzFile.toPath(), compressed);
+            try {
+                RecordFileIndex.build(layout, gzFile, null, 10);
+                Assert.fail("Was expecting an exception");
+            }
+            catch (ZipException e) {
+                Assert.assertEquals("Corrupt GZip trailer", e.getMessage());
+            }
+        }
+
+        // CSV with a header and values containing new lines (a quote only starts a quoted value at the beginning of a value)
+        File csvFile = new File(TestingUtils.getBuildDirectory(), "rec-layout-index-test.csv");
+        try (OutputStream os = new FileOutputStream(csvFile)) {
+            os.write("HEADER,OTHER\nA,1\n\"B\nB\",2\nC,3\n\"D\r\n\"\"D\"\"\",4\nE\"E,5\n\"\"\"F\",6\nG,7".getBytes(StandardCharsets.UTF_8));
+        }
+        CommaSeparatedLayout csvLayout = new CommaSeparatedLayout();
+        csvLayout.setLayoutId("test-layout-csv-index");
+        csvLayout.setLayoutName("Test Layout CSV Index");
+        csvLayout.setLayoutNumberOfFields(2);
+        csvLayout.setIgnoreFirstLine(true);
+        CommaSeparatedField csvField1 = new CommaSeparatedField();
+        csvField1.setName("field1");
+        csvField1.setIndex(1);
+        CommaSeparatedField csvField2 = new CommaSeparatedField();
+        csvField2.setName("field2");
+        csvField2.setIndex(2);
+        csvLayout.setFields(Arrays.asList(csvField1, csvField2));
+        RecordFileIndex csvIndex = RecordFileIndex.build(csvLayout, csvFile, null, 1);
+        Assert.assertEquals(7, csvIndex.size());
+        Assert.assertEquals("D\r\n\"D\"", csvIndex.readRecord(3).get("field1"));
+        Assert.assertEquals("E\"E", csvIndex.readRecord(4).get("field1"));
+        Assert.assertEquals("\"F", csvIndex.readRecord(5).get("field1"));
+        Assert.assertEquals("G", csvIndex.readRecord(6).get("field1"));
+        assertIndex(csvLayout, csvFile, csvIndex);
+
+        // the index is saved next to the data file and re-built when the data file changes
+        File file = new File(TestingUtils.getBuildDirectory(), "rec-layout-index-saved.txt");
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write("000001 ABC\n000002\n".getBytes(StandardCharsets.UTF_8));
+        }
+        File indexFile = RecordFileIndex.getIndexFile(file);
+        if (indexFile.exists())
+            Assert.assertTrue(indexFile.delete());
+        RecordFileIndex index = layout.openRecordIndex(file, null);
+        Assert.assertTrue(indexFile.exists());
+        Assert.assertEquals(2, index.size());
+        Assert.assertNotNull(RecordFileIndex.load(layout, file, indexFile, null));
+        Assert.assertEquals("000002", layout.openRecordIndex(file, null).readRecord(1).get("field1"));
+        try (OutputStream os = new FileOutputStream(file, true)) {
+            os.write("000003 DEF\n".getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertFalse(index.isUpToDate());
+        Assert.assertNull(RecordFileIndex.load(layout, file, indexFile, null));
+        Assert.assertEquals("DEF", layout.openRecordIndex(file, null).readRecord(2).get("field2"));
+
+        try {
+            index.openReader(-1);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPipelinedReaderAndWriter() throws IOException {
+        FixedColumnsLayout layout = createTestLayout("test-pipelined");
+
+        List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Map<String, String> rec = new HashMap<>();
+            rec.put("field1", String.format("%06d", i));
+            if (i % 7 != 0)
+                rec.put("field2", "ABC");
+            records.add(rec);
+        }
+
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setLineSeparator(RecordLayoutOptions.NEW_LINE_LF);
+        options.setCompressionThreads(2);
+        for (String name : Arrays.asList("rec-layout-pipelined-test.txt", "rec-layout-pipelined-test.txt.gz")) {
+            File file = new File(TestingUtils.getBuildDirectory(), name);
+            try (RecordWriter writer = layout.openPipelinedWriter(file, options)) {
+                for (Map<String, String> rec : records)
+                    writer.write(rec);
+                writer.flush();
+                Assert.assertEquals(5000, writer.getNumRecords());
+            }
+            Assert.assertEquals(records, layout.readAllRecords(file));
+
+            try (RecordReader reader = layout.openPipelinedReader(file, null, options, 3)) {
+                List<Map<String, String>> actual = new ArrayList<>();
+                Map<String, String> rec;
+                while ((rec = reader.readRecord()) != null) {
+                    actual.add(rec);
+                    Assert.assertEquals(actual.size(), reader.getLineNumber());
+                }
+                Assert.assertEquals(records, actual);
+            }
+
+            // the reader can be closed before all the records are read
+            try (RecordReader reader = layout.openPipelinedReader(file, null, null, 2)) {
+                Assert.assertEquals(records.subList(0, 10), reader.stream().limit(10).collect(Collectors.toList()));
+            }
+
+            // skipping lines skips records (across batches)
+            try (RecordReader reader = layout.openPipelinedReader(file, null, null, 2)) {
+                reader.skipLines(1500);
+                Assert.assertEquals(records.get(1500), reader.readRecord());
+                Assert.assertEquals(1501, reader.getLineNumber());
+                reader.skipLines(10000);
+                Assert.assertNull(reader.readRecord());
+            }
+        }
+
+        // the fixed-columns lines are split on their bytes, using any line separator, and can span several blocks
+        String data = "HEADER\n000001 ABC\r\n000002\r000003 DEF\n\n000004 " + "X".repeat(100) + "\r\n000005 GHI";
+        for (int blockSize : Arrays.asList(3, 7, 16, 1024)) {
+            InputStream is = new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII));
+            try (RecordReader reader = new PipelinedRecordReader(layout, is, null, 2, true, blockSize)) {
+                List<Map<String, String>> actual = new ArrayList<>();
+                List<Integer> lineNumbers = new ArrayList<>();
+                Map<String, String> rec;
+                while ((rec = reader.readRecord()) != null) {
+                    actual.add(rec);
+                    lineNumbers.add(reader.getLineNumber());
+                }
+                Assert.assertEquals(String.valueOf(blockSize), Arrays.asList(Map.of("field1", "000001", "field2", "ABC"), Map.of("field1", "000002"),
+                        Map.of("field1", "000003", "field2", "DEF"), Collections.emptyMap(), Map.of("field1", "000004", "field2", "XXX"),
+                        Map.of("field1", "000005", "field2", "GHI")), actual);
+                Assert.assertEquals(Arrays.asList(2, 3, 4, 5, 6, 7), lineNumbers);
+            }
+        }
+
+        // an unchecked exception happening on the write-behind thread is reported instead of blocking the writing thread
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new IllegalStateException("Broken stream");
+            }
+        };
+        WriteBehindOutputStream wbos = new WriteBehindOutputStream(failing, 2);
+        try {
+            for (int i = 0; i < 10; i++)
+                wbos.write(new byte[] {1, 2, 3});
+            wbos.flush();
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertEquals("Broken stream", e.getMessage());
+        }
+        try {
+            wbos.write(new byte[] {1});
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertEquals("Broken stream", e.getMessage());
+        }
+        try {
+            wbos.close();
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertEquals("Broken stream", e.getMessage());
+        }
+
+        // errors happening on the parser threads are reported with their line number
+        File file = new File(TestingUtils.getBuildDirectory(), "rec-layout-pipelined-test.txt");
+        try (OutputStream os = new FileOutputStream(file, true)) {
+            os.write("000001 ABCDEF\n".getBytes(StandardCharsets.UTF_8));
+        }
+        RecordLayoutOptions strictOptions = new RecordLayoutOptions();
+        strictOptions.setEnforceStrictFormat(true);
+        try (RecordReader reader = layout.openPipelinedReader(file, null, strictOptions, 2)) {
+            while (reader.readRecord() != null)
+                ; // read all the records
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("line 5001:"));
+        }
+
+        // a line that can't be parsed is reported at its position, like with the regular reader, and the following records can still be read
+        byte[] badLine = "000001ABCD\n000002\n000003ABCD\n000004ABCD\n".getBytes(StandardCharsets.UTF_8);
+        List<String> expectedOutcomes = readOutcomes(layout.openReader(new ByteArrayInputStream(badLine), strictOptions));
+        Assert.assertEquals(Arrays.asList("000001", "error line 2", "000003", "000004"), expectedOutcomes);
+        RecordLayoutOptions strictUtf16Options = new RecordLayoutOptions();
+        strictUtf16Options.setEnforceStrictFormat(true);
+        strictUtf16Options.setEncoding(StandardCharsets.UTF_16);
+        byte[] badLineUtf16 = new String(badLine, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_16);
+        Assert.assertEquals(expectedOutcomes, readOutcomes(new PipelinedRecordReader(layout, new ByteArrayInputStream(badLine), strictOptions, 2, false)));
+        Assert.assertEquals(expectedOutcomes, readOutcomes(new PipelinedRecordReader(layout, new ByteArrayInputStream(badLineUtf16), strictUtf16Options, 2, false)));
+
+        // a failure to read the data is reported by all the following reads (instead of blocking the reading thread)
+        for (RecordLayoutOptions brokenOptions : Arrays.asList(null, strictUtf16Options)) {
+            InputStream content = new ByteArrayInputStream(brokenOptions == null ? badLine : badLineUtf16);
+            InputStream brokenStream = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("Broken stream");
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (content.available() < 30)
+                        throw new IOException("Broken stream");
+                    return content.read(b, off, Math.min(len, 12));
+                }
+            };
+            try (RecordReader reader = new PipelinedRecordReader(layout, brokenStream, brokenOptions, 2, false)) {
+                for (int i = 0; i < 2; i++) {
+                    try {
+                        while (reader.readRecord() != null)
+                            ; // read all the records
+                        Assert.fail("Was expecting an exception");
+                    }
+                    catch (IOException e) {
+                        Assert.assertEquals("Broken stream", e.getMessage());
+                    }
+                }
+            }
+        }
+
+        // CSV with a header and values containing new lines
+        File csvFile = new File(TestingUtils.getBuildDirectory(), "rec-layout-pipelined-test.csv");
+        try (OutputStream os = new FileOutputStream(csvFile)) {
+            os.write("HEADER,OTHER\nA,1\n\"B\nB\",2\nC,3\n".getBytes(StandardCharsets.UTF_8));
+        }
+        CommaSeparatedLayout csvLayout = new CommaSeparatedLayout();
+        csvLayout.setLayoutId("test-layout-csv-pipelined");
+        csvLayout.setLayoutName("Test Layout CSV Pipelined");
+        csvLayout.setLayoutNumberOfFields(2);
+        csvLayout.setIgnoreFirstLine(true);
+        CommaSeparatedField csvField1 = new CommaSeparatedField();
+        csvField1.setName("field1");
+        csvField1.setIndex(1);
+        CommaSeparatedField csvField2 = new CommaSeparatedField();
+        csvField2.setName("field2");
+        csvField2.setIndex(2);
+        csvLayout.setFields(Arrays.asList(csvField1, csvField2));
+        try (RecordReader reader = csvLayout.openPipelinedReader(csvFile, null, null, 2)) {
+            Assert.assertEquals(csvLayout.readAllRecords(csvFile), reader.stream().collect(Collectors.toList()));
+        }
+
+        // the records following a record that can't be created are still read when the records are read by the regular reader of the layout
+        byte[] badCsv = "A,1\nB\nC,3\n".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(Arrays.asList("A", "error line 2", "C"), readOutcomes(csvLayout.openReader(new ByteArrayInputStream(badCsv), strictOptions)));
+        Assert.assertEquals(Arrays.asList("A", "error line 2", "C"), readOutcomes(new PipelinedRecordReader(csvLayout, new ByteArrayInputStream(badCsv), strictOptions,
+                2, false)));
+    }
+
+    @Test
+    public void testReadBatch() throws IOException {
+        FixedColumnsLayout layout = createTestLayout("test-batch");
+
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 2500; i++)
+            buf.append(i % 7 == 0 ? String.format("%06d", i) : String.format("%06d ABC", i)).append("\n");
+        File file = new File(TestingUtils.getBuildDirectory(), "rec-layout-batch-test.txt");
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(buf.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        List<Map<String, String>> expected = layout.readAllRecords(file);
+
+        // the containers are re-used from one batch to the next
+        RecordLayoutOptions utf16Options = new RecordLayoutOptions();
+        utf16Options.setEncoding(StandardCharsets.UTF_16);
+        File utf16File = new File(TestingUtils.getBuildDirectory(), "rec-layout-batch-test-utf16.txt");
+        layout.writeRecords(utf16File, expected, utf16Options);
+        for (RecordLayoutOptions options : Arrays.asList(null, utf16Options)) {
+            try (RecordReader reader = layout.openReader(options == null ? file : utf16File, null, options)) {
+                List<Map<String, String>> actual = new ArrayList<>();
+                RecordBatch batch = layout.readBatch(reader, 1000, null);
+                Map<String, String> first = batch.get(0);
+                while (!batch.isEmpty()) {
+                    Assert.assertSame(first, batch.get(0));
+                    for (int i = 0; i < batch.size(); i++) {
+                        Assert.assertEquals(actual.size() + 1, batch.getLineNumber(i));
+                        actual.add(new HashMap<>(batch.get(i)));
+                    }
+                    batch = layout.readBatch(reader, 1000, batch);
+                }
+                Assert.assertEquals(expected, actual);
+            }
+        }
+
+        // a record fetched by the iterator is returned in the batch
+        try (RecordReader reader = layout.openReader(file, null, null)) {
+            Assert.assertTrue(reader.hasNext());
+            RecordBatch batch = layout.readBatch(reader, 10, new RecordBatch(2));
+            List<Map<String, String>> records = new ArrayList<>();
+            batch.forEach(records::add);
+            Assert.assertEquals(expected.subList(0, 10), records);
+        }
+
+        // CSV layout
+        CommaSeparatedLayout csvLayout = new CommaSeparatedLayout();
+        csvLayout.setLayoutId("test-layout-csv-batch");
+        csvLayout.setLayoutName("Test Layout CSV Batch");
+        csvLayout.setLayoutNumberOfFields(2);
+        csvLayout.setIgnoreFirstLine(false);
+        CommaSeparatedField csvField1 = new CommaSeparatedField();
+        csvField1.setName("field1");
+        csvField1.setIndex(1);
+        CommaSeparatedField csvField2 = new CommaSeparatedField();
+        csvField2.setName("field2");
+        csvField2.setIndex(2);
+        csvLayout.setFields(Arrays.asList(csvField1, csvField2));
+        File csvFile = new File(TestingUtils.getBuildDirectory(), "rec-layout-batch-test.csv");
+        try (OutputStream os = new FileOutputStream(csvFile)) {
+            os.write("A,1\n\"B\nB\",\nC,3\n".getBytes(StandardCharsets.UTF_8));
+        }
+        try (RecordReader reader = csvLayout.openReader(csvFile, null, null)) {
+            RecordBatch batch = csvLayout.readBatch(reader, 2, null);
+            Assert.assertEquals(2, batch.size());
+            Assert.assertEquals("B\nB", batch.get(1).get("field1"));
+            Assert.assertFalse(batch.get(1).containsKey("field2"));
+            batch = csvLayout.readBatch(reader, 2, batch);
+            Assert.assertEquals(1, batch.size());
+            Assert.assertEquals("3", batch.get(0).get("field2"));
+            Assert.assertEquals(4, batch.getLineNumber(0));
+            try {
+                batch.get(1);
+                Assert.fail("Was expecting an exception");
+            }
+            catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLayoutRecord() throws IOException, ClassNotFoundException {
+        LayoutRecord.Schema schema = new LayoutRecord.Schema(Arrays.asList("field1", null, "field2", "field1", "field3"));
+        Assert.assertEquals(5, schema.size());
+        Assert.assertEquals(0, schema.indexOf("field1"));
+        Assert.assertEquals(2, schema.indexOf(new String("field2".toCharArray())));
+        Assert.assertEquals(4, schema.indexOf("field3"));
+        Assert.assertEquals(-1, schema.indexOf("other"));
+        Assert.assertEquals(-1, schema.indexOf(null));
+        Assert.assertNull(schema.getName(1));
+        Assert.assertNull(schema.getName(3));
+
+        // the record behaves like a hash map, including for the keys that are not fields and the null values
+        LayoutRecord rec = new LayoutRecord(schema);
+        Map<String, String> expected = new HashMap<>();
+        Assert.assertTrue(rec.isEmpty());
+        for (Map<String, String> map : Arrays.asList(rec, expected)) {
+            Assert.assertNull(map.put("field1", "A"));
+            Assert.assertEquals("A", map.put("field1", "B"));
+            Assert.assertNull(map.put("field2", null));
+            Assert.assertNull(map.put("other", "C"));
+            Assert.assertNull(map.put(null, "D"));
+            Assert.assertNull(map.remove("field3"));
+        }
+        Assert.assertEquals(expected, rec);
+        Assert.assertEquals(rec, expected);
+        Assert.assertEquals(expected.hashCode(), rec.hashCode());
+        Assert.assertEquals(4, rec.size());
+        Assert.assertEquals("B", rec.get("field1"));
+        Assert.assertTrue(rec.containsKey("field2"));
+        Assert.assertNull(rec.get("field2"));
+        Assert.assertFalse(rec.containsKey("field3"));
+        Assert.assertEquals("C", rec.get("other"));
+        Assert.assertEquals("D", rec.get(null));
+        Assert.assertEquals(expected.keySet(), rec.keySet());
+        Map<String, String> copy = new HashMap<>();
+        rec.forEach(copy::put);
+        Assert.assertEquals(expected, copy);
+
+        // the values can be set by index
+        rec.setValue(4, "E");
+        expected.put("field3", "E");
+        Assert.assertEquals(expected, rec);
+        Assert.assertEquals("E", rec.getValue(4));
+
+        // the entries can be modified and removed while iterating
+        for (Iterator<Map.Entry<String, String>> iter = rec.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<String, String> entry = iter.next();
+            if ("field1".equals(entry.getKey()))
+                entry.setValue("F");
+            else if ("field2".equals(entry.getKey()) || "other".equals(entry.getKey()))
+                iter.remove();
+        }
+        expected.put("field1", "F");
+        expected.remove("field2");
+        expected.remove("other");
+        Assert.assertEquals(expected, rec);
+        Assert.assertEquals(3, rec.size());
+
+        // serialization
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bytes)) {
+            os.writeObject(rec);
+        }
+        try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            LayoutRecord copied = (LayoutRecord)is.readObject();
+            Assert.assertEquals(expected, copied);
+            Assert.assertEquals(0, copied.getSchema().indexOf("field1"));
+        }
+
+        rec.clear();
+        Assert.assertTrue(rec.isEmpty());
+        Assert.assertEquals(Collections.emptyMap(), rec);
+
+        // the fixed-columns and CSV layouts create layout records
+        FixedColumnsLayout layout = createTestLayout("test-layout-record");
+        Map<String, String> fixedRec = layout.createRecordFromLine("000001 ABC", 1, null);
+        Assert.assertTrue(fixedRec instanceof LayoutRecord);
+        Assert.assertEquals(Map.of("field1", "000001", "field2", "ABC"), fixedRec);
+        fixedRec = layout.createRecordFromBytes("000002    ".getBytes(StandardCharsets.US_ASCII), 0, 10, 1, null);
+        Assert.assertTrue(fixedRec instanceof LayoutRecord);
+        Assert.assertEquals(Map.of("field1", "000002"), fixedRec);
+        Assert.assertEquals("000003 XYZ", layout.createLineFromRecord(Map.of("field1", "000003", "field2", "XYZ"), null));
+
+        // the records of a projection only have slots for the projected fields
+        RecordLayoutOptions projection = new RecordLayoutOptions();
+        projection.setProjectedFields(Collections.singletonList("field2"));
+        for (Map<String, String> projected : Arrays.asList(layout.createRecordFromLine("000001 ABC", 1, projection),
+                layout.createRecordFromBytes("000001 ABC".getBytes(StandardCharsets.US_ASCII), 0, 10, 1, projection))) {
+            Assert.assertEquals(1, ((LayoutRecord)projected).getSchema().size());
+            Assert.assertEquals(Map.of("field2", "ABC"), projected);
+        }
+        Assert.assertSame(((LayoutRecord)layout.createRecordFromLine("000001 ABC", 1, projection)).getSchema(),
+                ((LayoutRecord)layout.createRecordFromLine("000002 DEF", 2, projection)).getSchema());
+
+        CommaSeparatedLayout csvLayout = new CommaSeparatedLayout();
+        csvLayout.setLayoutId("test-layout-record-csv");
+        csvLayout.setLayoutName("Test Layout Record CSV");
+        csvLayout.setLayoutNumberOfFields(3);
+        CommaSeparatedField csvField1 = new CommaSeparatedField();
+        csvField1.setName("field1");
+        csvField1.setIndex(1);
+        CommaSeparatedField csvField3 = new CommaSeparatedField();
+        csvField3.setName("field3");
+        csvField3.setIndex(3);
+        csvLayout.setFields(Arrays.asList(csvField1, csvField3));
+        Map<String, String> csvRec = csvLayout.createRecordFromLine("A,B,C", 1, null);
+        Assert.assertTrue(csvRec instanceof LayoutRecord);
+        Assert.assertEquals(Map.of("field1", "A", "field3", "C"), csvRec);
+        csvRec = csvLayout.createRecordFromLine("A,B,C", 1, projection);
+        Assert.assertFalse(csvRec instanceof LayoutRecord);
+        Assert.assertTrue(csvRec.isEmpty());
+    }
+
+    // returns a layout with lines of 10 characters containing field1 (1-6) and field2 (8-10)
+    private static FixedColumnsLayout createTestLayout(String layoutId) {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId(layoutId);
+        layout.setLayoutName(layoutId);
+        layout.setLayoutLineLength(10);
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(6);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(8);
+        field2.setEnd(10);
+        layout.setFields(Arrays.asList(field1, field2));
+        return layout;
+    }
+
+    // returns the field1 value of each record read by the provided reader, or the line number of each line that failed to be parsed
+    private static List<String> readOutcomes(RecordReader reader) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (RecordReader r = reader) {
+            while (true) {
+                try {
+                    Map<String, String> rec = r.readRecord();
+                    if (rec == null)
+                        break;
+                    result.add(rec.get("field1"));
+                }
+                catch (IOException e) {
+                    result.add("error line " + r.getLineNumber());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void assertIndex(RecordLayout layout, File file, RecordFileIndex index) throws IOException {
+        List<Map<String, String>> expected = layout.readAllRecords(file);
+        Assert.assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i += Math.max(1, expected.size() / 100))
+            Assert.assertEquals(expected.get(i), index.readRecord(i));
+        Assert.assertEquals(expected.get(expected.size() - 1), index.readRecord(expected.size() - 1));
+        Assert.assertEquals(expected.subList(Math.max(0, expected.size() - 3), expected.size()), index.readRecords(Math.max(0, expected.size() - 3), 10));
+        Assert.assertTrue(index.readRecords(expected.size(), 10).isEmpty());
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     @Test
     public void testWriteMethods() throws IOException {
         RecordLayout layout = (RecordLayout)LayoutFactory.getLayout(_TEST_LAYOUT_ID);
@@ -8,7 +8,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +29,7 @@ import com.imsweb.layout.LayoutInfoDiscoveryOptions;
 import com.imsweb.layout.LayoutUtils;
 import com.imsweb.layout.TestingUtils;
 import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
 import com.imsweb.layout.record.fixed.FixedColumnsField;
 import com.imsweb.layout.record.fixed.FixedColumnsLayout;
 import com.imsweb.seerutils.SeerUtils;
@@ -441,6 +445,167 @@ public class CommaSeparatedLayoutTest {
         Assert.assertEquals(expectedField3, rec.get("field2"));
     }
 
+    @Test
+    public void testReadingMultiLineValues() throws IOException {
+        CommaSeparatedLayout layout = new CommaSeparatedLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-comma-separated.xml"));
+
+        List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, String> rec = new HashMap<>();
+            rec.put("recordType", String.valueOf(i));
+            rec.put("field1", "1\r\n2\n\"3\"");
+            rec.put("field2", "456");
+            records.add(rec);
+        }
+        StringWriter writer = new StringWriter();
+        layout.writeRecords(writer, records);
+
+        // the values containing line separators are written as quoted values, they need to be read back as a single value
+        Assert.assertEquals(records, layout.readAllRecords(new StringReader(writer.toString())));
+
+        // the line number of a record is the line it starts on
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setEnforceStrictFormat(true);
+        try (RecordReader reader = layout.openReader(new StringReader(writer + "0,123\n"), options)) {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(records.get(i), reader.readRecord());
+                Assert.assertEquals(i * 3 + 1, reader.getLineNumber());
+            }
+            reader.readRecord();
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 10: wrong number of fields"));
+        }
+
+        // the empty lines are returned as empty records (unless the strict format is enforced)
+        Assert.assertEquals(3, layout.readAllRecords(new StringReader("0,1,2\r\n\r\n0,1,2\r\n")).size());
+        try {
+            layout.readAllRecords(new StringReader("0,1,2\n\n0,1,2\n"), options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 2: got en empty line"));
+        }
+
+        // skipping a header
+        try (RecordReader reader = layout.openReader(new StringReader("a,\"b\nc\",d\n0,1,2\n"), null)) {
+            reader.skipLines(1);
+            Assert.assertEquals("1", reader.readRecord().get("field1"));
+            Assert.assertNull(reader.readRecord());
+        }
+
+        // skipping lines skips entire records
+        try (RecordReader reader = layout.openReader(new StringReader(writer.toString()), null)) {
+            reader.skipLines(2);
+            Assert.assertEquals(records.get(2), reader.readRecord());
+            Assert.assertEquals(7, reader.getLineNumber());
+            reader.skipLines(10);
+            Assert.assertNull(reader.readRecord());
+        }
+
+        // a quoted value that is never closed is an error, even if the strict format is not enforced
+        try {
+            layout.readAllRecords(new StringReader("0,1,2\n0,\"1,2\n0,1,2\n"));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertEquals("line 2: quoted value is never closed", e.getMessage());
+        }
+        try {
+            layout.readAllRecords(new StringReader("0,1,2\n0,\"1\"\"\n"));
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertEquals("line 2: quoted value is never closed", e.getMessage());
+        }
+        Assert.assertEquals("1\"", layout.readAllRecords(new StringReader("0,1,2\n0,\"1\"\"\"")).get(1).get("field1"));
+        Assert.assertEquals("1\"2", layout.readAllRecords(new StringReader("0,1,2\n0,1\"2,3")).get(1).get("field1"));
+    }
+
+    @Test
+    public void testCharactersAfterLastQuote() throws IOException {
+        CommaSeparatedLayout layout = new CommaSeparatedLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-comma-separated.xml"));
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setAllowCharactersAfterLastQuote(true);
+
+        // the characters after the closing quote are kept if they are allowed
+        Assert.assertEquals("12x", layout.createRecordFromLine("0,\"12\"x,3", 1, options).get("field1"));
+        Assert.assertEquals("12x", layout.readAllRecords(new StringReader("0,\"12\"x,3\n"), options).get(0).get("field1"));
+
+        // they are never allowed when the strict format is enforced (the strict format is validated using the default options)
+        options.setEnforceStrictFormat(true);
+        try {
+            layout.createRecordFromLine("0,\"12\"x,3", 5, options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 5: "));
+        }
+        try {
+            layout.readAllRecords(new StringReader("0,1,2\n0,\"12\"x,3\n"), options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 2: "));
+        }
+        options.setAllowCharactersAfterLastQuote(false);
+        try {
+            layout.createRecordFromLine("0,\"12\"x,3", 5, options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 5: "));
+        }
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        CommaSeparatedLayout layout = new CommaSeparatedLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-comma-separated.xml"));
+
+        String data = "0, 1 ,2\n1,\"a\nb\",c\n2,3\n";
+
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setProjectedFields(Collections.singletonList("field1"));
+        List<Map<String, String>> records = layout.readAllRecords(new StringReader(data), options);
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(Collections.singletonMap("field1", "1"), records.get(0));
+        Assert.assertEquals(Collections.singletonMap("field1", "a\nb"), records.get(1));
+        Assert.assertEquals(Collections.singletonMap("field1", "3"), records.get(2));
+        Assert.assertEquals(Collections.singletonMap("field1", "1"), layout.createRecordFromLine("0, 1 ,2", null, options));
+
+        options = new RecordLayoutOptions();
+        options.setProjectedNaaccrItemNumbers(Collections.singletonList(10));
+        records = layout.readAllRecords(new StringReader(data), options);
+        Assert.assertEquals(Collections.singletonMap("recordType", "2"), records.get(2));
+        Assert.assertEquals(Collections.singletonMap("recordType", "0"), layout.createRecordFromLine("0, 1 ,2", null, options));
+
+        // the strict format still applies to all the values
+        options.setEnforceStrictFormat(true);
+        try {
+            layout.readAllRecords(new StringReader(data), options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 4: wrong number of fields"));
+        }
+    }
+
+    @Test
+    public void testInternValues() throws IOException {
+        CommaSeparatedLayout layout = new CommaSeparatedLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-comma-separated.xml"));
+
+        String data = "0,A,1\n0,A,2\n1,B,3\n";
+
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setInternValues(true);
+        List<Map<String, String>> records = layout.readAllRecords(new StringReader(data), options);
+        Assert.assertEquals(layout.readAllRecords(new StringReader(data), null), records);
+        Assert.assertSame(records.get(0).get("field1"), records.get(1).get("field1"));
+        Assert.assertSame(records.get(0).get("recordType"), layout.createRecordFromLine("0,C,4", null, options).get("recordType"));
+        Assert.assertNotSame(records.get(0).get("field1"), layout.readAllRecords(new StringReader(data), null).get(1).get("field1"));
+    }
+
     @Test
     public void testWritingSpecialCases() throws IOException {
         CommaSeparatedLayout layout = new CommaSeparatedLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-comma-separated.xml"));
@@ -3,15 +3,37 @@
  */
 package com.imsweb.layout.record.fixed;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.imsweb.layout.Field;
+import com.imsweb.layout.Field.FieldAlignment;
 import com.imsweb.layout.Layout;
 import com.imsweb.layout.LayoutFactory;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
@@ -19,6 +41,8 @@ import com.imsweb.layout.LayoutUtils;
 import com.imsweb.layout.TestingUtils;
 import com.imsweb.layout.record.RecordLayout;
 import com.imsweb.layout.record.RecordLayoutOptions;
+import com.imsweb.layout.record.RecordReader;
+import com.imsweb.layout.record.RecordValueInterner;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutFieldXmlDto;
 import com.imsweb.layout.record.fixed.xml.FixedColumnLayoutXmlDto;
 import com.imsweb.seerutils.SeerUtils;
@@ -312,6 +336,832 @@ public class FixedColumnsLayoutTest {
         Assert.assertTrue(exception);
     }
 
+    @Test
+    public void testExtractionPlan() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId("test-plan");
+        layout.setLayoutName("Test Plan");
+        layout.setLayoutLineLength(6);
+
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(3);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(4);
+        field2.setEnd(6);
+        layout.setFields(Arrays.asList(field1, field2));
+
+        Map<String, String> rec = layout.createRecordFromLine(" 1 ABC", null, null);
+        Assert.assertEquals(2, rec.size());
+        Assert.assertEquals("1", rec.get("field1"));
+        Assert.assertEquals("ABC", rec.get("field2"));
+
+        // a line too short should only return the fields that fit
+        rec = layout.createRecordFromLine(" 1 AB", null, null);
+        Assert.assertEquals(1, rec.size());
+        Assert.assertEquals("1", rec.get("field1"));
+
+        // setting new fields should re-compile the extraction plan
+        FixedColumnsField field3 = new FixedColumnsField();
+        field3.setName("field3");
+        field3.setStart(1);
+        field3.setEnd(6);
+        field3.setTrim(false);
+        layout.setFields(Collections.singletonList(field3));
+        rec = layout.createRecordFromLine(" 1 ABC", null, null);
+        Assert.assertEquals(1, rec.size());
+        Assert.assertEquals(" 1 ABC", rec.get("field3"));
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-fixed-columns.xml"));
+
+        List<String> lines = Arrays.asList("0ABCDEF123ghXY Z", "1    DEF   g 0102", "2  C      h     ", "3", "4ABC   123", "5ABC   123  AB  ");
+
+        List<List<String>> projections = Arrays.asList(Collections.singletonList("field1"), Arrays.asList("field2", "field4b"),
+                Collections.singletonList("field4a"), Arrays.asList("field5a", "field5b"), Arrays.asList("field5", "unknown"), Collections.emptyList());
+
+        for (List<String> projection : projections) {
+            RecordLayoutOptions options = new RecordLayoutOptions();
+            options.setProjectedFields(projection);
+            for (String line : lines) {
+                Map<String, String> expected = new HashMap<>(layout.createRecordFromLine(line, null, null));
+                expected.keySet().retainAll(projection);
+                Assert.assertEquals(line, expected, layout.createRecordFromLine(line, null, options));
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                Assert.assertEquals(line, expected, layout.createRecordFromBytes(bytes, 0, bytes.length, null, options));
+            }
+
+            // reading a stream uses the byte-based reader
+            List<Map<String, String>> expected = new ArrayList<>();
+            for (Map<String, String> rec : layout.readAllRecords(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), null)) {
+                Map<String, String> projected = new HashMap<>(rec);
+                projected.keySet().retainAll(projection);
+                expected.add(projected);
+            }
+            Assert.assertEquals(expected, layout.readAllRecords(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), options));
+        }
+
+        // projection on the NAACCR item numbers
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setProjectedNaaccrItemNumbers(Collections.singletonList(10));
+        Assert.assertEquals(Collections.singletonMap("recordType", "0"), layout.createRecordFromLine(lines.get(0), null, options));
+        options.setProjectedFields(Collections.singletonList("field1"));
+        Assert.assertEquals(2, layout.createRecordFromLine(lines.get(0), null, options).size());
+        options.setProjectedFields(null);
+        options.setProjectedNaaccrItemNumbers(null);
+        Assert.assertFalse(options.hasProjection());
+        Assert.assertEquals(layout.createRecordFromLine(lines.get(0), null, null), layout.createRecordFromLine(lines.get(0), null, options));
+    }
+
+    @Test
+    public void testInternValues() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-fixed-columns.xml"));
+
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            buf.append(i % 2).append("ABC").append(String.format("%03d", i)).append("\n");
+        String data = buf.toString();
+
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setInternValues(true);
+        for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16)) {
+            options.setEncoding(charset);
+            RecordLayoutOptions defaultOptions = new RecordLayoutOptions();
+            defaultOptions.setEncoding(charset);
+            List<Map<String, String>> records = layout.readAllRecords(new ByteArrayInputStream(data.getBytes(charset)), options);
+            Assert.assertEquals(layout.readAllRecords(new ByteArrayInputStream(data.getBytes(charset)), defaultOptions), records);
+
+            // low-cardinality values are shared, high-cardinality ones are not
+            Assert.assertSame(records.get(0).get("recordType"), records.get(998).get("recordType"));
+            Assert.assertSame(records.get(0).get("field1"), records.get(999).get("field1"));
+            Assert.assertEquals("999", records.get(999).get("field2"));
+        }
+        Assert.assertSame(layout.createRecordFromLine("1ABC", null, options).get("field1"), layout.createRecordFromLine("1ABC", null, options).get("field1"));
+        Assert.assertNotSame(layout.createRecordFromLine("1ABC", null, null).get("field1"), layout.createRecordFromLine("1ABC", null, null).get("field1"));
+
+        // the fields with too many distinct values are detected
+        RecordValueInterner interner = new RecordValueInterner(2);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(String.valueOf(i % 3), interner.intern(0, String.valueOf(i % 3)));
+            Assert.assertEquals(String.valueOf(i), interner.intern(1, String.valueOf(i).getBytes(StandardCharsets.ISO_8859_1), 0, String.valueOf(i).length()));
+        }
+        Assert.assertTrue(interner.isInterning(0));
+        Assert.assertFalse(interner.isInterning(1));
+        Assert.assertSame(interner.intern(0, "X1", 1, 2), interner.intern(0, new String(new char[] {'1'})));
+    }
+
+    @Test
+    public void testFilter() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout(Thread.currentThread().getContextClassLoader().getResource("testing-layout-fixed-columns.xml"));
+
+        List<String> lines = Arrays.asList("0ABCDEF123ghXY Z", "1    DEF   g 0102", "2  C      h     ", "3", "4ABC   123", "5ABC   123  AB  ", "6\u00C9BCDEF456ghXY Z", "7ABD   099gh0102");
+
+        Map<FixedColumnsFilter, Predicate<Map<String, String>>> filters = new LinkedHashMap<>();
+        filters.put(FixedColumnsFilter.equalTo("field1", "ABC"), rec -> "ABC".equals(rec.get("field1")));
+        filters.put(FixedColumnsFilter.equalTo("field1", "C"), rec -> "C".equals(rec.get("field1")));
+        filters.put(FixedColumnsFilter.in("field2", Arrays.asList("DEF", "XYZ")), rec -> "DEF".equals(rec.get("field2")));
+        filters.put(FixedColumnsFilter.startsWith("field1", "AB"), rec -> rec.get("field1") != null && rec.get("field1").startsWith("AB"));
+        filters.put(FixedColumnsFilter.between("field3", "100", "456"), rec -> rec.get("field3") != null && rec.get("field3").compareTo("100") >= 0 && rec.get(
+                "field3").compareTo("456") <= 0);
+        filters.put(FixedColumnsFilter.between("field3", null, "123"), rec -> rec.get("field3") != null && rec.get("field3").compareTo("123") <= 0);
+        filters.put(FixedColumnsFilter.equalTo("field4b", "h"), rec -> "h".equals(rec.get("field4b")));
+        filters.put(FixedColumnsFilter.equalTo("field5", "XY Z"), rec -> "XY Z".equals(rec.get("field5")));
+        filters.put(FixedColumnsFilter.startsWith("field1", "AB").and(FixedColumnsFilter.equalTo("field4", "gh")), rec -> rec.get("field1") != null && rec.get(
+                "field1").startsWith("AB") && "gh".equals(rec.get("field4")));
+        filters.put(FixedColumnsFilter.in("recordType", Collections.emptyList()), rec -> false);
+
+        String data = String.join("\n", lines);
+        for (Entry<FixedColumnsFilter, Predicate<Map<String, String>>> entry : filters.entrySet()) {
+            List<Map<String, String>> expected = new ArrayList<>();
+            for (String line : lines) {
+                Map<String, String> rec = layout.createRecordFromLine(line, null, null);
+                Assert.assertEquals(line, entry.getValue().test(rec), layout.matches(line, entry.getKey(), null));
+                if (entry.getValue().test(rec))
+                    expected.add(rec);
+            }
+
+            // the byte-based reader is used for UTF-8, the line-based one for UTF-16
+            for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16)) {
+                RecordLayoutOptions options = new RecordLayoutOptions();
+                options.setEncoding(charset);
+                List<Map<String, String>> actual = new ArrayList<>();
+                try (RecordReader reader = layout.openReader(new ByteArrayInputStream(data.getBytes(charset)), entry.getKey(), options)) {
+                    Map<String, String> rec;
+                    while ((rec = reader.readRecord()) != null)
+                        actual.add(rec);
+                }
+                Assert.assertEquals(expected, actual);
+            }
+        }
+
+        // values are not trimmed if the options say so
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setTrimValues(false);
+        Assert.assertTrue(layout.matches(lines.get(2), FixedColumnsFilter.equalTo("field1", "  C"), options));
+        Assert.assertFalse(layout.matches(lines.get(2), FixedColumnsFilter.equalTo("field1", "C"), options));
+
+        // reading a file
+        File file = new File(TestingUtils.getBuildDirectory(), "fixed-filter-test.txt");
+        SeerUtils.writeFile(data, file);
+        FixedColumnsFilter filter = FixedColumnsFilter.startsWith("field1", "AB");
+        Assert.assertEquals(Arrays.asList("0", "4", "5", "7"), layout.readAllRecords(file, null, filter, null).stream().map(r -> r.get("recordType")).collect(Collectors.toList()));
+        try (Stream<Map<String, String>> stream = layout.streamRecords(file, null, filter, null)) {
+            Assert.assertEquals(4, stream.count());
+        }
+
+        // unknown field
+        try {
+            layout.matches(lines.get(0), FixedColumnsFilter.equalTo("unknown", "?"), null);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLazyRecord() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId("test-lazy");
+        layout.setLayoutName("Test Lazy");
+        layout.setLayoutLineLength(8);
+
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(3);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(4);
+        field2.setEnd(8);
+        FixedColumnsField field2a = new FixedColumnsField();
+        field2a.setName("field2a");
+        field2a.setStart(4);
+        field2a.setEnd(5);
+        FixedColumnsField field2b = new FixedColumnsField();
+        field2b.setName("field2b");
+        field2b.setStart(6);
+        field2b.setEnd(8);
+        field2.setSubFields(Arrays.asList(field2a, field2b));
+        layout.setFields(Arrays.asList(field1, field2));
+
+        // the lazy record should always contain the same values as the regular one
+        for (String line : Arrays.asList(" 1 AB CD", " 1 AB", "   ", " 1    ", " 1 AB  ", "", null)) {
+            Map<String, String> expected = line == null ? new HashMap<>() : layout.createRecordFromLine(line, null, null);
+            for (String name : Arrays.asList("field1", "field2", "field2a", "field2b", "unknown"))
+                Assert.assertEquals(line + " - " + name, expected.get(name), layout.createLazyRecordFromLine(line, null, null).get(name));
+            Assert.assertEquals(expected, layout.createLazyRecordFromLine(line, null, null));
+        }
+
+        Map<String, String> rec = layout.createLazyRecordFromLine(" 1 AB CD", null, null);
+        Assert.assertTrue(rec instanceof FixedColumnsLazyRecord);
+        Assert.assertEquals(" 1 AB CD", ((FixedColumnsLazyRecord)rec).getLine());
+        Assert.assertEquals("1", rec.get("field1"));
+        Assert.assertTrue(rec.containsKey("field2a"));
+        Assert.assertFalse(rec.containsKey("unknown"));
+        Assert.assertEquals(4, rec.size());
+
+        // modifying the record should work like a regular map
+        rec.put("field1", "2");
+        rec.remove("field2b");
+        Assert.assertEquals("2", rec.get("field1"));
+        Assert.assertNull(rec.get("field2b"));
+        Assert.assertEquals(3, rec.size());
+
+        // options should be applied
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setTrimValues(false);
+        Assert.assertEquals(" 1 ", layout.createLazyRecordFromLine(" 1 AB CD", null, options).get("field1"));
+        options = new RecordLayoutOptions();
+        options.setEnforceStrictFormat(true);
+        try {
+            layout.createLazyRecordFromLine(" 1 AB", null, options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            // expected
+        }
+
+        // reading lazy records
+        try (LineNumberReader reader = new LineNumberReader(new StringReader(" 1 AB CD\n 2 EF GH\n"))) {
+            Assert.assertEquals("1", layout.readNextLazyRecord(reader, null).get("field1"));
+            Assert.assertEquals("GH", layout.readNextLazyRecord(reader, null).get("field2b"));
+            Assert.assertNull(layout.readNextLazyRecord(reader, null));
+        }
+    }
+
+    @Test
+    public void testCreateRecordFromBytes() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId("test-bytes");
+        layout.setLayoutName("Test Bytes");
+        layout.setLayoutLineLength(10);
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(6);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(7);
+        field2.setEnd(10);
+        FixedColumnsField field2a = new FixedColumnsField();
+        field2a.setName("field2a");
+        field2a.setStart(7);
+        field2a.setEnd(8);
+        FixedColumnsField field2b = new FixedColumnsField();
+        field2b.setName("field2b");
+        field2b.setStart(9);
+        field2b.setEnd(10);
+        field2.setSubFields(Arrays.asList(field2a, field2b));
+        layout.setFields(Arrays.asList(field1, field2));
+
+        RecordLayoutOptions noTrimming = new RecordLayoutOptions();
+        noTrimming.setTrimValues(false);
+        RecordLayoutOptions latin1 = new RecordLayoutOptions();
+        latin1.setEncoding(StandardCharsets.ISO_8859_1);
+
+        // the bytes should always give the same result as the line
+        for (String line : Arrays.asList("000001 ABC", "  0001  BC", "000001    ", "000001", "00000", "", "000001 \u00e9BC", "  \u00e9    \u00e8 ")) {
+            for (RecordLayoutOptions options : Arrays.asList(null, noTrimming, latin1)) {
+                byte[] bytes = ("XX" + line + "YY").getBytes(options == latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                Assert.assertEquals(line, layout.createRecordFromLine(line, null, options), layout.createRecordFromBytes(bytes, 2, bytes.length - 4, null, options));
+            }
+        }
+
+        // reading from a stream uses the bytes (make sure the lines are properly split, including lines bigger than the read buffer)
+        StringBuilder buf = new StringBuilder();
+        for (int i = 1; i <= 5000; i++)
+            buf.append(String.format("%06d ABC", i)).append(i % 3 == 0 ? "\r\n" : i % 7 == 0 ? "\r" : "\n");
+        buf.append("000001 \u00e9BC\n\n");
+        for (int i = 0; i < 100000; i++)
+            buf.append('X');
+        buf.append("\r\n000002 ABC");
+        String data = buf.toString();
+        List<Map<String, String>> expected = layout.readAllRecords(new StringReader(data));
+        Assert.assertEquals(5004, expected.size());
+        Assert.assertEquals(expected, layout.readAllRecords(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), null));
+        try (RecordReader reader = layout.openReader(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), null)) {
+            reader.skipLines(5001);
+            Assert.assertEquals(0, reader.readRecord().size());
+            Assert.assertEquals(5002, reader.getLineNumber());
+        }
+
+        // errors should still report the proper line number
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setEnforceStrictFormat(true);
+        try {
+            layout.readAllRecords(new ByteArrayInputStream("000001 ABC\r\n000002 AB\r\n".getBytes(StandardCharsets.UTF_8)), options);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("line 2:"));
+        }
+    }
+
+    @Test
+    public void testFillLineFromRecord() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId("test-fill");
+        layout.setLayoutName("Test Fill");
+        layout.setLayoutLineLength(12);
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(2);
+        field1.setEnd(5);
+        field1.setAlign(FieldAlignment.RIGHT);
+        field1.setPadChar("0");
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(7);
+        field2.setEnd(11);
+        FixedColumnsField field2a = new FixedColumnsField();
+        field2a.setName("field2a");
+        field2a.setStart(7);
+        field2a.setEnd(8);
+        field2a.setDefaultValue("D");
+        FixedColumnsField field2b = new FixedColumnsField();
+        field2b.setName("field2b");
+        field2b.setStart(10);
+        field2b.setEnd(11);
+        field2.setSubFields(Arrays.asList(field2a, field2b));
+        layout.setFields(Arrays.asList(field1, field2));
+
+        Map<String, String> rec = new HashMap<>();
+        rec.put("field1", "12");
+        rec.put("field2b", "\u00e9");
+        Assert.assertEquals(" 0012 D  \u00e9  ", layout.createLineFromRecord(rec, null));
+
+        // the buffer can be re-used, and the characters after the line length are not modified
+        char[] line = new char[14];
+        line[12] = '\r';
+        line[13] = '\n';
+        layout.fillLineFromRecord(rec, null, line);
+        Assert.assertEquals(" 0012 D  \u00e9  \r\n", new String(line));
+        layout.fillLineFromRecord(null, null, line);
+        Assert.assertEquals("      D     \r\n", new String(line));
+        try {
+            layout.fillLineFromRecord(rec, null, new char[11]);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // writing to a stream should use the requested encoding
+        for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII, StandardCharsets.UTF_16LE)) {
+            RecordLayoutOptions options = new RecordLayoutOptions();
+            options.setEncoding(charset);
+            options.setLineSeparator(RecordLayoutOptions.NEW_LINE_CRLF);
+            Map<String, String> rec2 = new HashMap<>();
+            rec2.put("field1", "3");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            layout.writeRecords(out, Arrays.asList(rec, rec2), options);
+            Assert.assertEquals(charset.name(), " 0012 D  \u00e9  \r\n 0003 D     \r\n", new String(out.toByteArray(), charset).replace("?", "\u00e9"));
+        }
+
+        // the values are cleaned if cleanValue() is overridden (even if the layout extends another one), or if the extended layout cleans them
+        FixedColumnsLayout cleaningLayout = new FixedColumnsLayout() {
+            @Override
+            protected String cleanValue(String value, Field field) {
+                return "field1".equals(field.getName()) ? value.substring(1) : value.toUpperCase();
+            }
+        };
+        cleaningLayout.setLayoutId("test-fill-cleaning");
+        cleaningLayout.setLayoutName("Test Fill Cleaning");
+        cleaningLayout.setLayoutLineLength(12);
+        cleaningLayout.setFields(Arrays.asList(field1, field2));
+        Assert.assertEquals(" 012  D  \u00c9  ", cleaningLayout.createLineFromRecord(rec, null));
+        FixedColumnsLayout extendingLayout = new FixedColumnsLayout();
+        extendingLayout.setLayoutId("test-fill-extending");
+        extendingLayout.setLayoutName("Test Fill Extending");
+        extendingLayout.setLayoutLineLength(12);
+        extendingLayout.setFields(Arrays.asList(field1, field2));
+        extendingLayout.setParentLayoutId(cleaningLayout.getLayoutId());
+        FixedColumnsLayout overridingLayout = new FixedColumnsLayout() {
+            @Override
+            protected String cleanValue(String value, Field field) {
+                return value.replace('0', 'X');
+            }
+        };
+        overridingLayout.setLayoutId("test-fill-overriding");
+        overridingLayout.setLayoutName("Test Fill Overriding");
+        overridingLayout.setLayoutLineLength(12);
+        overridingLayout.setFields(Arrays.asList(field1, field2));
+        overridingLayout.setParentLayoutId(layout.getLayoutId());
+        LayoutFactory.registerLayout(layout);
+        LayoutFactory.registerLayout(cleaningLayout);
+        try {
+            Assert.assertEquals(" 012  D  \u00c9  ", extendingLayout.createLineFromRecord(rec, null));
+            Assert.assertEquals(" XX12 D  \u00e9  ", overridingLayout.createLineFromRecord(rec, null));
+        }
+        finally {
+            LayoutFactory.unregisterLayout(layout.getLayoutId());
+            LayoutFactory.unregisterLayout(cleaningLayout.getLayoutId());
+        }
+    }
+
+    @Test
+    public void testParallelRead() throws IOException {
+        FixedColumnsLayout layout = createTestLayout("test-parallel");
+
+        for (String separator : Arrays.asList("\n", "\r\n")) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 1; i <= 1000; i++) {
+                // a few lines are shorter or longer than expected, the chunks should still be properly aligned
+                if (i % 97 == 0)
+                    buf.append(String.format("%06d", i)).append(separator);
+                else if (i % 101 == 0)
+                    buf.append(String.format("%06d ABCDEFGHI", i)).append(separator);
+                else
+                    buf.append(String.format("%06d ABC", i)).append(separator);
+            }
+            File file = new File(TestingUtils.getBuildDirectory(), "fixed-parallel-test.txt");
+            SeerUtils.writeFile(buf.toString(), file);
+
+            List<Map<String, String>> expected = layout.readAllRecords(file);
+            Assert.assertEquals(1000, expected.size());
+
+            List<Map<String, String>> actual = new ArrayList<>();
+            layout.readAllRecordsInParallel(file, null, 4, true, actual::add, 100);
+            Assert.assertEquals(expected, actual);
+
+            actual.clear();
+            layout.readAllRecordsInParallel(file, null, actual::add);
+            Assert.assertEquals(expected, actual);
+
+            actual.clear();
+            layout.readAllRecordsInParallel(file, null, 4, false, actual::add, 100);
+            Assert.assertEquals(1000, actual.size());
+            actual.sort(Comparator.comparing(r -> r.get("field1")));
+            Assert.assertEquals(expected, actual);
+
+            // errors should report the real line number
+            RecordLayoutOptions options = new RecordLayoutOptions();
+            options.setEnforceStrictFormat(true);
+            actual.clear();
+            try {
+                layout.readAllRecordsInParallel(file, options, 4, true, actual::add, 100);
+                Assert.fail("Was expecting an exception");
+            }
+            catch (IOException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("line 97:"));
+                Assert.assertFalse(e.getMessage(), e.getMessage().substring(5).contains("line "));
+                Assert.assertNotNull(e.getCause());
+                Assert.assertEquals(96, actual.size());
+            }
+        }
+
+        // compressed files are read sequentially
+        File file = new File(TestingUtils.getBuildDirectory(), "fixed-parallel-test.txt.gz");
+        try (OutputStream os = LayoutUtils.createOutputStream(file)) {
+            os.write("000001 ABC\n000002 DEF\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        List<Map<String, String>> actual = new ArrayList<>();
+        layout.readAllRecordsInParallel(file, null, 4, true, actual::add, 100);
+        Assert.assertEquals(layout.readAllRecords(file), actual);
+
+        // a regular GZip file is decompressed by a read-ahead thread, even if the last line has no line separator
+        try (OutputStream os = LayoutUtils.createOutputStream(file)) {
+            os.write("000001 ABC\n000002 DEF".getBytes(StandardCharsets.US_ASCII));
+        }
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setCompressionThreads(2);
+        Assert.assertEquals(Arrays.asList(Map.of("field1", "000001", "field2", "ABC"), Map.of("field1", "000002", "field2", "DEF")),
+                layout.readAllRecords(file, null, options));
+    }
+
+    @Test
+    public void testMappedReader() throws IOException {
+        FixedColumnsLayout layout = createTestLayout("test-mapped");
+
+        File file = new File(TestingUtils.getBuildDirectory(), "fixed-mapped-test.txt");
+        for (String separator : Arrays.asList("\n", "\r\n", "\r")) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 1; i <= 500; i++) {
+                if (i % 97 == 0)
+                    buf.append(String.format("%06d", i)).append(separator);
+                else if (i % 101 == 0)
+                    buf.append(String.format("%06d ABCDEFGHI", i)).append(separator);
+                else if (i % 103 == 0)
+                    buf.append(separator);
+                else
+                    buf.append(String.format("%06d \u00e9BC", i)).append(separator);
+            }
+            for (boolean lastSeparator : Arrays.asList(true, false)) {
+                String data = lastSeparator ? buf.toString() : buf.substring(0, buf.length() - separator.length());
+                byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+                Files.write(file.toPath(), bytes);
+
+                List<Map<String, String>> expected = new ArrayList<>();
+                try (RecordReader reader = layout.createRecordReader(new ByteArrayInputStream(bytes), null)) {
+                    Map<String, String> rec;
+                    while ((rec = reader.readRecord()) != null)
+                        expected.add(rec);
+                }
+                Assert.assertEquals(500, expected.size());
+                Assert.assertEquals("\u00e9BC", expected.get(0).get("field2"));
+
+                Assert.assertEquals(expected, layout.readAllRecords(file));
+                for (int segmentSize : Arrays.asList(24, 37, 1000)) {
+                    List<Map<String, String>> actual = new ArrayList<>();
+                    try (RecordReader reader = layout.openMappedReader(file, null, null, segmentSize)) {
+                        Map<String, String> rec;
+                        while ((rec = reader.readRecord()) != null)
+                            actual.add(rec);
+                        Assert.assertEquals(500, reader.getLineNumber());
+                    }
+                    Assert.assertEquals(expected, actual);
+                }
+
+                FixedColumnsFilter filter = FixedColumnsFilter.startsWith("field1", "00001");
+                Assert.assertEquals(expected.subList(9, 19), layout.readAllRecords(file, null, filter, null));
+            }
+        }
+
+        // a line can't be longer than a segment
+        Files.write(file.toPath(), "000001 ABC\n000002 ABCDEFGHIJKLMNOPQRSTUVWXYZ\n000003 ABC\n".getBytes(StandardCharsets.US_ASCII));
+        try (RecordReader reader = layout.openMappedReader(file, null, null, 16)) {
+            Assert.assertNotNull(reader.readRecord());
+            reader.readRecord();
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("line 2:"));
+        }
+
+        // empty file
+        Files.write(file.toPath(), new byte[0]);
+        Assert.assertTrue(layout.readAllRecords(file).isEmpty());
+
+        // line separators found eight bytes at a time
+        for (int length = 0; length < 20; length++) {
+            for (int pos = -1; pos < length; pos++) {
+                byte[] bytes = new byte[length];
+                Arrays.fill(bytes, (byte)'A');
+                if (pos >= 0)
+                    bytes[pos] = (byte)(pos % 2 == 0 ? '\n' : '\r');
+                if (pos >= 0 && pos + 1 < length)
+                    bytes[pos + 1] = (byte)'\n';
+                ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                Assert.assertEquals(pos, FixedColumnsMappedRecordReader.findLineSeparator(buffer, 0, length));
+                if (pos > 0)
+                    Assert.assertEquals(pos, FixedColumnsMappedRecordReader.findLineSeparator(buffer, 1, length));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyIndex() throws IOException {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId("test-key-index");
+        layout.setLayoutName("Test Key Index");
+        layout.setLayoutLineLength(10);
+        FixedColumnsField patientId = new FixedColumnsField();
+        patientId.setName("patientId");
+        patientId.setStart(1);
+        patientId.setEnd(4);
+        FixedColumnsField tumorNum = new FixedColumnsField();
+        tumorNum.setName("tumorNum");
+        tumorNum.setStart(5);
+        tumorNum.setEnd(6);
+        FixedColumnsField data = new FixedColumnsField();
+        data.setName("data");
+        data.setStart(7);
+        data.setEnd(10);
+        layout.setFields(Arrays.asList(patientId, tumorNum, data));
+
+        for (String separator : Arrays.asList("\n", "\r\n")) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < 1000; i++)
+                buf.append(String.format("%04d%s%04d", 999 - i / 3, i % 3 == 2 ? "  " : String.format("%02d", i % 3), i)).append(separator);
+            File file = new File(TestingUtils.getBuildDirectory(), "fixed-key-index-test.txt");
+            SeerUtils.writeFile(buf.toString(), file);
+            List<Map<String, String>> records = layout.readAllRecords(file);
+
+            try (FixedColumnsKeyIndex index = FixedColumnsKeyIndex.build(layout, file, Collections.singletonList("patientId"), null, 4, 100)) {
+                Assert.assertEquals(1000, index.size());
+                Assert.assertEquals(records.subList(15, 18), index.lookup("0994"));
+                Assert.assertEquals(records.subList(999, 1000), index.lookup("0666"));
+                Assert.assertTrue(index.lookup("1000").isEmpty());
+                Assert.assertEquals(3, index.getOffsets("0800").length);
+            }
+
+            try (FixedColumnsKeyIndex index = layout.buildKeyIndex(file, Arrays.asList("patientId", "tumorNum"), null)) {
+                Assert.assertEquals(records.subList(16, 17), index.lookup("0994", "01"));
+                Assert.assertEquals(records.subList(17, 18), index.lookup("0994", null));
+                Assert.assertEquals(records.subList(17, 18), index.lookup("0994", ""));
+                Assert.assertTrue(index.lookup("0994", "02").isEmpty());
+                try {
+                    index.lookup("0994");
+                    Assert.fail("Was expecting an exception");
+                }
+                catch (IllegalStateException e) {
+                    // expected
+                }
+            }
+
+            // saving and loading the index
+            File indexFile = new File(TestingUtils.getBuildDirectory(), "fixed-key-index-test.idx");
+            if (indexFile.exists())
+                Assert.assertTrue(indexFile.delete());
+            try (FixedColumnsKeyIndex index = layout.openKeyIndex(file, Collections.singletonList("patientId"), indexFile, null)) {
+                Assert.assertEquals(records.subList(0, 3), index.lookup("0999"));
+            }
+            Assert.assertTrue(indexFile.exists());
+            try (FixedColumnsKeyIndex index = FixedColumnsKeyIndex.load(layout, file, Collections.singletonList("patientId"), indexFile, null)) {
+                Assert.assertNotNull(index);
+                Assert.assertTrue(index.isUpToDate());
+                Assert.assertEquals(Collections.singletonList("patientId"), index.getKeyFields());
+                Assert.assertEquals(records.subList(3, 6), index.lookup("0998"));
+            }
+            Assert.assertNull(FixedColumnsKeyIndex.load(layout, file, Collections.singletonList("tumorNum"), indexFile, null));
+            try (FixedColumnsKeyIndex index = layout.openKeyIndex(file, Collections.singletonList("tumorNum"), indexFile, null)) {
+                Assert.assertEquals(334, index.getOffsets("00").length);
+            }
+        }
+
+        // the keys are extracted using the encoding of the layout
+        FixedColumnsLayout latin1Layout = new FixedColumnsLayout() {
+            @Override
+            protected Charset getEncoding(RecordLayoutOptions options) {
+                return StandardCharsets.ISO_8859_1;
+            }
+        };
+        latin1Layout.setLayoutId("test-key-index-latin1");
+        latin1Layout.setLayoutName("Test Key Index Latin1");
+        latin1Layout.setLayoutLineLength(10);
+        latin1Layout.setFields(Arrays.asList(patientId, tumorNum, data));
+        File latin1File = new File(TestingUtils.getBuildDirectory(), "fixed-key-index-latin1-test.txt");
+        Files.write(latin1File.toPath(), "\u00e9001010001\n0002010002\n".getBytes(StandardCharsets.ISO_8859_1));
+        try (FixedColumnsKeyIndex index = latin1Layout.buildKeyIndex(latin1File, Collections.singletonList("patientId"), null)) {
+            Assert.assertEquals(1, index.lookup("\u00e9001").size());
+            Assert.assertEquals("\u00e9001", index.lookup("\u00e9001").get(0).get("patientId"));
+        }
+
+        try {
+            layout.buildKeyIndex(new File(TestingUtils.getBuildDirectory(), "fixed-parallel-test.txt.gz"), Collections.singletonList("patientId"), null);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            // expected
+        }
+        try {
+            layout.buildKeyIndex(new File(TestingUtils.getBuildDirectory(), "fixed-key-index-test.txt"), Collections.singletonList("unknown"), null);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConverter() throws IOException {
+        FixedColumnsLayout source = new FixedColumnsLayout();
+        source.setLayoutId("test-converter-source");
+        source.setLayoutName("Test Converter Source");
+        source.setLayoutLineLength(20);
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(6);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setNaaccrItemNum(100);
+        field2.setStart(7);
+        field2.setEnd(10);
+        FixedColumnsField field3 = new FixedColumnsField();
+        field3.setName("field3");
+        field3.setStart(11);
+        field3.setEnd(20);
+        source.setFields(Arrays.asList(field1, field2, field3));
+
+        FixedColumnsLayout target = new FixedColumnsLayout();
+        target.setLayoutId("test-converter-target");
+        target.setLayoutName("Test Converter Target");
+        target.setLayoutLineLength(25);
+        FixedColumnsField targetField3 = new FixedColumnsField();
+        targetField3.setName("field3");
+        targetField3.setStart(1);
+        targetField3.setEnd(12);
+        targetField3.setAlign(FieldAlignment.RIGHT);
+        targetField3.setPadChar("0");
+        FixedColumnsField targetField2 = new FixedColumnsField();
+        targetField2.setName("field2Renamed");
+        targetField2.setNaaccrItemNum(100);
+        targetField2.setStart(13);
+        targetField2.setEnd(16);
+        FixedColumnsField targetGroup = new FixedColumnsField();
+        targetGroup.setName("group");
+        targetGroup.setStart(17);
+        targetGroup.setEnd(25);
+        FixedColumnsField targetField1 = new FixedColumnsField();
+        targetField1.setName("field1");
+        targetField1.setStart(17);
+        targetField1.setEnd(22);
+        FixedColumnsField targetField4 = new FixedColumnsField();
+        targetField4.setName("field4");
+        targetField4.setStart(23);
+        targetField4.setEnd(25);
+        targetField4.setDefaultValue("X");
+        targetGroup.setSubFields(Arrays.asList(targetField1, targetField4));
+        target.setFields(Arrays.asList(targetField3, targetField2, targetGroup));
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++)
+            lines.add(i % 10 == 0 ? String.format("%06d", i) : String.format("%06dAB  %-10d", i, i * 7));
+
+        // the result should be the same as reading the records and writing them back with the target layout
+        FixedColumnsConverter converter = new FixedColumnsConverter(source, target);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            Map<String, String> rec = source.createRecordFromLine(lines.get(i), i + 1, null);
+            if (rec.containsKey("field2"))
+                rec.put("field2Renamed", rec.remove("field2"));
+            String expectedLine = target.createLineFromRecord(rec, null);
+            Assert.assertEquals(expectedLine, converter.convertLine(lines.get(i), i + 1));
+            expected.append(expectedLine).append(System.lineSeparator());
+        }
+        Assert.assertEquals("000000000007AB  000001X  ", converter.convertLine("000001AB  7         ", 1));
+
+        File sourceFile = new File(TestingUtils.getBuildDirectory(), "fixed-converter-source.txt");
+        SeerUtils.writeFile(String.join("\n", lines) + "\n", sourceFile);
+        File targetFile = new File(TestingUtils.getBuildDirectory(), "fixed-converter-target.txt");
+        Assert.assertEquals(1000, converter.convert(sourceFile, targetFile, 4, 100));
+        Assert.assertEquals(expected.toString(), SeerUtils.readFile(targetFile));
+        Assert.assertEquals(1000, converter.convert(sourceFile, targetFile, 1));
+        Assert.assertEquals(expected.toString(), SeerUtils.readFile(targetFile));
+
+        // compressed files are converted sequentially
+        File compressedFile = new File(TestingUtils.getBuildDirectory(), "fixed-converter-source.txt.gz");
+        try (OutputStream os = LayoutUtils.createOutputStream(compressedFile)) {
+            os.write((String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        Assert.assertEquals(1000, converter.convert(compressedFile, targetFile, 4));
+        Assert.assertEquals(expected.toString(), SeerUtils.readFile(targetFile));
+
+        // the target lines use the encoding and line separator of the target layout
+        FixedColumnsLayout customTarget = new FixedColumnsLayout() {
+            @Override
+            protected Charset getEncoding(RecordLayoutOptions options) {
+                return StandardCharsets.ISO_8859_1;
+            }
+
+            @Override
+            protected String getLineSeparator(RecordLayoutOptions options) {
+                return "\r\n";
+            }
+        };
+        customTarget.setLayoutId("test-converter-custom-target");
+        customTarget.setLayoutName("Test Converter Custom Target");
+        customTarget.setLayoutLineLength(8);
+        FixedColumnsField customField1 = new FixedColumnsField();
+        customField1.setName("field1");
+        customField1.setStart(1);
+        customField1.setEnd(6);
+        FixedColumnsField customField5 = new FixedColumnsField();
+        customField5.setName("field5");
+        customField5.setStart(7);
+        customField5.setEnd(8);
+        customField5.setDefaultValue("éé");
+        customTarget.setFields(Arrays.asList(customField1, customField5));
+        StringBuilder customExpected = new StringBuilder();
+        for (String line : lines)
+            customExpected.append(line, 0, 6).append("éé\r\n");
+        FixedColumnsConverter customConverter = new FixedColumnsConverter(source, customTarget);
+        Assert.assertEquals(1000, customConverter.convert(sourceFile, targetFile, 4, 100));
+        Assert.assertEquals(customExpected.toString(), new String(Files.readAllBytes(targetFile.toPath()), StandardCharsets.ISO_8859_1));
+        Assert.assertEquals(1000, customConverter.convert(sourceFile, targetFile, 1));
+        Assert.assertEquals(customExpected.toString(), new String(Files.readAllBytes(targetFile.toPath()), StandardCharsets.ISO_8859_1));
+
+        // errors should report the real line number
+        RecordLayoutOptions options = new RecordLayoutOptions();
+        options.setEnforceStrictFormat(true);
+        FixedColumnsConverter strictConverter = new FixedColumnsConverter(source, target, options);
+        try {
+            strictConverter.convert(sourceFile, targetFile, 4, 100);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("line 10:"));
+            Assert.assertFalse(e.getMessage(), e.getMessage().substring(5).contains("line "));
+            Assert.assertNotNull(e.getCause());
+        }
+        SeerUtils.writeFile(String.join("\n", lines.subList(0, 9)) + "\n", sourceFile);
+        Assert.assertEquals(9, strictConverter.convert(sourceFile, targetFile, 4, 100));
+        try {
+            targetField2.setEnd(13);
+            new FixedColumnsConverter(source, target).convert(sourceFile, targetFile, 4, 10);
+            Assert.fail("Was expecting an exception");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("line 1:"));
+        }
+    }
+
     @Test
     public void testLayoutExtension() throws Exception {
         if (!LayoutFactory.isLayoutRegister("test"))
@@ -403,4 +1253,22 @@ public class FixedColumnsLayoutTest {
         options.setFixedColumnAllowDiscoveryFromLineLength(false);
         Assert.assertNull(layout.buildFileInfo(file, null, options));
     }
+
+    // returns a layout with lines of 10 characters containing field1 (1-6) and field2 (7-10)
+    private static FixedColumnsLayout createTestLayout(String layoutId) {
+        FixedColumnsLayout layout = new FixedColumnsLayout();
+        layout.setLayoutId(layoutId);
+        layout.setLayoutName(layoutId);
+        layout.setLayoutLineLength(10);
+        FixedColumnsField field1 = new FixedColumnsField();
+        field1.setName("field1");
+        field1.setStart(1);
+        field1.setEnd(6);
+        FixedColumnsField field2 = new FixedColumnsField();
+        field2.setName("field2");
+        field2.setStart(7);
+        field2.setEnd(10);
+        layout.setFields(Arrays.asList(field1, field2));
+        return layout;
+    }
 }
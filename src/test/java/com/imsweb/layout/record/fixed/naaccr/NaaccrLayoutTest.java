@@ -5,6 +5,8 @@ package com.imsweb.layout.record.fixed.naaccr;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -15,6 +17,7 @@ import com.imsweb.layout.LayoutInfo;
 import com.imsweb.layout.LayoutInfoDiscoveryOptions;
 import com.imsweb.layout.TestingUtils;
 import com.imsweb.layout.record.RecordLayout;
+import com.imsweb.layout.record.fixed.FixedColumnsField;
 
 import static com.imsweb.layout.LayoutFactory.LAYOUT_ID_NAACCR_16_INCIDENCE;
 
@@ -30,6 +33,41 @@ public class NaaccrLayoutTest {
         Assert.assertEquals(xmlToName.size(), nameToXml.size());
     }
 
+    @Test
+    public void testLoadFromSnapshot() throws IOException {
+        File snapshotDir = new File(TestingUtils.getBuildDirectory(), "layout-snapshots-classpath");
+        NaaccrLayoutSnapshots.createSnapshots(new File(TestingUtils.getWorkingDirectory(), "src/main/resources/layout/fixed/naaccr"), snapshotDir);
+
+        // the XML definition is hidden, so the layout can only be loaded from the snapshot
+        String xmlDefinition = "layout/fixed/naaccr/naaccr-18-layout.xml";
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        NaaccrLayout fromSnapshot;
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {snapshotDir.toURI().toURL()}, original) {
+            @Override
+            public URL getResource(String name) {
+                return xmlDefinition.equals(name) ? null : super.getResource(name);
+            }
+        }) {
+            Assert.assertNull(classLoader.getResource(xmlDefinition));
+            Assert.assertNotNull(classLoader.getResource(NaaccrLayoutSnapshots.getSnapshotResourceName("18")));
+            Thread.currentThread().setContextClassLoader(classLoader);
+            fromSnapshot = new NaaccrLayout("180", "A", 24194, LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT, true, false);
+        }
+        finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+
+        NaaccrLayout expected = (NaaccrLayout)LayoutFactory.getLayout(LayoutFactory.LAYOUT_ID_NAACCR_18_ABSTRACT);
+        Assert.assertEquals(expected.getAllFields().size(), fromSnapshot.getAllFields().size());
+        for (FixedColumnsField field : expected.getAllFields()) {
+            FixedColumnsField other = fromSnapshot.getFieldByName(field.getName());
+            Assert.assertNotNull(field.getName(), other);
+            Assert.assertEquals(field.getName(), field.getStart(), other.getStart());
+            Assert.assertEquals(field.getName(), field.getEnd(), other.getEnd());
+            Assert.assertEquals(field.getName(), field.getNaaccrItemNum(), other.getNaaccrItemNum());
+        }
+    }
+
     @Test
     public void testBuildFileInfo() throws IOException {
         RecordLayout layout = (RecordLayout)LayoutFactory.getLayout(LAYOUT_ID_NAACCR_16_INCIDENCE);